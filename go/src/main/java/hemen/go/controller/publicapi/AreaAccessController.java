@@ -1,19 +1,40 @@
 package hemen.go.controller.publicapi;
 
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import hemen.go.dto.request.TokenRequest;
-import hemen.go.security.JwtUtil;
+import hemen.go.enums.ResultadoAcceso;
+import hemen.go.enums.SentidoAcceso;
+import hemen.go.security.ClavesPuerta;
+import hemen.go.security.CredencialesPuerta;
+import hemen.go.service.TokenReservaService;
+import hemen.go.service.acceso.CacheQrService;
+import hemen.go.service.acceso.ListaPermitidasService;
+import hemen.go.service.acceso.NoncesPuertaService;
+import hemen.go.service.acceso.OcupacionParkingService;
+import hemen.go.service.acceso.RegistroAccesosService;
+import hemen.go.service.evento.DifusionParkingService;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
-import io.jsonwebtoken.Jws;
 import io.jsonwebtoken.JwtException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -21,6 +42,7 @@ import io.swagger.v3.oas.annotations.enums.ParameterIn;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 
 /**
  * Controlador REST público encargado de gestionar el acceso a áreas mediante tokens JWT.
@@ -31,10 +53,23 @@ import io.swagger.v3.oas.annotations.tags.Tag;
  * 
  * <p>Características principales:</p>
  * <ul>
- *   <li>Valida el token JWT utilizando {@link JwtUtil}.</li>
+ *   <li>Valida el token JWT utilizando {@link TokenReservaService}.</li>
  *   <li>Comprueba que el ID del parking en el token coincide con el enviado en la petición.</li>
+ *   <li>Rechaza los tokens que ya se han usado, para que un QR solo abra una vez.</li>
+ *   <li>Anota cada intento de apertura, con su resultado, en el diario de accesos.</li>
+ *   <li>Cuenta las entradas y salidas de cada parking para conocer su ocupación en tiempo real.
+ *       Solo las puertas del parking, con su credencial ({@link CredencialesPuerta}), pueden
+ *       abrir, y una salida solo se cuenta si el mismo QR se usó para entrar.</li>
  *   <li>Gestiona errores de token caducado o inválido mediante excepciones específicas.</li>
  *   <li>Internacionaliza los mensajes de respuesta usando {@link MessageSource} y el locale actual.</li>
+ *   <li>Publica las claves públicas de los tokens de puerta para que las puertas verifiquen
+ *       los QR sin llamar al servidor.</li>
+ *   <li>Entrega a cada puerta la lista de reservas permitidas hoy en su parking, completa o
+ *       solo con los cambios desde la versión que ya tiene. La puerta debe presentar la
+ *       credencial de su parking ({@link CredencialesPuerta}).</li>
+ *   <li>Envía a las puertas, por Server-Sent Events, las reservas creadas y canceladas y los
+ *       cambios de estado de las plazas de su parking en cuanto se producen. También exige la
+ *       credencial del parking.</li>
  * </ul>
  * 
  * <p>Respuestas posibles:</p>
@@ -50,8 +85,34 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 @Tag(name="Acceso a parking")
 public class AreaAccessController {
 
-    /** Utilidad para validar y procesar tokens JWT. */
-    private final JwtUtil jwtUtil;
+    private static final Logger logger = LoggerFactory.getLogger(AreaAccessController.class);
+
+    /** Servicio para validar los tokens de puerta. */
+    private final TokenReservaService tokenReservaService;
+
+    /** Claves públicas de los tokens de puerta. */
+    private final ClavesPuerta clavesPuerta;
+
+    /** Credenciales de las puertas de cada parking. */
+    private final CredencialesPuerta credencialesPuerta;
+
+    /** Registro de tokens de puerta ya usados. */
+    private final NoncesPuertaService noncesPuertaService;
+
+    /** Listas de reservas permitidas por parking. */
+    private final ListaPermitidasService listaPermitidasService;
+
+    /** Diario de intentos de apertura. */
+    private final RegistroAccesosService registroAccesosService;
+
+    /** Contadores de entradas y salidas por parking. */
+    private final OcupacionParkingService ocupacionParkingService;
+
+    /** Envío en tiempo real de los cambios de cada parking. */
+    private final DifusionParkingService difusionParkingService;
+
+    /** QR ya generados, que dejan de servirse cuando abren una puerta. */
+    private final CacheQrService cacheQrService;
     
     /** Fuente de mensajes para internacionalización (i18n). */
     private final MessageSource messageSource;
@@ -59,11 +120,34 @@ public class AreaAccessController {
     /**
      * Constructor del controlador.
      * 
-     * @param jwtUtil utilidad para validación de tokens JWT
+     * @param tokenReservaService servicio para validar los tokens de puerta
+     * @param clavesPuerta claves públicas de los tokens de puerta
+     * @param credencialesPuerta credenciales de las puertas de cada parking
+     * @param noncesPuertaService registro de tokens de puerta ya usados
+     * @param listaPermitidasService listas de reservas permitidas por parking
+     * @param registroAccesosService diario de intentos de apertura
+     * @param ocupacionParkingService contadores de entradas y salidas por parking
+     * @param difusionParkingService envío en tiempo real de los cambios de cada parking
+     * @param cacheQrService QR ya generados de las reservas
      * @param messageSource fuente de mensajes para i18n
      */
-    public AreaAccessController(JwtUtil jwtUtil, MessageSource messageSource) {
-        this.jwtUtil = jwtUtil;
+    public AreaAccessController(TokenReservaService tokenReservaService, ClavesPuerta clavesPuerta,
+                                CredencialesPuerta credencialesPuerta,
+                                NoncesPuertaService noncesPuertaService,
+                                ListaPermitidasService listaPermitidasService,
+                                RegistroAccesosService registroAccesosService,
+                                OcupacionParkingService ocupacionParkingService,
+                                DifusionParkingService difusionParkingService, CacheQrService cacheQrService,
+                                MessageSource messageSource) {
+        this.tokenReservaService = tokenReservaService;
+        this.clavesPuerta = clavesPuerta;
+        this.credencialesPuerta = credencialesPuerta;
+        this.noncesPuertaService = noncesPuertaService;
+        this.listaPermitidasService = listaPermitidasService;
+        this.registroAccesosService = registroAccesosService;
+        this.ocupacionParkingService = ocupacionParkingService;
+        this.difusionParkingService = difusionParkingService;
+        this.cacheQrService = cacheQrService;
         this.messageSource = messageSource;
     }
     
@@ -72,16 +156,25 @@ public class AreaAccessController {
      * 
      * <p>Flujo de validación:</p>
      * <ol>
-     *   <li>Se recibe un {@link TokenRequest} con el token y el ID del parking.</li>
-     *   <li>Se valida el token con {@link JwtUtil#validarTokenPuerta(String)}.</li>
+     *   <li>Si la petición no lleva la credencial de las puertas del parking, se devuelve <b>401 Unauthorized</b>
+     *       sin anotar nada.</li>
+     *   <li>Se recibe un {@link TokenRequest} con el token, el ID del parking y, opcionalmente, el sentido
+     *       (entrada por defecto).</li>
+     *   <li>Se valida el token con {@link TokenReservaService#validarTokenPuerta(String)}.</li>
      *   <li>Se extrae el claim <code>idParking</code> del token.</li>
-     *   <li>Si coincide con el ID enviado en la petición, se devuelve <b>200 OK</b> con mensaje de éxito.</li>
+     *   <li>Si coincide con el ID enviado en la petición, se anota el <code>jti</code> del token como usado en ese
+     *       sentido, se cuenta el paso en la ocupación del parking y se devuelve <b>200 OK</b> con mensaje de éxito.
+     *       Una salida con un QR cuya entrada no consta abre la puerta pero no se cuenta.</li>
+     *   <li>Si el token ya se había usado en ese sentido, se devuelve <b>401 Unauthorized</b> con mensaje de QR ya usado.</li>
      *   <li>Si no coincide, se devuelve <b>401 Unauthorized</b> con mensaje de acceso denegado.</li>
      *   <li>Si el token está caducado, se devuelve <b>401 Unauthorized</b> con mensaje de token caducado.</li>
      *   <li>Si el token es inválido, se devuelve <b>401 Unauthorized</b> con mensaje de token inválido.</li>
      * </ol>
+     *
+     * <p>En todos los casos el intento se anota con {@link RegistroAccesosService#registrar}.</p>
      * 
      * @param request objeto con el token y el ID del parking
+     * @param credencial credencial de las puertas del parking (cabecera {@value CredencialesPuerta#CABECERA})
      * @return respuesta HTTP con el resultado de la validación
      */
     @PostMapping("/acceder")
@@ -94,7 +187,13 @@ public class AreaAccessController {
                        description = "Idioma de la respuesta (es, en, eu)",
                        in = ParameterIn.HEADER,
                        required = false
-            		  )
+            		  ),
+              @Parameter(
+                       name = CredencialesPuerta.CABECERA,
+                       description = "Credencial de las puertas del parking",
+                       in = ParameterIn.HEADER,
+                       required = true
+                      )
 	        }
                         
         )
@@ -102,23 +201,185 @@ public class AreaAccessController {
             @ApiResponse(responseCode = "200", description = "Acceso permitido"),
             @ApiResponse(responseCode = "401", description = "Acceso no autorizado"),
         })
-    public ResponseEntity<?> abrirPuerta(@RequestBody TokenRequest request) {
+    public ResponseEntity<?> abrirPuerta(@RequestBody TokenRequest request,
+                                         @RequestHeader(value = CredencialesPuerta.CABECERA, required = false) String credencial) {
+        if (!credencialesPuerta.valida(request.getIdParking(), credencial)) {
+            return credencialNoValida();
+        }
         try {
-            Jws<Claims> claims = jwtUtil.validarTokenPuerta(request.getToken());
+            Claims body = tokenReservaService.validarTokenPuerta(request.getToken());
 
-            Long idParking = claims.getBody().get("idParking", Long.class);
-            if (idParking == request.getIdParking()) {
+            Long idParking = body.get("idParking", Long.class);
+            Long idReserva = body.get("idReserva", Long.class);
+            if (idParking != null && idParking.equals(request.getIdParking())) {
+                // Un mismo QR sirve para entrar una vez y salir una vez
+                if (!noncesPuertaService.primerUso(body.getId(), request.getSentido(), body.getExpiration().getTime())) {
+                    registroAccesosService.registrar(idReserva, request.getIdParking(), ResultadoAcceso.USADO);
+                    return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                            .body(messageSource.getMessage("message.error.acceso.token.usado", null, LocaleContextHolder.getLocale()));
+                }
+                registroAccesosService.registrar(idReserva, request.getIdParking(), ResultadoAcceso.PERMITIDO);
+                if (request.getSentido() != SentidoAcceso.SALIDA
+                        || noncesPuertaService.usado(body.getId(), SentidoAcceso.ENTRADA, body.getExpiration().getTime())) {
+                    ocupacionParkingService.registrar(idParking, request.getSentido());
+                } else {
+                    // Se deja salir, pero sin entrada registrada la salida descontaría un vehículo que no se contó
+                    logger.warn("Salida del parking {} con el token {} sin entrada registrada: no se cuenta", idParking, body.getId());
+                }
+                // El siguiente QR que pida el usuario lleva un token sin usar
+                cacheQrService.invalidar(idReserva);
                 return ResponseEntity.ok(messageSource.getMessage("message.ok.acceso", null, LocaleContextHolder.getLocale()));
             } else {
+                registroAccesosService.registrar(idReserva, request.getIdParking(), ResultadoAcceso.DENEGADO);
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body(messageSource.getMessage("message.error.acceso.token", null, LocaleContextHolder.getLocale()));
             }
         } catch (ExpiredJwtException e) {
+            registroAccesosService.registrar(e.getClaims().get("idReserva", Long.class), request.getIdParking(),
+                    ResultadoAcceso.CADUCADO);
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(messageSource.getMessage("message.error.acceso.token", null, LocaleContextHolder.getLocale()));
         } catch (JwtException e) {
+            registroAccesosService.registrar(null, request.getIdParking(), ResultadoAcceso.INVALIDO);
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(messageSource.getMessage("message.error.acceso.token.invalido", null, LocaleContextHolder.getLocale()));
         }
     }
+
+    /**
+     * Endpoint que publica las claves públicas de los tokens de puerta como JWK Set.
+     *
+     * <p>Los controladores de las puertas lo descargan y verifican la firma ES256 de cada QR
+     * localmente, eligiendo la clave por el {@code kid} de la cabecera del token o, en los
+     * tokens compactos, por los 4 primeros bytes del {@code kid} (ver {@link ClavesPuerta}). La
+     * respuesta se puede guardar en caché una hora.</p>
+     *
+     * @return JWK Set con las claves públicas vigentes
+     */
+    @GetMapping("/puerta/claves")
+    @Operation(
+            summary = "Claves públicas de los tokens de puerta",
+            description = "Devuelve en formato JWK Set las claves con las que verificar, sin llamar al servidor, "
+                    + "los tokens de apertura de puertas (ES256, clave indicada por el kid)."
+        )
+        @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "JWK Set con las claves públicas"),
+        })
+    public ResponseEntity<Map<String, Object>> clavesPuerta() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(1, TimeUnit.HOURS).cachePublic())
+                .body(clavesPuerta.jwks());
+    }
+
+    /**
+     * Endpoint que entrega a una puerta las reservas permitidas hoy en su parking.
+     *
+     * <p>Sin parámetros devuelve la lista completa. Con la generación y la versión que ya tiene
+     * la puerta devuelve solo los cambios, o la lista completa si ya no es posible (cambio de
+     * día, reinicio o demasiados cambios). El formato binario se describe en
+     * {@link ListaPermitidasService}.</p>
+     *
+     * <p>Solo la entrega a las puertas del parking: la lista dice qué reservas hay cada día.</p>
+     *
+     * @param idParking identificador del parking
+     * @param credencial credencial de las puertas del parking (cabecera {@value CredencialesPuerta#CABECERA})
+     * @param generacion generación de la lista que tiene la puerta
+     * @param version versión de la lista que tiene la puerta
+     * @return lista o cambios en formato binario
+     */
+    @GetMapping(value = "/puerta/{idParking}/permitidas", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @Operation(
+            summary = "Reservas permitidas hoy en un parking",
+            description = "Devuelve en formato binario compacto los identificadores de las reservas activas hoy en el parking, "
+                    + "o solo los cambios desde la generación y versión indicadas, para que la puerta decida sin llamar al servidor.",
+            parameters = {
+              @Parameter(
+                       name = "Accept-Language",
+                       description = "Idioma de la respuesta (es, en, eu)",
+                       in = ParameterIn.HEADER,
+                       required = false
+                      ),
+              @Parameter(
+                       name = CredencialesPuerta.CABECERA,
+                       description = "Credencial de las puertas del parking",
+                       in = ParameterIn.HEADER,
+                       required = true
+                      )
+            }
+        )
+        @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Lista completa o cambios"),
+            @ApiResponse(responseCode = "401", description = "Falta la credencial de la puerta o no es la del parking"),
+            @ApiResponse(responseCode = "404", description = "El parking no existe"),
+        })
+    public ResponseEntity<?> reservasPermitidas(@PathVariable Long idParking,
+                                                @RequestHeader(value = CredencialesPuerta.CABECERA, required = false) String credencial,
+                                                @RequestParam(required = false) Long generacion,
+                                                @RequestParam(required = false) Integer version) {
+        if (!credencialesPuerta.valida(idParking, credencial)) {
+            return credencialNoValida();
+        }
+        try {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .body(listaPermitidasService.obtener(idParking, generacion, version));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Endpoint que abre un flujo Server-Sent Events con los cambios del parking para sus puertas.
+     *
+     * <p>Envía las reservas creadas y canceladas y los cambios de estado de las plazas en cuanto
+     * se producen, en lugar de que la puerta pregunte periódicamente. Si la puerta no lee al
+     * ritmo de los eventos recibe un evento {@code descartados} y debe volver a pedir la lista
+     * completa de reservas permitidas.</p>
+     *
+     * <p>Solo para las puertas del parking, con un máximo de conexiones por parking y por IP
+     * (ver {@link DifusionParkingService}), para que no ocupen las de los administradores.</p>
+     *
+     * @param idParking identificador del parking
+     * @param credencial credencial de las puertas del parking (cabecera {@value CredencialesPuerta#CABECERA})
+     * @param httpRequest petición HTTP, para obtener la IP de la puerta
+     * @return flujo de eventos del parking
+     */
+    @GetMapping(value = "/puerta/{idParking}/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+            summary = "Eventos en tiempo real de un parking para sus puertas",
+            description = "Flujo Server-Sent Events con las reservas creadas (RESERVA_CREADA) y canceladas (RESERVA_CANCELADA) "
+                    + "y los cambios de estado de las plazas (PLAZA_ESTADO) del parking. Un evento 'descartados' indica que "
+                    + "se han perdido eventos y hay que volver a pedir la lista completa.",
+            parameters = {
+              @Parameter(
+                       name = CredencialesPuerta.CABECERA,
+                       description = "Credencial de las puertas del parking",
+                       in = ParameterIn.HEADER,
+                       required = true
+                      )
+            }
+        )
+        @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Flujo de eventos abierto"),
+            @ApiResponse(responseCode = "401", description = "Falta la credencial de la puerta o no es la del parking"),
+            @ApiResponse(responseCode = "404", description = "El parking no existe"),
+            @ApiResponse(responseCode = "503", description = "Demasiadas conexiones abiertas"),
+        })
+    public ResponseEntity<SseEmitter> eventosPuerta(@PathVariable Long idParking,
+                                                    @RequestHeader(value = CredencialesPuerta.CABECERA, required = false) String credencial,
+                                                    HttpServletRequest httpRequest) {
+        if (!credencialesPuerta.valida(idParking, credencial)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        try {
+            return ResponseEntity.ok(difusionParkingService.suscribir(idParking, httpRequest.getRemoteAddr()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+    }
+
+    private ResponseEntity<String> credencialNoValida() {
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).contentType(MediaType.TEXT_PLAIN)
+                .body(messageSource.getMessage("error.puerta.credencial", null, LocaleContextHolder.getLocale()));
+    }
 }
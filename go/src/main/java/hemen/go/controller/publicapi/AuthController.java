@@ -18,17 +18,18 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import hemen.go.dto.request.LoginRequest;
+import hemen.go.dto.request.RefrescoRequest;
 import hemen.go.dto.request.RegisterRequest;
 import hemen.go.dto.response.JwtResponse;
 import hemen.go.dto.response.UserDtoResponse;
 import hemen.go.service.AuthService;
-import hemen.go.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.enums.ParameterIn;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 
 /**
@@ -48,9 +49,8 @@ public class AuthController {
 	// Logger para registrar eventos y errores
 	private static final Logger logger = LoggerFactory.getLogger(AuthController.class);
 
-	// Servicios necesarios para autenticación y gestión de usuarios
+	// Servicio necesario para autenticación y registro de usuarios
 	private final AuthService authService;
-	private final UserService userService;
 
 	// Fuente de mensajes para internacionalización (i18n)
 	private final MessageSource messageSource;
@@ -60,12 +60,10 @@ public class AuthController {
 	 *
 	 * @param authService   servicio de autenticación (login, registro, generación
 	 *                      de JWT).
-	 * @param userService   servicio de gestión de usuarios (consultas, datos).
 	 * @param messageSource fuente de mensajes para internacionalización.
 	 */
-	public AuthController(AuthService authService, UserService userService, MessageSource messageSource) {
+	public AuthController(AuthService authService, MessageSource messageSource) {
 		this.authService = authService;
-		this.userService = userService;
 		this.messageSource = messageSource;
 	}
 
@@ -73,15 +71,18 @@ public class AuthController {
 	 * Endpoint POST para login de usuarios.
 	 *
 	 * Flujo: 1. Recibe un objeto LoginRequest con email y contraseña. 2. Llama a
-	 * AuthService.authenticate() para validar credenciales y generar token JWT. 3.
-	 * Recupera los datos del usuario con UserService.findByEmail(). 4. Devuelve un
+	 * AuthService.authenticate() para validar credenciales y generar token JWT,
+	 * que devuelve también los datos del usuario sin otra consulta. 3. Devuelve un
 	 * objeto JwtResponse con el token y los datos del usuario.
 	 *
 	 * Manejo de errores: - Si las credenciales son inválidas, se captura
 	 * BadCredentialsException. - Se registra el error en el log. - Se devuelve un
-	 * mensaje internacionalizado (auth.invalid.credentials) con estado HTTP 401.
+	 * mensaje internacionalizado (auth.invalid.credentials) con estado HTTP 401. -
+	 * Con demasiados fallos recientes del email o de la IP se responde 429 sin
+	 * comprobar la contraseña.
 	 *
 	 * @param request objeto con email y contraseña.
+	 * @param httpRequest petición HTTP, para obtener la IP del cliente.
 	 * @return ResponseEntity con JwtResponse si éxito, o mensaje de error si fallo.
 	 */
 	@PostMapping("/login")
@@ -92,18 +93,17 @@ public class AuthController {
 			@ApiResponse(responseCode = "200", description = "Autenticación exitosa. Devuelve token y datos del usuario"),
 			@ApiResponse(responseCode = "400", description = "Solicitud inválida. El cuerpo de la petición no cumple el formato esperado"),
 			@ApiResponse(responseCode = "401", description = "Credenciales incorrectas. No autorizado"),
+			@ApiResponse(responseCode = "429", description = "Demasiados intentos fallidos. Reintentar tras los segundos de Retry-After"),
 			@ApiResponse(responseCode = "500", description = "Error interno del servidor durante la autenticación") })
 
-	public ResponseEntity<?> login(@RequestBody LoginRequest request) {
+	public ResponseEntity<?> login(@RequestBody LoginRequest request, HttpServletRequest httpRequest) {
 		try {
 			// Autenticación y generación de token
-			String token = authService.authenticate(request.getEmail(), request.getPassword());
-
-			// Recuperar datos del usuario
-			UserDtoResponse user = userService.findByEmail(request.getEmail());
+			JwtResponse sesion = authService.authenticate(request.getEmail(), request.getPassword(), httpRequest.getRemoteAddr());
+			UserDtoResponse user = sesion.getUser();
 			
 			if (!user.isAdmin()) {
-				return ResponseEntity.ok(new JwtResponse(token, user));
+				return ResponseEntity.ok(sesion);
 			} else {
 				// Log de error con credenciales inválidas
 				logger.error("El usuario con credenciales para email: {} y password: {} no es un usuario", request.getEmail(),
@@ -130,15 +130,18 @@ public class AuthController {
 	 * Endpoint POST para login de usuarios administradores.
 	 *
 	 * Flujo: 1. Recibe un objeto LoginRequest con email y contraseña. 2. Llama a
-	 * AuthService.authenticate() para validar credenciales y generar token JWT. 3.
-	 * Recupera los datos del usuario con UserService.findByEmail(). 4. Devuelve un
+	 * AuthService.authenticate() para validar credenciales y generar token JWT,
+	 * que devuelve también los datos del usuario sin otra consulta. 3. Devuelve un
 	 * objeto JwtResponse con el token y los datos del usuario.
 	 *
 	 * Manejo de errores: - Si las credenciales son inválidas, se captura
 	 * BadCredentialsException. - Se registra el error en el log. - Se devuelve un
-	 * mensaje internacionalizado (auth.invalid.credentials) con estado HTTP 401.
+	 * mensaje internacionalizado (auth.invalid.credentials) con estado HTTP 401. -
+	 * Con demasiados fallos recientes del email o de la IP se responde 429 sin
+	 * comprobar la contraseña.
 	 *
 	 * @param request objeto con email y contraseña.
+	 * @param httpRequest petición HTTP, para obtener la IP del cliente.
 	 * @return ResponseEntity con JwtResponse si éxito, o mensaje de error si fallo.
 	 */
 	@PostMapping("/admin-login")
@@ -149,17 +152,16 @@ public class AuthController {
 			@ApiResponse(responseCode = "200", description = "Autenticación exitosa. Devuelve token y datos del usuario"),
 			@ApiResponse(responseCode = "400", description = "Solicitud inválida. El cuerpo de la petición no cumple el formato esperado"),
 			@ApiResponse(responseCode = "401", description = "Credenciales incorrectas. No autorizado"),
+			@ApiResponse(responseCode = "429", description = "Demasiados intentos fallidos. Reintentar tras los segundos de Retry-After"),
 			@ApiResponse(responseCode = "500", description = "Error interno del servidor durante la autenticación") })
 
-	public ResponseEntity<?> adminLogin(@RequestBody LoginRequest request) {
+	public ResponseEntity<?> adminLogin(@RequestBody LoginRequest request, HttpServletRequest httpRequest) {
 		try {
 			// Autenticación y generación de token
-			String token = authService.authenticate(request.getEmail(), request.getPassword());
-
-			// Recuperar datos del usuario
-			UserDtoResponse user = userService.findByEmail(request.getEmail());
+			JwtResponse sesion = authService.authenticate(request.getEmail(), request.getPassword(), httpRequest.getRemoteAddr());
+			UserDtoResponse user = sesion.getUser();
 			if (user.isAdmin()) {
-				return ResponseEntity.ok(new JwtResponse(token, user));
+				return ResponseEntity.ok(sesion);
 			} else {
 				// Log de error con credenciales inválidas
 				logger.error("El usuario con credenciales para email: {} y password: {} no es un administrador", request.getEmail(),
@@ -185,6 +187,37 @@ public class AuthController {
 		}
 	}
 
+	/**
+	 * Endpoint POST para renovar la sesión con un token de refresco.
+	 *
+	 * Flujo: 1. Recibe el token de refresco del login o de la renovación anterior.
+	 * 2. Llama a AuthService.refrescar(), que lo consume sin verificar la
+	 * contraseña. 3. Devuelve un nuevo JWT y un nuevo token de refresco.
+	 *
+	 * Manejo de errores: si el token de refresco no es válido, ha caducado o ya se
+	 * usó, se devuelve el mensaje error.refresco.invalido con estado HTTP 401 y el
+	 * cliente debe volver a hacer login.
+	 *
+	 * @param request objeto con el token de refresco.
+	 * @return ResponseEntity con JwtResponse si éxito, o mensaje de error si fallo.
+	 */
+	@PostMapping("/refresh")
+	@Operation(summary = "Renovar la sesión", description = "Cambia un token de refresco por un nuevo token JWT y un nuevo token de refresco. "
+			+ "Cada token de refresco solo puede usarse una vez.", parameters = {
+					@Parameter(name = "Accept-Language", description = "Idioma de la respuesta (es, en, eu)", in = ParameterIn.HEADER, required = false) })
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Sesión renovada. Devuelve token, token de refresco y datos del usuario"),
+			@ApiResponse(responseCode = "401", description = "Token de refresco no válido, caducado o ya usado"),
+			@ApiResponse(responseCode = "500", description = "Error interno del servidor durante la renovación") })
+	public ResponseEntity<?> refresh(@RequestBody RefrescoRequest request) {
+		try {
+			return ResponseEntity.ok(authService.refrescar(request.getRefreshToken()));
+		} catch (BadCredentialsException e) {
+			logger.warn("Token de refresco no válido: {}", e.getMessage());
+			return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
+		}
+	}
+
 	@PostMapping("/register")
 	@Operation(summary = "Registrarse en la aplicación", description = "Permite a un nuevo usuario registrarse en la aplicación enviando sus datos personales. "
 			+ "Si los datos son válidos y no existe un usuario con el mismo email, se crea el registro.", parameters = {
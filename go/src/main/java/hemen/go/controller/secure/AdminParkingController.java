@@ -1,13 +1,21 @@
 package hemen.go.controller.secure;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -20,17 +28,29 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import hemen.go.dto.request.ParkingRequest;
 import hemen.go.dto.request.ParkingUpdateRequest;
 import hemen.go.dto.request.PlazaRequest;
 import hemen.go.dto.request.validate.OnUpdate;
+import hemen.go.dto.response.AccesoPuertaResponse;
+import hemen.go.dto.response.ImportacionPlazasResponse;
+import hemen.go.dto.response.OcupacionParkingResponse;
 import hemen.go.dto.response.ParkingDtoResponse;
 import hemen.go.dto.response.PlazaResponse;
+import hemen.go.security.CredencialesPuerta;
+import hemen.go.security.UsuarioAutenticado;
 import hemen.go.service.ParkingService;
 import hemen.go.service.PlazaService;
+import hemen.go.service.acceso.OcupacionParkingService;
+import hemen.go.service.acceso.RegistroAccesosService;
+import hemen.go.service.evento.DifusionParkingService;
+import hemen.go.service.importacion.ImportacionPlazasService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.enums.ParameterIn;
@@ -38,6 +58,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.persistence.EntityNotFoundException;
 import jakarta.validation.Valid;
 
 @RestController
@@ -48,11 +69,24 @@ public class AdminParkingController {
     private static final Logger logger = LoggerFactory.getLogger(AdminParkingController.class);
 	private ParkingService parkingService;
 	private PlazaService plazaService;
+	private ImportacionPlazasService importacionPlazasService;
+	private RegistroAccesosService registroAccesosService;
+	private OcupacionParkingService ocupacionParkingService;
+	private DifusionParkingService difusionParkingService;
+	private CredencialesPuerta credencialesPuerta;
     private final MessageSource messageSource;
 	
-	public AdminParkingController(ParkingService parkingService,PlazaService plazaService,MessageSource messageSource) {
+	public AdminParkingController(ParkingService parkingService,PlazaService plazaService,
+			ImportacionPlazasService importacionPlazasService,RegistroAccesosService registroAccesosService,
+			OcupacionParkingService ocupacionParkingService,DifusionParkingService difusionParkingService,
+			CredencialesPuerta credencialesPuerta,MessageSource messageSource) {
 		this.parkingService = parkingService;
 		this.plazaService = plazaService;
+		this.importacionPlazasService = importacionPlazasService;
+		this.registroAccesosService = registroAccesosService;
+		this.ocupacionParkingService = ocupacionParkingService;
+		this.difusionParkingService = difusionParkingService;
+		this.credencialesPuerta = credencialesPuerta;
 		this.messageSource = messageSource;
 	}
 	
@@ -67,11 +101,11 @@ public class AdminParkingController {
 			@ApiResponse(responseCode = "403", description = "Acceso denegado. El rol no tiene permisos"),
 			@ApiResponse(responseCode = "404", description = "Usuario erroneo") })
 	public ResponseEntity<?> getParkingsByCompany(
-			@AuthenticationPrincipal org.springframework.security.core.userdetails.User userDetails) {
+			@AuthenticationPrincipal UsuarioAutenticado userDetails) {
 		try {
 
 			// Busca los parkings de por empresa
-			List<ParkingDtoResponse> parking = parkingService.findByCompanyId(userDetails.getUsername());
+			List<ParkingDtoResponse> parking = parkingService.findByCompanyId(userDetails);
 
 			return ResponseEntity.ok(parking);
 		} catch (UsernameNotFoundException e) {
@@ -90,11 +124,11 @@ public class AdminParkingController {
 			@ApiResponse(responseCode = "403", description = "Acceso denegado. El rol no tiene permisos"),
 			@ApiResponse(responseCode = "404", description = "Usuario erroneo") })
 	public ResponseEntity<?> getParkingsByCompanyById(
-			@AuthenticationPrincipal org.springframework.security.core.userdetails.User userDetails, @PathVariable Long id) {
+			@AuthenticationPrincipal UsuarioAutenticado userDetails, @PathVariable Long id) {
 		try {
 
 			// Busca los parkings de por empresa
-			ParkingDtoResponse parking = parkingService.findByCompanyIdAndId(userDetails.getUsername(),id);
+			ParkingDtoResponse parking = parkingService.findByCompanyIdAndId(userDetails,id);
 
 			return ResponseEntity.ok(parking);
 		} catch (UsernameNotFoundException e) {
@@ -115,7 +149,7 @@ public class AdminParkingController {
 			@ApiResponse(responseCode = "403", description = "Acceso denegado. El rol no tiene permisos"),
 			@ApiResponse(responseCode = "404", description = "Usuario erroneo") })
 	public ResponseEntity<?> addParkingsToCompany(
-			@AuthenticationPrincipal org.springframework.security.core.userdetails.User userDetails , @Valid @RequestBody ParkingRequest request, BindingResult result) {
+			@AuthenticationPrincipal UsuarioAutenticado userDetails , @Valid @RequestBody ParkingRequest request, BindingResult result) {
 		try {
 			if (result.hasErrors()) {
     	        List<String> errores = result.getAllErrors().stream()
@@ -124,7 +158,7 @@ public class AdminParkingController {
     	        return ResponseEntity.badRequest().body(errores);
     	    }
 			// Añade un nuevo parking
-			parkingService.crear(userDetails.getUsername(),request);
+			parkingService.crear(userDetails,request);
 			return ResponseEntity.ok(messageSource.getMessage("message.ok.parking.creada", null, LocaleContextHolder.getLocale()));
 
 		} catch (DataIntegrityViolationException ex) {
@@ -152,7 +186,7 @@ public class AdminParkingController {
 			@ApiResponse(responseCode = "403", description = "Acceso denegado. El rol no tiene permisos"),
 			@ApiResponse(responseCode = "404", description = "Usuario erroneo") })
 	public ResponseEntity<?> updateParkingsToCompany(
-			@AuthenticationPrincipal org.springframework.security.core.userdetails.User userDetails ,  @Validated(OnUpdate.class) @RequestBody ParkingUpdateRequest request, BindingResult result) {
+			@AuthenticationPrincipal UsuarioAutenticado userDetails ,  @Validated(OnUpdate.class) @RequestBody ParkingUpdateRequest request, BindingResult result) {
 		try {
 			if (result.hasErrors()) {
     	        List<String> errores = result.getAllErrors().stream()
@@ -160,7 +194,7 @@ public class AdminParkingController {
     	            .toList();
     	        return ResponseEntity.badRequest().body(errores);
     	    }
-			parkingService.update(userDetails.getUsername(),request);
+			parkingService.update(userDetails,request);
 			return ResponseEntity.ok(messageSource.getMessage("message.ok.parking.actualizada", null, LocaleContextHolder.getLocale()));
 
 		} catch (DataIntegrityViolationException ex) {
@@ -174,6 +208,9 @@ public class AdminParkingController {
     		    .map(v -> "Campo '" + v.getPropertyPath() + "' " + v.getMessage() + 
     		            " (valor: " + v.getInvalidValue() + ")").toList();
     		return ResponseEntity.badRequest().body(errores);
+    	} catch (OptimisticLockingFailureException e) {
+    		String mensaje = messageSource.getMessage("error.concurrencia", null, LocaleContextHolder.getLocale());
+    		return ResponseEntity.status(HttpStatus.CONFLICT).body(mensaje);
         }catch (RuntimeException e) {
 			return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
 		}
@@ -190,11 +227,11 @@ public class AdminParkingController {
 			@ApiResponse(responseCode = "403", description = "Acceso denegado. El rol no tiene permisos"),
 			@ApiResponse(responseCode = "404", description = "Usuario erroneo") })
 	public ResponseEntity<?> getPlazaParkingsByCompany(
-			@AuthenticationPrincipal org.springframework.security.core.userdetails.User userDetails,@PathVariable Long id) {
+			@AuthenticationPrincipal UsuarioAutenticado userDetails,@PathVariable Long id) {
 		try {
 
 			// obtiene los datos de una plaza
-			PlazaResponse plaza = plazaService.findByCompanyAndPlazaId(userDetails.getUsername(), id);
+			PlazaResponse plaza = plazaService.findByCompanyAndPlazaId(userDetails, id);
 
 			return ResponseEntity.ok(plaza);
 		} catch (UsernameNotFoundException e) {
@@ -212,16 +249,150 @@ public class AdminParkingController {
 			@ApiResponse(responseCode = "200", description = "Plaza dada de alta"),
 			@ApiResponse(responseCode = "403", description = "Acceso denegado. El rol no tiene permisos"),
 			@ApiResponse(responseCode = "404", description = "Usuario erroneo") })
-    public ResponseEntity<PlazaResponse> addPlaza(@AuthenticationPrincipal org.springframework.security.core.userdetails.User userDetails,
+    public ResponseEntity<PlazaResponse> addPlaza(@AuthenticationPrincipal UsuarioAutenticado userDetails,
             @PathVariable Long parkingId,
             @RequestBody PlazaRequest request
           ) {
 
    
-        PlazaResponse response = plazaService.addPlazaToParking(userDetails.getUsername(), parkingId, request);
+        PlazaResponse response = plazaService.addPlazaToParking(userDetails, parkingId, request);
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Alta masiva de plazas en un parking desde CSV (con cabecera) o NDJSON.
+     * El cuerpo se procesa en streaming; las filas erróneas se devuelven con su número de línea.
+     */
+    @PostMapping(value = "/{parkingId}/plazas/importar", consumes = { "text/csv", "application/x-ndjson" })
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Importa plazas de forma masiva", description = "Da de alta las plazas de un parking a partir de un "
+    		+ "CSV con cabecera (nombre,esVip,tieneElectricidad,estado,precio) o de un NDJSON con un objeto por línea. "
+			+ "Disponible  ADMIN.", security = { @SecurityRequirement(name = "bearerAuth") }, parameters = {
+					@Parameter(name = "Accept-Language", description = "Idioma de la respuesta (es, en, eu)", in = ParameterIn.HEADER, required = false) })
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Importación realizada, con el detalle de filas erróneas"),
+			@ApiResponse(responseCode = "400", description = "Cabecera CSV no válida"),
+			@ApiResponse(responseCode = "403", description = "Acceso denegado. El rol no tiene permisos"),
+			@ApiResponse(responseCode = "404", description = "Usuario o parking erroneo"),
+			@ApiResponse(responseCode = "415", description = "Formato no soportado") })
+    public ResponseEntity<?> importarPlazas(@AuthenticationPrincipal UsuarioAutenticado userDetails,
+            @PathVariable Long parkingId,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream cuerpo) throws IOException {
+    	boolean csv = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.parseMediaType("text/csv"));
+    	try {
+    		ImportacionPlazasResponse response = importacionPlazasService.importar(userDetails, parkingId, cuerpo, csv);
+    		return ResponseEntity.ok(response);
+    	} catch (IllegalArgumentException e) {
+            logger.error("Importacion de plazas no valida: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+    	} catch (UsernameNotFoundException | EntityNotFoundException e) {
+    		return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+    	}
+    }
+
+    /**
+     * Ocupación en tiempo real de los parkings de la empresa, leída de los contadores en memoria.
+     */
+    @GetMapping("/ocupacion")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Ocupación actual de los parkings", description = "Devuelve, para cada parking de la empresa del "
+    		+ "administrador con pasos registrados, las entradas, las salidas y los vehículos que hay dentro ahora, "
+    		+ "contados en las puertas sin consultar las reservas. Disponible  ADMIN.",
+    		security = { @SecurityRequirement(name = "bearerAuth") }, parameters = {
+					@Parameter(name = "Accept-Language", description = "Idioma de la respuesta (es, en, eu)", in = ParameterIn.HEADER, required = false) })
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Ocupación de los parkings"),
+			@ApiResponse(responseCode = "403", description = "Acceso denegado. El rol no tiene permisos"),
+			@ApiResponse(responseCode = "404", description = "Usuario erroneo") })
+    public ResponseEntity<?> getOcupacionParkings(@AuthenticationPrincipal UsuarioAutenticado userDetails) {
+    	try {
+    		List<OcupacionParkingResponse> ocupacion = ocupacionParkingService.obtener(userDetails);
+    		return ResponseEntity.ok(ocupacion);
+    	} catch (UsernameNotFoundException e) {
+    		return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+    	}
+    }
+
+    /**
+     * Flujo Server-Sent Events con los cambios de un parking de la empresa, en lugar de
+     * consultar el parking periódicamente.
+     */
+    @GetMapping(value = "/{parkingId}/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Eventos en tiempo real de un parking", description = "Flujo Server-Sent Events con las reservas "
+    		+ "creadas (RESERVA_CREADA) y canceladas (RESERVA_CANCELADA) y los cambios de estado de las plazas (PLAZA_ESTADO) "
+    		+ "del parking. Un evento 'descartados' indica que se han perdido eventos y hay que volver a cargar el parking. "
+			+ "Disponible  ADMIN.", security = { @SecurityRequirement(name = "bearerAuth") }, parameters = {
+					@Parameter(name = "Accept-Language", description = "Idioma de la respuesta (es, en, eu)", in = ParameterIn.HEADER, required = false) })
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Flujo de eventos abierto"),
+			@ApiResponse(responseCode = "403", description = "Acceso denegado. El rol no tiene permisos"),
+			@ApiResponse(responseCode = "404", description = "Usuario o parking erroneo"),
+			@ApiResponse(responseCode = "503", description = "Demasiadas conexiones abiertas") })
+    public ResponseEntity<SseEmitter> getEventosParking(@AuthenticationPrincipal UsuarioAutenticado userDetails,
+            @PathVariable Long parkingId) {
+    	try {
+    		return ResponseEntity.ok(difusionParkingService.suscribir(userDetails, parkingId));
+    	} catch (UsernameNotFoundException | EntityNotFoundException e) {
+    		return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+    	}
+    }
+
+    /**
+     * Credencial que deben configurar las puertas de un parking de la empresa para descargar
+     * sus reservas permitidas y recibir sus eventos.
+     */
+    @GetMapping("/{parkingId}/credencial-puerta")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Credencial de las puertas de un parking", description = "Devuelve la credencial que las puertas del "
+    		+ "parking envían en la cabecera " + CredencialesPuerta.CABECERA + " para obtener las reservas permitidas y el flujo "
+    		+ "de eventos. Disponible  ADMIN.", security = { @SecurityRequirement(name = "bearerAuth") }, parameters = {
+					@Parameter(name = "Accept-Language", description = "Idioma de la respuesta (es, en, eu)", in = ParameterIn.HEADER, required = false) })
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Credencial de las puertas"),
+			@ApiResponse(responseCode = "403", description = "Acceso denegado. El rol no tiene permisos"),
+			@ApiResponse(responseCode = "404", description = "Usuario o parking erroneo") })
+    public ResponseEntity<?> getCredencialPuerta(@AuthenticationPrincipal UsuarioAutenticado userDetails,
+            @PathVariable Long parkingId) {
+    	try {
+    		// Solo si el parking es de la empresa del administrador
+    		parkingService.findByCompanyIdAndId(userDetails, parkingId);
+    		return ResponseEntity.ok(Map.of("idParking", parkingId, "credencial", credencialesPuerta.credencial(parkingId)));
+    	} catch (RuntimeException e) {
+    		return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+    	}
+    }
+
+    /**
+     * Intentos de apertura de las puertas de un parking entre dos fechas, incluidos los que
+     * aún no se han cargado en la base de datos.
+     */
+    @GetMapping("/{parkingId}/accesos")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Accesos por las puertas de un parking", description = "Devuelve en orden cronológico los intentos "
+    		+ "de apertura de las puertas del parking entre las fechas indicadas (yyyy-MM-dd, ambas incluidas), con su resultado. "
+			+ "Disponible  ADMIN.", security = { @SecurityRequirement(name = "bearerAuth") }, parameters = {
+					@Parameter(name = "Accept-Language", description = "Idioma de la respuesta (es, en, eu)", in = ParameterIn.HEADER, required = false) })
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Accesos del intervalo"),
+			@ApiResponse(responseCode = "400", description = "Intervalo de fechas no válido"),
+			@ApiResponse(responseCode = "403", description = "Acceso denegado. El rol no tiene permisos"),
+			@ApiResponse(responseCode = "404", description = "Usuario o parking erroneo") })
+    public ResponseEntity<?> getAccesosParking(@AuthenticationPrincipal UsuarioAutenticado userDetails,
+            @PathVariable Long parkingId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+    	try {
+    		List<AccesoPuertaResponse> accesos = registroAccesosService.consultar(userDetails, parkingId, desde, hasta);
+    		return ResponseEntity.ok(accesos);
+    	} catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+    	} catch (UsernameNotFoundException | EntityNotFoundException e) {
+    		return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+    	}
+    }
+
     /**
      * Actualizar una plaza existente dentro de un parking
      */
@@ -234,13 +405,13 @@ public class AdminParkingController {
 			@ApiResponse(responseCode = "200", description = "Plaza actualizada"),
 			@ApiResponse(responseCode = "403", description = "Acceso denegado. El rol no tiene permisos"),
 			@ApiResponse(responseCode = "404", description = "Usuario erroneo") })
-    public ResponseEntity<PlazaResponse> updatePlaza(@AuthenticationPrincipal org.springframework.security.core.userdetails.User userDetails,
+    public ResponseEntity<PlazaResponse> updatePlaza(@AuthenticationPrincipal UsuarioAutenticado userDetails,
             @PathVariable Long parkingId,
             @PathVariable Long plazaId,
             @RequestBody PlazaRequest request
             ) {
 
-        PlazaResponse response = plazaService.updatePlaza(userDetails.getUsername(), parkingId, plazaId, request);
+        PlazaResponse response = plazaService.updatePlaza(userDetails, parkingId, plazaId, request);
         return ResponseEntity.ok(response);
     }
 }
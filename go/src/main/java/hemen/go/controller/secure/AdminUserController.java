@@ -13,6 +13,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import hemen.go.dto.response.UserDtoResponse;
+import hemen.go.security.UsuarioAutenticado;
 import hemen.go.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -43,11 +44,11 @@ public class AdminUserController {
 			@ApiResponse(responseCode = "403", description = "Acceso denegado. El rol no tiene permisos"),
 			@ApiResponse(responseCode = "404", description = "Usuario erroneo") })
 	public ResponseEntity<?> getUsersByCompany(
-			@AuthenticationPrincipal org.springframework.security.core.userdetails.User userDetails) {
+			@AuthenticationPrincipal UsuarioAutenticado userDetails) {
 		try {
 
 			// Buscar todos los usuarios de esa empresa
-			List<UserDtoResponse> users = userService.findByCompanyId(userDetails.getUsername());
+			List<UserDtoResponse> users = userService.findByCompanyId(userDetails);
 
 			return ResponseEntity.ok(users);
 		} catch (UsernameNotFoundException e) {
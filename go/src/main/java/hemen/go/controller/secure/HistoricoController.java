@@ -12,6 +12,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import hemen.go.dto.response.ReservaResponse;
+import hemen.go.security.UsuarioAutenticado;
 import hemen.go.service.ReservaService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -55,9 +56,9 @@ public class HistoricoController {
         @ApiResponse(responseCode = "200", description = "Detalle de la reserva devuelto correctamente"),
     })
     public ResponseEntity<?> getListHistoricoReservas(
-            @AuthenticationPrincipal org.springframework.security.core.userdetails.User userDetails) {
+            @AuthenticationPrincipal UsuarioAutenticado userDetails) {
     	
-    	List<ReservaResponse> historico = reservaService.getHistoricoReservas(userDetails.getUsername());
+    	List<ReservaResponse> historico = reservaService.getHistoricoReservas(userDetails);
     	logger.info("Listado reservas historicas:"+userDetails.getUsername()+" "+historico.toString());
     	return ResponseEntity.ok(historico); 
     	
@@ -12,30 +12,47 @@ import org.slf4j.LoggerFactory;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.ObjectError;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.google.zxing.WriterException;
 
 import hemen.go.dto.request.CancelarReservaRequest;
+import hemen.go.dto.request.ListaEsperaRequest;
 import hemen.go.dto.request.PuntuarReservaRequest;
 import hemen.go.dto.request.QrRequest;
 import hemen.go.dto.request.ReservaRequest;
+import hemen.go.dto.response.BloqueoResponse;
+import hemen.go.dto.response.ListaEsperaResponse;
 import hemen.go.dto.response.ReservaResponse;
+import hemen.go.dto.response.SolicitudReservaResponse;
 import hemen.go.entity.Reserva;
+import hemen.go.exception.ColaReservasLlenaException;
+import hemen.go.security.UsuarioAutenticado;
 import hemen.go.service.ReservaService;
-import hemen.go.service.TokenReservaService;
+import hemen.go.service.espera.ListaEsperaService;
+import hemen.go.service.acceso.CacheQrService;
+import hemen.go.service.acceso.CacheQrService.QrReserva;
+import hemen.go.service.bloqueo.BloqueoPlazaService;
+import hemen.go.service.reserva.ReservaAsincronaService;
+import hemen.go.service.reserva.SolicitudReserva;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.enums.ParameterIn;
@@ -52,18 +69,32 @@ public class ReservaController {
 	
 	 // Logger para registrar eventos y errores
     private static final Logger logger = LoggerFactory.getLogger(ReservaController.class);
+
+    private static final String SVG_VALUE = "image/svg+xml";
+    private static final MediaType SVG = MediaType.parseMediaType(SVG_VALUE);
     
     private final ReservaService reservaService;
     
-    private final TokenReservaService tokenReservaService;
+    private final CacheQrService cacheQrService;
+    
+    private final BloqueoPlazaService bloqueoPlazaService;
+    
+    private final ReservaAsincronaService reservaAsincronaService;
+    
+    private final ListaEsperaService listaEsperaService;
     
     // Fuente de mensajes para internacionalización (i18n)
     private final MessageSource messageSource;
 
-    public ReservaController( MessageSource messageSource, ReservaService reservaService, TokenReservaService tokenReservaService) {
+    public ReservaController( MessageSource messageSource, ReservaService reservaService, CacheQrService cacheQrService,
+    		BloqueoPlazaService bloqueoPlazaService, ReservaAsincronaService reservaAsincronaService,
+    		ListaEsperaService listaEsperaService) {
         this.messageSource = messageSource;
         this.reservaService = reservaService;
-        this.tokenReservaService = tokenReservaService;
+        this.cacheQrService = cacheQrService;
+        this.bloqueoPlazaService = bloqueoPlazaService;
+        this.reservaAsincronaService = reservaAsincronaService;
+        this.listaEsperaService = listaEsperaService;
     }
     
     @PostMapping
@@ -71,7 +102,8 @@ public class ReservaController {
     @Operation(
         summary = "Realizar una reserva en un parking",
         description = "Realiza una reserva en un parking "
-                    + "Si los datos son válidos ",
+                    + "Si los datos son válidos. Con async=true la reserva se encola y se responde 202 "
+                    + "con el identificador de la solicitud, que se consulta en /api/reserva/solicitud/{id}",
         security = { @SecurityRequirement(name = "bearerAuth") },
         parameters = {                    		  
             @Parameter(
@@ -79,15 +111,24 @@ public class ReservaController {
                      description = "Idioma de la respuesta (es, en, eu)",
                      in = ParameterIn.HEADER,
                      required = false
-          		  )
+          		  ),
+            @Parameter(
+            		 name = "async",
+            		 description = "Si es true la reserva se procesa en segundo plano",
+            		 in = ParameterIn.QUERY,
+            		 required = false
+            		)
           }
     )
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Reserva realizada correctamente"),
+        @ApiResponse(responseCode = "202", description = "Reserva encolada. Devuelve el identificador de la solicitud"),
         @ApiResponse(responseCode = "400", description = "Solicitud inválida. Los datos enviados no cumplen validaciones"),
-        @ApiResponse(responseCode = "500", description = "Error interno del servidor durante el registro")
+        @ApiResponse(responseCode = "500", description = "Error interno del servidor durante el registro"),
+        @ApiResponse(responseCode = "503", description = "Cola de reservas llena, reintentar más tarde")
     })
-    public ResponseEntity<?> reservar(@AuthenticationPrincipal org.springframework.security.core.userdetails.User userDetails, @Valid @RequestBody ReservaRequest request, BindingResult result) {
+    public ResponseEntity<?> reservar(@AuthenticationPrincipal UsuarioAutenticado userDetails, @Valid @RequestBody ReservaRequest request, BindingResult result,
+    		@RequestParam(name = "async", defaultValue = "false") boolean async) {
     	try {
     		if (result.hasErrors()) {
     	        List<String> errores = result.getAllErrors().stream()
@@ -95,8 +136,18 @@ public class ReservaController {
     	            .toList();
     	        return ResponseEntity.badRequest().body(errores);
     	    }
+    		if (async) {
+    			SolicitudReserva solicitud = reservaAsincronaService.encolar(userDetails.getUsername(), request);
+    			return ResponseEntity.status(HttpStatus.ACCEPTED)
+    					.header("Location", "/api/reserva/solicitud/" + solicitud.getId())
+    					.body(new SolicitudReservaResponse(solicitud));
+    		}
     		reservaService.reservar(userDetails.getUsername(), request);
     		return ResponseEntity.ok(messageSource.getMessage("message.ok.reserva.creada", null, LocaleContextHolder.getLocale()));
+    	} catch (ColaReservasLlenaException e) {
+    		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+    				.header("Retry-After", "5")
+    				.body(e.getMessage());
     	} catch (DataIntegrityViolationException ex) {
     		String mensaje = messageSource.getMessage("error.existe.reserva", null, LocaleContextHolder.getLocale() );
     	    return ResponseEntity.status(HttpStatus.CONFLICT).body(mensaje);
@@ -111,6 +162,171 @@ public class ReservaController {
         }
     }
     
+    @GetMapping("/solicitud/{idSolicitud}")
+    @PreAuthorize("hasAnyRole('USER')")
+    @Operation(
+        summary = "Consultar una reserva asíncrona",
+        description = "Devuelve el estado (PENDIENTE, CONFIRMADA, RECHAZADA) de una reserva encolada con async=true",
+        security = { @SecurityRequirement(name = "bearerAuth") },
+        parameters = {                    		  
+            @Parameter(
+          		   name = "Accept-Language",
+                     description = "Idioma de la respuesta (es, en, eu)",
+                     in = ParameterIn.HEADER,
+                     required = false
+          		  )
+          }
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Estado de la solicitud"),
+        @ApiResponse(responseCode = "404", description = "La solicitud no existe, ha caducado o pertenece a otro usuario")
+    })
+    public ResponseEntity<?> consultarSolicitud(@AuthenticationPrincipal UsuarioAutenticado userDetails, @PathVariable String idSolicitud) {
+    	return reservaAsincronaService.consultar(userDetails.getUsername(), idSolicitud)
+    			.<ResponseEntity<?>>map(s -> ResponseEntity.ok(new SolicitudReservaResponse(s)))
+    			.orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+    					.body(messageSource.getMessage("error.reserva.solicitud.no.existe", null, LocaleContextHolder.getLocale())));
+    }
+    
+    @PostMapping("/bloqueo")
+    @PreAuthorize("hasAnyRole('USER')")
+    @Operation(
+        summary = "Bloquear temporalmente una plaza",
+        description = "Retiene la plaza para las fechas indicadas durante unos minutos mientras se confirma la reserva. "
+                    + "Otros usuarios no pueden reservarla ni la ven disponible en la búsqueda hasta que caduque.",
+        security = { @SecurityRequirement(name = "bearerAuth") },
+        parameters = {                    		  
+            @Parameter(
+          		   name = "Accept-Language",
+                     description = "Idioma de la respuesta (es, en, eu)",
+                     in = ParameterIn.HEADER,
+                     required = false
+          		  )
+          }
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Plaza bloqueada. Devuelve el identificador del bloqueo y su caducidad"),
+        @ApiResponse(responseCode = "400", description = "Fechas no válidas o la plaza ya está reservada o bloqueada")
+    })
+    public ResponseEntity<?> bloquear(@AuthenticationPrincipal UsuarioAutenticado userDetails, @RequestBody ReservaRequest request) {
+    	try {
+    		BloqueoResponse bloqueo = new BloqueoResponse(bloqueoPlazaService.bloquear(userDetails.getUsername(), request));
+    		return ResponseEntity.ok(bloqueo);
+    	} catch (IllegalArgumentException e) {
+            logger.error("Datos no validos: {}", e.getMessage());  
+            return ResponseEntity.badRequest().body(e.getMessage());
+    	}
+    }
+    
+    @DeleteMapping("/bloqueo/{idBloqueo}")
+    @PreAuthorize("hasAnyRole('USER')")
+    @Operation(
+        summary = "Liberar un bloqueo temporal",
+        description = "Libera la plaza retenida antes de que caduque el bloqueo",
+        security = { @SecurityRequirement(name = "bearerAuth") },
+        parameters = {                    		  
+            @Parameter(
+          		   name = "Accept-Language",
+                     description = "Idioma de la respuesta (es, en, eu)",
+                     in = ParameterIn.HEADER,
+                     required = false
+          		  )
+          }
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Bloqueo liberado"),
+        @ApiResponse(responseCode = "404", description = "El bloqueo no existe, ha caducado o pertenece a otro usuario")
+    })
+    public ResponseEntity<?> liberarBloqueo(@AuthenticationPrincipal UsuarioAutenticado userDetails, @PathVariable String idBloqueo) {
+    	try {
+    		bloqueoPlazaService.liberar(userDetails.getUsername(), idBloqueo);
+    		return ResponseEntity.ok(messageSource.getMessage("message.ok.reserva.bloqueo.liberado", null, LocaleContextHolder.getLocale()));
+    	} catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+    	}
+    }
+    
+    @PostMapping("/espera")
+    @PreAuthorize("hasAnyRole('USER')")
+    @Operation(
+        summary = "Apuntarse a la lista de espera de un parking",
+        description = "Registra el interés en un parking para unas fechas y servicios. Si se cancela una reserva "
+                    + "que deja libre una plaza compatible, aparece como aviso en la consulta de esperas.",
+        security = { @SecurityRequirement(name = "bearerAuth") },
+        parameters = {                    		  
+            @Parameter(
+          		   name = "Accept-Language",
+                     description = "Idioma de la respuesta (es, en, eu)",
+                     in = ParameterIn.HEADER,
+                     required = false
+          		  )
+          }
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Apuntado en la lista de espera"),
+        @ApiResponse(responseCode = "400", description = "Datos no válidos, parking inexistente o demasiadas esperas")
+    })
+    public ResponseEntity<?> apuntarEspera(@AuthenticationPrincipal UsuarioAutenticado userDetails, @RequestBody ListaEsperaRequest request) {
+    	try {
+    		return ResponseEntity.ok(new ListaEsperaResponse(listaEsperaService.apuntar(userDetails.getUsername(), request)));
+    	} catch (IllegalArgumentException e) {
+            logger.error("Datos no validos: {}", e.getMessage());  
+            return ResponseEntity.badRequest().body(e.getMessage());
+    	}
+    }
+    
+    @GetMapping("/espera")
+    @PreAuthorize("hasAnyRole('USER')")
+    @Operation(
+        summary = "Consultar mis esperas",
+        description = "Devuelve las esperas del usuario con las plazas que han quedado libres para sus fechas",
+        security = { @SecurityRequirement(name = "bearerAuth") },
+        parameters = {                    		  
+            @Parameter(
+          		   name = "Accept-Language",
+                     description = "Idioma de la respuesta (es, en, eu)",
+                     in = ParameterIn.HEADER,
+                     required = false
+          		  )
+          }
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Lista de esperas")
+    })
+    public ResponseEntity<List<ListaEsperaResponse>> misEsperas(@AuthenticationPrincipal UsuarioAutenticado userDetails) {
+    	return ResponseEntity.ok(listaEsperaService.delUsuario(userDetails.getUsername()).stream()
+    			.map(ListaEsperaResponse::new)
+    			.toList());
+    }
+    
+    @DeleteMapping("/espera/{idEspera}")
+    @PreAuthorize("hasAnyRole('USER')")
+    @Operation(
+        summary = "Salir de la lista de espera",
+        description = "Elimina una espera del usuario",
+        security = { @SecurityRequirement(name = "bearerAuth") },
+        parameters = {                    		  
+            @Parameter(
+          		   name = "Accept-Language",
+                     description = "Idioma de la respuesta (es, en, eu)",
+                     in = ParameterIn.HEADER,
+                     required = false
+          		  )
+          }
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Espera eliminada"),
+        @ApiResponse(responseCode = "404", description = "La espera no existe o pertenece a otro usuario")
+    })
+    public ResponseEntity<?> bajaEspera(@AuthenticationPrincipal UsuarioAutenticado userDetails, @PathVariable String idEspera) {
+    	try {
+    		listaEsperaService.baja(userDetails.getUsername(), idEspera);
+    		return ResponseEntity.ok(messageSource.getMessage("message.ok.espera.baja", null, LocaleContextHolder.getLocale()));
+    	} catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+    	}
+    }
+    
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('USER')")
     @Operation(
@@ -132,10 +348,10 @@ public class ReservaController {
         @ApiResponse(responseCode = "500", description = "Error interno del servidor")
     })
     public ResponseEntity<?> getReservaDetalle(
-            @AuthenticationPrincipal org.springframework.security.core.userdetails.User userDetails,
+            @AuthenticationPrincipal UsuarioAutenticado userDetails,
             @PathVariable Long id) {
         try { 
-        	ReservaResponse reserva = reservaService.getReservaByIdAndUsuarioEmail(id, userDetails.getUsername());
+        	ReservaResponse reserva = reservaService.getReservaByIdAndUsuario(id, userDetails);
      
             return ResponseEntity.ok(reserva);
         } catch (NoSuchElementException e) {
@@ -166,7 +382,7 @@ public class ReservaController {
         @ApiResponse(responseCode = "400", description = "Solicitud inválida. Los datos enviados no cumplen validaciones"),
         @ApiResponse(responseCode = "500", description = "Error interno del servidor durante el registro")
     })
-    public ResponseEntity<?> cancelarReservar(@AuthenticationPrincipal org.springframework.security.core.userdetails.User userDetails, @Valid @RequestBody CancelarReservaRequest request, BindingResult result) {
+    public ResponseEntity<?> cancelarReservar(@AuthenticationPrincipal UsuarioAutenticado userDetails, @Valid @RequestBody CancelarReservaRequest request, BindingResult result) {
     	try {
     		if (result.hasErrors()) {
     	        List<String> errores = result.getAllErrors().stream()
@@ -175,7 +391,7 @@ public class ReservaController {
     	        return ResponseEntity.badRequest().body(errores);
     	    }
     		
-    		reservaService.cancelarReserva(userDetails.getUsername(), request.getIdReserva());
+    		reservaService.cancelarReserva(userDetails, request.getIdReserva());
     		
     		return ResponseEntity.ok(messageSource.getMessage("message.ok.reserva.cancelada", null, LocaleContextHolder.getLocale()));
     	} catch (DataIntegrityViolationException ex) {
@@ -214,7 +430,7 @@ public class ReservaController {
         @ApiResponse(responseCode = "400", description = "Solicitud inválida. Los datos enviados no cumplen validaciones"),
         @ApiResponse(responseCode = "500", description = "Error interno del servidor durante el registro")
     })
-    public ResponseEntity<?> PuntutarReservar(@AuthenticationPrincipal org.springframework.security.core.userdetails.User userDetails, @Valid @RequestBody PuntuarReservaRequest request, BindingResult result) {
+    public ResponseEntity<?> PuntutarReservar(@AuthenticationPrincipal UsuarioAutenticado userDetails, @Valid @RequestBody PuntuarReservaRequest request, BindingResult result) {
     	try {
     		if (result.hasErrors()) {
     	        List<String> errores = result.getAllErrors().stream()
@@ -223,7 +439,7 @@ public class ReservaController {
     	        return ResponseEntity.badRequest().body(errores);
     	    }
     		
-    		reservaService.puntuarReserva(userDetails.getUsername(), request.getIdReserva(),request.getPuntuacion());
+    		reservaService.puntuarReserva(userDetails, request.getIdReserva(),request.getPuntuacion());
     		
     		return ResponseEntity.ok(messageSource.getMessage("success.reserva.puntuada", null, LocaleContextHolder.getLocale()));
     	} catch (DataIntegrityViolationException ex) {
@@ -262,7 +478,7 @@ public class ReservaController {
         @ApiResponse(responseCode = "500", description = "Error interno del servidor durante el registro")
     })
     public ResponseEntity<Map<String, Object>> qr(
-            @AuthenticationPrincipal org.springframework.security.core.userdetails.User userDetails,
+            @AuthenticationPrincipal UsuarioAutenticado userDetails,
             @Valid @RequestBody QrRequest request,
             BindingResult result) {
 
@@ -279,16 +495,14 @@ public class ReservaController {
             try {
                 // Buscar la reserva asociada al usuario
                 Reserva reserva = reservaService.buscarReservaPorReservaForToken(
-                        userDetails.getUsername(), request.getIdReserva());
+                        userDetails, request.getIdReserva());
 
-                // Generar token y QR
-                String token = tokenReservaService.generarTokenPuerta(
+                // Generar token y QR, o reutilizar los de esta ventana de validez
+                qrBytes = cacheQrService.obtener(
                         reserva.getPersona().getId(),
                         request.getIdReserva(),
                         reserva.getPlaza().getParking().getId()
-                );
-
-                qrBytes = tokenReservaService.generarQRBytes(token);
+                ).png();
 
             } catch (WriterException | IOException e) {
                 logger.error("Error generando QR: {}", e.getMessage(), e);
@@ -315,7 +529,82 @@ public class ReservaController {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
-    /*public ResponseEntity<?> qr(@AuthenticationPrincipal org.springframework.security.core.userdetails.User userDetails, @Valid @RequestBody QrRequest request, BindingResult result) {
+    /**
+     * QR de la reserva como imagen binaria, sin Base64 ni JSON.
+     *
+     * <p>Según la cabecera {@code Accept} devuelve {@code image/png} (por defecto) o
+     * {@code image/svg+xml}. La respuesta lleva un {@code ETag} que cambia con el token: el
+     * cliente puede guardarla y revalidarla, y mientras el token no cambie recibe
+     * <b>304 Not Modified</b> sin cuerpo.</p>
+     */
+    @GetMapping(value = "/{id}/qr", produces = { MediaType.IMAGE_PNG_VALUE, SVG_VALUE })
+    @PreAuthorize("hasAnyRole('USER')")
+    @Operation(
+        summary = "Obtener el código qr de la reserva como imagen",
+        description = "Devuelve el QR de apertura de la reserva en PNG o, si se pide con Accept: image/svg+xml, en SVG. "
+                    + "Admite peticiones condicionales con If-None-Match.",
+        security = { @SecurityRequirement(name = "bearerAuth") },
+        parameters = {
+            @Parameter(
+          		   name = "Accept-Language",
+                     description = "Idioma de la respuesta (es, en, eu)",
+                     in = ParameterIn.HEADER,
+                     required = false
+          		  )
+          }
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Imagen del QR"),
+        @ApiResponse(responseCode = "304", description = "El QR no ha cambiado"),
+        @ApiResponse(responseCode = "404", description = "La reserva no existe, no está activa o no pertenece al usuario"),
+        @ApiResponse(responseCode = "406", description = "Formato no soportado"),
+        @ApiResponse(responseCode = "500", description = "Error interno del servidor al generar el QR")
+    })
+    public ResponseEntity<byte[]> qrImagen(
+            @AuthenticationPrincipal UsuarioAutenticado userDetails,
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        try {
+            Reserva reserva = reservaService.buscarReservaPorReservaForToken(userDetails, id);
+            QrReserva qr = cacheQrService.obtener(reserva.getPersona().getId(), id,
+                    reserva.getPlaza().getParking().getId());
+
+            boolean svg = prefiereSvg(accept);
+            // Con ETag, Spring responde 304 si coincide con If-None-Match
+            return ResponseEntity.ok()
+                    .contentType(svg ? SVG : MediaType.IMAGE_PNG)
+                    .eTag(qr.etiqueta() + (svg ? "-svg" : "-png"))
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .body(svg ? cacheQrService.svg(qr) : qr.png());
+        } catch (IllegalArgumentException e) {
+            logger.error("Datos no válidos: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        } catch (WriterException | IOException e) {
+            logger.error("Error generando QR: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /** Elige SVG solo si el cliente lo prefiere a PNG; con {@code *}{@code /*} o sin cabecera, PNG. */
+    private static boolean prefiereSvg(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return false;
+        }
+        double png = 0;
+        double svg = 0;
+        for (MediaType tipo : MediaType.parseMediaTypes(accept)) {
+            if (tipo.includes(MediaType.IMAGE_PNG)) {
+                png = Math.max(png, tipo.getQualityValue());
+            }
+            if (tipo.includes(SVG)) {
+                svg = Math.max(svg, tipo.getQualityValue());
+            }
+        }
+        return svg > png;
+    }
+
+    /*public ResponseEntity<?> qr(@AuthenticationPrincipal UsuarioAutenticado userDetails, @Valid @RequestBody QrRequest request, BindingResult result) {
     	try {
     		if (result.hasErrors()) {
     	        List<String> errores = result.getAllErrors().stream()
@@ -325,7 +614,7 @@ public class ReservaController {
     	    }
     		byte[] qrBytes = null;
     		try {
-    			Reserva reserva=reservaService.buscarReservaPorReservaForToken(userDetails.getUsername(), request.getIdReserva());
+    			Reserva reserva=reservaService.buscarReservaPorReservaForToken(userDetails, request.getIdReserva());
     			String token=tokenReservaService.generarTokenPuerta(reserva.getPersona().getId(), request.getIdReserva(),reserva.getPlaza().getParking().getId());
     			qrBytes =	tokenReservaService.generarQRBytes(token);
 			} catch (WriterException e) {
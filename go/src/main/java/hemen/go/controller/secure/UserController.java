@@ -23,6 +23,7 @@ import org.springframework.web.bind.annotation.RestController;
 import hemen.go.dto.request.RegisterRequest;
 import hemen.go.dto.request.validate.OnUpdate;
 import hemen.go.dto.response.UserDtoResponse;
+import hemen.go.security.UsuarioAutenticado;
 import hemen.go.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -76,7 +77,7 @@ public class UserController {
         @ApiResponse(responseCode = "403", description = "Acceso denegado. El rol no tiene permisos"),
         @ApiResponse(responseCode = "404", description = "Usuario no encontrado en la base de datos")
     })
-    public ResponseEntity<UserDtoResponse> getMyData(@AuthenticationPrincipal org.springframework.security.core.userdetails.User userDetails) {
+    public ResponseEntity<UserDtoResponse> getMyData(@AuthenticationPrincipal UsuarioAutenticado userDetails) {
     	UserDtoResponse usuarioResponse =  userService.getMyData(userDetails.getUsername());
     	 return ResponseEntity.ok(usuarioResponse);
         /*return usuarioRepository.findByEmailPersona(userDetails.getUsername())
@@ -109,7 +110,7 @@ public class UserController {
         @ApiResponse(responseCode = "404", description = "Usuario no encontrado en la base de datos")
     })
     public ResponseEntity<?> updateMyData(
-            @AuthenticationPrincipal org.springframework.security.core.userdetails.User userDetails,
+            @AuthenticationPrincipal UsuarioAutenticado userDetails,
             @Validated(OnUpdate.class) @RequestBody RegisterRequest updatedData,
             BindingResult result) {
     	
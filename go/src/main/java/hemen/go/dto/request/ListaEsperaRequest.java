@@ -0,0 +1,54 @@
+package hemen.go.dto.request;
+
+import java.time.LocalDate;
+
+public class ListaEsperaRequest {
+
+	private Long idParking;
+	private LocalDate fecInicio;
+	private LocalDate fecFin;
+
+	// Servicios que debe tener la plaza (opcionales)
+	private Boolean tomaElectricidad;
+	private Boolean plazaVip;
+
+	public Long getIdParking() {
+		return idParking;
+	}
+
+	public void setIdParking(Long idParking) {
+		this.idParking = idParking;
+	}
+
+	public LocalDate getFecInicio() {
+		return fecInicio;
+	}
+
+	public void setFecInicio(LocalDate fecInicio) {
+		this.fecInicio = fecInicio;
+	}
+
+	public LocalDate getFecFin() {
+		return fecFin;
+	}
+
+	public void setFecFin(LocalDate fecFin) {
+		this.fecFin = fecFin;
+	}
+
+	public Boolean getTomaElectricidad() {
+		return tomaElectricidad;
+	}
+
+	public void setTomaElectricidad(Boolean tomaElectricidad) {
+		this.tomaElectricidad = tomaElectricidad;
+	}
+
+	public Boolean getPlazaVip() {
+		return plazaVip;
+	}
+
+	public void setPlazaVip(Boolean plazaVip) {
+		this.plazaVip = plazaVip;
+	}
+}
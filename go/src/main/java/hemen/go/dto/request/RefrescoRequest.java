@@ -0,0 +1,35 @@
+package hemen.go.dto.request;
+
+/**
+ * DTO (Data Transfer Object) para la petición de renovación de sesión.
+ *
+ * Contiene el token de refresco recibido en el login o en la renovación anterior.
+ * Cada token solo puede usarse una vez.
+ */
+public class RefrescoRequest {
+
+    /** Token de refresco */
+    private String refreshToken;
+
+    /** Constructor vacío (necesario para deserialización JSON) */
+    public RefrescoRequest() {}
+
+    /**
+     * Constructor con parámetros.
+     *
+     * @param refreshToken token de refresco.
+     */
+    public RefrescoRequest(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
+
+    /** @return el token de refresco */
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    /** @param refreshToken establece el token de refresco */
+    public void setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
+}
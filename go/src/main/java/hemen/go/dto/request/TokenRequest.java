@@ -1,8 +1,12 @@
 package hemen.go.dto.request;
 
+import hemen.go.enums.SentidoAcceso;
+
 public class TokenRequest {
 	private String token;
 	private Long idParking;
+	// Opcional: si no se indica, la puerta es de entrada
+	private SentidoAcceso sentido;
 
 	public String getToken() {
 		return token;
@@ -19,4 +23,12 @@ public class TokenRequest {
 	public void setIdParking(Long idParking) {
 		this.idParking = idParking;
 	}
+
+	public SentidoAcceso getSentido() {
+		return sentido;
+	}
+
+	public void setSentido(SentidoAcceso sentido) {
+		this.sentido = sentido;
+	}
 }
@@ -0,0 +1,34 @@
+package hemen.go.dto.response;
+
+import java.time.LocalDateTime;
+
+import hemen.go.entity.AccesoPuerta;
+import hemen.go.enums.ResultadoAcceso;
+
+public class AccesoPuertaResponse {
+    private LocalDateTime fecha;
+    private Long idReserva;
+    private Long idParking;
+    private ResultadoAcceso resultado;
+
+    // Constructor desde la entidad o el registro del diario
+    public AccesoPuertaResponse(AccesoPuerta acceso) {
+        this.fecha = acceso.getFecha();
+        this.idReserva = acceso.getIdReserva();
+        this.idParking = acceso.getIdParking();
+        this.resultado = acceso.getResultado();
+    }
+
+    // Getters y setters
+    public LocalDateTime getFecha() { return fecha; }
+    public void setFecha(LocalDateTime fecha) { this.fecha = fecha; }
+
+    public Long getIdReserva() { return idReserva; }
+    public void setIdReserva(Long idReserva) { this.idReserva = idReserva; }
+
+    public Long getIdParking() { return idParking; }
+    public void setIdParking(Long idParking) { this.idParking = idParking; }
+
+    public ResultadoAcceso getResultado() { return resultado; }
+    public void setResultado(ResultadoAcceso resultado) { this.resultado = resultado; }
+}
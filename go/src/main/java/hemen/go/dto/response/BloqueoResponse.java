@@ -0,0 +1,39 @@
+package hemen.go.dto.response;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+import hemen.go.service.bloqueo.BloqueoPlaza;
+
+public class BloqueoResponse {
+    private String idBloqueo;
+    private Long idPlaza;
+    private LocalDate fecInicio;
+    private LocalDate fecFin;
+    private Instant expira;
+
+    // Constructor desde el bloqueo en memoria
+    public BloqueoResponse(BloqueoPlaza bloqueo) {
+        this.idBloqueo = bloqueo.getId();
+        this.idPlaza = bloqueo.getIdPlaza();
+        this.fecInicio = bloqueo.getFecInicio();
+        this.fecFin = bloqueo.getFecFin();
+        this.expira = bloqueo.getExpira();
+    }
+
+    // Getters y setters
+    public String getIdBloqueo() { return idBloqueo; }
+    public void setIdBloqueo(String idBloqueo) { this.idBloqueo = idBloqueo; }
+
+    public Long getIdPlaza() { return idPlaza; }
+    public void setIdPlaza(Long idPlaza) { this.idPlaza = idPlaza; }
+
+    public LocalDate getFecInicio() { return fecInicio; }
+    public void setFecInicio(LocalDate fecInicio) { this.fecInicio = fecInicio; }
+
+    public LocalDate getFecFin() { return fecFin; }
+    public void setFecFin(LocalDate fecFin) { this.fecFin = fecFin; }
+
+    public Instant getExpira() { return expira; }
+    public void setExpira(Instant expira) { this.expira = expira; }
+}
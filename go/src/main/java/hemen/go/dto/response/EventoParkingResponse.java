@@ -0,0 +1,58 @@
+package hemen.go.dto.response;
+
+import java.time.LocalDate;
+
+public class EventoParkingResponse {
+    private String tipo;
+    private Long idParking;
+    private Long idReserva;
+    private Long idPlaza;
+    private LocalDate fecInicio;
+    private LocalDate fecFin;
+    private String estado;
+
+    // Evento de una reserva del parking
+    public static EventoParkingResponse reserva(String tipo, Long idParking, Long idReserva, Long idPlaza,
+                                                LocalDate fecInicio, LocalDate fecFin) {
+        EventoParkingResponse evento = new EventoParkingResponse();
+        evento.tipo = tipo;
+        evento.idParking = idParking;
+        evento.idReserva = idReserva;
+        evento.idPlaza = idPlaza;
+        evento.fecInicio = fecInicio;
+        evento.fecFin = fecFin;
+        return evento;
+    }
+
+    // Cambio de estado de una plaza del parking
+    public static EventoParkingResponse plaza(Long idParking, Long idPlaza, String estado) {
+        EventoParkingResponse evento = new EventoParkingResponse();
+        evento.tipo = "PLAZA_ESTADO";
+        evento.idParking = idParking;
+        evento.idPlaza = idPlaza;
+        evento.estado = estado;
+        return evento;
+    }
+
+    // Getters y setters
+    public String getTipo() { return tipo; }
+    public void setTipo(String tipo) { this.tipo = tipo; }
+
+    public Long getIdParking() { return idParking; }
+    public void setIdParking(Long idParking) { this.idParking = idParking; }
+
+    public Long getIdReserva() { return idReserva; }
+    public void setIdReserva(Long idReserva) { this.idReserva = idReserva; }
+
+    public Long getIdPlaza() { return idPlaza; }
+    public void setIdPlaza(Long idPlaza) { this.idPlaza = idPlaza; }
+
+    public LocalDate getFecInicio() { return fecInicio; }
+    public void setFecInicio(LocalDate fecInicio) { this.fecInicio = fecInicio; }
+
+    public LocalDate getFecFin() { return fecFin; }
+    public void setFecFin(LocalDate fecFin) { this.fecFin = fecFin; }
+
+    public String getEstado() { return estado; }
+    public void setEstado(String estado) { this.estado = estado; }
+}
@@ -0,0 +1,37 @@
+package hemen.go.dto.response;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ImportacionPlazasResponse {
+    private int filasLeidas;
+    private int plazasCreadas;
+    private List<ErrorFila> errores = new ArrayList<>();
+
+    // Error de una fila concreta del fichero (la cabecera CSV cuenta como fila 1)
+    public static class ErrorFila {
+        private long fila;
+        private String mensaje;
+
+        public ErrorFila(long fila, String mensaje) {
+            this.fila = fila;
+            this.mensaje = mensaje;
+        }
+
+        public long getFila() { return fila; }
+        public void setFila(long fila) { this.fila = fila; }
+
+        public String getMensaje() { return mensaje; }
+        public void setMensaje(String mensaje) { this.mensaje = mensaje; }
+    }
+
+    // Getters y setters
+    public int getFilasLeidas() { return filasLeidas; }
+    public void setFilasLeidas(int filasLeidas) { this.filasLeidas = filasLeidas; }
+
+    public int getPlazasCreadas() { return plazasCreadas; }
+    public void setPlazasCreadas(int plazasCreadas) { this.plazasCreadas = plazasCreadas; }
+
+    public List<ErrorFila> getErrores() { return errores; }
+    public void setErrores(List<ErrorFila> errores) { this.errores = errores; }
+}
@@ -6,10 +6,12 @@ package hemen.go.dto.response;
  * Esta clase se utiliza para enviar al cliente la información resultante
  * de un login exitoso:
  *  - El token JWT generado por el sistema de autenticación.
+ *  - El token de refresco, para renovar el JWT sin repetir el login.
  *  - Los datos del usuario autenticado.
  *
  * Campos principales:
  *  - token: cadena que contiene el JSON Web Token (JWT).
+ *  - refreshToken: token opaco de un solo uso para obtener un nuevo JWT.
  *  - user: objeto con los datos del usuario (UserDtoResponse).
  *
  * Características:
@@ -22,6 +24,7 @@ package hemen.go.dto.response;
  * Ejemplo de respuesta JSON:
  * {
  *   "token": "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9...",
+ *   "refreshToken": "q7Jx0c2V...",
  *   "user": {
  *     "id": 1,
  *     "nombre": "Jon",
@@ -34,6 +37,9 @@ public class JwtResponse {
     /** Token JWT generado tras la autenticación */
     private String token;
 
+    /** Token de refresco, de un solo uso */
+    private String refreshToken;
+
     /** Datos del usuario autenticado */
     private UserDtoResponse user;
 
@@ -51,6 +57,18 @@ public class JwtResponse {
         this.user = user;
     }
 
+    /**
+     * Constructor con token de refresco.
+     *
+     * @param token el JWT generado.
+     * @param user datos del usuario autenticado.
+     * @param refreshToken token de refresco.
+     */
+    public JwtResponse(String token, UserDtoResponse user, String refreshToken) {
+        this(token, user);
+        this.refreshToken = refreshToken;
+    }
+
     /** @return el usuario autenticado */
     public UserDtoResponse getUser() {
         return user;
@@ -70,4 +88,14 @@ public class JwtResponse {
     public void setToken(String token) {
         this.token = token;
     }
+
+    /** @return el token de refresco */
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    /** @param refreshToken establece el token de refresco */
+    public void setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
 }
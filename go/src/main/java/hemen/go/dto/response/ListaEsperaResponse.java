@@ -0,0 +1,55 @@
+package hemen.go.dto.response;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import hemen.go.service.espera.EntradaEspera;
+
+public class ListaEsperaResponse {
+    private String idEspera;
+    private Long idParking;
+    private LocalDate fecInicio;
+    private LocalDate fecFin;
+    private boolean tomaElectricidad;
+    private boolean plazaVip;
+    private Instant fecAlta;
+    private List<EntradaEspera.Aviso> plazasLiberadas;
+
+    // Constructor desde la entrada en memoria
+    public ListaEsperaResponse(EntradaEspera entrada) {
+        this.idEspera = entrada.getId();
+        this.idParking = entrada.getIdParking();
+        this.fecInicio = entrada.getFecInicio();
+        this.fecFin = entrada.getFecFin();
+        this.tomaElectricidad = entrada.isTomaElectricidad();
+        this.plazaVip = entrada.isPlazaVip();
+        this.fecAlta = entrada.getFecAlta();
+        this.plazasLiberadas = List.copyOf(entrada.getAvisos());
+    }
+
+    // Getters y setters
+    public String getIdEspera() { return idEspera; }
+    public void setIdEspera(String idEspera) { this.idEspera = idEspera; }
+
+    public Long getIdParking() { return idParking; }
+    public void setIdParking(Long idParking) { this.idParking = idParking; }
+
+    public LocalDate getFecInicio() { return fecInicio; }
+    public void setFecInicio(LocalDate fecInicio) { this.fecInicio = fecInicio; }
+
+    public LocalDate getFecFin() { return fecFin; }
+    public void setFecFin(LocalDate fecFin) { this.fecFin = fecFin; }
+
+    public boolean isTomaElectricidad() { return tomaElectricidad; }
+    public void setTomaElectricidad(boolean tomaElectricidad) { this.tomaElectricidad = tomaElectricidad; }
+
+    public boolean isPlazaVip() { return plazaVip; }
+    public void setPlazaVip(boolean plazaVip) { this.plazaVip = plazaVip; }
+
+    public Instant getFecAlta() { return fecAlta; }
+    public void setFecAlta(Instant fecAlta) { this.fecAlta = fecAlta; }
+
+    public List<EntradaEspera.Aviso> getPlazasLiberadas() { return plazasLiberadas; }
+    public void setPlazasLiberadas(List<EntradaEspera.Aviso> plazasLiberadas) { this.plazasLiberadas = plazasLiberadas; }
+}
@@ -0,0 +1,30 @@
+package hemen.go.dto.response;
+
+public class OcupacionParkingResponse {
+    private Long idParking;
+    private long entradas;
+    private long salidas;
+    private long dentro;
+
+    // Constructor desde los contadores en memoria
+    public OcupacionParkingResponse(Long idParking, long entradas, long salidas) {
+        this.idParking = idParking;
+        this.entradas = entradas;
+        this.salidas = salidas;
+        // Una salida sin su entrada (p. ej. tras perder la última instantánea) no deja el total en negativo
+        this.dentro = Math.max(0, entradas - salidas);
+    }
+
+    // Getters y setters
+    public Long getIdParking() { return idParking; }
+    public void setIdParking(Long idParking) { this.idParking = idParking; }
+
+    public long getEntradas() { return entradas; }
+    public void setEntradas(long entradas) { this.entradas = entradas; }
+
+    public long getSalidas() { return salidas; }
+    public void setSalidas(long salidas) { this.salidas = salidas; }
+
+    public long getDentro() { return dentro; }
+    public void setDentro(long dentro) { this.dentro = dentro; }
+}
@@ -2,6 +2,7 @@ package hemen.go.dto.response;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Set;
 
 import hemen.go.entity.Parking;
 import hemen.go.entity.Plaza;
@@ -23,6 +24,11 @@ public class ParkingDtoFindResponse {
 	    private List<PlazaResponse> plazas;
 
 	    public ParkingDtoFindResponse(Parking parking, LocalDate fechaDesde, LocalDate fechaHasta) {
+	        this(parking, fechaDesde, fechaHasta, Set.of());
+	    }
+
+	    // plazasBloqueadas: plazas retenidas temporalmente por otro usuario, se tratan como ocupadas
+	    public ParkingDtoFindResponse(Parking parking, LocalDate fechaDesde, LocalDate fechaHasta, Set<Long> plazasBloqueadas) {
 	        this.id = parking.getId();
 	        this.nombre = parking.getNombre();
 	        this.provincia = parking.getProvincia();
@@ -38,6 +44,7 @@ public class ParkingDtoFindResponse {
 
 	        // filtrar plazas libres
 	        this.plazas = parking.getPlazas().stream()
+	            .filter(plaza -> !plazasBloqueadas.contains(plaza.getId()))
 	            .filter(plaza -> plazaLibre(plaza, fechaDesde, fechaHasta))
 	            .map(PlazaResponse::new)
 	            .toList();
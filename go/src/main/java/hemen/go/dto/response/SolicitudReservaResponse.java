@@ -0,0 +1,38 @@
+package hemen.go.dto.response;
+
+import java.time.Instant;
+
+import hemen.go.service.reserva.SolicitudReserva;
+
+public class SolicitudReservaResponse {
+    private String idSolicitud;
+    private String estado;
+    private String mensaje;
+    private Long idReserva;
+    private Instant fecAlta;
+
+    // Constructor desde la solicitud encolada
+    public SolicitudReservaResponse(SolicitudReserva solicitud) {
+        this.idSolicitud = solicitud.getId();
+        this.estado = solicitud.getEstado().name();
+        this.mensaje = solicitud.getMensaje();
+        this.idReserva = solicitud.getIdReserva();
+        this.fecAlta = solicitud.getFecAlta();
+    }
+
+    // Getters y setters
+    public String getIdSolicitud() { return idSolicitud; }
+    public void setIdSolicitud(String idSolicitud) { this.idSolicitud = idSolicitud; }
+
+    public String getEstado() { return estado; }
+    public void setEstado(String estado) { this.estado = estado; }
+
+    public String getMensaje() { return mensaje; }
+    public void setMensaje(String mensaje) { this.mensaje = mensaje; }
+
+    public Long getIdReserva() { return idReserva; }
+    public void setIdReserva(Long idReserva) { this.idReserva = idReserva; }
+
+    public Instant getFecAlta() { return fecAlta; }
+    public void setFecAlta(Instant fecAlta) { this.fecAlta = fecAlta; }
+}
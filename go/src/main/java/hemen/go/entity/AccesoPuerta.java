@@ -0,0 +1,95 @@
+package hemen.go.entity;
+
+import java.time.LocalDateTime;
+
+import hemen.go.enums.ResultadoAcceso;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+
+/**
+ * Intento de apertura de una puerta, ya cargado desde el diario de accesos.
+ *
+ * <p>{@code segmento} es el segmento del diario del que procede la fila, para poder repetir
+ * la carga de un segmento sin duplicarla.</p>
+ */
+@Entity
+@Table(name = "accesos_puerta")
+public class AccesoPuerta {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "accesos_puerta_seq")
+	@SequenceGenerator(name = "accesos_puerta_seq", sequenceName = "accesos_puerta_id_acceso_seq", allocationSize = 50)
+	@Column(name = "id_acceso")
+	private Long id;
+
+	@Column(name = "segmento_acceso", nullable = false)
+	private long segmento;
+
+	@Column(name = "fecha_acceso", nullable = false)
+	private LocalDateTime fecha;
+
+	@Column(name = "id_reserva_acceso")
+	private Long idReserva;
+
+	@Column(name = "id_parking_acceso", nullable = false)
+	private Long idParking;
+
+	@Enumerated(EnumType.STRING)
+	@Column(name = "resultado_acceso", length = 20, nullable = false)
+	private ResultadoAcceso resultado;
+
+	public Long getId() {
+		return id;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public long getSegmento() {
+		return segmento;
+	}
+
+	public void setSegmento(long segmento) {
+		this.segmento = segmento;
+	}
+
+	public LocalDateTime getFecha() {
+		return fecha;
+	}
+
+	public void setFecha(LocalDateTime fecha) {
+		this.fecha = fecha;
+	}
+
+	public Long getIdReserva() {
+		return idReserva;
+	}
+
+	public void setIdReserva(Long idReserva) {
+		this.idReserva = idReserva;
+	}
+
+	public Long getIdParking() {
+		return idParking;
+	}
+
+	public void setIdParking(Long idParking) {
+		this.idParking = idParking;
+	}
+
+	public ResultadoAcceso getResultado() {
+		return resultado;
+	}
+
+	public void setResultado(ResultadoAcceso resultado) {
+		this.resultado = resultado;
+	}
+}
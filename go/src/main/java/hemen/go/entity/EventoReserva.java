@@ -0,0 +1,152 @@
+package hemen.go.entity;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import hemen.go.enums.TipoEventoReserva;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+
+/**
+ * Evento pendiente de publicar (patrón outbox).
+ *
+ * <p>Se guarda en la misma transacción que el cambio de la reserva, de modo que el evento
+ * existe si y solo si el cambio se ha confirmado. El despachador lo publica después y
+ * rellena {@code fecProcesado}.</p>
+ */
+@Entity
+@Table(name = "eventos_reserva")
+public class EventoReserva {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "eventos_reserva_seq")
+	@SequenceGenerator(name = "eventos_reserva_seq", sequenceName = "eventos_reserva_id_evento_seq", allocationSize = 50)
+	@Column(name = "id_evento")
+	private Long id;
+
+	@Enumerated(EnumType.STRING)
+	@Column(name = "tipo_evento", length = 20, nullable = false)
+	private TipoEventoReserva tipo;
+
+	@Column(name = "id_reserva_evento", nullable = false)
+	private Long idReserva;
+
+	@Column(name = "id_plaza_evento")
+	private Long idPlaza;
+
+	@Column(name = "id_parking_evento")
+	private Long idParking;
+
+	@Column(name = "fecha_inicio_evento")
+	private LocalDate fecInicio;
+
+	@Column(name = "fecha_fin_evento")
+	private LocalDate fecFin;
+
+	@Column(name = "puntuacion_evento")
+	private Integer puntuacion;
+
+	@Column(name = "fecha_alta_evento", nullable = false)
+	private LocalDateTime fecAlta;
+
+	@Column(name = "fecha_procesado_evento")
+	private LocalDateTime fecProcesado;
+
+	@Column(name = "intentos_evento", nullable = false)
+	private int intentos;
+
+	public Long getId() {
+		return id;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public TipoEventoReserva getTipo() {
+		return tipo;
+	}
+
+	public void setTipo(TipoEventoReserva tipo) {
+		this.tipo = tipo;
+	}
+
+	public Long getIdReserva() {
+		return idReserva;
+	}
+
+	public void setIdReserva(Long idReserva) {
+		this.idReserva = idReserva;
+	}
+
+	public Long getIdPlaza() {
+		return idPlaza;
+	}
+
+	public void setIdPlaza(Long idPlaza) {
+		this.idPlaza = idPlaza;
+	}
+
+	public Long getIdParking() {
+		return idParking;
+	}
+
+	public void setIdParking(Long idParking) {
+		this.idParking = idParking;
+	}
+
+	public LocalDate getFecInicio() {
+		return fecInicio;
+	}
+
+	public void setFecInicio(LocalDate fecInicio) {
+		this.fecInicio = fecInicio;
+	}
+
+	public LocalDate getFecFin() {
+		return fecFin;
+	}
+
+	public void setFecFin(LocalDate fecFin) {
+		this.fecFin = fecFin;
+	}
+
+	public Integer getPuntuacion() {
+		return puntuacion;
+	}
+
+	public void setPuntuacion(Integer puntuacion) {
+		this.puntuacion = puntuacion;
+	}
+
+	public LocalDateTime getFecAlta() {
+		return fecAlta;
+	}
+
+	public void setFecAlta(LocalDateTime fecAlta) {
+		this.fecAlta = fecAlta;
+	}
+
+	public LocalDateTime getFecProcesado() {
+		return fecProcesado;
+	}
+
+	public void setFecProcesado(LocalDateTime fecProcesado) {
+		this.fecProcesado = fecProcesado;
+	}
+
+	public int getIntentos() {
+		return intentos;
+	}
+
+	public void setIntentos(int intentos) {
+		this.intentos = intentos;
+	}
+}
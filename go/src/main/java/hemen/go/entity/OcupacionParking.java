@@ -0,0 +1,74 @@
+package hemen.go.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Instantánea de los contadores de entradas y salidas de un parking.
+ *
+ * <p>Los contadores viven en memoria; esta fila solo sirve para recuperarlos al arrancar.</p>
+ */
+@Entity
+@Table(name = "ocupacion_parking")
+public class OcupacionParking {
+
+	@Id
+	@Column(name = "id_parking_ocupacion")
+	private Long idParking;
+
+	@Column(name = "id_empresa_ocupacion", nullable = false)
+	private Long idEmpresa;
+
+	@Column(name = "entradas_ocupacion", nullable = false)
+	private long entradas;
+
+	@Column(name = "salidas_ocupacion", nullable = false)
+	private long salidas;
+
+	@Column(name = "fecha_ocupacion", nullable = false)
+	private LocalDateTime fecha;
+
+	public Long getIdParking() {
+		return idParking;
+	}
+
+	public void setIdParking(Long idParking) {
+		this.idParking = idParking;
+	}
+
+	public Long getIdEmpresa() {
+		return idEmpresa;
+	}
+
+	public void setIdEmpresa(Long idEmpresa) {
+		this.idEmpresa = idEmpresa;
+	}
+
+	public long getEntradas() {
+		return entradas;
+	}
+
+	public void setEntradas(long entradas) {
+		this.entradas = entradas;
+	}
+
+	public long getSalidas() {
+		return salidas;
+	}
+
+	public void setSalidas(long salidas) {
+		this.salidas = salidas;
+	}
+
+	public LocalDateTime getFecha() {
+		return fecha;
+	}
+
+	public void setFecha(LocalDateTime fecha) {
+		this.fecha = fecha;
+	}
+}
@@ -12,6 +12,7 @@ import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 
 @Entity
 @Table(name = "parkings")
@@ -62,6 +63,11 @@ public class Parking {
 
     @OneToMany (mappedBy = "parking")
     private List<Plaza> plazas;
+
+    // Bloqueo optimista: cada actualización incrementa la versión
+    @Version
+    @Column(name = "version_parking", nullable = false)
+    private Long version;
     
 	public Long getId() {
 		return id;
@@ -174,4 +180,12 @@ public class Parking {
 	public void setPlazas(List<Plaza> plazas) {
 		this.plazas = plazas;
 	}
+
+	public Long getVersion() {
+		return version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
 }
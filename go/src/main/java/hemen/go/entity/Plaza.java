@@ -17,6 +17,7 @@ import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 
 @Entity
 @Table(name = "plazas")
@@ -24,7 +25,8 @@ public class Plaza {
 	
 	@Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "plazas_seq")
-    @SequenceGenerator(name = "plazas_seq", sequenceName = "plazas_id_seq", allocationSize = 1)
+    // Optimizador pooled: un nextval cada 50 ids, necesario para agrupar los INSERT en lotes JDBC
+    @SequenceGenerator(name = "plazas_seq", sequenceName = "plazas_id_seq", allocationSize = 50)
     @Column(name = "id_plaza")
     private Long id;
 	
@@ -55,6 +57,11 @@ public class Plaza {
     @OneToMany (mappedBy = "plaza")
     private List<Reserva> reservas;
 
+    // Bloqueo optimista: cada actualización incrementa la versión
+    @Version
+    @Column(name = "version_plaza", nullable = false)
+    private Long version;
+
 	public Long getId() {
 		return id;
 	}
@@ -122,4 +129,12 @@ public class Plaza {
 	public void setPrecio(float precio) {
 		this.precio = precio;
 	}
+
+	public Long getVersion() {
+		return version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
 }
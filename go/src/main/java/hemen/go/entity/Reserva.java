@@ -13,6 +13,7 @@ import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 
 @Entity
 @Table(name = "reservas")
@@ -20,7 +21,8 @@ public class Reserva {
 
 	@Id
 	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reservas_seq")
-	@SequenceGenerator(name = "reservas_seq", sequenceName = "reservas_id_reserva_seq", allocationSize = 1)
+	// Optimizador pooled: un nextval cada 50 ids, necesario para agrupar los INSERT en lotes JDBC
+	@SequenceGenerator(name = "reservas_seq", sequenceName = "reservas_id_reserva_seq", allocationSize = 50)
 	@Column(name = "id_reserva")
 	private Long id;
 
@@ -46,9 +48,15 @@ public class Reserva {
 	@Column(name = "estado_reserva", length = 1, nullable = false)
 	private String estado;
 	
-	@Column(name = "puntuacion_reserva", length = 1, nullable = false)
+	// Sin puntuar hasta que el usuario valora la reserva
+	@Column(name = "puntuacion_reserva", length = 1)
 	private Integer puntuacion;
 
+	// Bloqueo optimista: cada actualización incrementa la versión
+	@Version
+	@Column(name = "version_reserva", nullable = false)
+	private Long version;
+
 	public Long getId() {
 		return id;
 	}
@@ -113,4 +121,12 @@ public class Reserva {
 	public void setPuntuacion(Integer puntuacion) {
 		this.puntuacion = puntuacion;
 	}
+
+	public Long getVersion() {
+		return version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
 }
@@ -0,0 +1,94 @@
+package hemen.go.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+
+/**
+ * Token de refresco de sesión.
+ *
+ * <p>Solo se guarda el resumen SHA-256 del token, nunca el token. Cada uso lo marca como
+ * usado y emite otro de la misma familia (rotación); si un token usado vuelve a presentarse,
+ * se revoca la familia entera.</p>
+ */
+@Entity
+@Table(name = "tokens_refresco")
+public class TokenRefresco {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tokens_refresco_seq")
+	@SequenceGenerator(name = "tokens_refresco_seq", sequenceName = "tokens_refresco_id_token_seq", allocationSize = 50)
+	@Column(name = "id_token")
+	private Long id;
+
+	/** SHA-256 del token en Base64 URL sin relleno (43 caracteres). */
+	@Column(name = "hash_token", length = 43, nullable = false, unique = true)
+	private String hash;
+
+	@Column(name = "id_usuario_token", nullable = false)
+	private Long idUsuario;
+
+	/** Identificador común a todos los tokens obtenidos por rotación desde el mismo login. */
+	@Column(name = "familia_token", nullable = false)
+	private long familia;
+
+	@Column(name = "fecha_expiracion_token", nullable = false)
+	private LocalDateTime fecExpiracion;
+
+	@Column(name = "usado_token", nullable = false)
+	private boolean usado;
+
+	public Long getId() {
+		return id;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public String getHash() {
+		return hash;
+	}
+
+	public void setHash(String hash) {
+		this.hash = hash;
+	}
+
+	public Long getIdUsuario() {
+		return idUsuario;
+	}
+
+	public void setIdUsuario(Long idUsuario) {
+		this.idUsuario = idUsuario;
+	}
+
+	public long getFamilia() {
+		return familia;
+	}
+
+	public void setFamilia(long familia) {
+		this.familia = familia;
+	}
+
+	public LocalDateTime getFecExpiracion() {
+		return fecExpiracion;
+	}
+
+	public void setFecExpiracion(LocalDateTime fecExpiracion) {
+		this.fecExpiracion = fecExpiracion;
+	}
+
+	public boolean isUsado() {
+		return usado;
+	}
+
+	public void setUsado(boolean usado) {
+		this.usado = usado;
+	}
+}
@@ -12,10 +12,11 @@ public class Usuario {
 
 	@Id
 	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "persona_seq")
+	// Optimizador pooled: un nextval cada 50 ids, necesario para agrupar los INSERT en lotes JDBC
 	@SequenceGenerator(
 	    name = "persona_seq",
 	    sequenceName = "persona_id_persona_seq",
-	    allocationSize = 1
+	    allocationSize = 50
 	)
 	@Column(name = "id_persona")
     private Long id;
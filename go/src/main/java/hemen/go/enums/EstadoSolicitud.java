@@ -0,0 +1,10 @@
+package hemen.go.enums;
+
+/**
+ * Estado de una solicitud de reserva asíncrona.
+ */
+public enum EstadoSolicitud {
+    PENDIENTE,
+    CONFIRMADA,
+    RECHAZADA
+}
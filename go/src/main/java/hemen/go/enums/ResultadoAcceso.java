@@ -0,0 +1,12 @@
+package hemen.go.enums;
+
+/**
+ * Resultado de un intento de apertura de puerta con un token de reserva.
+ */
+public enum ResultadoAcceso {
+    PERMITIDO,
+    DENEGADO,
+    CADUCADO,
+    INVALIDO,
+    USADO
+}
@@ -0,0 +1,9 @@
+package hemen.go.enums;
+
+/**
+ * Sentido en el que un vehículo pasa por la puerta de un parking.
+ */
+public enum SentidoAcceso {
+    ENTRADA,
+    SALIDA
+}
@@ -0,0 +1,10 @@
+package hemen.go.enums;
+
+/**
+ * Tipos de evento del ciclo de vida de una reserva publicados a través del outbox.
+ */
+public enum TipoEventoReserva {
+    CREADA,
+    CANCELADA,
+    PUNTUADA
+}
@@ -0,0 +1,13 @@
+package hemen.go.exception;
+
+/**
+ * Se lanza cuando la cola de reservas asíncronas está llena y no admite más solicitudes.
+ */
+public class ColaReservasLlenaException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ColaReservasLlenaException(String mensaje) {
+        super(mensaje);
+    }
+}
@@ -0,0 +1,22 @@
+package hemen.go.exception;
+
+/**
+ * Se lanza cuando un cliente supera el número de intentos permitidos (por ejemplo, de login)
+ * y debe esperar antes de volver a intentarlo. Se responde con 429.
+ */
+public class DemasiadosIntentosException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Segundos que debe esperar el cliente. */
+    private final long segundos;
+
+    public DemasiadosIntentosException(String mensaje, long segundos) {
+        super(mensaje);
+        this.segundos = segundos;
+    }
+
+    public long getSegundos() {
+        return segundos;
+    }
+}
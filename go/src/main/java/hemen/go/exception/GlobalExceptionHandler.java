@@ -5,6 +5,7 @@ import java.util.List;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -38,7 +39,48 @@ public class GlobalExceptionHandler {
         );
         return ResponseEntity.status(HttpStatus.CONFLICT).body(mensaje);
     }
+
+    /**
+     * Conflicto de versión que persiste tras agotar los reintentos: otra petición
+     * ha modificado el mismo registro. El cliente puede volver a intentarlo.
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<String> handleOptimisticLocking(OptimisticLockingFailureException ex) {
+        String mensaje = messageSource.getMessage(
+                "error.concurrencia",
+                null,
+                LocaleContextHolder.getLocale()
+        );
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(mensaje);
+    }
+
+    /**
+     * El servidor está saturado y rechaza la petición sin esperar. El cliente puede
+     * reintentar pasados unos segundos.
+     */
+    @ExceptionHandler(ServicioSaturadoException.class)
+    public ResponseEntity<String> handleServicioSaturado(ServicioSaturadoException ex) {
+        String mensaje = messageSource.getMessage(
+                "error.servicio.saturado",
+                null,
+                LocaleContextHolder.getLocale()
+        );
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "2")
+                .body(mensaje);
+    }
     
+    /**
+     * El cliente ha superado los intentos permitidos y debe esperar los segundos
+     * indicados en la cabecera Retry-After.
+     */
+    @ExceptionHandler(DemasiadosIntentosException.class)
+    public ResponseEntity<String> handleDemasiadosIntentos(DemasiadosIntentosException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header("Retry-After", String.valueOf(ex.getSegundos()))
+                .body(ex.getMessage());
+    }
+
     @ExceptionHandler(jakarta.validation.ConstraintViolationException.class)
     public ResponseEntity<List<String>> handleConstraintViolation(jakarta.validation.ConstraintViolationException ex) {
         List<String> errores = ex.getConstraintViolations().stream()
@@ -0,0 +1,14 @@
+package hemen.go.exception;
+
+/**
+ * Se lanza cuando un recurso limitado del servidor (por ejemplo, el pool de BCrypt) está
+ * saturado y la petición se rechaza en lugar de ponerla a esperar. Se responde con 503.
+ */
+public class ServicioSaturadoException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ServicioSaturadoException(String mensaje) {
+        super(mensaje);
+    }
+}
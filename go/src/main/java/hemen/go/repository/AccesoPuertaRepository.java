@@ -0,0 +1,49 @@
+package hemen.go.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import hemen.go.entity.AccesoPuerta;
+
+/**
+ * Repositorio JPA para el histórico de accesos por las puertas ({@link AccesoPuerta}).
+ */
+public interface AccesoPuertaRepository extends JpaRepository<AccesoPuerta, Long> {
+
+    /**
+     * Accesos de un parking en un intervalo, en orden cronológico.
+     *
+     * @param idParking identificador del parking.
+     * @param desde inicio del intervalo, incluido.
+     * @param hasta fin del intervalo, excluido.
+     * @return accesos del intervalo.
+     */
+    @Query("SELECT a FROM AccesoPuerta a WHERE a.idParking = :idParking AND a.fecha >= :desde AND a.fecha < :hasta "
+            + "ORDER BY a.fecha, a.id")
+    List<AccesoPuerta> findByParkingEntre(@Param("idParking") Long idParking,
+                                          @Param("desde") LocalDateTime desde,
+                                          @Param("hasta") LocalDateTime hasta);
+
+    /**
+     * Número de segmento más alto cargado en la tabla.
+     *
+     * @return el número, o {@code null} si la tabla está vacía.
+     */
+    @Query("SELECT MAX(a.segmento) FROM AccesoPuerta a")
+    Long maxSegmento();
+
+    /**
+     * Borra las filas cargadas desde un segmento del diario.
+     *
+     * @param segmento número del segmento.
+     * @return número de filas borradas.
+     */
+    @Modifying
+    @Query("DELETE FROM AccesoPuerta a WHERE a.segmento = :segmento")
+    int borrarSegmento(@Param("segmento") long segmento);
+}
@@ -0,0 +1,58 @@
+package hemen.go.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import hemen.go.entity.EventoReserva;
+
+/**
+ * Repositorio JPA para la tabla outbox de eventos de reserva ({@link EventoReserva}).
+ */
+public interface EventoReservaRepository extends JpaRepository<EventoReserva, Long> {
+
+    /**
+     * Eventos pendientes de publicar, en orden de creación.
+     *
+     * @param pageable tamaño del lote.
+     * @return eventos sin fecha de procesado.
+     */
+    @Query("SELECT e FROM EventoReserva e WHERE e.fecProcesado IS NULL ORDER BY e.id")
+    List<EventoReserva> findPendientes(Pageable pageable);
+
+    /**
+     * Marca como procesados los eventos indicados.
+     *
+     * @param ids identificadores de los eventos.
+     * @param fecha fecha de procesado.
+     * @return número de eventos actualizados.
+     */
+    @Modifying
+    @Query("UPDATE EventoReserva e SET e.fecProcesado = :fecha WHERE e.id IN :ids")
+    int marcarProcesados(@Param("ids") List<Long> ids, @Param("fecha") LocalDateTime fecha);
+
+    /**
+     * Suma un intento fallido a los eventos indicados.
+     *
+     * @param ids identificadores de los eventos.
+     * @return número de eventos actualizados.
+     */
+    @Modifying
+    @Query("UPDATE EventoReserva e SET e.intentos = e.intentos + 1 WHERE e.id IN :ids")
+    int sumarIntento(@Param("ids") List<Long> ids);
+
+    /**
+     * Borra los eventos procesados antes de una fecha.
+     *
+     * @param fecha fecha límite.
+     * @return número de eventos borrados.
+     */
+    @Modifying
+    @Query("DELETE FROM EventoReserva e WHERE e.fecProcesado < :fecha")
+    int borrarProcesadosAntesDe(@Param("fecha") LocalDateTime fecha);
+}
@@ -0,0 +1,11 @@
+package hemen.go.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import hemen.go.entity.OcupacionParking;
+
+/**
+ * Repositorio JPA para las instantáneas de ocupación de los parkings ({@link OcupacionParking}).
+ */
+public interface OcupacionParkingRepository extends JpaRepository<OcupacionParking, Long> {
+}
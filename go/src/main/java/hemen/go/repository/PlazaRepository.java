@@ -46,4 +46,13 @@ public interface PlazaRepository extends JpaRepository<Plaza, Long> , JpaSpecifi
      */
 	Optional<Plaza> findByIdAndParking_Empresa_Id(Long idPlaza, Long idEmpresa);
 
+	/**
+	 * Comprueba que una plaza existe y pertenece al parking indicado.
+	 *
+	 * @param idPlaza identificador de la plaza.
+	 * @param idParking identificador del parking.
+	 * @return {@code true} si la plaza es de ese parking.
+	 */
+	boolean existsByIdAndParking_Id(Long idPlaza, Long idParking);
+
 }
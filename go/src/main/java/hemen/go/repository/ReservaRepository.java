@@ -4,7 +4,9 @@ import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -27,7 +29,10 @@ import hemen.go.entity.Reserva;
 public interface ReservaRepository extends JpaRepository<Reserva, Long> {
 
     /**
-     * Busca reservas solapadas en una plaza dentro de un rango de fechas.
+     * Busca reservas activas solapadas en una plaza dentro de un rango de fechas.
+     *
+     * <p>Solo tiene en cuenta reservas activas ("1"): las canceladas no ocupan la plaza y las
+     * completadas ("2") ya han terminado, de modo que la consulta no recorre el histórico.</p>
      *
      * <p>Uso típico:</p>
      * <ul>
@@ -41,6 +46,7 @@ public interface ReservaRepository extends JpaRepository<Reserva, Long> {
      */
     @Query("SELECT r FROM Reserva r " +
            "WHERE r.plaza.id = :idPlaza " +
+           "AND r.estado = '1' " +
            "AND (r.fecInicio BETWEEN :fecInicio AND :fecFin " +
            "     OR r.fecFin BETWEEN :fecInicio AND :fecFin)")
     List<Reserva> findReservasSolapadas(@Param("idPlaza") Long idPlaza,
@@ -112,6 +118,53 @@ public interface ReservaRepository extends JpaRepository<Reserva, Long> {
      */
     @Query("SELECT AVG(r.puntuacion) FROM Reserva r INNER JOIN Plaza p ON r.plaza.id = p.id INNER JOIN Parking par ON p.parking.id = par.id " +
            "WHERE par.id = :idParking " +
-            "AND r.estado = '1'")
+            "AND r.puntuacion IS NOT NULL " +
+            "AND r.estado <> '0'")
     Float mediaReservas(@Param("idParking") Long idParking);
+
+    /**
+     * Obtiene, en orden de ID, los identificadores de reservas activas ya terminadas.
+     *
+     * <p>Paginación por clave ({@code id > desdeId}): cada tramo empieza donde acabó el anterior
+     * sin usar OFFSET, así que el coste no crece con el número de tramos procesados.</p>
+     *
+     * @param hoy fecha actual; se consideran terminadas las reservas con fin anterior.
+     * @param desdeId último ID procesado (0 para empezar).
+     * @param pageable tamaño del tramo.
+     * @return identificadores del siguiente tramo, vacío si no quedan.
+     */
+    @Query("SELECT r.id FROM Reserva r " +
+           "WHERE r.estado = '1' AND r.fecFin < :hoy AND r.id > :desdeId " +
+           "ORDER BY r.id")
+    List<Long> findIdsReservasTerminadas(@Param("hoy") LocalDate hoy,
+                                         @Param("desdeId") Long desdeId,
+                                         Pageable pageable);
+
+    /**
+     * Obtiene los identificadores de las reservas activas de un parking que incluyen un día.
+     *
+     * @param idParking identificador del parking.
+     * @param dia día que deben incluir las reservas.
+     * @return identificadores de las reservas, en orden.
+     */
+    @Query("SELECT r.id FROM Reserva r " +
+           "WHERE r.plaza.parking.id = :idParking AND r.estado = '1' " +
+           "AND :dia BETWEEN r.fecInicio AND r.fecFin " +
+           "ORDER BY r.id")
+    List<Long> findIdsReservasActivasParking(@Param("idParking") Long idParking,
+                                             @Param("dia") LocalDate dia);
+
+    /**
+     * Pasa a completadas ("2") las reservas indicadas que sigan activas.
+     *
+     * <p>Incrementa la versión para que una escritura concurrente con bloqueo optimista
+     * sobre la misma reserva detecte el cambio.</p>
+     *
+     * @param ids identificadores de las reservas.
+     * @return número de reservas actualizadas.
+     */
+    @Modifying
+    @Query("UPDATE Reserva r SET r.estado = '2', r.version = r.version + 1 " +
+           "WHERE r.id IN :ids AND r.estado = '1'")
+    int completarReservas(@Param("ids") List<Long> ids);
 }
@@ -0,0 +1,59 @@
+package hemen.go.repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import hemen.go.entity.TokenRefresco;
+
+/**
+ * Repositorio JPA para los tokens de refresco de sesión ({@link TokenRefresco}).
+ */
+public interface TokenRefrescoRepository extends JpaRepository<TokenRefresco, Long> {
+
+    Optional<TokenRefresco> findByHash(String hash);
+
+    /**
+     * Marca un token como usado solo si aún no lo estaba.
+     *
+     * @param hash resumen del token.
+     * @return 1 si se ha marcado; 0 si ya estaba usado (reutilización) o no existe.
+     */
+    @Modifying
+    @Query("UPDATE TokenRefresco t SET t.usado = true WHERE t.hash = :hash AND t.usado = false")
+    int marcarUsado(@Param("hash") String hash);
+
+    /**
+     * Invalida todos los tokens de una familia.
+     *
+     * @param familia familia de tokens.
+     * @return número de tokens actualizados.
+     */
+    @Modifying
+    @Query("UPDATE TokenRefresco t SET t.usado = true WHERE t.familia = :familia AND t.usado = false")
+    int revocarFamilia(@Param("familia") long familia);
+
+    /**
+     * Invalida todos los tokens de un usuario.
+     *
+     * @param idUsuario identificador del usuario.
+     * @return número de tokens actualizados.
+     */
+    @Modifying
+    @Query("UPDATE TokenRefresco t SET t.usado = true WHERE t.idUsuario = :idUsuario AND t.usado = false")
+    int revocarUsuario(@Param("idUsuario") Long idUsuario);
+
+    /**
+     * Borra los tokens caducados antes de una fecha.
+     *
+     * @param fecha fecha límite.
+     * @return número de tokens borrados.
+     */
+    @Modifying
+    @Query("DELETE FROM TokenRefresco t WHERE t.fecExpiracion < :fecha")
+    int borrarCaducadosAntesDe(@Param("fecha") LocalDateTime fecha);
+}
@@ -0,0 +1,130 @@
+package hemen.go.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caché acotada de tokens de sesión ya verificados, con expulsión LRU aproximada.
+ *
+ * <p>Un cliente repite el mismo bearer token en todas sus peticiones durante toda su vida.
+ * Guardando el resultado de la verificación, las peticiones siguientes se ahorran decodificar
+ * el token, analizar su JSON y comprobar la firma HMAC.</p>
+ *
+ * <ul>
+ *   <li>La clave es el SHA-256 del token, para no retener los tokens en memoria.</li>
+ *   <li>Cada entrada vale hasta el {@code exp} del token; caducada, se descarta al consultarla.</li>
+ *   <li>Solo se guardan tokens válidos, de modo que tokens inventados no desplazan a los buenos.</li>
+ *   <li>La revocación no se cachea: se sigue comprobando en cada petición.</li>
+ *   <li>Las consultas no toman ningún cerrojo: la caché es un {@link ConcurrentHashMap} y cada
+ *       entrada solo anota el milisegundo de su último uso. Al superar la capacidad, un único
+ *       hilo descarta las caducadas y, si no basta, el 10&nbsp;% usado hace más tiempo; el
+ *       resto de hilos no espera a que termine.</li>
+ * </ul>
+ */
+final class CacheTokensVerificados {
+
+    /** Resultado de verificar un token. */
+    record Entrada(UsuarioAutenticado usuario, long version, long expiracion) {
+    }
+
+    /** Entrada guardada y el instante de su último uso. */
+    private static final class Nodo {
+        final Entrada entrada;
+        volatile long ultimoUso;
+
+        Nodo(Entrada entrada, long ultimoUso) {
+            this.entrada = entrada;
+            this.ultimoUso = ultimoUso;
+        }
+    }
+
+    private record Uso(String clave, Nodo nodo, long instante) {
+    }
+
+    private final int capacidad;
+    private final Map<String, Nodo> entradas = new ConcurrentHashMap<>();
+    private final ReentrantLock recorte = new ReentrantLock();
+
+    /**
+     * @param capacidad número máximo de tokens guardados; 0 desactiva la caché.
+     */
+    CacheTokensVerificados(int capacidad) {
+        this.capacidad = Math.max(0, capacidad);
+    }
+
+    /**
+     * Devuelve la entrada del token si está guardada y no ha caducado.
+     *
+     * @param clave resumen del token, obtenido con {@link #clave(String)}.
+     * @param ahora instante actual en milisegundos.
+     * @return la entrada, o {@code null} si no está.
+     */
+    Entrada obtener(String clave, long ahora) {
+        if (capacidad == 0) {
+            return null;
+        }
+        Nodo nodo = entradas.get(clave);
+        if (nodo == null) {
+            return null;
+        }
+        if (nodo.entrada.expiracion() <= ahora) {
+            entradas.remove(clave, nodo);
+            return null;
+        }
+        // Solo se escribe si ha cambiado el milisegundo, para no invalidar la línea de caché en cada petición
+        if (nodo.ultimoUso != ahora) {
+            nodo.ultimoUso = ahora;
+        }
+        return nodo.entrada;
+    }
+
+    void guardar(String clave, Entrada entrada) {
+        if (capacidad == 0) {
+            return;
+        }
+        long ahora = System.currentTimeMillis();
+        entradas.put(clave, new Nodo(entrada, ahora));
+        if (entradas.size() > capacidad && recorte.tryLock()) {
+            try {
+                recortar(ahora);
+            } finally {
+                recorte.unlock();
+            }
+        }
+    }
+
+    /** Descarta las entradas caducadas y, si no basta, las usadas hace más tiempo hasta el 90 % de la capacidad. */
+    private void recortar(long ahora) {
+        entradas.values().removeIf(nodo -> nodo.entrada.expiracion() <= ahora);
+        int sobran = entradas.size() - (capacidad - capacidad / 10);
+        if (sobran <= 0) {
+            return;
+        }
+        // El último uso puede cambiar mientras se ordena: se ordena una copia
+        List<Uso> usos = new ArrayList<>(entradas.size());
+        entradas.forEach((clave, nodo) -> usos.add(new Uso(clave, nodo, nodo.ultimoUso)));
+        usos.sort(Comparator.comparingLong(Uso::instante));
+        for (int i = 0; i < sobran && i < usos.size(); i++) {
+            entradas.remove(usos.get(i).clave(), usos.get(i).nodo());
+        }
+    }
+
+    /** Resumen SHA-256 del token en Base64. */
+    static String clave(String token) {
+        try {
+            byte[] resumen = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(resumen);
+        } catch (NoSuchAlgorithmException e) {
+            // Todas las JVM incluyen SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
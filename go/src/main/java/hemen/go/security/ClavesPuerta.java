@@ -0,0 +1,314 @@
+package hemen.go.security;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.security.SignatureException;
+
+import hemen.go.util.Base45;
+
+/**
+ * Claves asimétricas para firmar y verificar los tokens de apertura de puertas.
+ *
+ * <p>Los tokens de puerta se firman con ES256 (ECDSA sobre P-256) y llevan en la cabecera
+ * el {@code kid} de la clave. La clave pública se publica como JWK Set, de modo que los
+ * controladores de las puertas pueden verificar los QR localmente, sin llamar al servidor,
+ * y sin conocer el secreto de los tokens de sesión.</p>
+ *
+ * <ul>
+ *   <li>El par de claves se lee de {@code PUERTA_CLAVE_PRIVADA} (PKCS#8) y
+ *       {@code PUERTA_CLAVE_PUBLICA} (X.509), ambas en Base64, del .env o del entorno.</li>
+ *   <li>Si no están definidas se genera un par temporal al arrancar: sirve en desarrollo,
+ *       pero los QR emitidos dejan de valer al reiniciar.</li>
+ *   <li>El {@code kid} es la huella JWK de la clave pública (RFC 7638).</li>
+ *   <li>Para rotar la clave, la pública anterior se deja en {@code PUERTA_CLAVE_PUBLICA_ANTERIOR}:
+ *       se sigue publicando y aceptando, para los QR ya emitidos y para las puertas que aún
+ *       no han descargado la clave nueva, hasta que se quite la variable.</li>
+ * </ul>
+ *
+ * <p>Los tokens también pueden firmarse en formato compacto, para QR más pequeños:
+ * {@code PU1:} seguido del Base45 de los 4 primeros bytes del {@code kid}, los datos del
+ * token y la firma ECDSA P-256 en formato IEEE P1363 (r y s de 32 bytes). La firma cubre el
+ * prefijo, el identificador de la clave y los datos, y se verifica con las mismas claves
+ * públicas del JWK Set.</p>
+ */
+@Component
+public class ClavesPuerta {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClavesPuerta.class);
+
+    /** Algoritmo de firma de los tokens de puerta. */
+    public static final SignatureAlgorithm ALGORITMO = SignatureAlgorithm.ES256;
+
+    /** Prefijo de los tokens de puerta compactos, con la versión del formato. */
+    public static final String PREFIJO_COMPACTO = "PU1:";
+
+    private static final String FIRMA_COMPACTA = "SHA256withECDSAinP1363Format";
+    private static final int TAMANO_ID_CLAVE = 4;
+    private static final int TAMANO_FIRMA = 64;
+    private static final byte[] PREFIJO = PREFIJO_COMPACTO.getBytes(StandardCharsets.US_ASCII);
+
+    private final RegistroClaves<PrivateKey> registro = new RegistroClaves<>();
+    private final JwtParser parser;
+
+    /**
+     * Constructor usado por Spring: lee el par de claves del entorno o genera uno temporal.
+     */
+    public ClavesPuerta() {
+        this(leerClaves(), leerClavePublica("PUERTA_CLAVE_PUBLICA_ANTERIOR"));
+    }
+
+    /**
+     * Constructor con las claves explícitas, para pruebas.
+     *
+     * @param claves par de claves EC sobre la curva P-256.
+     * @param anterior clave pública anterior que se sigue aceptando, o {@code null}.
+     */
+    public ClavesPuerta(KeyPair claves, PublicKey anterior) {
+        ECPublicKey publica = comprobar(claves.getPublic());
+        registro.activar(huella(publica), claves.getPrivate(), publica, System.currentTimeMillis(), 0);
+        if (anterior != null) {
+            registro.aceptar(huella(comprobar(anterior)), anterior, Long.MAX_VALUE);
+        }
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        return clavePublica(header);
+                    }
+                })
+                .build();
+    }
+
+    /** Clave con la que se firman los tokens nuevos. */
+    public PrivateKey clavePrivada() {
+        return registro.activa().firma();
+    }
+
+    /** Identificador de la clave de firma, para la cabecera {@code kid}. */
+    public String kid() {
+        return registro.activa().kid();
+    }
+
+    /**
+     * Verifica la firma y la caducidad de un token de puerta.
+     *
+     * @param token token leído del QR.
+     * @return claims del token.
+     * @throws io.jsonwebtoken.JwtException si el token no es válido o ha caducado.
+     */
+    public Jws<Claims> verificar(String token) {
+        return parser.parseClaimsJws(token);
+    }
+
+    /**
+     * Firma unos datos con la clave activa en el formato compacto de token de puerta.
+     *
+     * @param datos campos del token, en el formato binario que decida quien los emite.
+     * @return token compacto, con caracteres del modo alfanumérico de QR.
+     */
+    public String firmarCompacto(byte[] datos) {
+        RegistroClaves.Clave<PrivateKey> clave = registro.activa();
+        byte[] token = new byte[TAMANO_ID_CLAVE + datos.length + TAMANO_FIRMA];
+        System.arraycopy(idClave(clave.kid()), 0, token, 0, TAMANO_ID_CLAVE);
+        System.arraycopy(datos, 0, token, TAMANO_ID_CLAVE, datos.length);
+        try {
+            Signature firma = Signature.getInstance(FIRMA_COMPACTA);
+            firma.initSign(clave.firma());
+            firma.update(PREFIJO);
+            firma.update(token, 0, TAMANO_ID_CLAVE + datos.length);
+            byte[] valor = firma.sign();
+            System.arraycopy(valor, 0, token, TAMANO_ID_CLAVE + datos.length, TAMANO_FIRMA);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("No se pudo firmar el token de puerta: " + e.getMessage(), e);
+        }
+        return PREFIJO_COMPACTO + Base45.codificar(token);
+    }
+
+    /**
+     * Verifica la firma de un token de puerta compacto. La caducidad la comprueba quien
+     * interpreta los datos.
+     *
+     * @param token token leído del QR, con el prefijo {@link #PREFIJO_COMPACTO}.
+     * @return datos firmados del token.
+     * @throws MalformedJwtException si el token no tiene el formato compacto.
+     * @throws SignatureException si la clave es desconocida o la firma no es válida.
+     */
+    public byte[] verificarCompacto(String token) {
+        if (token == null || !token.startsWith(PREFIJO_COMPACTO)) {
+            throw new MalformedJwtException("Token de puerta compacto mal formado");
+        }
+        byte[] bytes;
+        try {
+            bytes = Base45.decodificar(token.substring(PREFIJO_COMPACTO.length()));
+        } catch (IllegalArgumentException e) {
+            throw new MalformedJwtException("Token de puerta compacto mal formado", e);
+        }
+        if (bytes.length <= TAMANO_ID_CLAVE + TAMANO_FIRMA) {
+            throw new MalformedJwtException("Token de puerta compacto mal formado");
+        }
+        int firmados = bytes.length - TAMANO_FIRMA;
+        byte[] id = Arrays.copyOf(bytes, TAMANO_ID_CLAVE);
+        try {
+            // Varias claves pueden compartir los 4 bytes del identificador: se prueban todas
+            for (RegistroClaves.Clave<PrivateKey> clave : registro.vigentes(System.currentTimeMillis())) {
+                if (!Arrays.equals(id, idClave(clave.kid()))) {
+                    continue;
+                }
+                Signature firma = Signature.getInstance(FIRMA_COMPACTA);
+                firma.initVerify((PublicKey) clave.verificacion());
+                firma.update(PREFIJO);
+                firma.update(bytes, 0, firmados);
+                if (firma.verify(bytes, firmados, TAMANO_FIRMA)) {
+                    return Arrays.copyOfRange(bytes, TAMANO_ID_CLAVE, firmados);
+                }
+            }
+        } catch (GeneralSecurityException e) {
+            throw new SignatureException("Firma del token de puerta no válida", e);
+        }
+        throw new SignatureException("Firma del token de puerta no válida o clave desconocida");
+    }
+
+    /**
+     * Claves públicas en formato JWK Set ({@code {"keys": [...]}}).
+     *
+     * @return JWK Set serializable a JSON.
+     */
+    public Map<String, Object> jwks() {
+        List<Map<String, String>> claves = registro.vigentes(System.currentTimeMillis()).stream()
+                .map(c -> {
+                    Map<String, String> jwk = jwk((ECPublicKey) c.verificacion());
+                    jwk.put("kid", c.kid());
+                    jwk.put("use", "sig");
+                    jwk.put("alg", ALGORITMO.getValue());
+                    return jwk;
+                })
+                .toList();
+        return Map.of("keys", claves);
+    }
+
+    private Key clavePublica(JwsHeader<?> header) {
+        // Solo se admite ES256: un token con otro algoritmo no se acepta aunque el kid exista
+        if (!ALGORITMO.getValue().equals(header.getAlgorithm())) {
+            throw new SignatureException("Algoritmo no admitido en tokens de puerta: " + header.getAlgorithm());
+        }
+        Key clave = registro.verificacion(header.getKeyId(), System.currentTimeMillis());
+        if (clave == null) {
+            throw new SignatureException("Clave de puerta desconocida: " + header.getKeyId());
+        }
+        return clave;
+    }
+
+    /** Identificador de la clave en los tokens compactos: los primeros bytes de la huella. */
+    private static byte[] idClave(String kid) {
+        return Arrays.copyOf(Base64.getUrlDecoder().decode(kid), TAMANO_ID_CLAVE);
+    }
+
+    private static ECPublicKey comprobar(PublicKey clave) {
+        if (!(clave instanceof ECPublicKey publica) || publica.getParams().getCurve().getField().getFieldSize() != 256) {
+            throw new IllegalStateException("La clave de puerta debe ser EC sobre P-256");
+        }
+        return publica;
+    }
+
+    /** Miembros obligatorios del JWK de una clave EC, en orden lexicográfico. */
+    private static Map<String, String> jwk(ECPublicKey clave) {
+        Map<String, String> jwk = new LinkedHashMap<>();
+        jwk.put("crv", "P-256");
+        jwk.put("kty", "EC");
+        jwk.put("x", coordenada(clave.getW().getAffineX()));
+        jwk.put("y", coordenada(clave.getW().getAffineY()));
+        return jwk;
+    }
+
+    /** Huella JWK (RFC 7638): SHA-256 del JSON de los miembros obligatorios, en Base64url. */
+    private static String huella(ECPublicKey clave) {
+        StringBuilder json = new StringBuilder("{");
+        jwk(clave).forEach((k, v) -> json.append(json.length() > 1 ? "," : "")
+                .append('"').append(k).append("\":\"").append(v).append('"'));
+        json.append('}');
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(json.toString().getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (GeneralSecurityException e) {
+            // Todas las JVM incluyen SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Coordenada de la curva en 32 bytes big-endian sin signo, en Base64url. */
+    private static String coordenada(BigInteger valor) {
+        byte[] bytes = valor.toByteArray();
+        byte[] fijo = new byte[32];
+        int copiar = Math.min(bytes.length, 32);
+        System.arraycopy(bytes, bytes.length - copiar, fijo, 32 - copiar, copiar);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(fijo);
+    }
+
+    private static PublicKey leerClavePublica(String nombre) {
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+        String publica = dotenv.get(nombre, System.getenv(nombre));
+        if (publica == null || publica.isBlank()) {
+            return null;
+        }
+        try {
+            return KeyFactory.getInstance("EC")
+                    .generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(publica.trim())));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException(nombre + " no válida: " + e.getMessage(), e);
+        }
+    }
+
+    private static KeyPair leerClaves() {
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+        String privada = dotenv.get("PUERTA_CLAVE_PRIVADA", System.getenv("PUERTA_CLAVE_PRIVADA"));
+        String publica = dotenv.get("PUERTA_CLAVE_PUBLICA", System.getenv("PUERTA_CLAVE_PUBLICA"));
+        try {
+            KeyFactory factoria = KeyFactory.getInstance("EC");
+            if (privada != null && publica != null) {
+                return new KeyPair(
+                        factoria.generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(publica.trim()))),
+                        factoria.generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(privada.trim()))));
+            }
+            logger.warn("PUERTA_CLAVE_PRIVADA/PUERTA_CLAVE_PUBLICA no definidas: se genera un par temporal; "
+                    + "los QR emitidos dejarán de valer al reiniciar");
+            KeyPairGenerator generador = KeyPairGenerator.getInstance("EC");
+            generador.initialize(new ECGenParameterSpec("secp256r1"));
+            return generador.generateKeyPair();
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Claves de puerta no válidas: " + e.getMessage(), e);
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+package hemen.go.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import io.jsonwebtoken.security.Keys;
+
+/**
+ * Claves HMAC de los tokens de sesión, con rotación periódica.
+ *
+ * <p>En lugar de firmar siempre con {@code JWT_SECRET}, se firma con una clave derivada de él
+ * para cada periodo ({@code jwt.claves.rotacion.horas}): HMAC-SHA256 del secreto y el número de
+ * periodo. El {@code kid} del token indica qué clave se usó. La derivación es determinista, así
+ * que todas las instancias firman con la misma clave y un reinicio no invalida ningún token.</p>
+ *
+ * <ul>
+ *   <li>Al cambiar de periodo, la clave anterior se sigue aceptando durante el periodo de
+ *       gracia ({@code jwt.claves.gracia.minutos}, como mínimo la vida de un token), así que
+ *       rotar no cierra ninguna sesión.</li>
+ *   <li>La clave del periodo siguiente se acepta desde que se activa la actual: cada instancia
+ *       comprueba el cambio de periodo cada minuto ({@code jwt.claves.comprobacion.ms}) y con
+ *       su propio reloj, así que otra puede empezar a firmar con ella un poco antes que esta.</li>
+ *   <li>Para cambiar el propio {@code JWT_SECRET}, el valor anterior se deja en
+ *       {@code JWT_SECRET_ANTERIOR}: sus tokens se aceptan durante el periodo de gracia tras
+ *       arrancar, en lugar de obligar a todos los usuarios a hacer login a la vez.</li>
+ *   <li>Los tokens sin {@code kid}, emitidos antes de la rotación, se verifican con el secreto
+ *       directamente durante el periodo de gracia tras arrancar.</li>
+ * </ul>
+ */
+@Component
+public class ClavesSesion {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClavesSesion.class);
+
+    private static final String KID_LEGADO = "legado";
+
+    private final SecretKey secreto;
+    private final String prefijoKid;
+    private final long periodoMs;
+    private final long graciaMs;
+    private final RegistroClaves<SecretKey> registro = new RegistroClaves<>();
+
+    /**
+     * Constructor usado por Spring: lee {@code JWT_SECRET} y {@code JWT_SECRET_ANTERIOR}.
+     *
+     * @param rotacionHoras duración de cada clave ({@code jwt.claves.rotacion.horas}).
+     * @param graciaMinutos tiempo que se acepta una clave tras rotar ({@code jwt.claves.gracia.minutos}).
+     */
+    @Autowired
+    public ClavesSesion(@Value("${jwt.claves.rotacion.horas:24}") long rotacionHoras,
+                        @Value("${jwt.claves.gracia.minutos:30}") long graciaMinutos) {
+        this(leerSecreto("JWT_SECRET"), leerSecreto("JWT_SECRET_ANTERIOR"),
+                rotacionHoras * 60 * 60 * 1000, graciaMinutos * 60 * 1000);
+    }
+
+    /**
+     * Constructor con los secretos explícitos, para pruebas.
+     *
+     * @param secret secreto HMAC de al menos 32 caracteres.
+     * @param secretAnterior secreto anterior aceptado durante la gracia, o {@code null}.
+     * @param periodoMs duración de cada clave.
+     * @param graciaMs tiempo que se acepta una clave tras rotar.
+     */
+    public ClavesSesion(String secret, String secretAnterior, long periodoMs, long graciaMs) {
+        if (secret == null || secret.length() < 32) {
+            throw new IllegalStateException("JWT_SECRET no definido o demasiado corto (mínimo 32 caracteres)");
+        }
+        if (periodoMs <= 0) {
+            throw new IllegalStateException("jwt.claves.rotacion.horas debe ser mayor que 0");
+        }
+        this.secreto = Keys.hmacShaKeyFor(secret.getBytes());
+        this.prefijoKid = prefijo(secreto);
+        this.periodoMs = periodoMs;
+        // Una clave retirada antes de que caduquen sus tokens cerraría sesiones
+        this.graciaMs = Math.max(graciaMs, JwtUtil.DURACION_TOKEN_MS);
+
+        long ahora = System.currentTimeMillis();
+        long periodo = ahora / periodoMs;
+        long hasta = ahora + this.graciaMs;
+        registro.aceptar(KID_LEGADO, secreto, hasta);
+        // Tokens firmados justo antes de arrancar con la clave del periodo anterior
+        registro.aceptar(kid(prefijoKid, periodo - 1), derivar(secreto, periodo - 1), periodo * periodoMs + this.graciaMs);
+        if (secretAnterior != null && !secretAnterior.isBlank() && !secretAnterior.equals(secret)) {
+            SecretKey anterior = Keys.hmacShaKeyFor(secretAnterior.getBytes());
+            String prefijoAnterior = prefijo(anterior);
+            registro.aceptar(kid(prefijoAnterior, periodo), derivar(anterior, periodo), hasta);
+            registro.aceptar(kid(prefijoAnterior, periodo - 1), derivar(anterior, periodo - 1), hasta);
+            logger.info("JWT_SECRET_ANTERIOR aceptado durante {} minutos", this.graciaMs / 60000);
+        }
+        rotar(ahora);
+    }
+
+    /** Clave activa para firmar tokens nuevos. */
+    SecretKey claveFirma() {
+        return registro.activa().firma();
+    }
+
+    /** Identificador de la clave activa, para la cabecera {@code kid}. */
+    String kid() {
+        return registro.activa().kid();
+    }
+
+    /**
+     * Clave con la que verificar un token.
+     *
+     * @param kid cabecera {@code kid} del token, o {@code null} si no la tiene.
+     * @return la clave, o {@code null} si no existe o ya se ha retirado.
+     */
+    Key verificacion(String kid) {
+        return registro.verificacion(kid == null ? KID_LEGADO : kid, System.currentTimeMillis());
+    }
+
+    /**
+     * Activa la clave del periodo actual si ha cambiado y elimina las claves retiradas.
+     */
+    @Scheduled(fixedDelayString = "${jwt.claves.comprobacion.ms:60000}")
+    public void rotar() {
+        rotar(System.currentTimeMillis());
+    }
+
+    private void rotar(long ahora) {
+        long periodo = ahora / periodoMs;
+        String kid = kid(prefijoKid, periodo);
+        RegistroClaves.Clave<SecretKey> activa = registro.activa();
+        if (activa == null || !activa.kid().equals(kid)) {
+            SecretKey clave = derivar(secreto, periodo);
+            registro.activar(kid, clave, clave, ahora, graciaMs);
+            // Tokens de instancias que ya han rotado; se retira cuando se retiraría si se hubiera activado
+            registro.aceptar(kid(prefijoKid, periodo + 1), derivar(secreto, periodo + 1),
+                    (periodo + 2) * periodoMs + graciaMs);
+            logger.info("Clave de sesión activa: {}", kid);
+        }
+        registro.purgar(ahora);
+    }
+
+    private static String kid(String prefijo, long periodo) {
+        return prefijo + "." + periodo;
+    }
+
+    /** Prefijo del {@code kid} que distingue claves derivadas de secretos distintos. */
+    private static String prefijo(SecretKey secreto) {
+        byte[] huella = hmac(secreto, "hemengo-jwt-kid");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(huella).substring(0, 8);
+    }
+
+    private static SecretKey derivar(SecretKey secreto, long periodo) {
+        return Keys.hmacShaKeyFor(hmac(secreto, "hemengo-jwt-sesion:" + periodo));
+    }
+
+    private static byte[] hmac(SecretKey secreto, String datos) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secreto.getEncoded(), "HmacSHA256"));
+            return mac.doFinal(datos.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            // Todas las JVM incluyen HmacSHA256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String leerSecreto(String nombre) {
+        // Cargar dotenv en local, ignorar si no existe (producción)
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+
+        // Primero intenta leer de .env, si no existe usa System.getenv
+        return dotenv.get(nombre, System.getenv(nombre));
+    }
+}
@@ -0,0 +1,97 @@
+package hemen.go.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.stereotype.Component;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+/**
+ * Credenciales con las que las puertas de un parking se identifican ante el servidor.
+ *
+ * <p>Las puertas no tienen usuario ni JWT, pero la lista de reservas permitidas y el flujo de
+ * eventos de un parking no deben ser públicos. Cada parking tiene su credencial, derivada del
+ * secreto {@code PUERTA_SECRETO} (o de {@code JWT_SECRET} si no está definido): HMAC-SHA256 del
+ * secreto y el identificador del parking. No se guarda en ninguna tabla; el administrador de la
+ * empresa la obtiene desde su API y la configura en las puertas, que la envían en la cabecera
+ * {@value #CABECERA}.</p>
+ *
+ * <p>La credencial de un parking no sirve para ningún otro. Cambiar el secreto cambia las de
+ * todos los parkings.</p>
+ */
+@Component
+public class CredencialesPuerta {
+
+    /** Cabecera HTTP con la credencial de la puerta. */
+    public static final String CABECERA = "X-Credencial-Puerta";
+
+    private final SecretKeySpec secreto;
+
+    /**
+     * Constructor usado por Spring: lee {@code PUERTA_SECRETO} o, si no existe, {@code JWT_SECRET}.
+     */
+    public CredencialesPuerta() {
+        this(leerSecreto());
+    }
+
+    /**
+     * Constructor con el secreto explícito, para pruebas.
+     *
+     * @param secret secreto de al menos 32 caracteres.
+     */
+    public CredencialesPuerta(String secret) {
+        if (secret == null || secret.length() < 32) {
+            throw new IllegalStateException("PUERTA_SECRETO no definido o demasiado corto (mínimo 32 caracteres)");
+        }
+        this.secreto = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+    }
+
+    /**
+     * Credencial de las puertas de un parking.
+     *
+     * @param idParking identificador del parking.
+     * @return credencial en Base64 URL sin relleno.
+     */
+    public String credencial(Long idParking) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(hmac(idParking));
+    }
+
+    /**
+     * Comprueba la credencial presentada por una puerta, en tiempo constante.
+     *
+     * @param idParking parking al que pide acceso la puerta.
+     * @param credencial valor de la cabecera {@value #CABECERA}, o {@code null}.
+     * @return {@code true} si es la credencial de ese parking.
+     */
+    public boolean valida(Long idParking, String credencial) {
+        if (idParking == null || credencial == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(credencial(idParking).getBytes(StandardCharsets.US_ASCII),
+                credencial.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private byte[] hmac(Long idParking) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(secreto);
+            return mac.doFinal(("hemengo-puerta:" + idParking).getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            // Todas las JVM incluyen HmacSHA256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String leerSecreto() {
+        // Cargar dotenv en local, ignorar si no existe (producción)
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+        String secreto = dotenv.get("PUERTA_SECRETO", System.getenv("PUERTA_SECRETO"));
+        return secreto != null ? secreto : dotenv.get("JWT_SECRET", System.getenv("JWT_SECRET"));
+    }
+}
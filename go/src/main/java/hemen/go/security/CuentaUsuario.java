@@ -0,0 +1,34 @@
+package hemen.go.security;
+
+import java.util.Collection;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import hemen.go.entity.Usuario;
+
+/**
+ * Usuario cargado de la base de datos para comprobar sus credenciales en el login.
+ *
+ * <p>Conserva la entidad {@link Usuario} para que, tras autenticarse, el token y los datos
+ * de la respuesta se construyan sin volver a buscar al usuario.</p>
+ */
+public class CuentaUsuario extends User {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Usuario usuario;
+
+    /**
+     * @param usuario entidad del usuario.
+     * @param authorities roles del usuario.
+     */
+    public CuentaUsuario(Usuario usuario, Collection<? extends GrantedAuthority> authorities) {
+        super(usuario.getEmailPersona(), usuario.getPass_persona(), authorities);
+        this.usuario = usuario;
+    }
+
+    public Usuario getUsuario() {
+        return usuario;
+    }
+}
@@ -1,10 +1,8 @@
 package hemen.go.security;
 
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import jakarta.servlet.FilterChain;
@@ -18,8 +16,8 @@ import jakarta.servlet.http.HttpServletResponse;
  * Este filtro se ejecuta una vez por cada petición (extiende OncePerRequestFilter)
  * y se encarga de:
  *  - Extraer el token JWT de la cabecera "Authorization".
- *  - Validar el token y obtener el nombre de usuario.
- *  - Cargar los detalles del usuario desde UserDetailsService.
+ *  - Validar el token y construir el usuario (email, rol, ids) a partir de sus claims,
+ *    sin consultar la base de datos.
  *  - Crear una autenticación válida en el contexto de seguridad de Spring.
  *
  * De esta forma, cualquier petición que incluya un JWT válido quedará autenticada
@@ -31,18 +29,13 @@ public class JwtFilter extends OncePerRequestFilter {
     /** Utilidad para trabajar con JWT (generar, validar, extraer claims) */
     private final JwtUtil jwtUtil;
 
-    /** Servicio para cargar los detalles del usuario (roles, credenciales) */
-    private final UserDetailsService userDetailsService;
-
     /**
      * Constructor con inyección de dependencias.
      *
      * @param jwtUtil utilidad para manejar tokens JWT.
-     * @param userDetailsService servicio para cargar usuarios.
      */
-    public JwtFilter(JwtUtil jwtUtil, UserDetailsService userDetailsService) {
+    public JwtFilter(JwtUtil jwtUtil) {
         this.jwtUtil = jwtUtil;
-        this.userDetailsService = userDetailsService;
     }
 
     /**
@@ -51,12 +44,12 @@ public class JwtFilter extends OncePerRequestFilter {
      * Flujo:
      *  1. Obtiene la cabecera "Authorization" de la petición.
      *  2. Si empieza por "Bearer ", extrae el token JWT.
-     *  3. Usa JwtUtil para obtener el nombre de usuario del token.
-     *  4. Si el usuario no está autenticado en el contexto:
-     *      - Carga sus detalles con UserDetailsService.
-     *      - Valida el token contra esos detalles.
-     *      - Crea un objeto UsernamePasswordAuthenticationToken con roles y permisos.
+     *  3. Si el usuario no está autenticado en el contexto:
+     *      - Valida el token con JwtUtil (firma, expiración y revocación) y obtiene
+     *        el usuario de sus claims.
+     *      - Crea un objeto UsernamePasswordAuthenticationToken con sus roles.
      *      - Lo establece en el SecurityContextHolder (autenticación activa).
+     *  4. Un token no válido deja la petición sin autenticar.
      *  5. Continúa la cadena de filtros (filterChain.doFilter).
      *
      * @param request petición HTTP entrante.
@@ -72,22 +65,15 @@ public class JwtFilter extends OncePerRequestFilter {
             throws ServletException, java.io.IOException {
 
         final String authHeader = request.getHeader("Authorization");
-        String username = null;
-        String jwt = null;
-
-        // Extraer token si existe y empieza por "Bearer "
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            jwt = authHeader.substring(7);
-            username = jwtUtil.extractUsername(jwt);
-        }
 
-        // Validar token y establecer autenticación en el contexto
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        // Extraer token si existe y empieza por "Bearer ", y establecer la autenticación en el contexto
+        if (authHeader != null && authHeader.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            UsuarioAutenticado usuario = jwtUtil.autenticar(authHeader.substring(7));
 
-            if (jwtUtil.validateToken(jwt, userDetails)) {
+            if (usuario != null) {
                 UsernamePasswordAuthenticationToken authToken =
-                        new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                        new UsernamePasswordAuthenticationToken(usuario, null, usuario.getAuthorities());
 
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authToken);
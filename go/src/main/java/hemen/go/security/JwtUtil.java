@@ -2,24 +2,33 @@ package hemen.go.security;
 
 import java.util.Date;
 
-import org.springframework.security.core.userdetails.UserDetails;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 
-import io.github.cdimascio.dotenv.Dotenv;
+import hemen.go.entity.Usuario;
 import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.security.SignatureException;
 import java.security.Key;
 
 /**
  * Utilidad para la gestión de tokens JWT en la aplicación Hemengo.
  *
  * Funcionalidades principales:
- *  - Generar tokens JWT firmados con una clave secreta segura.
+ *  - Generar tokens JWT firmados con la clave activa de {@link ClavesSesion}.
  *  - Extraer el nombre de usuario (subject) de un token.
- *  - Validar tokens comparando el usuario y la fecha de expiración.
- *  - Comprobar si un token ha expirado.
+ *  - Validar tokens (firma, expiración y revocación) y obtener el usuario de sus claims,
+ *    guardando los ya verificados en una caché LRU acotada.
  *
  * Uso:
  *  Esta clase se utiliza junto con JwtFilter y Spring Security para
@@ -28,95 +37,151 @@ import java.security.Key;
 @Component
 public class JwtUtil {
 
-    /**
-     * Clave secreta utilizada para firmar y validar los tokens JWT.
-     * Debe tener al menos 256 bits (32 caracteres si se usa ASCII).
-     */
-    private final Key SECRET_KEY;
+    /** Claves de firma por {@code kid}, con rotación periódica. */
+    private final ClavesSesion claves;
 
-    public JwtUtil() {
-        // Cargar dotenv en local, ignorar si no existe (producción)
-        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+    /** Analizador de tokens que elige la clave por su {@code kid}; es inmutable y se reutiliza entre peticiones. */
+    private final JwtParser parser;
 
-        // Primero intenta leer de .env, si no existe usa System.getenv
-        String secret = dotenv.get("JWT_SECRET", System.getenv("JWT_SECRET"));
+    /** Versiones vigentes de los tokens por usuario. */
+    private final RevocacionTokens revocacionTokens;
 
-        if (secret == null || secret.length() < 32) {
-            throw new IllegalStateException("JWT_SECRET no definido o demasiado corto (mínimo 32 caracteres)");
-        }
+    /** Tokens de sesión ya verificados, para no repetir la comprobación de la firma. */
+    private final CacheTokensVerificados cache;
 
-        this.SECRET_KEY = Keys.hmacShaKeyFor(secret.getBytes());
+    /**
+     * Constructor usado por Spring.
+     *
+     * @param claves claves de firma de los tokens de sesión.
+     * @param revocacionTokens versiones vigentes de los tokens por usuario.
+     * @param tamanoCache tokens verificados en caché ({@code jwt.cache.tamano}); 0 la desactiva.
+     */
+    @Autowired
+    public JwtUtil(ClavesSesion claves, RevocacionTokens revocacionTokens,
+                   @Value("${jwt.cache.tamano:10000}") int tamanoCache) {
+        this.claves = claves;
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        return claveVerificacion(header);
+                    }
+                })
+                .build();
+        this.revocacionTokens = revocacionTokens;
+        this.cache = new CacheTokensVerificados(tamanoCache);
     }
 
     /**
-     * Genera un token JWT para un usuario.
-     *
-     * - El subject se establece como el nombre de usuario.
-     * - Se añade la fecha de emisión (issuedAt).
-     * - Se establece una expiración de 1 hora.
-     * - Se firma con la clave secreta.
+     * Constructor con el secreto explícito, para pruebas: rota las claves cada 24 horas.
      *
-     * @param userDetails detalles del usuario autenticado.
-     * @return token JWT en formato String.
+     * @param secret secreto HMAC de al menos 32 caracteres.
+     * @param revocacionTokens versiones vigentes de los tokens por usuario.
+     * @param tamanoCache tokens verificados en caché; 0 la desactiva.
      */
-    public String generateToken(UserDetails userDetails) {
-        return Jwts.builder()
-                .setSubject(userDetails.getUsername())              // nombre de usuario
-                .setIssuedAt(new Date(System.currentTimeMillis()))  // fecha de emisión
-                .setExpiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60)) // expira en 1 hora
-                .signWith(SECRET_KEY)                               // firma con clave secreta
-                .compact();
+    public JwtUtil(String secret, RevocacionTokens revocacionTokens, int tamanoCache) {
+        this(new ClavesSesion(secret, null, 24L * 60 * 60 * 1000, 0), revocacionTokens, tamanoCache);
+    }
+
+    private Key claveVerificacion(JwsHeader<?> header) {
+        // Solo HMAC: un token con otro algoritmo no se acepta aunque el kid exista
+        String algoritmo = header.getAlgorithm();
+        if (algoritmo == null || !algoritmo.startsWith("HS")) {
+            throw new SignatureException("Algoritmo no admitido en tokens de sesión: " + algoritmo);
+        }
+        Key clave = claves.verificacion(header.getKeyId());
+        if (clave == null) {
+            throw new SignatureException("Clave de sesión desconocida o retirada: " + header.getKeyId());
+        }
+        return clave;
     }
 
+    /** Vida de los tokens de sesión: 15 minutos; después se renuevan con el token de refresco. */
+    public static final long DURACION_TOKEN_MS = 1000L * 60 * 15;
+
+    static final String CLAIM_ROL = "rol";
+    static final String CLAIM_ID_USUARIO = "uid";
+    static final String CLAIM_ID_EMPRESA = "emp";
+    static final String CLAIM_VERSION = "ver";
+
     /**
-     * Extrae el nombre de usuario (subject) de un token JWT.
+     * Genera un token JWT para un usuario.
      *
-     * @param token el JWT recibido.
-     * @return el nombre de usuario contenido en el token.
+     * - El subject se establece como el email del usuario.
+     * - Se añaden el rol, el id del usuario, el id de su empresa (si tiene) y la versión
+     *   vigente de sus tokens, para autenticar las peticiones sin consultar la base de datos.
+     * - Se añade la fecha de emisión (issuedAt).
+     * - Se establece una expiración de 15 minutos (se renueva con el token de refresco).
+     * - Se firma con la clave activa de {@link ClavesSesion}, indicada en la cabecera kid.
+     *
+     * @param usuario usuario autenticado.
+     * @return token JWT en formato String.
      */
-    public String extractUsername(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(SECRET_KEY)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+    public String generateToken(Usuario usuario) {
+        long ahora = System.currentTimeMillis();
+        JwtBuilder builder = Jwts.builder()
+                .setSubject(usuario.getEmailPersona())              // email como nombre de usuario
+                .claim(CLAIM_ROL, usuario.is_admin() ? "ADMIN" : "USER")
+                .claim(CLAIM_ID_USUARIO, usuario.getId())
+                .claim(CLAIM_VERSION, revocacionTokens.version(usuario.getEmailPersona()))
+                .setIssuedAt(new Date(ahora))                       // fecha de emisión
+                .setExpiration(new Date(ahora + DURACION_TOKEN_MS)) // expira en 15 minutos
+                .setHeaderParam("kid", claves.kid())                // clave activa del periodo
+                .signWith(claves.claveFirma(), SignatureAlgorithm.HS256);
+        if (usuario.getEmpresa() != null && usuario.getEmpresa().getId() != null) {
+            builder.claim(CLAIM_ID_EMPRESA, usuario.getEmpresa().getId());
+        }
+        return builder.compact();
     }
 
     /**
-     * Valida un token JWT.
+     * Verifica un token de sesión y construye el usuario autenticado a partir de sus claims.
      *
-     * - Comprueba que el nombre de usuario en el token coincide con el de UserDetails.
-     * - Verifica que el token no esté expirado.
+     * - Si el token ya se verificó y no ha caducado, se toma de la caché sin comprobar la firma.
+     * - Si no, comprueba firma y expiración en un único análisis del token y guarda el resultado.
+     * - En ambos casos rechaza tokens cuya versión haya sido revocada (cambio de contraseña).
      *
      * @param token el JWT recibido.
-     * @param userDetails detalles del usuario autenticado.
-     * @return true si el token es válido, false en caso contrario.
+     * @return el usuario autenticado, o {@code null} si el token no es válido.
      */
-    public boolean validateToken(String token, UserDetails userDetails) {
-        return extractUsername(token).equals(userDetails.getUsername()) && 
-               !isTokenExpired(token);
+    public UsuarioAutenticado autenticar(String token) {
+        String clave = CacheTokensVerificados.clave(token);
+        CacheTokensVerificados.Entrada entrada = cache.obtener(clave, System.currentTimeMillis());
+        if (entrada == null) {
+            entrada = verificar(token);
+            if (entrada == null) {
+                return null;
+            }
+            cache.guardar(clave, entrada);
+        }
+        UsuarioAutenticado usuario = entrada.usuario();
+        return revocacionTokens.vigente(usuario.getUsername(), entrada.version()) ? usuario : null;
     }
 
     /**
-     * Comprueba si un token JWT ha expirado.
+     * Analiza el token una sola vez, comprobando firma y expiración.
      *
-     * @param token el JWT recibido.
-     * @return true si el token está expirado, false si aún es válido.
+     * @return las claims verificadas, o {@code null} si el token no es válido o le faltan claims.
      */
-    private boolean isTokenExpired(String token) {
-        Date expiration = Jwts.parser()
-                .setSigningKey(SECRET_KEY)
-                .parseClaimsJws(token)
-                .getBody()
-                .getExpiration();
-        return expiration.before(new Date());
-    }
-    
-    public Jws<Claims> validarTokenPuerta(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(SECRET_KEY)
-                .build()
-                .parseClaimsJws(token);
+    private CacheTokensVerificados.Entrada verificar(String token) {
+        Claims claims;
+        try {
+            claims = parser.parseClaimsJws(token).getBody();
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+        String email = claims.getSubject();
+        String rol = claims.get(CLAIM_ROL, String.class);
+        Number version = claims.get(CLAIM_VERSION, Number.class);
+        if (email == null || rol == null || version == null || claims.getExpiration() == null) {
+            return null;
+        }
+        Number idUsuario = claims.get(CLAIM_ID_USUARIO, Number.class);
+        Number idEmpresa = claims.get(CLAIM_ID_EMPRESA, Number.class);
+        UsuarioAutenticado usuario = new UsuarioAutenticado(email,
+                idUsuario != null ? idUsuario.longValue() : null,
+                idEmpresa != null ? idEmpresa.longValue() : null,
+                List.of(new SimpleGrantedAuthority("ROLE_" + rol)));
+        return new CacheTokensVerificados.Entrada(usuario, version.longValue(), claims.getExpiration().getTime());
     }
 }
@@ -0,0 +1,107 @@
+package hemen.go.security;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import hemen.go.exception.ServicioSaturadoException;
+
+/**
+ * {@link PasswordEncoder} BCrypt que ejecuta el cálculo en un pool acotado de hilos.
+ *
+ * <p>BCrypt es, con diferencia, lo que más CPU consume en la API. Si se calcula en los hilos
+ * de Tomcat, una ráfaga de logins los ocupa todos y las peticiones baratas esperan. Aquí:</p>
+ * <ul>
+ *   <li>Como mucho hay tantos cálculos a la vez como hilos del pool (por defecto, uno por CPU);
+ *       el hilo de la petición espera bloqueado, sin consumir CPU.</li>
+ *   <li>Los cálculos pendientes esperan en una cola acotada. Si está llena, se rechaza al
+ *       momento con {@link ServicioSaturadoException} (503) en lugar de acumular esperas.</li>
+ *   <li>El coste de BCrypt es configurable; {@link #upgradeEncoding(String)} indica qué
+ *       contraseñas guardadas tienen un coste menor para recalcularlas en el login.</li>
+ * </ul>
+ */
+public class PasswordEncoderAcotado implements PasswordEncoder, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordEncoderAcotado.class);
+
+    private final BCryptPasswordEncoder bcrypt;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param coste coste (log2 de las rondas) de BCrypt, entre 4 y 31.
+     * @param hilos cálculos simultáneos; 0 usa el número de CPU.
+     * @param cola cálculos pendientes admitidos antes de rechazar.
+     */
+    public PasswordEncoderAcotado(int coste, int hilos, int cola) {
+        this.bcrypt = new BCryptPasswordEncoder(coste);
+        int tamano = hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(tamano, tamano, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, cola)),
+                r -> {
+                    Thread hilo = new Thread(r, "bcrypt-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        logger.info("BCrypt con coste {}, {} hilos y cola de {}", coste, tamano, cola);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return ejecutar(() -> bcrypt.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return ejecutar(() -> bcrypt.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Comprueba el coste de la contraseña guardada; no calcula ningún hash.
+     *
+     * @return {@code true} si se guardó con un coste menor que el configurado.
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return bcrypt.upgradeEncoding(encodedPassword);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private <T> T ejecutar(Callable<T> calculo) {
+        Future<T> futuro;
+        try {
+            futuro = executor.submit(calculo);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Cola de BCrypt llena ({} pendientes): se rechaza la petición", executor.getQueue().size());
+            throw new ServicioSaturadoException("Cola de BCrypt llena");
+        }
+        try {
+            return futuro.get();
+        } catch (InterruptedException e) {
+            futuro.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido esperando el cálculo de BCrypt", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package hemen.go.security;
+
+import java.security.Key;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registro de claves de firma identificadas por {@code kid}.
+ *
+ * <p>Solo una clave está activa para firmar, pero pueden estar vigentes varias para verificar:
+ * al activar una clave nueva, la anterior sigue aceptándose durante un periodo de gracia, de
+ * modo que los tokens ya emitidos no dejan de valer de golpe al rotar. La verificación busca
+ * la clave por {@code kid} en un mapa concurrente, sin bloqueos.</p>
+ *
+ * @param <K> tipo de la clave con la que se firma.
+ */
+final class RegistroClaves<K extends Key> {
+
+    /**
+     * Clave registrada.
+     *
+     * @param kid identificador de la clave.
+     * @param firma clave para firmar, o {@code null} si solo sirve para verificar.
+     * @param verificacion clave para verificar.
+     * @param retiradaEn instante (ms) a partir del cual deja de aceptarse; {@link Long#MAX_VALUE} si no caduca.
+     */
+    record Clave<K>(String kid, K firma, Key verificacion, long retiradaEn) {
+    }
+
+    private final Map<String, Clave<K>> porKid = new ConcurrentHashMap<>();
+    private volatile Clave<K> activa;
+
+    /**
+     * Activa una clave para firmar. La que estaba activa sigue valiendo para verificar
+     * durante {@code graciaMs}.
+     */
+    synchronized void activar(String kid, K firma, Key verificacion, long ahora, long graciaMs) {
+        Clave<K> anterior = activa;
+        Clave<K> nueva = new Clave<>(kid, firma, verificacion, Long.MAX_VALUE);
+        porKid.put(kid, nueva);
+        activa = nueva;
+        if (anterior != null && !anterior.kid().equals(kid)) {
+            porKid.put(anterior.kid(), new Clave<>(anterior.kid(), null, anterior.verificacion(), ahora + graciaMs));
+        }
+    }
+
+    /** Registra una clave que solo sirve para verificar, hasta {@code retiradaEn}. */
+    void aceptar(String kid, Key verificacion, long retiradaEn) {
+        porKid.putIfAbsent(kid, new Clave<>(kid, null, verificacion, retiradaEn));
+    }
+
+    /** Clave activa para firmar. */
+    Clave<K> activa() {
+        return activa;
+    }
+
+    /**
+     * Clave de verificación de un {@code kid}.
+     *
+     * @return la clave, o {@code null} si no existe o ya se ha retirado.
+     */
+    Key verificacion(String kid, long ahora) {
+        Clave<K> clave = kid == null ? null : porKid.get(kid);
+        return clave != null && clave.retiradaEn() > ahora ? clave.verificacion() : null;
+    }
+
+    /** Claves vigentes para verificar, empezando por la activa. */
+    List<Clave<K>> vigentes(long ahora) {
+        Clave<K> actual = activa;
+        return porKid.values().stream()
+                .filter(c -> c.retiradaEn() > ahora)
+                .sorted((a, b) -> a == actual ? -1 : b == actual ? 1 : a.kid().compareTo(b.kid()))
+                .toList();
+    }
+
+    /** Elimina las claves retiradas. */
+    void purgar(long ahora) {
+        porKid.values().removeIf(c -> c.retiradaEn() <= ahora);
+    }
+}
@@ -0,0 +1,67 @@
+package hemen.go.security;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registro en memoria de tokens revocados por usuario.
+ *
+ * <p>Cada token lleva en la claim {@code ver} la versión vigente del usuario al emitirse.
+ * Al cambiar la contraseña, {@link #revocar(String)} fija como nueva versión el instante del
+ * cambio y los tokens emitidos antes (con una versión menor) dejan de aceptarse. Los tokens
+ * emitidos después llevan ya la versión nueva.</p>
+ *
+ * <p>Una entrada solo hace falta mientras pueda quedar algún token anterior sin caducar, así
+ * que se eliminan pasada la vida de un token y el mapa se mantiene pequeño. Al no guardarse
+ * en base de datos, un reinicio olvida las revocaciones más recientes que la vida de un token.</p>
+ */
+@Component
+public class RevocacionTokens {
+
+    /** Versión vigente por email; los usuarios sin entrada tienen la versión 0. */
+    private final Map<String, Long> versiones = new ConcurrentHashMap<>();
+
+    /**
+     * Versión que debe llevar un token emitido ahora para el usuario.
+     *
+     * @param email correo del usuario.
+     * @return versión vigente.
+     */
+    public long version(String email) {
+        return versiones.getOrDefault(email, 0L);
+    }
+
+    /**
+     * Invalida todos los tokens emitidos hasta ahora para el usuario.
+     *
+     * @param email correo del usuario.
+     */
+    public void revocar(String email) {
+        // Siempre creciente, aunque el reloj no avance entre dos revocaciones seguidas
+        versiones.merge(email, System.currentTimeMillis(), (anterior, ahora) -> Math.max(anterior + 1, ahora));
+    }
+
+    /**
+     * Comprueba que la versión de un token sigue vigente.
+     *
+     * @param email correo del usuario.
+     * @param versionToken valor de la claim {@code ver}.
+     * @return {@code true} si el token no ha sido revocado.
+     */
+    public boolean vigente(String email, long versionToken) {
+        return versionToken >= version(email);
+    }
+
+    /**
+     * Elimina las revocaciones más antiguas que la vida de un token: ya no queda ninguno
+     * anterior a ellas sin caducar.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocacion.limpieza.ms:600000}")
+    public void limpiar() {
+        long limite = System.currentTimeMillis() - JwtUtil.DURACION_TOKEN_MS;
+        versiones.values().removeIf(version -> version < limite);
+    }
+}
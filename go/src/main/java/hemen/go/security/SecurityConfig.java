@@ -2,6 +2,7 @@ package hemen.go.security;
 
 import java.util.List;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -11,7 +12,6 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -19,6 +19,8 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import jakarta.servlet.DispatcherType;
+
 
 /**
  * Configuración principal de seguridad para la aplicación Hemengo.
@@ -32,7 +34,7 @@ import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
  *  - Configurar la política de sesiones como STATELESS (sin sesiones en servidor).
  *  - Registrar el filtro JWT antes del filtro estándar de autenticación.
  *  - Proporcionar un AuthenticationManager para manejar autenticaciones.
- *  - Definir un PasswordEncoder seguro (BCrypt).
+ *  - Definir un PasswordEncoder seguro (BCrypt) con un pool de hilos acotado.
  */
 @Configuration
 @EnableWebSecurity
@@ -72,6 +74,8 @@ public class SecurityConfig {
             .csrf(csrf -> csrf.disable())
             .authorizeHttpRequests(auth -> auth
             		 .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+            		 // El final de un flujo SSE se despacha de nuevo sin el JWT; la petición original ya se autorizó
+            		 .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
             		 .requestMatchers("/swagger-ui/**", "/v3/api-docs/**", "/swagger-resources/**", "/webjars/**").permitAll()
             		 .requestMatchers("/api/public/**").permitAll()
             		 .requestMatchers("/api/secure/**").authenticated()
@@ -116,13 +120,20 @@ public class SecurityConfig {
     /**
      * Bean para codificar contraseñas.
      *
-     * - Se usa BCryptPasswordEncoder, un algoritmo seguro y recomendado.
+     * - Se usa BCrypt, un algoritmo seguro y recomendado.
      * - Garantiza que las contraseñas se almacenen de forma segura en la base de datos.
+     * - Los cálculos se hacen en un pool acotado (ver {@link PasswordEncoderAcotado}); si está
+     *   saturado, la petición se rechaza con 503.
      *
+     * @param coste coste de BCrypt ({@code password.bcrypt.coste}).
+     * @param hilos cálculos simultáneos; 0 usa el número de CPU ({@code password.hash.hilos}).
+     * @param cola cálculos pendientes admitidos ({@code password.hash.cola}).
      * @return PasswordEncoder basado en BCrypt.
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${password.bcrypt.coste:10}") int coste,
+                                           @Value("${password.hash.hilos:0}") int hilos,
+                                           @Value("${password.hash.cola:64}") int cola) {
+        return new PasswordEncoderAcotado(coste, hilos, cola);
     }
 }
@@ -0,0 +1,49 @@
+package hemen.go.security;
+
+import java.util.Collection;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+/**
+ * Usuario autenticado construido a partir de las claims del JWT, sin consultar la base de datos.
+ *
+ * <p>Lo crea {@link JwtFilter} una vez por petición y queda en el contexto de seguridad.
+ * Los controladores lo reciben con {@code @AuthenticationPrincipal} y lo pasan a los servicios,
+ * que así conocen el identificador del usuario, el de su empresa y si es administrador sin
+ * volver a buscar al usuario por su email.</p>
+ */
+public class UsuarioAutenticado extends User {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long idUsuario;
+    private final Long idEmpresa;
+    private final boolean admin;
+
+    /**
+     * @param email correo del usuario (subject del token).
+     * @param idUsuario identificador del usuario.
+     * @param idEmpresa identificador de su empresa, o {@code null} si no tiene.
+     * @param authorities roles del usuario.
+     */
+    public UsuarioAutenticado(String email, Long idUsuario, Long idEmpresa,
+                              Collection<? extends GrantedAuthority> authorities) {
+        super(email, "", authorities);
+        this.idUsuario = idUsuario;
+        this.idEmpresa = idEmpresa;
+        this.admin = authorities.stream().anyMatch(a -> "ROLE_ADMIN".equals(a.getAuthority()));
+    }
+
+    public Long getIdUsuario() {
+        return idUsuario;
+    }
+
+    public Long getIdEmpresa() {
+        return idEmpresa;
+    }
+
+    public boolean isAdmin() {
+        return admin;
+    }
+}
@@ -5,16 +5,23 @@ import java.time.LocalDate;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import hemen.go.dto.request.RegisterRequest;
+import hemen.go.dto.response.JwtResponse;
+import hemen.go.dto.response.UserDtoResponse;
 import hemen.go.entity.Usuario;
+import hemen.go.exception.DemasiadosIntentosException;
 import hemen.go.repository.UsuarioRepository;
+import hemen.go.security.CuentaUsuario;
 import hemen.go.security.JwtUtil;
+import hemen.go.service.sesion.LimitadorLogin;
+import hemen.go.service.sesion.TokenRefrescoService;
 
 /**
  * Servicio de autenticación para la aplicación Hemengo.
@@ -25,9 +32,9 @@ import hemen.go.security.JwtUtil;
  *
  * <p>Responsabilidades principales:</p>
  * <ul>
- *   <li>Autenticar usuarios mediante {@link AuthenticationManager}.</li>
- *   <li>Cargar detalles del usuario con {@link UserDetailsService}.</li>
+ *   <li>Autenticar usuarios mediante {@link AuthenticationManager}, limitando los intentos fallidos.</li>
  *   <li>Generar tokens JWT válidos para sesiones autenticadas.</li>
+ *   <li>Renovar sesiones con tokens de refresco rotatorios.</li>
  *   <li>Registrar nuevos usuarios en la base de datos con validaciones de negocio.</li>
  * </ul>
  *
@@ -41,30 +48,34 @@ public class AuthService {
 
     private final AuthenticationManager authenticationManager;
     private final JwtUtil jwtUtil;
-    private final UserDetailsService userDetailsService;
     private final PasswordEncoder passwordEncoder;
     private final UsuarioRepository usuarioRepository;
     private final MessageSource messageSource;
+    private final TokenRefrescoService tokenRefrescoService;
+    private final LimitadorLogin limitadorLogin;
 
     /**
      * Constructor con inyección de dependencias.
      *
      * @param authenticationManager componente de Spring Security para autenticar usuarios.
      * @param jwtUtil utilidad para generar y validar tokens JWT.
-     * @param userDetailsService servicio para cargar detalles de usuario.
      * @param passwordEncoder codificador de contraseñas para almacenamiento seguro.
      * @param usuarioRepository repositorio para persistir entidades {@link Usuario}.
      * @param messageSource fuente de mensajes internacionalizados para errores y validaciones.
+     * @param tokenRefrescoService emisión y rotación de tokens de refresco.
+     * @param limitadorLogin limitador de intentos de login fallidos.
      */
-    public AuthService(AuthenticationManager authenticationManager, JwtUtil jwtUtil, 
-                       UserDetailsService userDetailsService, PasswordEncoder passwordEncoder,
-                       UsuarioRepository usuarioRepository, MessageSource messageSource) {
+    public AuthService(AuthenticationManager authenticationManager, JwtUtil jwtUtil,
+                       PasswordEncoder passwordEncoder,
+                       UsuarioRepository usuarioRepository, MessageSource messageSource,
+                       TokenRefrescoService tokenRefrescoService, LimitadorLogin limitadorLogin) {
         this.authenticationManager = authenticationManager;
         this.jwtUtil = jwtUtil;
-        this.userDetailsService = userDetailsService;
         this.passwordEncoder = passwordEncoder;
         this.usuarioRepository = usuarioRepository;
         this.messageSource = messageSource;
+        this.tokenRefrescoService = tokenRefrescoService;
+        this.limitadorLogin = limitadorLogin;
     }
 
     /**
@@ -72,22 +83,56 @@ public class AuthService {
      *
      * <p>Flujo:</p>
      * <ol>
+     *   <li>Rechaza el intento, sin consultar la base de datos ni calcular BCrypt, si el email
+     *       o la IP tienen demasiados fallos recientes ({@link LimitadorLogin}).</li>
      *   <li>Valida las credenciales (email y contraseña) usando {@link AuthenticationManager}.</li>
-     *   <li>Carga los detalles del usuario (roles, permisos) con {@link UserDetailsService}.</li>
-     *   <li>Genera un token JWT firmado con la clave secreta.</li>
+     *   <li>Toma el usuario cargado durante la validación ({@link CuentaUsuario}), sin volver a buscarlo.</li>
+     *   <li>Genera un token JWT firmado con la clave secreta, con su rol, su id y el de su empresa.</li>
+     *   <li>Emite un token de refresco para renovar la sesión sin repetir el login.</li>
      * </ol>
      *
      * @param email correo electrónico del usuario.
      * @param password contraseña del usuario.
-     * @return token JWT válido para el usuario autenticado.
-     * @throws org.springframework.security.core.AuthenticationException si las credenciales son inválidas.
+     * @param ip dirección del cliente.
+     * @return token JWT, token de refresco y datos del usuario autenticado.
+     * @throws AuthenticationException si las credenciales son inválidas.
+     * @throws DemasiadosIntentosException si el email o la IP están bloqueados temporalmente.
      */
-    public String authenticate(String email, String password) {
-        authenticationManager.authenticate(
-            new UsernamePasswordAuthenticationToken(email, password)
-        );
-        UserDetails userDetails = userDetailsService.loadUserByUsername(email);
-        return jwtUtil.generateToken(userDetails);
+    public JwtResponse authenticate(String email, String password, String ip) {
+        long espera = limitadorLogin.esperaSegundos(email, ip);
+        if (espera > 0) {
+            throw new DemasiadosIntentosException(messageSource.getMessage(
+                    "error.login.bloqueado", new Object[]{espera}, LocaleContextHolder.getLocale()), espera);
+        }
+        Authentication authentication;
+        try {
+            authentication = authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken(email, password)
+            );
+        } catch (AuthenticationException e) {
+            limitadorLogin.fallo(email, ip);
+            throw e;
+        }
+        Usuario usuario = ((CuentaUsuario) authentication.getPrincipal()).getUsuario();
+        return new JwtResponse(jwtUtil.generateToken(usuario), new UserDtoResponse(usuario),
+                tokenRefrescoService.emitir(usuario.getId()));
+    }
+
+    /**
+     * Renueva la sesión con un token de refresco, sin verificar de nuevo la contraseña.
+     *
+     * <p>El token de refresco se consume y se devuelve otro junto con un nuevo token JWT.</p>
+     *
+     * @param refreshToken token de refresco recibido en el login o en la renovación anterior.
+     * @return nuevo token JWT, nuevo token de refresco y datos del usuario.
+     * @throws BadCredentialsException si el token de refresco no es válido o el usuario ya no existe.
+     */
+    public JwtResponse refrescar(String refreshToken) {
+        TokenRefrescoService.Rotacion rotacion = tokenRefrescoService.rotar(refreshToken);
+        Usuario usuario = usuarioRepository.findById(rotacion.idUsuario())
+                .orElseThrow(() -> new BadCredentialsException(messageSource.getMessage(
+                        "error.refresco.invalido", null, LocaleContextHolder.getLocale())));
+        return new JwtResponse(jwtUtil.generateToken(usuario), new UserDtoResponse(usuario), rotacion.token());
     }
 
     /**
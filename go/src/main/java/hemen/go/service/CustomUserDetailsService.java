@@ -1,12 +1,17 @@
 package hemen.go.service;
 
+import java.util.List;
+
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 import hemen.go.entity.Usuario;
 import hemen.go.repository.UsuarioRepository;
+import hemen.go.security.CuentaUsuario;
 
 /**
  * Implementación personalizada de UserDetailsService para Spring Security.
@@ -19,9 +24,11 @@ import hemen.go.repository.UsuarioRepository;
  *  - Buscar un usuario en la base de datos por su email.
  *  - Lanzar una excepción si el usuario no existe.
  *  - Construir un objeto UserDetails con la información del usuario.
+ *  - Guardar de nuevo la contraseña cuando, tras un login correcto, su hash tiene un coste
+ *    BCrypt menor que el configurado.
  */
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     /** Repositorio para acceder a los usuarios en la base de datos */
     private final UsuarioRepository usuarioRepository;
@@ -41,10 +48,11 @@ public class CustomUserDetailsService implements UserDetailsService {
      * Flujo:
      *  1. Busca el usuario en la base de datos usando UsuarioRepository.
      *  2. Si no existe, lanza UsernameNotFoundException.
-     *  3. Si existe, construye un objeto UserDetails con:
+     *  3. Si existe, construye un objeto {@link CuentaUsuario} con:
      *      - Username: el email del usuario.
      *      - Password: la contraseña almacenada.
-     *      - Roles/authorities: se pueden añadir si el modelo User los define.
+     *      - Roles/authorities: ADMIN o USER.
+     *      - La propia entidad, que usa el login para generar el token.
      *
      * @param email correo electrónico del usuario.
      * @return objeto UserDetails con la información del usuario.
@@ -55,11 +63,27 @@ public class CustomUserDetailsService implements UserDetailsService {
         Usuario user = usuarioRepository.findByEmailPersona(email)
                 .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado con email: " + email));
         String role = user.is_admin() ? "ADMIN" : "USER";
-        
-        return org.springframework.security.core.userdetails.User
-                .withUsername(user.getEmailPersona()) // usamos email como username
-                .password(user.getPass_persona())     // contraseña encriptada con BCrypt
-                .roles(role)              // opcional: añadir roles si están definidos
-                .build();
+
+        // Se conserva la entidad para que el login no tenga que volver a buscar al usuario
+        return new CuentaUsuario(user, List.of(new SimpleGrantedAuthority("ROLE_" + role)));
+    }
+
+    /**
+     * Sustituye el hash de la contraseña tras un login correcto.
+     *
+     * Spring Security lo llama cuando {@code PasswordEncoder.upgradeEncoding} indica que el
+     * hash guardado tiene un coste BCrypt menor que {@code password.bcrypt.coste}, de modo que
+     * las contraseñas se actualizan al nuevo coste sin intervención del usuario.
+     *
+     * @param user usuario recién autenticado, cargado por {@link #loadUserByUsername(String)}.
+     * @param newPassword contraseña codificada con el coste actual.
+     * @return usuario con la contraseña actualizada.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        Usuario usuario = ((CuentaUsuario) user).getUsuario();
+        usuario.setPass_persona(newPassword);
+        usuario = usuarioRepository.save(usuario);
+        return new CuentaUsuario(usuario, user.getAuthorities());
     }
 }
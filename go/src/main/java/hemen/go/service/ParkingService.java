@@ -1,6 +1,7 @@
 package hemen.go.service;
 
 import java.util.List;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,11 +18,12 @@ import hemen.go.dto.response.ParkingDtoFindResponse;
 import hemen.go.dto.response.ParkingDtoResponse;
 import hemen.go.entity.Empresa;
 import hemen.go.entity.Parking;
-import hemen.go.entity.Usuario;
 import hemen.go.repository.ParkingRepository;
 import hemen.go.repository.ReservaRepository;
-import hemen.go.repository.UsuarioRepository;
+import hemen.go.security.UsuarioAutenticado;
+import hemen.go.service.bloqueo.BloqueoPlazaService;
 import hemen.go.service.specification.ParkingSpecs;
+import hemen.go.util.ReintentoOptimista;
 import hemen.go.validator.FechaValidator;
 
 /**
@@ -50,25 +52,29 @@ public class ParkingService {
 
     private final ParkingRepository parkingRepository;
     private final ReservaRepository reservaRepository;
-    private final UsuarioRepository usuarioRepository;
     private final FechaValidator fechaValidator;
     private final MessageSource messageSource;
+    private final BloqueoPlazaService bloqueoPlazaService;
+    private final ReintentoOptimista reintentoOptimista;
 
     /**
      * Constructor con inyección de dependencias.
      *
      * @param parkingRepository repositorio de parkings.
-     * @param usuarioRepository repositorio de usuarios.
      * @param fechaValidator validador de fechas para búsquedas.
      * @param messageSource fuente de mensajes internacionalizados.
+     * @param bloqueoPlazaService bloqueos temporales de plazas, que se tratan como ocupadas.
+     * @param reintentoOptimista reintento de escrituras ante conflictos de versión.
      */
-    public ParkingService(ParkingRepository parkingRepository, UsuarioRepository usuarioRepository,
-                          FechaValidator fechaValidator, ReservaRepository reservaRepository, MessageSource messageSource) {
+    public ParkingService(ParkingRepository parkingRepository,
+                          FechaValidator fechaValidator, ReservaRepository reservaRepository, MessageSource messageSource,
+                          BloqueoPlazaService bloqueoPlazaService, ReintentoOptimista reintentoOptimista) {
         this.parkingRepository = parkingRepository;
-        this.usuarioRepository = usuarioRepository;
         this.reservaRepository = reservaRepository;
         this.fechaValidator = fechaValidator;
         this.messageSource = messageSource;
+        this.bloqueoPlazaService = bloqueoPlazaService;
+        this.reintentoOptimista = reintentoOptimista;
     }
 
     /**
@@ -82,21 +88,18 @@ public class ParkingService {
      *   <li>Transforma las entidades en DTOs de respuesta.</li>
      * </ol>
      *
-     * @param email correo electrónico del usuario.
+     * @param usuario usuario autenticado.
      * @return lista de {@link ParkingDtoResponse} con los parkings de la empresa.
      * @throws UsernameNotFoundException si el usuario no existe o no tiene empresa asociada.
      */
-    public List<ParkingDtoResponse> findByCompanyId(String email) {
-        Usuario user = usuarioRepository.findByEmailPersona(email).orElseThrow(() -> new UsernameNotFoundException(
-                messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale())));
-
-        if (user.getEmpresa() == null || user.getEmpresa().getId() == null) {
-            logger.error("El usuario con email " + email + " no tiene empresa asociada");
+    public List<ParkingDtoResponse> findByCompanyId(UsuarioAutenticado usuario) {
+        if (usuario.getIdEmpresa() == null) {
+            logger.error("El usuario con email " + usuario.getUsername() + " no tiene empresa asociada");
             throw new UsernameNotFoundException(
                     messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale()));
         }
 
-        List<Parking> parking = parkingRepository.findByEmpresa_Id(user.getEmpresa().getId().longValue());
+        List<Parking> parking = parkingRepository.findByEmpresa_Id(usuario.getIdEmpresa());
         return parking.stream().map(ParkingDtoResponse::new).toList();
     }
     
@@ -111,23 +114,20 @@ public class ParkingService {
      *   <li>Transforma las entidades en DTOs de respuesta.</li>
      * </ol>
      *
-     * @param email correo electrónico del usuario.
+     * @param usuario usuario autenticado.
      * @param id del parking.
      * @return  {@link ParkingDtoResponse} con los parkings de la empresa.
      * @throws UsernameNotFoundException si el usuario no existe o no tiene empresa asociada.
      * @throws RuntimeException si el parking no existe o esta asociada a la empresa.
      */
-    public ParkingDtoResponse findByCompanyIdAndId(String email, Long id) {
-        Usuario user = usuarioRepository.findByEmailPersona(email).orElseThrow(() -> new UsernameNotFoundException(
-                messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale())));
-
-        if (user.getEmpresa() == null || user.getEmpresa().getId() == null) {
-            logger.error("El usuario con email " + email + " no tiene empresa asociada");
+    public ParkingDtoResponse findByCompanyIdAndId(UsuarioAutenticado usuario, Long id) {
+        if (usuario.getIdEmpresa() == null) {
+            logger.error("El usuario con email " + usuario.getUsername() + " no tiene empresa asociada");
             throw new UsernameNotFoundException(
                     messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale()));
         }
 
-        Parking parking = parkingRepository.findByIdAndEmpresaId(id, user.getEmpresa().getId().longValue());
+        Parking parking = parkingRepository.findByIdAndEmpresaId(id, usuario.getIdEmpresa());
         if (parking == null) {
         	throw new RuntimeException(
                     messageSource.getMessage("error.parking.no.existe", null, LocaleContextHolder.getLocale()));
@@ -146,7 +146,8 @@ public class ParkingService {
      *   <li>Construye una {@link Specification} con los criterios de búsqueda:
      *       provincia, municipio, disponibilidad, electricidad, aguas residuales, plazas VIP.</li>
      *   <li>Ejecuta la consulta en la base de datos.</li>
-     *   <li>Transforma los resultados en {@link ParkingDtoFindResponse} incluyendo fechas solicitadas.</li>
+     *   <li>Transforma los resultados en {@link ParkingDtoFindResponse} incluyendo fechas solicitadas,
+     *       descartando las plazas con un bloqueo temporal vivo y los parkings que se quedan sin plazas.</li>
      * </ol>
      *
      * @param request objeto {@link FilterParkingRequest} con los criterios de búsqueda.
@@ -167,8 +168,12 @@ public class ParkingService {
         	        .and(ParkingSpecs.conPlazasDisponibles(request.getFechaDesde(), request.getFechaHasta()))
         );
 
+        Set<Long> bloqueadas = bloqueoPlazaService.plazasBloqueadas(request.getFechaDesde(), request.getFechaHasta());
+        boolean conFechas = request.getFechaDesde() != null && request.getFechaHasta() != null;
+
         List<ParkingDtoFindResponse> lista= parkings.stream()
-        .map(p -> new ParkingDtoFindResponse(p, request.getFechaDesde(), request.getFechaHasta()))
+        .map(p -> new ParkingDtoFindResponse(p, request.getFechaDesde(), request.getFechaHasta(), bloqueadas))
+        .filter(p -> !conFechas || !p.getPlazas().isEmpty())
         .toList();
         for (int i=0; i<lista.size();i++) {
         	lista.get(i).setMedia(reservaRepository.mediaReservas(lista.get(i).getId()));
@@ -203,11 +208,14 @@ public class ParkingService {
         return parkingResponse;
     }
     
-    public void crear(String email, ParkingRequest request) {
-        Usuario user = usuarioRepository.findByEmailPersona(email).orElseThrow(() -> new UsernameNotFoundException(
-                messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale())));
+    public void crear(UsuarioAutenticado usuario, ParkingRequest request) {
+        if (usuario.getIdEmpresa() == null) {
+            logger.error("El usuario con email " + usuario.getUsername() + " no tiene empresa asociada");
+            throw new UsernameNotFoundException(
+                    messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale()));
+        }
 
-        Empresa empresa = new Empresa(); empresa.setId(user.getEmpresa().getId());
+        Empresa empresa = new Empresa(); empresa.setId(usuario.getIdEmpresa());
       
         Parking parking = new Parking();
         parking.setEmpresa(empresa);
@@ -238,12 +246,19 @@ public class ParkingService {
     }
     
     
-    public void update(String email, ParkingUpdateRequest request) {
-        Usuario user = usuarioRepository.findByEmailPersona(email).orElseThrow(() -> new UsernameNotFoundException(
-                messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale())));
+    public void update(UsuarioAutenticado usuario, ParkingUpdateRequest request) {
+        reintentoOptimista.ejecutar(() -> actualizar(usuario, request));
+    }
+
+    private void actualizar(UsuarioAutenticado usuario, ParkingUpdateRequest request) {
+        if (usuario.getIdEmpresa() == null) {
+            logger.error("El usuario con email " + usuario.getUsername() + " no tiene empresa asociada");
+            throw new UsernameNotFoundException(
+                    messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale()));
+        }
 
-        Empresa empresa = new Empresa(); empresa.setId(user.getEmpresa().getId());
-        Parking parking = parkingRepository.findByIdAndEmpresaId(request.getIdParking(),user.getEmpresa().getId());
+        Empresa empresa = new Empresa(); empresa.setId(usuario.getIdEmpresa());
+        Parking parking = parkingRepository.findByIdAndEmpresaId(request.getIdParking(),usuario.getIdEmpresa());
       
         if (parking == null) {
         	throw new RuntimeException(
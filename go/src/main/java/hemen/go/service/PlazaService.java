@@ -11,11 +11,12 @@ import hemen.go.dto.request.PlazaRequest;
 import hemen.go.dto.response.PlazaResponse;
 import hemen.go.entity.Parking;
 import hemen.go.entity.Plaza;
-import hemen.go.entity.Usuario;
 import hemen.go.enums.EstadoPlaza;
 import hemen.go.repository.ParkingRepository;
 import hemen.go.repository.PlazaRepository;
-import hemen.go.repository.UsuarioRepository;
+import hemen.go.security.UsuarioAutenticado;
+import hemen.go.service.evento.DifusionParkingService;
+import hemen.go.util.ReintentoOptimista;
 import jakarta.persistence.EntityNotFoundException;
 
 /**
@@ -44,23 +45,27 @@ public class PlazaService {
 
     private final ParkingRepository parkingRepository;
     private final PlazaRepository plazaRepository;
-    private final UsuarioRepository usuarioRepository;
     private final MessageSource messageSource;
+    private final ReintentoOptimista reintentoOptimista;
+    private final DifusionParkingService difusionParkingService;
 
     /**
      * Constructor con inyección de dependencias.
      *
      * @param parkingRepository repositorio de parkings.
      * @param plazaRepository repositorio de plazas.
-     * @param usuarioRepository repositorio de usuarios.
      * @param messageSource fuente de mensajes internacionalizados.
+     * @param reintentoOptimista reintento de escrituras ante conflictos de versión.
+     * @param difusionParkingService envío en tiempo real de los cambios de estado de las plazas.
      */
     public PlazaService(ParkingRepository parkingRepository, PlazaRepository plazaRepository,
-                        UsuarioRepository usuarioRepository, MessageSource messageSource) {
+                        MessageSource messageSource, ReintentoOptimista reintentoOptimista,
+                        DifusionParkingService difusionParkingService) {
         this.parkingRepository = parkingRepository;
         this.plazaRepository = plazaRepository;
-        this.usuarioRepository = usuarioRepository;
         this.messageSource = messageSource;
+        this.reintentoOptimista = reintentoOptimista;
+        this.difusionParkingService = difusionParkingService;
     }
 
     /**
@@ -73,20 +78,18 @@ public class PlazaService {
      *   <li>Devuelve la plaza en formato {@link PlazaResponse}.</li>
      * </ol>
      *
-     * @param email correo electrónico del usuario.
+     * @param usuario usuario autenticado.
      * @param idPlaza identificador de la plaza.
      * @return objeto {@link PlazaResponse} con la información de la plaza.
      * @throws UsernameNotFoundException si el usuario no existe o no tiene empresa asociada.
      */
-    public PlazaResponse findByCompanyAndPlazaId(String email, Long idPlaza) {
-        Usuario user = usuarioRepository.findByEmailPersona(email).orElseThrow(() -> new UsernameNotFoundException(
-                messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale())));
-        if (user.getEmpresa() == null || user.getEmpresa().getId() == null) {
-            logger.error("El usuario email " + email + " no tiene empresa asociada");
+    public PlazaResponse findByCompanyAndPlazaId(UsuarioAutenticado usuario, Long idPlaza) {
+        if (usuario.getIdEmpresa() == null) {
+            logger.error("El usuario email " + usuario.getUsername() + " no tiene empresa asociada");
             throw new UsernameNotFoundException(
                     messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale()));
         }
-        return plazaRepository.findByIdAndParking_Empresa_Id(user.getEmpresa().getId().longValue(), idPlaza)
+        return plazaRepository.findByIdAndParking_Empresa_Id(usuario.getIdEmpresa(), idPlaza)
                 .map(PlazaResponse::new)
                 .orElseThrow(() -> new UsernameNotFoundException(
                         messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale())));
@@ -104,18 +107,16 @@ public class PlazaService {
      *   <li>Devuelve la plaza en formato {@link PlazaResponse}.</li>
      * </ol>
      *
-     * @param email correo electrónico del usuario.
+     * @param usuario usuario autenticado.
      * @param parkingId identificador del parking.
      * @param request objeto {@link PlazaRequest} con los datos de la plaza.
      * @return objeto {@link PlazaResponse} con la plaza creada.
      * @throws UsernameNotFoundException si el usuario no existe o no tiene empresa asociada.
      * @throws EntityNotFoundException si el parking no existe.
      */
-    public PlazaResponse addPlazaToParking(String email, Long parkingId, PlazaRequest request) {
-        Usuario user = usuarioRepository.findByEmailPersona(email).orElseThrow(() -> new UsernameNotFoundException(
-                messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale())));
-        if (user.getEmpresa() == null || user.getEmpresa().getId() == null) {
-            logger.error("El usuario email " + email + " no tiene empresa asociada");
+    public PlazaResponse addPlazaToParking(UsuarioAutenticado usuario, Long parkingId, PlazaRequest request) {
+        if (usuario.getIdEmpresa() == null) {
+            logger.error("El usuario email " + usuario.getUsername() + " no tiene empresa asociada");
             throw new UsernameNotFoundException(
                     messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale()));
         }
@@ -132,7 +133,9 @@ public class PlazaService {
         plaza.setParking(parking);
 
         Plaza saved = plazaRepository.save(plaza);
-        return new PlazaResponse(saved);
+        PlazaResponse response = new PlazaResponse(saved);
+        difusionParkingService.publicarPlaza(parking.getId(), response.getId(), response.getEstado());
+        return response;
     }
 
     /**
@@ -148,7 +151,10 @@ public class PlazaService {
      *   <li>Devuelve la plaza actualizada en formato {@link PlazaResponse}.</li>
      * </ol>
      *
-     * @param email correo electrónico del usuario.
+     * <p>Si otra petición modifica la plaza a la vez, la operación se repite completa
+     * mediante {@link ReintentoOptimista}.</p>
+     *
+     * @param usuario usuario autenticado.
      * @param parkingId identificador del parking.
      * @param plazaId identificador de la plaza.
      * @param request objeto {@link PlazaRequest} con los nuevos datos.
@@ -157,13 +163,18 @@ public class PlazaService {
      * @throws EntityNotFoundException si el parking o la plaza no existen.
      * @throws IllegalArgumentException si la plaza no pertenece al parking indicado.
      */
-    public PlazaResponse updatePlaza(String email, Long parkingId, Long plazaId, PlazaRequest request) {
-        Usuario user = usuarioRepository.findByEmailPersona(email)
-                .orElseThrow(() -> new UsernameNotFoundException(
-                        messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale())));
+    public PlazaResponse updatePlaza(UsuarioAutenticado usuario, Long parkingId, Long plazaId, PlazaRequest request) {
+        PlazaResponse response = reintentoOptimista.ejecutar(() -> actualizarPlaza(usuario, parkingId, plazaId, request));
+        if (request.getEstado() != null) {
+            // Ya confirmada la transacción
+            difusionParkingService.publicarPlaza(parkingId, response.getId(), response.getEstado());
+        }
+        return response;
+    }
 
-        if (user.getEmpresa() == null || user.getEmpresa().getId() == null) {
-            logger.error("El usuario con email " + email + " no tiene empresa asociada");
+    private PlazaResponse actualizarPlaza(UsuarioAutenticado usuario, Long parkingId, Long plazaId, PlazaRequest request) {
+        if (usuario.getIdEmpresa() == null) {
+            logger.error("El usuario con email " + usuario.getUsername() + " no tiene empresa asociada");
             throw new UsernameNotFoundException(
                     messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale()));
         }
@@ -2,7 +2,10 @@ package hemen.go.service;
 
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 import org.slf4j.Logger;
@@ -12,27 +15,36 @@ import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import hemen.go.dto.request.ReservaRequest;
 import hemen.go.dto.response.ReservaResponse;
-import hemen.go.entity.Parking;
-import hemen.go.entity.Plaza;
 import hemen.go.entity.Reserva;
 import hemen.go.entity.Usuario;
+import hemen.go.enums.TipoEventoReserva;
+import hemen.go.repository.PlazaRepository;
 import hemen.go.repository.ReservaRepository;
 import hemen.go.repository.UsuarioRepository;
+import hemen.go.security.UsuarioAutenticado;
+import hemen.go.service.bloqueo.BloqueoPlazaService;
+import hemen.go.service.evento.EventosReservaService;
+import hemen.go.service.reserva.SolicitudReserva;
+import hemen.go.util.ReintentoOptimista;
 import hemen.go.validator.FechaValidator;
 
 /**
  * Servicio de gestión de reservas para la aplicación Hemengo.
  *
  * Centraliza la lógica de negocio para:
- * - Crear nuevas reservas con validación de fechas, usuario y solapes.
+ * - Crear nuevas reservas con validación de fechas, usuario y solapes, de forma
+ *   síncrona o por lotes desde la cola asíncrona.
  * - Cancelar reservas siguiendo la política de cancelación configurable.
  * - Consultar reservas activas e históricas de un usuario.
  *
  * Notas de negocio:
- * - El estado "1" se considera reserva activa; "0" cancelada.
+ * - El estado "1" se considera reserva activa; "0" cancelada; "2" completada
+ *   (la pasa {@link hemen.go.service.reserva.CompletarReservasJob} al terminar la estancia).
  * - La política de cancelación se evalúa con {@code diasCancelacion} días
  *   tanto por antelación a la fecha de inicio como por antigüedad de la reserva.
  */
@@ -44,8 +56,13 @@ public class ReservaService {
 
     private final UsuarioRepository usuarioRepository;
     private final ReservaRepository reservaRepository;
+    private final PlazaRepository plazaRepository;
     private final FechaValidator fechaValidator;
     private final MessageSource messageSource;
+    private final BloqueoPlazaService bloqueoPlazaService;
+    private final TransactionTemplate transactionTemplate;
+    private final ReintentoOptimista reintentoOptimista;
+    private final EventosReservaService eventosReservaService;
 
     /**
      * Número de días de política de cancelación.
@@ -63,17 +80,32 @@ public class ReservaService {
      *
      * @param usuarioRepository repositorio de usuarios.
      * @param reservaRepository repositorio de reservas.
+     * @param plazaRepository repositorio de plazas.
      * @param fechaValidator validador de fechas para reservas.
      * @param messageSource fuente de mensajes internacionalizados.
+     * @param bloqueoPlazaService bloqueos temporales de plazas.
+     * @param transactionManager gestor de transacciones para los lotes asíncronos.
+     * @param reintentoOptimista reintento de escrituras ante conflictos de versión.
+     * @param eventosReservaService outbox de eventos de reserva (creada, cancelada, puntuada).
      */
     public ReservaService(UsuarioRepository usuarioRepository,
                           ReservaRepository reservaRepository,
+                          PlazaRepository plazaRepository,
                           FechaValidator fechaValidator,
-                          MessageSource messageSource) {
+                          MessageSource messageSource,
+                          BloqueoPlazaService bloqueoPlazaService,
+                          PlatformTransactionManager transactionManager,
+                          ReintentoOptimista reintentoOptimista,
+                          EventosReservaService eventosReservaService) {
         this.usuarioRepository = usuarioRepository;
         this.messageSource = messageSource;
         this.reservaRepository = reservaRepository;
+        this.plazaRepository = plazaRepository;
         this.fechaValidator = fechaValidator;
+        this.bloqueoPlazaService = bloqueoPlazaService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.reintentoOptimista = reintentoOptimista;
+        this.eventosReservaService = eventosReservaService;
     }
 
     /**
@@ -82,16 +114,41 @@ public class ReservaService {
      * Flujo:
      * 1) Verifica que el usuario exista y tenga IBAN registrado.
      * 2) Valida fechas de inicio y fin mediante {@link FechaValidator}.
-     * 3) Comprueba solapes en la plaza para el rango indicado.
-     * 4) Crea y persiste la reserva como activa.
+     * 3) Comprueba solapes en la plaza para el rango indicado, incluidos los bloqueos
+     *    temporales de otros usuarios.
+     * 4) Crea y persiste la reserva como activa, junto con su evento en el outbox, y libera
+     *    el bloqueo propio si lo había.
      *
      * @param email correo electrónico del usuario que realiza la reserva.
      * @param request datos de la reserva: idParking, idPlaza, fechas de inicio y fin.
      * @throws UsernameNotFoundException si el usuario no existe.
      * @throws IllegalArgumentException si el IBAN es inválido, las fechas no son válidas
-     *                                  o existen reservas solapadas.
+     *                                  o existen reservas o bloqueos solapados.
      */
     public void reservar(String email, ReservaRequest request) {
+        Usuario user = validarSolicitud(email, request);
+
+        comprobarDisponibilidad(email, request, List.of());
+
+        // La reserva y su evento se confirman juntos
+        transactionTemplate.executeWithoutResult(status -> eventosReservaService.registrar(
+                TipoEventoReserva.CREADA, reservaRepository.save(nuevaReserva(user, request))));
+        bloqueoPlazaService.consumir(email, request.getIdPlaza(), request.getFecInicio(), request.getFecFin());
+    }
+
+    /**
+     * Validaciones de una reserva que no dependen de la disponibilidad de la plaza.
+     *
+     * <p>Se usa tanto en el modo síncrono como antes de encolar una solicitud asíncrona,
+     * para que el cliente reciba los errores de datos de inmediato.</p>
+     *
+     * @param email correo electrónico del usuario que realiza la reserva.
+     * @param request datos de la reserva.
+     * @return el usuario que reserva.
+     * @throws UsernameNotFoundException si el usuario no existe.
+     * @throws IllegalArgumentException si el IBAN es inválido o las fechas no son válidas.
+     */
+    public Usuario validarSolicitud(String email, ReservaRequest request) {
         Usuario user = usuarioRepository.findByEmailPersona(email).orElseThrow(() -> new UsernameNotFoundException(
                 messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale())));
 
@@ -101,30 +158,88 @@ public class ReservaService {
         }
 
         fechaValidator.validarFechas(request.getFecInicio(), request.getFecFin());
+        return user;
+    }
 
+    /**
+     * Registra en una sola transacción un lote de solicitudes asíncronas de la misma plaza.
+     *
+     * <p>Cada solicitud se comprueba contra las reservas guardadas, los bloqueos de otros
+     * usuarios y las solicitudes ya aceptadas en el propio lote. Las que no caben se
+     * rechazan con su motivo; el resto se insertan juntas y se confirman tras el commit.</p>
+     *
+     * @param solicitudes solicitudes pendientes, todas de la misma plaza.
+     */
+    public void reservarLote(List<SolicitudReserva> solicitudes) {
+        Map<SolicitudReserva, Reserva> aceptadas = new LinkedHashMap<>();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            for (SolicitudReserva solicitud : solicitudes) {
+                LocaleContextHolder.setLocale(solicitud.getLocale());
+                try {
+                    comprobarDisponibilidad(solicitud.getEmail(), solicitud.getRequest(), aceptadas.values());
+                    Usuario user = usuarioRepository.getReferenceById(solicitud.getIdUsuario());
+                    aceptadas.put(solicitud, nuevaReserva(user, solicitud.getRequest()));
+                } catch (IllegalArgumentException e) {
+                    solicitud.rechazar(e.getMessage());
+                }
+            }
+            reservaRepository.saveAll(aceptadas.values());
+            eventosReservaService.registrar(TipoEventoReserva.CREADA, aceptadas.values());
+        });
+
+        aceptadas.forEach((solicitud, reserva) -> {
+            ReservaRequest request = solicitud.getRequest();
+            bloqueoPlazaService.consumir(solicitud.getEmail(), request.getIdPlaza(), request.getFecInicio(), request.getFecFin());
+            solicitud.confirmar(reserva.getId(),
+                    messageSource.getMessage("message.ok.reserva.creada", null, solicitud.getLocale()));
+        });
+    }
+
+    /**
+     * Comprueba que la plaza esté libre para el rango solicitado.
+     *
+     * @param email usuario que reserva; sus propios bloqueos no cuentan.
+     * @param request datos de la reserva.
+     * @param pendientes reservas aceptadas aún no guardadas que también ocupan la plaza.
+     * @throws IllegalArgumentException si hay reservas o bloqueos solapados.
+     */
+    private void comprobarDisponibilidad(String email, ReservaRequest request, Collection<Reserva> pendientes) {
         List<Reserva> solapadas = reservaRepository.findReservasSolapadas(
                 request.getIdPlaza(), request.getFecInicio(), request.getFecFin());
 
-        if (!solapadas.isEmpty()) {
+        boolean solapaPendiente = pendientes.stream().anyMatch(r ->
+                r.getPlaza().getId().equals(request.getIdPlaza())
+                && !r.getFecInicio().isAfter(request.getFecFin())
+                && !r.getFecFin().isBefore(request.getFecInicio()));
+
+        if (!solapadas.isEmpty() || solapaPendiente) {
             String mensaje = messageSource.getMessage("error.reserva.solapada", null, LocaleContextHolder.getLocale());
             throw new IllegalArgumentException(mensaje);
         }
 
-        Reserva reserva = new Reserva();
-        Plaza plaza = new Plaza();
-        Parking parking = new Parking();
-        parking.setId(request.getIdParking());
-        plaza.setId(request.getIdPlaza());
-        plaza.setParking(parking);
+        if (bloqueoPlazaService.bloqueadaPorOtro(request.getIdPlaza(), request.getFecInicio(), request.getFecFin(), email)) {
+            String mensaje = messageSource.getMessage("error.reserva.bloqueada", null, LocaleContextHolder.getLocale());
+            throw new IllegalArgumentException(mensaje);
+        }
+    }
 
+    /**
+     * Construye una reserva activa a partir de la petición.
+     *
+     * <p>La plaza es una referencia gestionada, no una entidad construida a mano: la plaza
+     * tiene versión y Hibernate no admite una entidad separada sin ella. Se llama dentro de
+     * una transacción, que es donde se carga el parking de la plaza para el evento.</p>
+     */
+    private Reserva nuevaReserva(Usuario user, ReservaRequest request) {
+        Reserva reserva = new Reserva();
         reserva.setPersona(user);
-        reserva.setPlaza(plaza);
+        reserva.setPlaza(plazaRepository.getReferenceById(request.getIdPlaza()));
         reserva.setEstado("1");
         reserva.setFecInicio(request.getFecInicio());
         reserva.setFecFin(request.getFecFin());
         reserva.setFecAlta(LocalDate.now());
-
-        reservaRepository.save(reserva);
+        return reserva;
     }
 
     /**
@@ -135,18 +250,21 @@ public class ReservaService {
      * - Reciente: días entre fechaAlta y hoy ≤ diasCancelacion.
      *
      * Si no se cumple alguna de las dos condiciones, la cancelación no es válida.
+     * Ante un conflicto de versión la operación se repite con {@link ReintentoOptimista}.
+     * El evento {@link TipoEventoReserva#CANCELADA} se registra en la misma transacción;
+     * los efectos derivados (p. ej. avisar a la lista de espera) se procesan después.
      *
-     * @param email correo electrónico del usuario propietario de la reserva.
+     * @param usuario usuario autenticado, propietario de la reserva.
      * @param idReserva identificador de la reserva a cancelar.
-     * @throws UsernameNotFoundException si el usuario no existe.
      * @throws IllegalArgumentException si la reserva no existe, no está activa
      *                                  o no cumple la política de cancelación.
      */
-    public void cancelarReserva(String email, Long idReserva) {
-        Usuario user = usuarioRepository.findByEmailPersona(email).orElseThrow(() -> new UsernameNotFoundException(
-                messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale())));
+    public void cancelarReserva(UsuarioAutenticado usuario, Long idReserva) {
+        reintentoOptimista.ejecutar(() -> cancelar(usuario, idReserva));
+    }
 
-        Reserva reserva = reservaRepository.findByIdAndPersonaIdAndEstado(idReserva, user.getId(), "1")
+    private void cancelar(UsuarioAutenticado usuario, Long idReserva) {
+        Reserva reserva = reservaRepository.findByIdAndPersonaIdAndEstado(idReserva, usuario.getIdUsuario(), "1")
                 .orElseThrow(() -> new IllegalArgumentException("No existe la reserva con esos datos"));
 
         LocalDate hoy = LocalDate.now();
@@ -184,16 +302,16 @@ public class ReservaService {
        
 
         reserva.setEstado("0"); // Cancelada
-        reservaRepository.save(reserva);
+        eventosReservaService.registrar(TipoEventoReserva.CANCELADA, reservaRepository.save(reserva));
     }
     
     
-    public void puntuarReserva(String email, Long idReserva,Integer puntuacion) {
-    	Usuario user = usuarioRepository.findByEmailPersona(email)
-                .orElseThrow(() -> new UsernameNotFoundException(
-                        messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale())));
+    public void puntuarReserva(UsuarioAutenticado usuario, Long idReserva,Integer puntuacion) {
+        reintentoOptimista.ejecutar(() -> puntuar(usuario, idReserva, puntuacion));
+    }
 
-        Reserva reserva = reservaRepository.findByIdAndPersonaId(idReserva, user.getId())
+    private void puntuar(UsuarioAutenticado usuario, Long idReserva, Integer puntuacion) {
+        Reserva reserva = reservaRepository.findByIdAndPersonaId(idReserva, usuario.getIdUsuario())
                 .orElseThrow(() -> new IllegalArgumentException("No existe la reserva con esos datos"));
 
         LocalDate hoy = LocalDate.now();
@@ -227,7 +345,7 @@ public class ReservaService {
 
         // 3. Guardar la puntuación
         reserva.setPuntuacion(puntuacion);
-        reservaRepository.save(reserva);
+        eventosReservaService.registrar(TipoEventoReserva.PUNTUADA, reservaRepository.save(reserva));
     }
 
     /**
@@ -236,34 +354,26 @@ public class ReservaService {
      * Nota: El “token” no se gestiona aquí; se asume que {@link ReservaRepository#findReservaActiva}
      * aplica los criterios necesarios (p. ej., estado y pertenencia).
      *
-     * @param email correo del usuario.
+     * @param usuario usuario autenticado.
      * @param idReserva identificador de la reserva.
      * @return la reserva activa si existe.
-     * @throws UsernameNotFoundException si el usuario no existe.
      * @throws IllegalArgumentException si no existe reserva activa con esos datos.
      */
-    public Reserva buscarReservaPorReservaForToken(String email, Long idReserva) {
-        Usuario user = usuarioRepository.findByEmailPersona(email).orElseThrow(() -> new UsernameNotFoundException(
-                messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale())));
-        return reservaRepository.findReservaActiva(user.getId(), idReserva)
+    public Reserva buscarReservaPorReservaForToken(UsuarioAutenticado usuario, Long idReserva) {
+        return reservaRepository.findReservaActiva(usuario.getIdUsuario(), idReserva)
                 .orElseThrow(() -> new IllegalArgumentException(messageSource.getMessage("error.reserva.no.existe", null, LocaleContextHolder.getLocale())));
     }
 
     /**
-     * Obtiene una reserva por su ID y el email del usuario.
+     * Obtiene una reserva por su ID y el usuario autenticado.
      *
      * @param idReserva identificador de la reserva.
-     * @param emailUsuario correo electrónico del usuario.
+     * @param usuario usuario autenticado.
      * @return la reserva encontrada.
-     * @throws UsernameNotFoundException si el usuario no existe.
      * @throws NoSuchElementException si no se encuentra la reserva para ese usuario.
      */
-    public ReservaResponse getReservaByIdAndUsuarioEmail(Long idReserva, String emailUsuario) {
-        Usuario usuario = usuarioRepository.findByEmailPersona(emailUsuario)
-                .orElseThrow(() ->  new UsernameNotFoundException(
-                        messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale())));
-
-        Reserva reserva = reservaRepository.findByIdAndPersonaId(idReserva, usuario.getId())
+    public ReservaResponse getReservaByIdAndUsuario(Long idReserva, UsuarioAutenticado usuario) {
+        Reserva reserva = reservaRepository.findByIdAndPersonaId(idReserva, usuario.getIdUsuario())
                 .orElseThrow(() -> new NoSuchElementException(messageSource.getMessage("error.reserva.no.existe", null, LocaleContextHolder.getLocale())));
         return new ReservaResponse(reserva);
     }
@@ -274,15 +384,11 @@ public class ReservaService {
      * Conversión:
      * - Cada {@link Reserva} se transforma a {@link ReservaResponse} para exponer solo los datos necesarios al cliente.
      *
-     * @param emailUsuario correo electrónico del usuario.
+     * @param usuario usuario autenticado.
      * @return lista de respuestas de reservas históricas.
-     * @throws IllegalArgumentException si el usuario no existe.
      */
-    public List<ReservaResponse> getHistoricoReservas(String emailUsuario) {
-        Usuario usuario = usuarioRepository.findByEmailPersona(emailUsuario)
-                .orElseThrow(() -> new IllegalArgumentException("Usuario no encontrado"));
-
-        List<Reserva> reservas = reservaRepository.findByPersonaIdOrderByFecAltaDesc(usuario.getId());
+    public List<ReservaResponse> getHistoricoReservas(UsuarioAutenticado usuario) {
+        List<Reserva> reservas = reservaRepository.findByPersonaIdOrderByFecAltaDesc(usuario.getIdUsuario());
         return reservas.stream().map(ReservaResponse::new).toList();
     }
 }
@@ -1,21 +1,30 @@
 package hemen.go.service;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.security.Key;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
 import com.google.zxing.WriterException;
-import com.google.zxing.client.j2se.MatrixToImageWriter;
 import com.google.zxing.common.BitMatrix;
 import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
 
-import io.github.cdimascio.dotenv.Dotenv;
+import hemen.go.security.ClavesPuerta;
+import hemen.go.util.PngMonocromo;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.MalformedJwtException;
 
 /**
  * Servicio encargado de la generación de tokens JWT asociados a reservas y accesos,
@@ -24,37 +33,71 @@ import io.jsonwebtoken.security.Keys;
  * <p>Este servicio se utiliza para:
  * <ul>
  *   <li>Generar un token JWT temporal para apertura de puertas.</li>
- *   <li>Generar un código QR en formato PNG a partir de un token.</li>
+ *   <li>Verificar un token de apertura de puertas.</li>
+ *   <li>Generar un código QR en formato PNG o SVG a partir de un token.</li>
  * </ul>
  * 
- * <p>El secreto JWT se obtiene de variables de entorno (.env o System.getenv),
- * y debe tener al menos 32 caracteres para garantizar seguridad.</p>
+ * <p>Los tokens de puerta se firman con la clave privada ES256 de {@link ClavesPuerta},
+ * no con el secreto de los tokens de sesión, para que las puertas puedan verificarlos
+ * con la clave pública sin llamar al servidor.</p>
+ *
+ * <p>Con {@code puerta.token.compacto} los tokens se emiten en el formato compacto de
+ * {@link ClavesPuerta} en lugar de como JWS. Los datos firmados son campos binarios de
+ * ancho fijo (big-endian): int emisión y int caducidad en segundos, long {@code jti}
+ * aleatorio y long usuario, reserva y parking. El token ocupa 166 caracteres del modo
+ * alfanumérico, así que el QR baja de la versión 13 del JWS a la 6. Se aceptan los dos
+ * formatos, de modo que los QR ya emitidos siguen valiendo.</p>
  * 
  * @author 
  */
 @Service
 public class TokenReservaService {
     
-    /** Clave secreta utilizada para firmar los JWT. */
-    private final Key SECRET_KEY;
+    /** Validez de los tokens de apertura de puertas: 1 hora. */
+    public static final long VALIDEZ_TOKEN_PUERTA_MS = 60 * 60 * 1000;
+
+    /** Datos firmados de un token compacto: emisión, caducidad, jti, usuario, reserva y parking. */
+    private static final int TAMANO_DATOS_COMPACTO = Integer.BYTES * 2 + Long.BYTES * 4;
+
+    /** Módulos en blanco alrededor del QR (zona de silencio del estándar). */
+    private static final int ZONA_SILENCIO = 4;
+
+    /** Claves asimétricas con las que se firman y verifican los tokens de puerta. */
+    private final ClavesPuerta clavesPuerta;
+    private final boolean compacto;
+    private final SecureRandom aleatorio = new SecureRandom();
+
+    /** Opciones de codificación del PNG: sin margen, que lo añade {@link PngMonocromo}. */
+    private final Map<EncodeHintType, Object> opcionesPng = new EnumMap<>(EncodeHintType.class);
+    /** Opciones de codificación del SVG: el margen va dentro de la matriz. */
+    private final Map<EncodeHintType, Object> opcionesSvg = new EnumMap<>(EncodeHintType.class);
+    private final PngMonocromo pngMonocromo;
 
     /**
-     * Constructor del servicio. Inicializa la clave secreta JWT a partir de
-     * variables de entorno y valida su longitud mínima.
+     * Constructor del servicio.
      *
-     * @param usuarioRepository repositorio de usuarios
-     * @param messageSource fuente de mensajes para i18n
-     * @throws IllegalStateException si la clave JWT no está definida o es demasiado corta
+     * @param clavesPuerta claves de firma de los tokens de puerta
+     * @param correccion nivel de corrección de errores del QR: L, M, Q o H ({@code qr.correccion})
+     * @param pixelesModulo lado en píxeles de cada módulo del PNG ({@code qr.modulo.pixeles})
+     * @param compacto si los tokens de puerta se emiten en formato compacto ({@code puerta.token.compacto})
      */
-    public TokenReservaService() {
-        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
-        String secret = dotenv.get("JWT_SECRET", System.getenv("JWT_SECRET"));
-
-        if (secret == null || secret.length() < 32) {
-            throw new IllegalStateException("JWT_SECRET no definido o demasiado corto (mínimo 32 caracteres)");
+    public TokenReservaService(ClavesPuerta clavesPuerta,
+                               @Value("${qr.correccion:L}") String correccion,
+                               @Value("${qr.modulo.pixeles:4}") int pixelesModulo,
+                               @Value("${puerta.token.compacto:true}") boolean compacto) {
+        this.clavesPuerta = clavesPuerta;
+        this.compacto = compacto;
+        ErrorCorrectionLevel nivel;
+        try {
+            nivel = ErrorCorrectionLevel.valueOf(correccion.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("qr.correccion debe ser L, M, Q o H: " + correccion);
         }
-
-        this.SECRET_KEY = Keys.hmacShaKeyFor(secret.getBytes());
+        opcionesSvg.put(EncodeHintType.ERROR_CORRECTION, nivel);
+        opcionesPng.put(EncodeHintType.ERROR_CORRECTION, nivel);
+        opcionesPng.put(EncodeHintType.MARGIN, 0);
+        this.pngMonocromo = new PngMonocromo(pixelesModulo, ZONA_SILENCIO,
+                Runtime.getRuntime().availableProcessors());
     }
     
     /**
@@ -95,34 +138,85 @@ public class TokenReservaService {
      *   <li>ID del usuario</li>
      *   <li>ID de la reserva</li>
      *   <li>ID del parking</li>
+     *   <li>Identificador único del token ({@code jti}), para que solo pueda usarse una vez</li>
      * </ul>
      * </p>
      *
      * @param userId identificador del usuario
      * @param idReserva identificador de la reserva
      * @param idParking identificador del parking
-     * @return token JWT firmado válido por 1 hora
+     * @return token firmado con ES256 y válido por 1 hora, compacto o JWS según {@code puerta.token.compacto}
      */
     public String generarTokenPuerta(Long userId, Long idReserva, Long idParking) {
-        long validez = 60 * 60 * 1000; // 1 hora en milisegundos
+        if (compacto) {
+            long emision = System.currentTimeMillis() / 1000;
+            ByteBuffer datos = ByteBuffer.allocate(TAMANO_DATOS_COMPACTO)
+                    .putInt((int) emision)
+                    .putInt((int) (emision + VALIDEZ_TOKEN_PUERTA_MS / 1000))
+                    .putLong(aleatorio.nextLong())
+                    .putLong(userId)
+                    .putLong(idReserva)
+                    .putLong(idParking);
+            return clavesPuerta.firmarCompacto(datos.array());
+        }
+
         Date issuedAt = new Date();
-        Date expiration = new Date(System.currentTimeMillis() + validez);
+        Date expiration = new Date(System.currentTimeMillis() + VALIDEZ_TOKEN_PUERTA_MS);
         
         return Jwts.builder()
+                .setHeaderParam("kid", clavesPuerta.kid())
+                .setId(UUID.randomUUID().toString())
                 .setSubject("abrir-puerta")
                 .claim("idUsuario", userId)
                 .claim("idReserva", idReserva)
                 .claim("idParking", idParking)
                 .setIssuedAt(issuedAt)
                 .setExpiration(expiration)
-                .signWith(SECRET_KEY)
+                .signWith(clavesPuerta.clavePrivada(), ClavesPuerta.ALGORITMO)
                 .compact();
     }
+
+    /**
+     * Verifica la firma y la caducidad de un token de apertura de puertas, JWS o compacto.
+     *
+     * <p>Los datos de un token compacto se devuelven con los mismos claims que el JWS
+     * ({@code jti}, {@code idUsuario}, {@code idReserva}, {@code idParking}, {@code iat} y
+     * {@code exp}).</p>
+     *
+     * @param token token leído del QR
+     * @return claims del token
+     * @throws io.jsonwebtoken.JwtException si el token no es válido o ha caducado
+     */
+    public Claims validarTokenPuerta(String token) {
+        if (token == null || !token.startsWith(ClavesPuerta.PREFIJO_COMPACTO)) {
+            return clavesPuerta.verificar(token).getBody();
+        }
+        ByteBuffer datos = ByteBuffer.wrap(clavesPuerta.verificarCompacto(token));
+        if (datos.remaining() != TAMANO_DATOS_COMPACTO) {
+            throw new MalformedJwtException("Datos del token de puerta compacto mal formados");
+        }
+        long emision = Integer.toUnsignedLong(datos.getInt()) * 1000;
+        long expiracion = Integer.toUnsignedLong(datos.getInt()) * 1000;
+        Claims claims = Jwts.claims()
+                .setId(Long.toHexString(datos.getLong()))
+                .setSubject("abrir-puerta")
+                .setIssuedAt(new Date(emision))
+                .setExpiration(new Date(expiracion));
+        claims.put("idUsuario", datos.getLong());
+        claims.put("idReserva", datos.getLong());
+        claims.put("idParking", datos.getLong());
+        if (expiracion <= System.currentTimeMillis()) {
+            throw new ExpiredJwtException(null, claims, "Token de puerta caducado");
+        }
+        return claims;
+    }
     
     /**
      * Genera un código QR en formato PNG a partir de un token JWT.
      * 
-     * <p>El QR se genera con tamaño 300x300 píxeles.</p>
+     * <p>La imagen es en blanco y negro, de 1 bit por píxel, con {@code qr.modulo.pixeles}
+     * píxeles por módulo y la zona de silencio de 4 módulos. Se escribe directamente desde la
+     * matriz con {@link PngMonocromo}, sin dibujar un {@code BufferedImage}.</p>
      *
      * @param token cadena JWT a codificar en el QR
      * @return arreglo de bytes que representa la imagen PNG del QR
@@ -130,11 +224,55 @@ public class TokenReservaService {
      * @throws IOException si ocurre un error al escribir la imagen
      */
     public byte[] generarQRBytes(String token) throws WriterException, IOException {
-        QRCodeWriter qrCodeWriter = new QRCodeWriter();
-        BitMatrix bitMatrix = qrCodeWriter.encode(token, BarcodeFormat.QR_CODE, 300, 300);
+        BitMatrix bitMatrix = new QRCodeWriter().encode(token, BarcodeFormat.QR_CODE, 0, 0, opcionesPng);
+        return pngMonocromo.escribir(bitMatrix);
+    }
+
+    /**
+     * Genera un código QR en formato SVG a partir de un token JWT.
+     *
+     * <p>El QR se codifica a un módulo por unidad y cada fila se dibuja como trazos
+     * horizontales de un único {@code path}, con desplazamientos relativos entre tramos
+     * negros. La imagen escala sin perder nitidez y, comprimida en la respuesta, ocupa
+     * aproximadamente lo mismo que el PNG.</p>
+     *
+     * @param token cadena JWT a codificar en el QR
+     * @return documento SVG en UTF-8
+     * @throws WriterException si ocurre un error al generar el QR
+     */
+    public byte[] generarQRSvg(String token) throws WriterException {
+        BitMatrix bitMatrix = new QRCodeWriter().encode(token, BarcodeFormat.QR_CODE, 0, 0, opcionesSvg);
+        int ancho = bitMatrix.getWidth();
+        int alto = bitMatrix.getHeight();
 
-        ByteArrayOutputStream pngOutputStream = new ByteArrayOutputStream();
-        MatrixToImageWriter.writeToStream(bitMatrix, "PNG", pngOutputStream);
-        return pngOutputStream.toByteArray();
+        StringBuilder svg = new StringBuilder(256 + ancho * alto);
+        svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 ").append(ancho).append(' ').append(alto)
+                .append("\" width=\"300\" height=\"300\" shape-rendering=\"crispEdges\">")
+                .append("<rect width=\"100%\" height=\"100%\" fill=\"#fff\"/>")
+                // Trazo de una unidad centrado en la fila: y + 0,5
+                .append("<path stroke=\"#000\" transform=\"translate(0 .5)\" d=\"");
+        for (int y = 0; y < alto; y++) {
+            int x = 0;
+            int fin = -1;
+            while (x < ancho) {
+                if (!bitMatrix.get(x, y)) {
+                    x++;
+                    continue;
+                }
+                int inicio = x;
+                while (x < ancho && bitMatrix.get(x, y)) {
+                    x++;
+                }
+                if (fin < 0) {
+                    svg.append('M').append(inicio).append(' ').append(y);
+                } else {
+                    svg.append('m').append(inicio - fin).append(" 0");
+                }
+                svg.append('h').append(x - inicio);
+                fin = x;
+            }
+        }
+        svg.append("\"/></svg>");
+        return svg.toString().getBytes(StandardCharsets.UTF_8);
     }
 }
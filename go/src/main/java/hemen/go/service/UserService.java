@@ -16,6 +16,9 @@ import hemen.go.dto.request.RegisterRequest;
 import hemen.go.dto.response.UserDtoResponse;
 import hemen.go.entity.Usuario;
 import hemen.go.repository.UsuarioRepository;
+import hemen.go.security.RevocacionTokens;
+import hemen.go.security.UsuarioAutenticado;
+import hemen.go.service.sesion.TokenRefrescoService;
 
 /**
  * Servicio para la gestión de usuarios en la aplicación Hemengo.
@@ -55,18 +58,29 @@ public class UserService {
 	/** Fuente de mensajes para internacionalización (i18n). */
 	private final MessageSource messageSource;
 
+	/** Revocación de tokens al cambiar la contraseña. */
+	private final RevocacionTokens revocacionTokens;
+
+	/** Tokens de refresco, que también se revocan al cambiar la contraseña. */
+	private final TokenRefrescoService tokenRefrescoService;
+
 	/**
 	 * Constructor con inyección de dependencias.
 	 *
 	 * @param usuarioRepository repositorio para acceder a los usuarios.
 	 * @param passwordEncoder   codificador de contraseñas.
 	 * @param messageSource     fuente de mensajes para i18n.
+	 * @param revocacionTokens  revocación de tokens de sesión.
+	 * @param tokenRefrescoService tokens de refresco de sesión.
 	 */
 	public UserService(UsuarioRepository usuarioRepository, PasswordEncoder passwordEncoder,
-			MessageSource messageSource) {
+			MessageSource messageSource, RevocacionTokens revocacionTokens,
+			TokenRefrescoService tokenRefrescoService) {
 		this.usuarioRepository = usuarioRepository;
 		this.passwordEncoder = passwordEncoder;
 		this.messageSource = messageSource;
+		this.revocacionTokens = revocacionTokens;
+		this.tokenRefrescoService = tokenRefrescoService;
 	}
 
 	/**
@@ -183,6 +197,7 @@ public class UserService {
 						messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale())));
 
 		// Validar y actualizar contraseña
+		boolean cambioPassword = false;
 		if (updatedData.getPassPersona() != null && !updatedData.getPassPersona().isBlank()
 				&& !updatedData.getPassPersona().equals(usuario.getPass_persona())) {
 			if (!updatedData.getPassPersona().equals(updatedData.getConfirmPassPersona())) {
@@ -192,6 +207,7 @@ public class UserService {
 			}
 			String encodedPassword = passwordEncoder.encode(updatedData.getPassPersona());
 			usuario.setPass_persona(encodedPassword);
+			cambioPassword = true;
 		}
 
 		// Actualizar campos básicos si han cambiado
@@ -212,21 +228,24 @@ public class UserService {
 		}
 
 		Usuario usua = usuarioRepository.save(usuario);
+		if (cambioPassword) {
+			// Los tokens emitidos con la contraseña anterior dejan de ser válidos
+			revocacionTokens.revocar(email);
+			tokenRefrescoService.revocarUsuario(usua.getId());
+		}
 
 		return new UserDtoResponse(usua.getId(), usua.getNombre_persona(), usua.getApellidos_persona(),
 				usua.getFec_nacimiento_persona(), usua.getDni_persona(), usua.getIban_persona(), usua.getEmailPersona(),
 				usua.is_admin(), usua.getEmpresa() != null ? usua.getEmpresa().getNombreEmpresa() : null);
 	}
 
-	public List<UserDtoResponse> findByCompanyId(String email) {
-		Usuario user = usuarioRepository.findByEmailPersona(email).orElseThrow(() -> new UsernameNotFoundException(
-				messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale())));
-		if (null == user.getEmpresa() || null == user.getEmpresa().getId()) {
-			logger.error("El usuario email" + email + " no tiene empresa asociada");
+	public List<UserDtoResponse> findByCompanyId(UsuarioAutenticado usuario) {
+		if (null == usuario.getIdEmpresa()) {
+			logger.error("El usuario email" + usuario.getUsername() + " no tiene empresa asociada");
 			throw new UsernameNotFoundException(
 					messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale()));
 		}
-		List<Usuario> usuarios = usuarioRepository.findByEmpresa_Id(user.getEmpresa().getId().longValue());
+		List<Usuario> usuarios = usuarioRepository.findByEmpresa_Id(usuario.getIdEmpresa());
 		return usuarios.stream().map(UserDtoResponse::new).toList();
 	}
 }
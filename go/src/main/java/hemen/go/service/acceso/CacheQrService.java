@@ -0,0 +1,238 @@
+package hemen.go.service.acceso;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.zxing.WriterException;
+
+import hemen.go.entity.EventoReserva;
+import hemen.go.enums.TipoEventoReserva;
+import hemen.go.service.TokenReservaService;
+import hemen.go.service.evento.SuscriptorEventosReserva;
+
+/**
+ * Caché de los QR de apertura ya generados, para no firmar el token ni dibujar el PNG cada
+ * vez que el usuario vuelve a mostrar el QR en la puerta.
+ *
+ * <ul>
+ *   <li>La clave es la reserva y la ventana de validez del token: el tiempo se divide en
+ *       ventanas de la validez de un token menos {@code qr.cache.margen.minutos}. El token se
+ *       firma con la primera petición de la ventana, así que cualquier QR servido desde la
+ *       caché tiene por delante al menos ese margen de validez. En la ventana siguiente se
+ *       firma uno nuevo y el anterior acaba saliendo por LRU.</li>
+ *   <li>El tamaño está acotado en bytes ({@code qr.cache.bytes}), no en entradas: al superarlo
+ *       se descartan los QR usados hace más tiempo.</li>
+ *   <li>Un QR deja de servirse en cuanto abre una puerta, porque su {@code jti} ya está
+ *       gastado, y cuando se cancela la reserva (evento del outbox).</li>
+ *   <li>El PNG se dibuja al firmar el token; el SVG solo la primera vez que se pide, y desde
+ *       entonces también cuenta en el tamaño de la caché.</li>
+ * </ul>
+ *
+ * <p>La caché no comprueba permisos: quien la llama debe haber comprobado antes que la
+ * reserva es del usuario.</p>
+ */
+@Service
+public class CacheQrService implements SuscriptorEventosReserva {
+
+    /**
+     * QR de una reserva: el token, sus imágenes y una etiqueta que cambia con el token, para
+     * responder a peticiones condicionales ({@code ETag}).
+     */
+    public static final class QrReserva {
+        private final Clave clave;
+        private final String token;
+        private final byte[] png;
+        private final long expiracionMs;
+        private final String etiqueta;
+        /** Se dibuja la primera vez que se pide; se asigna con el cerrojo de la caché. */
+        private volatile byte[] svg;
+
+        QrReserva(Clave clave, String token, byte[] png, long expiracionMs) {
+            this.clave = clave;
+            this.token = token;
+            this.png = png;
+            this.expiracionMs = expiracionMs;
+            this.etiqueta = huella(token);
+        }
+
+        /** Token de puerta codificado en el QR. */
+        public String token() {
+            return token;
+        }
+
+        /** Imagen PNG del QR. */
+        public byte[] png() {
+            return png;
+        }
+
+        /** Caducidad aproximada del token, en milisegundos. */
+        public long expiracionMs() {
+            return expiracionMs;
+        }
+
+        /** Identificador del token para {@code ETag}; cada formato le añade su sufijo. */
+        public String etiqueta() {
+            return etiqueta;
+        }
+    }
+
+    private record Clave(long idReserva, long ventana) {
+    }
+
+    /** Bytes aproximados de una entrada además del PNG y el token (objetos, nodo del mapa). */
+    private static final int SOBRECOSTE_ENTRADA = 160;
+
+    private final TokenReservaService tokenReservaService;
+    private final long presupuesto;
+    private final long ventanaMs;
+
+    /** Mapa en orden de acceso: el primero es el menos usado recientemente. Se accede con su cerrojo. */
+    private final LinkedHashMap<Clave, QrReserva> entradas = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param tokenReservaService servicio que firma los tokens y dibuja los QR.
+     * @param presupuesto bytes máximos de la caché ({@code qr.cache.bytes}).
+     * @param margenMinutos validez mínima que le queda a un token servido desde la caché ({@code qr.cache.margen.minutos}).
+     */
+    public CacheQrService(TokenReservaService tokenReservaService,
+                          @Value("${qr.cache.bytes:8388608}") long presupuesto,
+                          @Value("${qr.cache.margen.minutos:10}") long margenMinutos) {
+        this.tokenReservaService = tokenReservaService;
+        this.presupuesto = presupuesto;
+        long margenMs = margenMinutos * 60 * 1000;
+        if (margenMs < 0 || margenMs >= TokenReservaService.VALIDEZ_TOKEN_PUERTA_MS) {
+            throw new IllegalStateException("qr.cache.margen.minutos debe ser menor que la validez del token de puerta");
+        }
+        this.ventanaMs = TokenReservaService.VALIDEZ_TOKEN_PUERTA_MS - margenMs;
+    }
+
+    /**
+     * Devuelve el QR de la reserva para la ventana actual, generándolo si no está en caché.
+     *
+     * @param idUsuario identificador del usuario de la reserva.
+     * @param idReserva identificador de la reserva.
+     * @param idParking identificador del parking de la reserva.
+     * @return token y PNG del QR.
+     * @throws WriterException si ocurre un error al generar el QR.
+     * @throws IOException si ocurre un error al escribir la imagen.
+     */
+    public QrReserva obtener(Long idUsuario, Long idReserva, Long idParking) throws WriterException, IOException {
+        long ahora = System.currentTimeMillis();
+        Clave clave = new Clave(idReserva, ahora / ventanaMs);
+        synchronized (entradas) {
+            QrReserva qr = entradas.get(clave);
+            if (qr != null) {
+                return qr;
+            }
+        }
+        // Se dibuja fuera del cerrojo; si dos peticiones coinciden, se queda el primero
+        String token = tokenReservaService.generarTokenPuerta(idUsuario, idReserva, idParking);
+        QrReserva nuevo = new QrReserva(clave, token, tokenReservaService.generarQRBytes(token),
+                ahora + TokenReservaService.VALIDEZ_TOKEN_PUERTA_MS);
+        synchronized (entradas) {
+            QrReserva existente = entradas.putIfAbsent(clave, nuevo);
+            if (existente != null) {
+                return existente;
+            }
+            bytes += tamano(nuevo);
+            Iterator<QrReserva> menosUsados = entradas.values().iterator();
+            while (bytes > presupuesto && menosUsados.hasNext()) {
+                bytes -= tamano(menosUsados.next());
+                menosUsados.remove();
+            }
+        }
+        return nuevo;
+    }
+
+    /**
+     * Devuelve el SVG del QR, dibujándolo la primera vez.
+     *
+     * @param qr QR obtenido con {@link #obtener}.
+     * @return documento SVG en UTF-8.
+     * @throws WriterException si ocurre un error al generar el QR.
+     */
+    public byte[] svg(QrReserva qr) throws WriterException {
+        byte[] svg = qr.svg;
+        if (svg != null) {
+            return svg;
+        }
+        svg = tokenReservaService.generarQRSvg(qr.token());
+        synchronized (entradas) {
+            if (qr.svg != null) {
+                return qr.svg;
+            }
+            // Solo cuenta si sigue en la caché; si ya salió, nunca se descontará
+            if (entradas.get(qr.clave) == qr) {
+                bytes += svg.length;
+            }
+            qr.svg = svg;
+        }
+        return svg;
+    }
+
+    /**
+     * Deja de servir el QR en caché de una reserva; la siguiente petición firma un token nuevo.
+     *
+     * @param idReserva identificador de la reserva.
+     */
+    public void invalidar(Long idReserva) {
+        if (idReserva == null) {
+            return;
+        }
+        long ventana = System.currentTimeMillis() / ventanaMs;
+        synchronized (entradas) {
+            // Las ventanas anteriores ya no se piden: basta con la actual y la que acaba de terminar
+            quitar(new Clave(idReserva, ventana));
+            quitar(new Clave(idReserva, ventana - 1));
+        }
+    }
+
+    /**
+     * Invalida los QR de las reservas canceladas.
+     */
+    @Override
+    public void procesar(List<EventoReserva> eventos) {
+        for (EventoReserva evento : eventos) {
+            if (evento.getTipo() == TipoEventoReserva.CANCELADA) {
+                invalidar(evento.getIdReserva());
+            }
+        }
+    }
+
+    private void quitar(Clave clave) {
+        QrReserva qr = entradas.remove(clave);
+        if (qr != null) {
+            bytes -= tamano(qr);
+        }
+    }
+
+    private static long tamano(QrReserva qr) {
+        // Los caracteres del token son ASCII; en la JVM ocupan un byte cada uno
+        byte[] svg = qr.svg;
+        return qr.png().length + qr.token().length() + (svg != null ? svg.length : 0) + SOBRECOSTE_ENTRADA;
+    }
+
+    /** Primeros 96 bits del SHA-256 del token, en Base64url. */
+    private static String huella(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, 12));
+        } catch (GeneralSecurityException e) {
+            // Todas las JVM incluyen SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package hemen.go.service.acceso;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.stereotype.Service;
+
+import hemen.go.entity.EventoReserva;
+import hemen.go.enums.TipoEventoReserva;
+import hemen.go.repository.ParkingRepository;
+import hemen.go.repository.ReservaRepository;
+import hemen.go.service.evento.SuscriptorEventosReserva;
+
+/**
+ * Listas de reservas permitidas hoy en cada parking, para que las puertas decidan sin
+ * llamar al servidor en cada vehículo.
+ *
+ * <p>La primera vez que una puerta pide la lista de su parking (y al cambiar de día) se
+ * construye con las reservas activas de hoy. Después se mantiene con los eventos del outbox
+ * ({@link TipoEventoReserva#CREADA} y {@link TipoEventoReserva#CANCELADA}): cada cambio
+ * efectivo sube la versión y queda en un registro de cambios acotado
+ * ({@code puerta.permitidas.cambios.max}). Una puerta que ya tiene la lista pide solo los
+ * cambios desde su versión; si su generación ya no existe o su versión es demasiado antigua,
+ * recibe la lista completa.</p>
+ *
+ * <p>Formato binario (big-endian). Los identificadores van ordenados y cada uno se codifica
+ * como diferencia con el anterior en varint sin signo (7 bits por byte), así que una lista
+ * de reservas con identificadores cercanos ocupa uno o dos bytes por reserva.</p>
+ * <pre>
+ * byte   tipo: 1 = lista completa, 2 = cambios
+ * long   generación: cambia cada vez que la lista se reconstruye
+ * int    versión dentro de la generación
+ * int    fecha de la lista, en días desde 1970-01-01
+ * lista completa: varint n, n ids
+ * cambios:        varint n, n ids permitidos; varint m, m ids retirados
+ * </pre>
+ *
+ * <p>Las listas están en memoria y solo existen para los parkings cuyas puertas las piden.</p>
+ */
+@Service
+public class ListaPermitidasService implements SuscriptorEventosReserva {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListaPermitidasService.class);
+
+    static final byte TIPO_LISTA = 1;
+    static final byte TIPO_CAMBIOS = 2;
+
+    /** Cambio efectivo de la lista: la versión a la que lleva y la reserva afectada. */
+    private record Cambio(int version, long idReserva) {
+    }
+
+    /** Lista de un parking. Se accede siempre con su cerrojo. */
+    private static final class Lista {
+        LocalDate fecha;
+        long generacion;
+        int version;
+        final Set<Long> ids = new HashSet<>();
+        final Deque<Cambio> cambios = new ArrayDeque<>();
+        /** Lista completa ya codificada para la versión actual, o {@code null}. */
+        byte[] codificada;
+    }
+
+    private final ReservaRepository reservaRepository;
+    private final ParkingRepository parkingRepository;
+    private final MessageSource messageSource;
+    private final int maxCambios;
+
+    private final Map<Long, Lista> porParking = new ConcurrentHashMap<>();
+    private long ultimaGeneracion;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param reservaRepository repositorio de reservas.
+     * @param parkingRepository repositorio de parkings.
+     * @param messageSource fuente de mensajes internacionalizados.
+     * @param maxCambios cambios guardados por parking para enviar solo diferencias ({@code puerta.permitidas.cambios.max}).
+     */
+    public ListaPermitidasService(ReservaRepository reservaRepository, ParkingRepository parkingRepository,
+                                  MessageSource messageSource,
+                                  @Value("${puerta.permitidas.cambios.max:1000}") int maxCambios) {
+        this.reservaRepository = reservaRepository;
+        this.parkingRepository = parkingRepository;
+        this.messageSource = messageSource;
+        this.maxCambios = maxCambios;
+    }
+
+    /**
+     * Devuelve la lista de un parking codificada, completa o solo con los cambios.
+     *
+     * @param idParking identificador del parking.
+     * @param generacion generación que tiene la puerta, o {@code null} si no tiene ninguna.
+     * @param version versión que tiene la puerta, o {@code null}.
+     * @return cambios desde la versión indicada si es posible; si no, la lista completa.
+     * @throws IllegalArgumentException si el parking no existe.
+     */
+    public byte[] obtener(Long idParking, Long generacion, Integer version) {
+        Lista lista = porParking.computeIfAbsent(idParking, id -> new Lista());
+        synchronized (lista) {
+            LocalDate hoy = LocalDate.now();
+            if (!hoy.equals(lista.fecha)) {
+                construir(idParking, lista, hoy);
+            }
+            if (generacion != null && version != null && generacion == lista.generacion
+                    && version <= lista.version && cambiosDisponibles(lista, version)) {
+                return cambios(lista, version);
+            }
+            if (lista.codificada == null) {
+                lista.codificada = completa(lista);
+            }
+            return lista.codificada;
+        }
+    }
+
+    /**
+     * Aplica a las listas construidas las reservas creadas y canceladas.
+     */
+    @Override
+    public void procesar(List<EventoReserva> eventos) {
+        for (EventoReserva evento : eventos) {
+            if (evento.getIdParking() == null || evento.getTipo() == TipoEventoReserva.PUNTUADA) {
+                continue;
+            }
+            Lista lista = porParking.get(evento.getIdParking());
+            if (lista == null) {
+                continue;
+            }
+            synchronized (lista) {
+                if (lista.fecha == null) {
+                    continue;
+                }
+                boolean cambia;
+                if (evento.getTipo() == TipoEventoReserva.CREADA) {
+                    // Solo interesan las reservas que incluyen el día de la lista
+                    cambia = evento.getFecInicio() != null && evento.getFecFin() != null
+                            && !lista.fecha.isBefore(evento.getFecInicio()) && !lista.fecha.isAfter(evento.getFecFin())
+                            && lista.ids.add(evento.getIdReserva());
+                } else {
+                    cambia = lista.ids.remove(evento.getIdReserva());
+                }
+                // La entrega es "al menos una vez": un evento repetido no cambia nada
+                if (cambia) {
+                    lista.version++;
+                    lista.codificada = null;
+                    lista.cambios.addLast(new Cambio(lista.version, evento.getIdReserva()));
+                    if (lista.cambios.size() > maxCambios) {
+                        lista.cambios.removeFirst();
+                    }
+                }
+            }
+        }
+    }
+
+    private void construir(Long idParking, Lista lista, LocalDate hoy) {
+        if (lista.fecha == null && !parkingRepository.existsById(idParking)) {
+            porParking.remove(idParking, lista);
+            throw new IllegalArgumentException(
+                    messageSource.getMessage("error.parking.no.existe", null, LocaleContextHolder.getLocale()));
+        }
+        List<Long> ids = reservaRepository.findIdsReservasActivasParking(idParking, hoy);
+        lista.fecha = hoy;
+        lista.generacion = nuevaGeneracion();
+        lista.version = 0;
+        lista.ids.clear();
+        lista.ids.addAll(ids);
+        lista.cambios.clear();
+        lista.codificada = null;
+        logger.info("Lista de reservas permitidas del parking {} para {}: {} reservas", idParking, hoy, ids.size());
+    }
+
+    /** Generación siempre creciente, aunque el reloj no avance entre dos reconstrucciones. */
+    private synchronized long nuevaGeneracion() {
+        ultimaGeneracion = Math.max(ultimaGeneracion + 1, System.currentTimeMillis());
+        return ultimaGeneracion;
+    }
+
+    /** Comprueba que el registro conserva todos los cambios posteriores a {@code version}. */
+    private static boolean cambiosDisponibles(Lista lista, int version) {
+        return version == lista.version || (!lista.cambios.isEmpty() && lista.cambios.peekFirst().version() <= version + 1);
+    }
+
+    private static byte[] completa(Lista lista) {
+        long[] ids = lista.ids.stream().mapToLong(Long::longValue).sorted().toArray();
+        return codificar(TIPO_LISTA, lista, out -> escribirIds(out, ids));
+    }
+
+    private static byte[] cambios(Lista lista, int desde) {
+        // Cada reserva tocada desde la versión de la puerta va en su estado actual
+        Set<Long> tocadas = new TreeSet<>();
+        for (Cambio cambio : lista.cambios) {
+            if (cambio.version() > desde) {
+                tocadas.add(cambio.idReserva());
+            }
+        }
+        long[] altas = tocadas.stream().filter(lista.ids::contains).mapToLong(Long::longValue).toArray();
+        long[] bajas = tocadas.stream().filter(id -> !lista.ids.contains(id)).mapToLong(Long::longValue).toArray();
+        return codificar(TIPO_CAMBIOS, lista, out -> {
+            escribirIds(out, altas);
+            escribirIds(out, bajas);
+        });
+    }
+
+    private interface Cuerpo {
+        void escribir(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] codificar(byte tipo, Lista lista, Cuerpo cuerpo) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(17 + lista.ids.size() * 2);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(tipo);
+            out.writeLong(lista.generacion);
+            out.writeInt(lista.version);
+            out.writeInt((int) lista.fecha.toEpochDay());
+            cuerpo.escribir(out);
+        } catch (IOException e) {
+            // Un ByteArrayOutputStream no lanza IOException
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Escribe ids ordenados: el número de ids y cada uno como diferencia con el anterior. */
+    private static void escribirIds(DataOutputStream out, long[] ids) throws IOException {
+        escribirVarint(out, ids.length);
+        long anterior = 0;
+        for (long id : ids) {
+            escribirVarint(out, id - anterior);
+            anterior = id;
+        }
+    }
+
+    private static void escribirVarint(DataOutputStream out, long valor) throws IOException {
+        while ((valor & ~0x7FL) != 0) {
+            out.writeByte((int) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        out.writeByte((int) valor);
+    }
+}
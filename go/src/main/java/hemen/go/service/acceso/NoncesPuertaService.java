@@ -0,0 +1,122 @@
+package hemen.go.service.acceso;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import hemen.go.enums.SentidoAcceso;
+import hemen.go.service.TokenReservaService;
+
+/**
+ * Registro de tokens de puerta ya usados, para que un QR solo abra una vez.
+ *
+ * <p>Cada token de puerta lleva un identificador único ({@code jti}). Al abrir la puerta se
+ * anota aquí; si vuelve a presentarse (por ejemplo, una captura de pantalla del QR) se rechaza.
+ * Un mismo QR sirve para entrar una vez y salir una vez: la entrada y la salida se anotan por
+ * separado.</p>
+ *
+ * <ul>
+ *   <li>Los {@code jti} se agrupan en cubos según el instante de caducidad de su token
+ *       ({@code puerta.nonces.cubo.segundos}). Los cubos forman un anillo que cubre la vida de
+ *       un token.</li>
+ *   <li>Cuando todos los tokens de un cubo han caducado, su firma ya no es válida y no hace
+ *       falta recordarlos: el cubo se descarta entero, sin eliminar entradas una a una.</li>
+ *   <li>Comprobar y anotar es una única inserción en un conjunto concurrente, y la memoria
+ *       está acotada por los tokens usados durante la vida de un token.</li>
+ * </ul>
+ *
+ * <p>El registro está en memoria: con varias instancias, cada una tiene el suyo.</p>
+ */
+@Service
+public class NoncesPuertaService {
+
+    /** Cubo de {@code jti} de tokens que caducan en el mismo intervalo. */
+    private record Cubo(long numero, Set<String> usados) {
+    }
+
+    private final long cuboMs;
+    private final AtomicReferenceArray<Cubo> anillo;
+
+    /**
+     * @param cuboSegundos intervalo de caducidad agrupado en cada cubo ({@code puerta.nonces.cubo.segundos}).
+     */
+    public NoncesPuertaService(@Value("${puerta.nonces.cubo.segundos:60}") long cuboSegundos) {
+        this.cuboMs = Math.max(1, cuboSegundos) * 1000;
+        // Cubos para toda la vida de un token, más el actual y margen para que dos cubos
+        // vigentes no caigan nunca en el mismo hueco
+        int tamano = (int) (TokenReservaService.VALIDEZ_TOKEN_PUERTA_MS / cuboMs) + 3;
+        this.anillo = new AtomicReferenceArray<>(tamano);
+    }
+
+    /**
+     * Anota el uso de un token de puerta.
+     *
+     * @param jti identificador único del token.
+     * @param sentido entrada o salida.
+     * @param expiracionMs caducidad del token, en milisegundos.
+     * @return {@code true} si es el primer uso en ese sentido; {@code false} si ya se había
+     *         usado o si la caducidad queda fuera de la vida de un token.
+     */
+    public boolean primerUso(String jti, SentidoAcceso sentido, long expiracionMs) {
+        long ahora = System.currentTimeMillis();
+        if (jti == null || expiracionMs <= ahora
+                || expiracionMs > ahora + TokenReservaService.VALIDEZ_TOKEN_PUERTA_MS + cuboMs) {
+            return false;
+        }
+        return cubo(expiracionMs / cuboMs).usados().add(uso(jti, sentido));
+    }
+
+    /**
+     * Indica si un token de puerta ya se ha usado, sin anotarlo.
+     *
+     * @param jti identificador único del token.
+     * @param sentido entrada o salida.
+     * @param expiracionMs caducidad del token, en milisegundos.
+     * @return {@code true} si {@link #primerUso} ya lo había anotado en ese sentido y aún se recuerda.
+     */
+    public boolean usado(String jti, SentidoAcceso sentido, long expiracionMs) {
+        long numero = expiracionMs / cuboMs;
+        Cubo cubo = anillo.get((int) (numero % anillo.length()));
+        return jti != null && cubo != null && cubo.numero() == numero && cubo.usados().contains(uso(jti, sentido));
+    }
+
+    /**
+     * Descarta los cubos cuyos tokens han caducado todos, para liberar su memoria aunque no
+     * lleguen nuevos tokens que reutilicen su hueco.
+     */
+    @Scheduled(fixedDelayString = "${puerta.nonces.limpieza.ms:60000}")
+    public synchronized void limpiar() {
+        long actual = System.currentTimeMillis() / cuboMs;
+        for (int i = 0; i < anillo.length(); i++) {
+            Cubo cubo = anillo.get(i);
+            if (cubo != null && cubo.numero() < actual) {
+                anillo.compareAndSet(i, cubo, null);
+            }
+        }
+    }
+
+    private static String uso(String jti, SentidoAcceso sentido) {
+        return sentido == SentidoAcceso.SALIDA ? jti + "/salida" : jti;
+    }
+
+    private Cubo cubo(long numero) {
+        int posicion = (int) (numero % anillo.length());
+        Cubo cubo = anillo.get(posicion);
+        if (cubo != null && cubo.numero() == numero) {
+            return cubo;
+        }
+        synchronized (this) {
+            cubo = anillo.get(posicion);
+            if (cubo == null || cubo.numero() < numero) {
+                // El hueco tenía un cubo ya caducado: se sustituye entero
+                cubo = new Cubo(numero, ConcurrentHashMap.newKeySet());
+                anillo.set(posicion, cubo);
+            }
+            return cubo;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package hemen.go.service.acceso;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import hemen.go.dto.response.OcupacionParkingResponse;
+import hemen.go.entity.OcupacionParking;
+import hemen.go.enums.SentidoAcceso;
+import hemen.go.repository.OcupacionParkingRepository;
+import hemen.go.repository.ParkingRepository;
+import hemen.go.security.UsuarioAutenticado;
+
+/**
+ * Contadores en tiempo real de entradas y salidas de cada parking.
+ *
+ * <p>Cada apertura de puerta permitida suma uno al contador de entradas o de salidas de su
+ * parking. Los contadores son {@link LongAdder}: las puertas de un mismo parking suman en
+ * celdas distintas sin competir por la misma variable, y solo la lectura las agrega. Los
+ * vehículos dentro son la diferencia entre entradas y salidas, sin consultar las reservas.</p>
+ *
+ * <ul>
+ *   <li>Cada {@code ocupacion.instantanea.ms} los contadores que han cambiado se guardan en
+ *       {@code ocupacion_parking}; al arrancar se recuperan de ahí. Un reinicio solo pierde
+ *       los pasos desde la última instantánea.</li>
+ *   <li>Cada contador recuerda la empresa de su parking, así que la consulta del
+ *       administrador se responde solo con memoria. La empresa se busca una única vez, con
+ *       el primer paso por las puertas de un parking que aún no tenía contador.</li>
+ * </ul>
+ *
+ * <p>Los contadores están en memoria: con varias instancias, cada una cuenta sus propias puertas.</p>
+ */
+@Service
+public class OcupacionParkingService implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcupacionParkingService.class);
+
+    /** Contadores de un parking y los valores de la última instantánea guardada. */
+    private static final class Contador {
+        final Long idEmpresa;
+        final LongAdder entradas = new LongAdder();
+        final LongAdder salidas = new LongAdder();
+        /** Solo los modifica la tarea que guarda las instantáneas. */
+        long entradasGuardadas;
+        long salidasGuardadas;
+
+        Contador(Long idEmpresa) {
+            this.idEmpresa = idEmpresa;
+        }
+    }
+
+    private final OcupacionParkingRepository ocupacionParkingRepository;
+    private final ParkingRepository parkingRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MessageSource messageSource;
+
+    private final Map<Long, Contador> porParking = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor con inyección de dependencias. Recupera la última instantánea de los contadores.
+     *
+     * @param ocupacionParkingRepository repositorio de las instantáneas.
+     * @param parkingRepository repositorio de parkings.
+     * @param transactionManager gestor de transacciones.
+     * @param messageSource fuente de mensajes internacionalizados.
+     */
+    public OcupacionParkingService(OcupacionParkingRepository ocupacionParkingRepository,
+                                   ParkingRepository parkingRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   MessageSource messageSource) {
+        this.ocupacionParkingRepository = ocupacionParkingRepository;
+        this.parkingRepository = parkingRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.messageSource = messageSource;
+
+        for (OcupacionParking ocupacion : ocupacionParkingRepository.findAll()) {
+            Contador contador = new Contador(ocupacion.getIdEmpresa());
+            contador.entradas.add(ocupacion.getEntradas());
+            contador.salidas.add(ocupacion.getSalidas());
+            contador.entradasGuardadas = ocupacion.getEntradas();
+            contador.salidasGuardadas = ocupacion.getSalidas();
+            porParking.put(ocupacion.getIdParking(), contador);
+        }
+        logger.info("Contadores de ocupación recuperados: {} parkings", porParking.size());
+    }
+
+    /**
+     * Cuenta el paso de un vehículo por una puerta del parking.
+     *
+     * @param idParking identificador del parking.
+     * @param sentido sentido del paso; {@code null} se cuenta como entrada.
+     */
+    public void registrar(Long idParking, SentidoAcceso sentido) {
+        Contador contador = porParking.get(idParking);
+        if (contador == null) {
+            contador = porParking.computeIfAbsent(idParking, id -> parkingRepository.findById(id)
+                    .map(parking -> new Contador(parking.getEmpresa().getId()))
+                    .orElse(null));
+            if (contador == null) {
+                logger.warn("Paso por la puerta de un parking que no existe: {}", idParking);
+                return;
+            }
+        }
+        if (sentido == SentidoAcceso.SALIDA) {
+            contador.salidas.increment();
+        } else {
+            contador.entradas.increment();
+        }
+    }
+
+    /**
+     * Ocupación actual de los parkings de la empresa del usuario que tienen contador, sin
+     * consultar la base de datos.
+     *
+     * @param usuario administrador autenticado.
+     * @return entradas, salidas y vehículos dentro de cada parking, por identificador.
+     * @throws UsernameNotFoundException si el usuario no tiene empresa asociada.
+     */
+    public List<OcupacionParkingResponse> obtener(UsuarioAutenticado usuario) {
+        if (usuario.getIdEmpresa() == null) {
+            logger.error("El usuario email " + usuario.getUsername() + " no tiene empresa asociada");
+            throw new UsernameNotFoundException(
+                    messageSource.getMessage("error.usuario.no.existe", null, LocaleContextHolder.getLocale()));
+        }
+        List<OcupacionParkingResponse> ocupacion = new ArrayList<>();
+        porParking.forEach((idParking, contador) -> {
+            if (usuario.getIdEmpresa().equals(contador.idEmpresa)) {
+                ocupacion.add(new OcupacionParkingResponse(idParking, contador.entradas.sum(), contador.salidas.sum()));
+            }
+        });
+        ocupacion.sort(Comparator.comparing(OcupacionParkingResponse::getIdParking));
+        return ocupacion;
+    }
+
+    /**
+     * Guarda una instantánea de los contadores que han cambiado desde la anterior.
+     */
+    @Scheduled(fixedDelayString = "${ocupacion.instantanea.ms:60000}")
+    public synchronized void guardar() {
+        LocalDateTime ahora = LocalDateTime.now();
+        List<OcupacionParking> cambiados = new ArrayList<>();
+        List<Contador> contadores = new ArrayList<>();
+        porParking.forEach((idParking, contador) -> {
+            long entradas = contador.entradas.sum();
+            long salidas = contador.salidas.sum();
+            if (entradas != contador.entradasGuardadas || salidas != contador.salidasGuardadas) {
+                OcupacionParking ocupacion = new OcupacionParking();
+                ocupacion.setIdParking(idParking);
+                ocupacion.setIdEmpresa(contador.idEmpresa);
+                ocupacion.setEntradas(entradas);
+                ocupacion.setSalidas(salidas);
+                ocupacion.setFecha(ahora);
+                cambiados.add(ocupacion);
+                contadores.add(contador);
+            }
+        });
+        if (cambiados.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> ocupacionParkingRepository.saveAll(cambiados));
+        } catch (RuntimeException e) {
+            // Se reintenta en la siguiente instantánea
+            logger.error("No se pudo guardar la ocupación de {} parkings: {}", cambiados.size(), e.getMessage(), e);
+            return;
+        }
+        for (int i = 0; i < cambiados.size(); i++) {
+            contadores.get(i).entradasGuardadas = cambiados.get(i).getEntradas();
+            contadores.get(i).salidasGuardadas = cambiados.get(i).getSalidas();
+        }
+    }
+
+    /** Guarda los pasos desde la última instantánea al parar la aplicación. */
+    @Override
+    public void destroy() {
+        guardar();
+    }
+}
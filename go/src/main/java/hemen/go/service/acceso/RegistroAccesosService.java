@@ -0,0 +1,264 @@
+package hemen.go.service.acceso;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import hemen.go.dto.response.AccesoPuertaResponse;
+import hemen.go.entity.AccesoPuerta;
+import hemen.go.enums.ResultadoAcceso;
+import hemen.go.repository.AccesoPuertaRepository;
+import hemen.go.repository.ParkingRepository;
+import hemen.go.security.UsuarioAutenticado;
+import hemen.go.util.DiarioMapeado;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+
+/**
+ * Registro de los intentos de apertura de las puertas de los parkings.
+ *
+ * <p>Cada intento se anota en un {@link DiarioMapeado} en disco en lugar de insertarse en la
+ * base de datos: en horas punta las puertas no compiten por las dos conexiones del pool y la
+ * petición solo espera al siguiente volcado del diario ({@code accesos.diario.commit.ms}),
+ * compartido con todos los accesos de ese intervalo.</p>
+ *
+ * <p>Fuera de horas punta ({@code accesos.diario.compactacion.cron}) se cierra el segmento en
+ * curso y cada segmento cerrado se carga en la tabla {@code accesos_puerta} por lotes, en una
+ * transacción por segmento; el fichero se borra después de confirmarla. Si el borrado falla, la
+ * siguiente pasada vuelve a cargar el segmento sustituyendo sus filas, sin duplicarlas.</p>
+ *
+ * <p>Por eso el número de segmento no se puede repetir aunque el directorio del diario se pierda
+ * (despliegue en un disco efímero) o lo use otra instancia: al arrancar, los segmentos nuevos se
+ * numeran a partir del instante de arranque en milisegundos por mil, y siempre por encima del mayor ya
+ * cargado en la tabla.</p>
+ *
+ * <p>Registro en el diario (big-endian): long instante en ms, long reserva (-1 si el token
+ * no se pudo leer), long parking, int resultado (ordinal de {@link ResultadoAcceso}).</p>
+ */
+@Service
+public class RegistroAccesosService implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(RegistroAccesosService.class);
+
+    static final int TAMANO_REGISTRO = Long.BYTES * 3 + Integer.BYTES;
+    private static final long SIN_RESERVA = -1;
+    private static final ResultadoAcceso[] RESULTADOS = ResultadoAcceso.values();
+
+    private final DiarioMapeado diario;
+    private final AccesoPuertaRepository accesoPuertaRepository;
+    private final ParkingRepository parkingRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final MessageSource messageSource;
+    private final int tamanoLote;
+
+    /**
+     * Constructor con inyección de dependencias. Abre el diario y recupera el segmento en curso.
+     *
+     * @param accesoPuertaRepository repositorio del histórico de accesos.
+     * @param parkingRepository repositorio de parkings.
+     * @param entityManager contexto de persistencia, para vaciarlo entre lotes.
+     * @param transactionManager gestor de transacciones.
+     * @param messageSource fuente de mensajes internacionalizados.
+     * @param directorio directorio de los segmentos ({@code accesos.diario.directorio}).
+     * @param registrosPorSegmento accesos por segmento ({@code accesos.diario.segmento.registros}).
+     * @param commitMillis intervalo entre volcados a disco ({@code accesos.diario.commit.ms}).
+     * @param esperaMaxMillis espera máxima de cada acceso al volcado ({@code accesos.diario.espera.ms}).
+     * @param tamanoLote filas por lote al cargar un segmento ({@code accesos.diario.compactacion.lote}).
+     */
+    public RegistroAccesosService(AccesoPuertaRepository accesoPuertaRepository, ParkingRepository parkingRepository,
+                                  EntityManager entityManager, PlatformTransactionManager transactionManager,
+                                  MessageSource messageSource,
+                                  @Value("${accesos.diario.directorio:diario-accesos}") String directorio,
+                                  @Value("${accesos.diario.segmento.registros:65536}") int registrosPorSegmento,
+                                  @Value("${accesos.diario.commit.ms:20}") long commitMillis,
+                                  @Value("${accesos.diario.espera.ms:500}") long esperaMaxMillis,
+                                  @Value("${accesos.diario.compactacion.lote:500}") int tamanoLote) {
+        Long cargado = accesoPuertaRepository.maxSegmento();
+        // Cada arranque numera en su propio rango: dos instancias no coinciden salvo que una rote
+        // mil veces por cada milisegundo que separa sus arranques
+        long primerSegmento = Math.max(cargado == null ? 1 : cargado + 1, System.currentTimeMillis() * 1000);
+        this.diario = new DiarioMapeado(Path.of(directorio), "accesos", TAMANO_REGISTRO,
+                Math.max(1, registrosPorSegmento), primerSegmento, Math.max(1, commitMillis), Math.max(0, esperaMaxMillis));
+        this.accesoPuertaRepository = accesoPuertaRepository;
+        this.parkingRepository = parkingRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.messageSource = messageSource;
+        this.tamanoLote = Math.max(1, tamanoLote);
+    }
+
+    /**
+     * Anota un intento de apertura. Un fallo del diario se registra en el log pero no impide
+     * abrir la puerta; tampoco un disco que no confirma el volcado en {@code accesos.diario.espera.ms}.
+     *
+     * @param idReserva reserva del token, o {@code null} si no se pudo leer.
+     * @param idParking parking de la puerta.
+     * @param resultado resultado del intento.
+     */
+    public void registrar(Long idReserva, Long idParking, ResultadoAcceso resultado) {
+        ByteBuffer registro = ByteBuffer.allocate(TAMANO_REGISTRO)
+                .putLong(System.currentTimeMillis())
+                .putLong(idReserva == null ? SIN_RESERVA : idReserva)
+                .putLong(idParking == null ? SIN_RESERVA : idParking)
+                .putInt(resultado.ordinal())
+                .flip();
+        try {
+            if (!diario.anotar(registro)) {
+                logger.warn("Acceso {} de la reserva {} al parking {} anotado sin confirmar en disco",
+                        resultado, idReserva, idParking);
+            }
+        } catch (RuntimeException e) {
+            logger.error("No se pudo anotar el acceso {} de la reserva {} al parking {}: {}",
+                    resultado, idReserva, idParking, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Accesos de un parking de la empresa del usuario entre dos fechas, incluidos los que aún
+     * están en el diario, en orden cronológico.
+     *
+     * @param usuario administrador autenticado.
+     * @param idParking identificador del parking.
+     * @param desde primer día, incluido.
+     * @param hasta último día, incluido.
+     * @return accesos del intervalo.
+     * @throws UsernameNotFoundException si el usuario no tiene empresa asociada.
+     * @throws EntityNotFoundException si el parking no existe o no es de su empresa.
+     * @throws IllegalArgumentException si el intervalo no es válido.
+     */
+    public List<AccesoPuertaResponse> consultar(UsuarioAutenticado usuario, Long idParking, LocalDate desde, LocalDate hasta) {
+        Locale locale = LocaleContextHolder.getLocale();
+        if (usuario.getIdEmpresa() == null) {
+            logger.error("El usuario email " + usuario.getUsername() + " no tiene empresa asociada");
+            throw new UsernameNotFoundException(messageSource.getMessage("error.usuario.no.existe", null, locale));
+        }
+        if (parkingRepository.findByIdAndEmpresaId(idParking, usuario.getIdEmpresa()) == null) {
+            throw new EntityNotFoundException(messageSource.getMessage("error.parking.no.existe", null, locale));
+        }
+        if (desde == null || hasta == null || hasta.isBefore(desde)) {
+            throw new IllegalArgumentException(messageSource.getMessage("error.accesos.intervalo", null, locale));
+        }
+        LocalDateTime inicio = desde.atStartOfDay();
+        LocalDateTime fin = hasta.plusDays(1).atStartOfDay();
+
+        List<AccesoPuerta> accesos = new ArrayList<>();
+        try {
+            // Un segmento que sigue en disco se lee del diario, aunque ya se haya cargado
+            List<Long> enDiario = diario.segmentos();
+            Set<Long> pendientes = new HashSet<>(enDiario);
+            for (AccesoPuerta acceso : accesoPuertaRepository.findByParkingEntre(idParking, inicio, fin)) {
+                if (!pendientes.contains(acceso.getSegmento())) {
+                    accesos.add(acceso);
+                }
+            }
+            Set<Long> borrados = new HashSet<>();
+            for (long segmento : enDiario) {
+                try {
+                    diario.leer(segmento, datos -> {
+                        AccesoPuerta acceso = leerAcceso(segmento, datos);
+                        if (idParking.equals(acceso.getIdParking())
+                                && !acceso.getFecha().isBefore(inicio) && acceso.getFecha().isBefore(fin)) {
+                            accesos.add(acceso);
+                        }
+                    });
+                } catch (NoSuchFileException e) {
+                    // La compactación lo ha borrado después de listarlo: sus filas ya están confirmadas en la tabla
+                    borrados.add(segmento);
+                }
+            }
+            if (!borrados.isEmpty()) {
+                for (AccesoPuerta acceso : accesoPuertaRepository.findByParkingEntre(idParking, inicio, fin)) {
+                    if (borrados.contains(acceso.getSegmento())) {
+                        accesos.add(acceso);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        accesos.sort(Comparator.comparing(AccesoPuerta::getFecha));
+        return accesos.stream().map(AccesoPuertaResponse::new).toList();
+    }
+
+    /**
+     * Carga en la base de datos los segmentos del diario y los borra del disco.
+     */
+    @Scheduled(cron = "${accesos.diario.compactacion.cron:0 30 3 * * *}")
+    public synchronized void compactar() {
+        diario.cerrarSegmentoActual();
+        List<Long> cerrados;
+        try {
+            cerrados = diario.segmentosCerrados();
+        } catch (IOException e) {
+            logger.error("No se pueden listar los segmentos del diario de accesos: {}", e.getMessage(), e);
+            return;
+        }
+        for (long segmento : cerrados) {
+            try {
+                int cargados = cargar(segmento);
+                diario.borrar(segmento);
+                logger.info("Segmento {} del diario de accesos cargado: {} accesos", segmento, cargados);
+            } catch (IOException | RuntimeException e) {
+                // Los siguientes segmentos esperan: se cargan en orden en la próxima pasada
+                logger.error("Error al cargar el segmento {} del diario de accesos: {}", segmento, e.getMessage(), e);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        diario.close();
+    }
+
+    /** Sustituye las filas del segmento por sus registros, en una transacción. */
+    private int cargar(long segmento) throws IOException {
+        List<AccesoPuerta> accesos = new ArrayList<>();
+        diario.leer(segmento, datos -> accesos.add(leerAcceso(segmento, datos)));
+        transactionTemplate.executeWithoutResult(status -> {
+            accesoPuertaRepository.borrarSegmento(segmento);
+            for (int i = 0; i < accesos.size(); i += tamanoLote) {
+                accesoPuertaRepository.saveAll(accesos.subList(i, Math.min(i + tamanoLote, accesos.size())));
+                entityManager.flush();
+                entityManager.clear();
+            }
+        });
+        return accesos.size();
+    }
+
+    private static AccesoPuerta leerAcceso(long segmento, ByteBuffer datos) {
+        AccesoPuerta acceso = new AccesoPuerta();
+        acceso.setSegmento(segmento);
+        acceso.setFecha(LocalDateTime.ofInstant(Instant.ofEpochMilli(datos.getLong()), ZoneId.systemDefault()));
+        long idReserva = datos.getLong();
+        acceso.setIdReserva(idReserva == SIN_RESERVA ? null : idReserva);
+        acceso.setIdParking(datos.getLong());
+        acceso.setResultado(RESULTADOS[datos.getInt()]);
+        return acceso;
+    }
+}
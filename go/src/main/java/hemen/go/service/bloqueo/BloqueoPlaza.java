@@ -0,0 +1,71 @@
+package hemen.go.service.bloqueo;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Bloqueo temporal de una plaza para un rango de fechas.
+ *
+ * <p>Se crea cuando un usuario elige una plaza en la búsqueda y se mantiene en memoria
+ * hasta que caduca o se convierte en una {@link hemen.go.entity.Reserva}.</p>
+ */
+public class BloqueoPlaza {
+
+    private final String id;
+    private final String email;
+    private final Long idParking;
+    private final Long idPlaza;
+    private final LocalDate fecInicio;
+    private final LocalDate fecFin;
+    private final Instant expira;
+
+    public BloqueoPlaza(String id, String email, Long idParking, Long idPlaza,
+                        LocalDate fecInicio, LocalDate fecFin, Instant expira) {
+        this.id = id;
+        this.email = email;
+        this.idParking = idParking;
+        this.idPlaza = idPlaza;
+        this.fecInicio = fecInicio;
+        this.fecFin = fecFin;
+        this.expira = expira;
+    }
+
+    /**
+     * Indica si el bloqueo se solapa con el rango de fechas indicado (extremos incluidos).
+     *
+     * @param desde fecha de inicio del rango.
+     * @param hasta fecha de fin del rango.
+     * @return {@code true} si los rangos se solapan.
+     */
+    public boolean solapa(LocalDate desde, LocalDate hasta) {
+        return !fecInicio.isAfter(hasta) && !fecFin.isBefore(desde);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public Long getIdParking() {
+        return idParking;
+    }
+
+    public Long getIdPlaza() {
+        return idPlaza;
+    }
+
+    public LocalDate getFecInicio() {
+        return fecInicio;
+    }
+
+    public LocalDate getFecFin() {
+        return fecFin;
+    }
+
+    public Instant getExpira() {
+        return expira;
+    }
+}
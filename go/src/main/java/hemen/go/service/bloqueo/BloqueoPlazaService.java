@@ -0,0 +1,276 @@
+package hemen.go.service.bloqueo;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.stereotype.Service;
+
+import hemen.go.dto.request.ReservaRequest;
+import hemen.go.repository.PlazaRepository;
+import hemen.go.repository.ReservaRepository;
+import hemen.go.util.HashedTimingWheel;
+import hemen.go.validator.FechaValidator;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Servicio de bloqueos temporales de plazas.
+ *
+ * <p>Entre que el usuario elige una plaza en la búsqueda y confirma la reserva, otro usuario
+ * podría reservarla. Este servicio permite retener la plaza durante unos minutos para un
+ * rango de fechas. Los bloqueos se guardan solo en memoria y su caducidad se gestiona con
+ * una {@link HashedTimingWheel}, sin un temporizador por bloqueo ni consultas a la base de datos.</p>
+ *
+ * <p>Mientras un bloqueo está vivo:</p>
+ * <ul>
+ *   <li>{@code ReservaService.reservar} rechaza reservas de otros usuarios que se solapen.</li>
+ *   <li>La búsqueda de parkings no devuelve la plaza como disponible.</li>
+ * </ul>
+ *
+ * <p>El bloqueo desaparece al caducar, al liberarlo su propietario o al convertirse en reserva.
+ * Volver a bloquear una plaza que el usuario ya tiene bloqueada en fechas solapadas sustituye
+ * el bloqueo anterior, y cada usuario puede tener como mucho {@code reserva.bloqueo.max.usuario}
+ * bloqueos a la vez, para que nadie retenga todas las plazas.</p>
+ */
+@Service
+public class BloqueoPlazaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BloqueoPlazaService.class);
+
+    /** Duración de un tick de la rueda: precisión de la caducidad. */
+    private static final long TICK_MILLIS = 1000;
+
+    /** Cubos de la rueda: con ticks de 1 s una vuelta cubre algo más de 8 minutos. */
+    private static final int CUBOS_RUEDA = 512;
+
+    private final ReservaRepository reservaRepository;
+    private final PlazaRepository plazaRepository;
+    private final FechaValidator fechaValidator;
+    private final MessageSource messageSource;
+    private final long duracionMillis;
+    private final int maxPorUsuario;
+
+    /** Bloqueos vivos por plaza; las listas se sustituyen enteras dentro de {@code compute}. */
+    private final Map<Long, List<BloqueoPlaza>> porPlaza = new ConcurrentHashMap<>();
+
+    /** Bloqueos vivos por identificador, con su manejador en la rueda. */
+    private final Map<String, HashedTimingWheel.Timeout<BloqueoPlaza>> porId = new ConcurrentHashMap<>();
+
+    private final HashedTimingWheel<BloqueoPlaza> rueda;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param reservaRepository repositorio de reservas, para no bloquear plazas ya reservadas.
+     * @param plazaRepository repositorio de plazas, para comprobar que la plaza es del parking.
+     * @param fechaValidator validador de fechas.
+     * @param messageSource fuente de mensajes internacionalizados.
+     * @param minutos duración de un bloqueo en minutos ({@code reserva.bloqueo.minutos}).
+     * @param maxPorUsuario bloqueos simultáneos por usuario ({@code reserva.bloqueo.max.usuario}).
+     */
+    public BloqueoPlazaService(ReservaRepository reservaRepository,
+                               PlazaRepository plazaRepository,
+                               FechaValidator fechaValidator,
+                               MessageSource messageSource,
+                               @Value("${reserva.bloqueo.minutos:10}") long minutos,
+                               @Value("${reserva.bloqueo.max.usuario:5}") int maxPorUsuario) {
+        this.reservaRepository = reservaRepository;
+        this.plazaRepository = plazaRepository;
+        this.fechaValidator = fechaValidator;
+        this.messageSource = messageSource;
+        this.duracionMillis = minutos * 60 * 1000;
+        this.maxPorUsuario = maxPorUsuario;
+        this.rueda = new HashedTimingWheel<>("bloqueos-plaza", TICK_MILLIS, CUBOS_RUEDA, this::eliminar);
+    }
+
+    /**
+     * Bloquea una plaza para el usuario durante el tiempo configurado. Si el usuario ya la
+     * tenía bloqueada en fechas solapadas, el bloqueo nuevo sustituye al anterior.
+     *
+     * @param email correo del usuario que bloquea la plaza.
+     * @param request plaza, parking y fechas a bloquear.
+     * @return el bloqueo creado.
+     * @throws IllegalArgumentException si las fechas no son válidas, la plaza no es del parking,
+     *                                  el usuario ha llegado al máximo de bloqueos, la plaza ya
+     *                                  está reservada o la tiene bloqueada otro usuario.
+     */
+    public BloqueoPlaza bloquear(String email, ReservaRequest request) {
+        if (request.getIdPlaza() == null || request.getFecInicio() == null || request.getFecFin() == null) {
+            throw new IllegalArgumentException(
+                    messageSource.getMessage("error.reserva.bloqueo.datos", null, LocaleContextHolder.getLocale()));
+        }
+        fechaValidator.validarFechas(request.getFecInicio(), request.getFecFin());
+        if (request.getIdParking() == null
+                || !plazaRepository.existsByIdAndParking_Id(request.getIdPlaza(), request.getIdParking())) {
+            throw new IllegalArgumentException(
+                    messageSource.getMessage("error.reserva.bloqueo.plaza", null, LocaleContextHolder.getLocale()));
+        }
+        // Los bloqueos que se van a sustituir no cuentan
+        long propios = porId.values().stream()
+                .map(HashedTimingWheel.Timeout::getElemento)
+                .filter(b -> b.getEmail().equals(email) && !(b.getIdPlaza().equals(request.getIdPlaza())
+                        && b.solapa(request.getFecInicio(), request.getFecFin())))
+                .count();
+        if (propios >= maxPorUsuario) {
+            throw new IllegalArgumentException(messageSource.getMessage("error.reserva.bloqueo.maximo",
+                    new Object[]{maxPorUsuario}, LocaleContextHolder.getLocale()));
+        }
+
+        if (!reservaRepository.findReservasSolapadas(
+                request.getIdPlaza(), request.getFecInicio(), request.getFecFin()).isEmpty()) {
+            throw new IllegalArgumentException(
+                    messageSource.getMessage("error.reserva.solapada", null, LocaleContextHolder.getLocale()));
+        }
+
+        BloqueoPlaza bloqueo = new BloqueoPlaza(UUID.randomUUID().toString(), email,
+                request.getIdParking(), request.getIdPlaza(),
+                request.getFecInicio(), request.getFecFin(),
+                Instant.now().plusMillis(duracionMillis));
+
+        boolean[] libre = { true };
+        porPlaza.compute(bloqueo.getIdPlaza(), (id, actuales) -> {
+            List<BloqueoPlaza> lista = actuales == null ? new ArrayList<>() : new ArrayList<>(actuales);
+            for (BloqueoPlaza b : lista) {
+                if (!b.getEmail().equals(email) && b.solapa(bloqueo.getFecInicio(), bloqueo.getFecFin())) {
+                    libre[0] = false;
+                    return actuales;
+                }
+            }
+            // Los bloqueos propios que se solapan se sustituyen, en lugar de acumularse
+            lista.removeIf(b -> {
+                if (!b.solapa(bloqueo.getFecInicio(), bloqueo.getFecFin())) {
+                    return false;
+                }
+                HashedTimingWheel.Timeout<BloqueoPlaza> anterior = porId.remove(b.getId());
+                if (anterior != null) {
+                    anterior.cancelar();
+                }
+                return true;
+            });
+            lista.add(bloqueo);
+            porId.put(bloqueo.getId(), rueda.programar(bloqueo, duracionMillis));
+            return List.copyOf(lista);
+        });
+
+        if (!libre[0]) {
+            throw new IllegalArgumentException(
+                    messageSource.getMessage("error.reserva.bloqueada", null, LocaleContextHolder.getLocale()));
+        }
+        return bloqueo;
+    }
+
+    /**
+     * Libera un bloqueo antes de que caduque.
+     *
+     * @param email correo del usuario propietario.
+     * @param idBloqueo identificador del bloqueo.
+     * @throws IllegalArgumentException si el bloqueo no existe o pertenece a otro usuario.
+     */
+    public void liberar(String email, String idBloqueo) {
+        HashedTimingWheel.Timeout<BloqueoPlaza> timeout = porId.get(idBloqueo);
+        if (timeout == null || !timeout.getElemento().getEmail().equals(email)) {
+            throw new IllegalArgumentException(
+                    messageSource.getMessage("error.reserva.bloqueo.no.existe", null, LocaleContextHolder.getLocale()));
+        }
+        timeout.cancelar();
+        eliminar(timeout.getElemento());
+    }
+
+    /**
+     * Indica si otro usuario tiene bloqueada la plaza en el rango indicado.
+     *
+     * @param idPlaza identificador de la plaza.
+     * @param desde fecha de inicio.
+     * @param hasta fecha de fin.
+     * @param email usuario que consulta; sus propios bloqueos no cuentan.
+     * @return {@code true} si hay un bloqueo ajeno que se solapa.
+     */
+    public boolean bloqueadaPorOtro(Long idPlaza, LocalDate desde, LocalDate hasta, String email) {
+        List<BloqueoPlaza> bloqueos = porPlaza.get(idPlaza);
+        if (bloqueos == null) {
+            return false;
+        }
+        for (BloqueoPlaza b : bloqueos) {
+            if (!b.getEmail().equals(email) && b.solapa(desde, hasta)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Devuelve los identificadores de las plazas bloqueadas en un rango de fechas.
+     *
+     * @param desde fecha de inicio.
+     * @param hasta fecha de fin.
+     * @return conjunto de plazas con algún bloqueo solapado; vacío si no se indican fechas.
+     */
+    public Set<Long> plazasBloqueadas(LocalDate desde, LocalDate hasta) {
+        Set<Long> resultado = new HashSet<>();
+        if (desde == null || hasta == null || porPlaza.isEmpty()) {
+            return resultado;
+        }
+        porPlaza.forEach((idPlaza, bloqueos) -> {
+            for (BloqueoPlaza b : bloqueos) {
+                if (b.solapa(desde, hasta)) {
+                    resultado.add(idPlaza);
+                    break;
+                }
+            }
+        });
+        return resultado;
+    }
+
+    /**
+     * Elimina los bloqueos del usuario sobre la plaza una vez convertidos en reserva.
+     *
+     * @param email correo del usuario.
+     * @param idPlaza identificador de la plaza reservada.
+     * @param desde fecha de inicio de la reserva.
+     * @param hasta fecha de fin de la reserva.
+     */
+    public void consumir(String email, Long idPlaza, LocalDate desde, LocalDate hasta) {
+        List<BloqueoPlaza> bloqueos = porPlaza.get(idPlaza);
+        if (bloqueos == null) {
+            return;
+        }
+        for (BloqueoPlaza b : bloqueos) {
+            if (b.getEmail().equals(email) && b.solapa(desde, hasta)) {
+                HashedTimingWheel.Timeout<BloqueoPlaza> timeout = porId.get(b.getId());
+                if (timeout != null) {
+                    timeout.cancelar();
+                }
+                eliminar(b);
+            }
+        }
+    }
+
+    /**
+     * Quita un bloqueo de los índices. Se invoca al caducar, al liberar o al consumir.
+     */
+    private void eliminar(BloqueoPlaza bloqueo) {
+        porId.remove(bloqueo.getId());
+        porPlaza.computeIfPresent(bloqueo.getIdPlaza(), (id, actuales) -> {
+            List<BloqueoPlaza> lista = new ArrayList<>(actuales);
+            lista.removeIf(b -> b.getId().equals(bloqueo.getId()));
+            return lista.isEmpty() ? null : List.copyOf(lista);
+        });
+        logger.debug("Bloqueo {} de la plaza {} eliminado", bloqueo.getId(), bloqueo.getIdPlaza());
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        rueda.close();
+    }
+}
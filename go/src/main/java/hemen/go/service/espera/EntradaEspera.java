@@ -0,0 +1,91 @@
+package hemen.go.service.espera;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Entrada de la lista de espera: un usuario quiere una plaza en un parking para unas fechas,
+ * opcionalmente con electricidad o VIP.
+ *
+ * <p>Cuando se cancela una reserva que deja libre una plaza compatible, se añade un
+ * {@link Aviso} que el usuario ve al consultar sus esperas.</p>
+ */
+public class EntradaEspera {
+
+    /**
+     * Plaza que ha quedado libre para las fechas de la espera.
+     */
+    public record Aviso(Long idPlaza, String nombrePlaza, Instant fecha) {
+    }
+
+    private final String id;
+    private final String email;
+    private final Long idParking;
+    private final LocalDate fecInicio;
+    private final LocalDate fecFin;
+    private final boolean tomaElectricidad;
+    private final boolean plazaVip;
+    private final Instant fecAlta = Instant.now();
+    private final List<Aviso> avisos = new CopyOnWriteArrayList<>();
+
+    public EntradaEspera(String id, String email, Long idParking, LocalDate fecInicio, LocalDate fecFin,
+                         boolean tomaElectricidad, boolean plazaVip) {
+        this.id = id;
+        this.email = email;
+        this.idParking = idParking;
+        this.fecInicio = fecInicio;
+        this.fecFin = fecFin;
+        this.tomaElectricidad = tomaElectricidad;
+        this.plazaVip = plazaVip;
+    }
+
+    /**
+     * Añade un aviso si la plaza no se había notificado ya.
+     *
+     * @return {@code true} si el aviso es nuevo.
+     */
+    synchronized boolean avisar(Long idPlaza, String nombrePlaza) {
+        if (avisos.stream().anyMatch(a -> a.idPlaza().equals(idPlaza))) {
+            return false;
+        }
+        return avisos.add(new Aviso(idPlaza, nombrePlaza, Instant.now()));
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public Long getIdParking() {
+        return idParking;
+    }
+
+    public LocalDate getFecInicio() {
+        return fecInicio;
+    }
+
+    public LocalDate getFecFin() {
+        return fecFin;
+    }
+
+    public boolean isTomaElectricidad() {
+        return tomaElectricidad;
+    }
+
+    public boolean isPlazaVip() {
+        return plazaVip;
+    }
+
+    public Instant getFecAlta() {
+        return fecAlta;
+    }
+
+    public List<Aviso> getAvisos() {
+        return avisos;
+    }
+}
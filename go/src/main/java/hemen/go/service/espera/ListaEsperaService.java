@@ -0,0 +1,240 @@
+package hemen.go.service.espera;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import hemen.go.dto.request.ListaEsperaRequest;
+import hemen.go.entity.EventoReserva;
+import hemen.go.entity.Plaza;
+import hemen.go.enums.EstadoPlaza;
+import hemen.go.enums.TipoEventoReserva;
+import hemen.go.repository.ParkingRepository;
+import hemen.go.repository.PlazaRepository;
+import hemen.go.repository.ReservaRepository;
+import hemen.go.service.bloqueo.BloqueoPlazaService;
+import hemen.go.service.evento.SuscriptorEventosReserva;
+import hemen.go.util.IndiceIntervalos;
+import hemen.go.validator.FechaValidator;
+
+/**
+ * Lista de espera para parkings sin plazas libres.
+ *
+ * <p>El usuario se apunta indicando parking, fechas y servicios. Al recibir el evento
+ * {@link TipoEventoReserva#CANCELADA} del outbox, {@link #plazaLiberada(Plaza, LocalDate, LocalDate)} busca solo las esperas del mismo parking
+ * cuyas fechas se solapan con las liberadas, usando un {@link IndiceIntervalos} por parking,
+ * sin repetir búsquedas de parkings. A cada espera compatible cuya estancia completa quede
+ * libre en esa plaza se le añade un aviso, que ve al consultar sus esperas.</p>
+ *
+ * <p>Las esperas se guardan en memoria. Se eliminan al darse de baja el usuario o cuando
+ * su fecha de inicio ya ha pasado.</p>
+ */
+@Service
+public class ListaEsperaService implements SuscriptorEventosReserva {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListaEsperaService.class);
+
+    private final ReservaRepository reservaRepository;
+    private final ParkingRepository parkingRepository;
+    private final PlazaRepository plazaRepository;
+    private final BloqueoPlazaService bloqueoPlazaService;
+    private final FechaValidator fechaValidator;
+    private final MessageSource messageSource;
+    private final int maxPorUsuario;
+
+    /** Índice de esperas por parking; cada índice se usa sincronizado sobre sí mismo. */
+    private final Map<Long, IndiceIntervalos<EntradaEspera>> porParking = new ConcurrentHashMap<>();
+
+    /** Esperas por identificador, con su posición en el índice para poder borrarlas. */
+    private final Map<String, IndiceIntervalos.Intervalo<EntradaEspera>> porId = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param reservaRepository repositorio de reservas, para comprobar que la plaza queda libre.
+     * @param parkingRepository repositorio de parkings.
+     * @param plazaRepository repositorio de plazas.
+     * @param bloqueoPlazaService bloqueos temporales de plazas.
+     * @param fechaValidator validador de fechas.
+     * @param messageSource fuente de mensajes internacionalizados.
+     * @param maxPorUsuario esperas simultáneas por usuario ({@code reserva.espera.max.usuario}).
+     */
+    public ListaEsperaService(ReservaRepository reservaRepository,
+                              ParkingRepository parkingRepository,
+                              PlazaRepository plazaRepository,
+                              BloqueoPlazaService bloqueoPlazaService,
+                              FechaValidator fechaValidator,
+                              MessageSource messageSource,
+                              @Value("${reserva.espera.max.usuario:10}") int maxPorUsuario) {
+        this.reservaRepository = reservaRepository;
+        this.parkingRepository = parkingRepository;
+        this.plazaRepository = plazaRepository;
+        this.bloqueoPlazaService = bloqueoPlazaService;
+        this.fechaValidator = fechaValidator;
+        this.messageSource = messageSource;
+        this.maxPorUsuario = maxPorUsuario;
+    }
+
+    /**
+     * Apunta al usuario en la lista de espera de un parking.
+     *
+     * @param email correo del usuario.
+     * @param request parking, fechas y servicios deseados.
+     * @return la entrada creada.
+     * @throws IllegalArgumentException si faltan datos, las fechas no son válidas, el parking
+     *                                  no existe o el usuario ya tiene demasiadas esperas.
+     */
+    public EntradaEspera apuntar(String email, ListaEsperaRequest request) {
+        if (request.getIdParking() == null || request.getFecInicio() == null || request.getFecFin() == null) {
+            throw new IllegalArgumentException(
+                    messageSource.getMessage("error.espera.datos", null, LocaleContextHolder.getLocale()));
+        }
+        fechaValidator.validarFechas(request.getFecInicio(), request.getFecFin());
+        if (!parkingRepository.existsById(request.getIdParking())) {
+            throw new IllegalArgumentException(
+                    messageSource.getMessage("error.parking.no.existe", null, LocaleContextHolder.getLocale()));
+        }
+        if (delUsuario(email).size() >= maxPorUsuario) {
+            throw new IllegalArgumentException(messageSource.getMessage("error.espera.maximo",
+                    new Object[]{maxPorUsuario}, LocaleContextHolder.getLocale()));
+        }
+
+        EntradaEspera entrada = new EntradaEspera(UUID.randomUUID().toString(), email, request.getIdParking(),
+                request.getFecInicio(), request.getFecFin(),
+                Boolean.TRUE.equals(request.getTomaElectricidad()), Boolean.TRUE.equals(request.getPlazaVip()));
+
+        // Se inserta dentro de compute para no competir con el borrado de un índice vacío
+        porParking.compute(entrada.getIdParking(), (id, indice) -> {
+            IndiceIntervalos<EntradaEspera> actual = indice != null ? indice : new IndiceIntervalos<>();
+            synchronized (actual) {
+                porId.put(entrada.getId(), actual.insertar(entrada.getFecInicio().toEpochDay(),
+                        entrada.getFecFin().toEpochDay(), entrada));
+            }
+            return actual;
+        });
+        return entrada;
+    }
+
+    /**
+     * Da de baja una espera del usuario.
+     *
+     * @param email correo del usuario.
+     * @param idEspera identificador de la espera.
+     * @throws IllegalArgumentException si no existe o pertenece a otro usuario.
+     */
+    public void baja(String email, String idEspera) {
+        IndiceIntervalos.Intervalo<EntradaEspera> intervalo = porId.get(idEspera);
+        if (intervalo == null || !intervalo.getValor().getEmail().equals(email)) {
+            throw new IllegalArgumentException(
+                    messageSource.getMessage("error.espera.no.existe", null, LocaleContextHolder.getLocale()));
+        }
+        eliminar(intervalo);
+    }
+
+    /**
+     * Esperas del usuario, con los avisos de plazas liberadas.
+     *
+     * @param email correo del usuario.
+     * @return esperas ordenadas por fecha de inicio.
+     */
+    public List<EntradaEspera> delUsuario(String email) {
+        return porId.values().stream()
+                .map(IndiceIntervalos.Intervalo::getValor)
+                .filter(e -> e.getEmail().equals(email))
+                .sorted(Comparator.comparing(EntradaEspera::getFecInicio))
+                .toList();
+    }
+
+    /**
+     * Avisa a las esperas afectadas por cada reserva cancelada del lote.
+     */
+    @Override
+    public void procesar(List<EventoReserva> eventos) {
+        for (EventoReserva evento : eventos) {
+            if (evento.getTipo() == TipoEventoReserva.CANCELADA && evento.getIdPlaza() != null && evento.getIdParking() != null
+                    && porParking.containsKey(evento.getIdParking())) {
+                plazaRepository.findById(evento.getIdPlaza())
+                        .ifPresent(plaza -> plazaLiberada(plaza, evento.getFecInicio(), evento.getFecFin()));
+            }
+        }
+    }
+
+    /**
+     * Notifica a las esperas afectadas que una plaza ha quedado libre entre dos fechas.
+     *
+     * <p>Solo se consultan las esperas del parking de la plaza cuyas fechas se solapan con
+     * el rango liberado. Para cada una se comprueba que la plaza tenga los servicios pedidos
+     * y que toda su estancia esté libre (puede haber otras reservas en la plaza).</p>
+     *
+     * @param plaza plaza liberada.
+     * @param desde inicio del rango liberado.
+     * @param hasta fin del rango liberado.
+     */
+    public void plazaLiberada(Plaza plaza, LocalDate desde, LocalDate hasta) {
+        if (plaza.getParking() == null || plaza.getEstado() != EstadoPlaza.ALTA) {
+            return;
+        }
+        IndiceIntervalos<EntradaEspera> indice = porParking.get(plaza.getParking().getId());
+        if (indice == null) {
+            return;
+        }
+        List<EntradaEspera> candidatas = new ArrayList<>();
+        synchronized (indice) {
+            for (IndiceIntervalos.Intervalo<EntradaEspera> i : indice.solapados(desde.toEpochDay(), hasta.toEpochDay())) {
+                candidatas.add(i.getValor());
+            }
+        }
+
+        int avisadas = 0;
+        for (EntradaEspera e : candidatas) {
+            if ((e.isTomaElectricidad() && !plaza.isTieneElectricidad()) || (e.isPlazaVip() && !plaza.isEsVip())) {
+                continue;
+            }
+            if (!reservaRepository.findReservasSolapadas(plaza.getId(), e.getFecInicio(), e.getFecFin()).isEmpty()
+                    || bloqueoPlazaService.bloqueadaPorOtro(plaza.getId(), e.getFecInicio(), e.getFecFin(), e.getEmail())) {
+                continue;
+            }
+            if (e.avisar(plaza.getId(), plaza.getNombre())) {
+                avisadas++;
+            }
+        }
+        logger.info("Plaza {} liberada: {} esperas candidatas, {} avisadas", plaza.getId(), candidatas.size(), avisadas);
+    }
+
+    /**
+     * Elimina las esperas cuya fecha de inicio ya ha pasado.
+     */
+    @Scheduled(fixedDelayString = "${reserva.espera.limpieza.ms:3600000}")
+    public void limpiarCaducadas() {
+        LocalDate hoy = LocalDate.now();
+        porId.values().stream()
+                .filter(i -> i.getValor().getFecInicio().isBefore(hoy))
+                .toList()
+                .forEach(this::eliminar);
+    }
+
+    private void eliminar(IndiceIntervalos.Intervalo<EntradaEspera> intervalo) {
+        EntradaEspera entrada = intervalo.getValor();
+        if (porId.remove(entrada.getId()) == null) {
+            return;
+        }
+        porParking.computeIfPresent(entrada.getIdParking(), (id, indice) -> {
+            synchronized (indice) {
+                indice.eliminar(intervalo);
+                return indice.isEmpty() ? null : indice;
+            }
+        });
+    }
+}
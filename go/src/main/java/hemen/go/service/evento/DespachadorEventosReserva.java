@@ -0,0 +1,156 @@
+package hemen.go.service.evento;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import hemen.go.entity.EventoReserva;
+import hemen.go.repository.EventoReservaRepository;
+
+/**
+ * Despachador del outbox de eventos de reserva.
+ *
+ * <p>Cada {@code eventos.reserva.intervalo.ms} lee hasta {@code eventos.reserva.lote} eventos
+ * pendientes, los entrega a todos los {@link SuscriptorEventosReserva} y los marca como
+ * procesados. Las reservas solo escriben una fila en su transacción; los efectos derivados
+ * (avisos, agregados, estadísticas) se ejecutan aquí, fuera de la petición.</p>
+ *
+ * <p>Si algún suscriptor falla, el lote se reintenta en la siguiente pasada, pero solo para
+ * los suscriptores que no lo habían procesado: el despachador recuerda en memoria qué
+ * eventos pendientes ha entregado ya a cada uno, hasta que se marcan como procesados. Tras
+ * un reinicio los pendientes se entregan de nuevo a todos (al menos una vez). Tras
+ * {@code eventos.reserva.max.intentos} fallos los eventos se dan por procesados y se registra
+ * el error, para que un evento defectuoso no bloquee a los siguientes.</p>
+ */
+@Component
+public class DespachadorEventosReserva {
+
+    private static final Logger logger = LoggerFactory.getLogger(DespachadorEventosReserva.class);
+
+    private final EventoReservaRepository eventoReservaRepository;
+    private final List<SuscriptorEventosReserva> suscriptores;
+    private final TransactionTemplate transactionTemplate;
+    private final int tamanoLote;
+    private final int maxIntentos;
+    private final int diasRetencion;
+
+    /** Eventos pendientes ya entregados a cada suscriptor; solo los usa el hilo que despacha. */
+    private final Map<SuscriptorEventosReserva, Set<Long>> entregados = new IdentityHashMap<>();
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param eventoReservaRepository repositorio de la tabla outbox.
+     * @param suscriptores suscriptores registrados como beans.
+     * @param transactionManager gestor de transacciones.
+     * @param tamanoLote eventos por pasada ({@code eventos.reserva.lote}).
+     * @param maxIntentos intentos antes de descartar un lote ({@code eventos.reserva.max.intentos}).
+     * @param diasRetencion días que se conservan los eventos procesados ({@code eventos.reserva.retencion.dias}).
+     */
+    public DespachadorEventosReserva(EventoReservaRepository eventoReservaRepository,
+                                     List<SuscriptorEventosReserva> suscriptores,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${eventos.reserva.lote:100}") int tamanoLote,
+                                     @Value("${eventos.reserva.max.intentos:5}") int maxIntentos,
+                                     @Value("${eventos.reserva.retencion.dias:7}") int diasRetencion) {
+        this.eventoReservaRepository = eventoReservaRepository;
+        this.suscriptores = suscriptores;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.tamanoLote = Math.max(1, tamanoLote);
+        this.maxIntentos = maxIntentos;
+        this.diasRetencion = diasRetencion;
+        for (SuscriptorEventosReserva suscriptor : suscriptores) {
+            entregados.put(suscriptor, new HashSet<>());
+        }
+    }
+
+    /**
+     * Publica los eventos pendientes, lote a lote, hasta vaciar el outbox o encontrar un fallo.
+     */
+    @Scheduled(fixedDelayString = "${eventos.reserva.intervalo.ms:1000}")
+    public void despachar() {
+        List<EventoReserva> lote;
+        do {
+            lote = eventoReservaRepository.findPendientes(PageRequest.ofSize(tamanoLote));
+            if (lote.isEmpty() || !publicar(lote)) {
+                return;
+            }
+        } while (lote.size() == tamanoLote);
+    }
+
+    /**
+     * Borra los eventos ya procesados con más de {@code eventos.reserva.retencion.dias} días.
+     */
+    @Scheduled(cron = "${eventos.reserva.limpieza.cron:0 45 3 * * *}")
+    public void limpiar() {
+        Integer borrados = transactionTemplate.execute(status ->
+                eventoReservaRepository.borrarProcesadosAntesDe(LocalDateTime.now().minusDays(diasRetencion)));
+        logger.info("Eventos de reserva procesados borrados: {}", borrados);
+    }
+
+    /**
+     * Entrega a cada suscriptor los eventos del lote que aún no ha procesado.
+     *
+     * @return {@code true} si todos lo procesaron y el lote se marcó como procesado.
+     */
+    private boolean publicar(List<EventoReserva> lote) {
+        List<Long> ids = lote.stream().map(EventoReserva::getId).toList();
+        boolean correcto = true;
+        for (SuscriptorEventosReserva suscriptor : suscriptores) {
+            Set<Long> yaEntregados = entregados.get(suscriptor);
+            List<EventoReserva> pendientes = lote.stream().filter(e -> !yaEntregados.contains(e.getId())).toList();
+            if (pendientes.isEmpty()) {
+                continue;
+            }
+            try {
+                suscriptor.procesar(pendientes);
+                pendientes.forEach(e -> yaEntregados.add(e.getId()));
+            } catch (RuntimeException e) {
+                correcto = false;
+                logger.error("Error en {} al procesar {} eventos de reserva: {}",
+                        suscriptor.getClass().getSimpleName(), pendientes.size(), e.getMessage(), e);
+            }
+        }
+
+        if (correcto) {
+            transactionTemplate.executeWithoutResult(status ->
+                    eventoReservaRepository.marcarProcesados(ids, LocalDateTime.now()));
+            olvidar(ids);
+            return true;
+        }
+
+        List<Long> descartados = lote.stream()
+                .filter(e -> e.getIntentos() + 1 >= maxIntentos)
+                .map(EventoReserva::getId)
+                .toList();
+        transactionTemplate.executeWithoutResult(status -> {
+            eventoReservaRepository.sumarIntento(ids);
+            if (!descartados.isEmpty()) {
+                logger.error("Eventos de reserva descartados tras {} intentos: {}", maxIntentos, descartados);
+                eventoReservaRepository.marcarProcesados(descartados, LocalDateTime.now());
+            }
+        });
+        olvidar(descartados);
+        return false;
+    }
+
+    /** Deja de recordar las entregas de eventos que ya no están pendientes. */
+    private void olvidar(Collection<Long> ids) {
+        for (Set<Long> yaEntregados : entregados.values()) {
+            yaEntregados.removeAll(ids);
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package hemen.go.service.evento;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import hemen.go.dto.response.EventoParkingResponse;
+import hemen.go.entity.EventoReserva;
+import hemen.go.enums.TipoEventoReserva;
+import hemen.go.exception.ServicioSaturadoException;
+import hemen.go.repository.ParkingRepository;
+import hemen.go.security.UsuarioAutenticado;
+import jakarta.persistence.EntityNotFoundException;
+
+/**
+ * Envío en tiempo real (Server-Sent Events) de los cambios de cada parking a las puertas y
+ * a los paneles de administración, para que no tengan que consultarlos periódicamente.
+ *
+ * <p>Se envían las reservas creadas y canceladas, que llegan por el outbox como a cualquier
+ * otro {@link SuscriptorEventosReserva}, y los cambios de estado de las plazas, que publica
+ * {@code PlazaService} después de guardarlos. Cada evento SSE lleva como nombre el tipo de
+ * evento y como identificador un número creciente.</p>
+ *
+ * <ul>
+ *   <li>Cada suscriptor tiene una cola acotada ({@code sse.cola}). Si el cliente no lee al
+ *       ritmo de los eventos se descartan los más antiguos, y antes del siguiente envío se
+ *       le manda un evento {@code descartados} con cuántos se perdieron, para que vuelva a
+ *       pedir el estado completo. Un cliente lento nunca retiene memoria sin límite.</li>
+ *   <li>Los envíos los hace un pool pequeño ({@code sse.hilos}); cada suscriptor tiene como
+ *       mucho una tarea pendiente, y quien publica solo encola.</li>
+ *   <li>Un envío es una escritura bloqueante en el socket: un cliente que no lee (o una conexión
+ *       medio abierta) llena el búfer TCP y retiene el hilo hasta que vence el tiempo de
+ *       escritura de Tomcat. Cada {@code sse.envio.max.ms} se buscan los envíos que llevan más
+ *       de ese tiempo en curso: su suscripción se da por perdida y el pool crece un hilo por
+ *       cada envío atascado (hasta {@code sse.hilos.max}), para que los demás parkings sigan
+ *       recibiendo. Cuando la escritura termina o falla, se cierra la conexión y el pool vuelve
+ *       a su tamaño.</li>
+ *   <li>Cada {@code sse.latido.ms} se envía un comentario a los suscriptores sin eventos
+ *       pendientes, para que los proxies no corten la conexión y detectar clientes caídos.</li>
+ *   <li>El número de suscriptores está limitado en total ({@code sse.max.suscriptores}), por
+ *       parking ({@code sse.max.por.parking}) y por cliente ({@code sse.max.por.cliente}: el
+ *       administrador o la IP de la puerta); por encima se responde 503. Así un parking o un
+ *       cliente no puede ocupar todas las conexiones y dejar sin flujo a los demás.</li>
+ * </ul>
+ *
+ * <p>Las suscripciones están en memoria: con varias instancias, cada cliente recibe los
+ * eventos de la instancia a la que está conectado.</p>
+ */
+@Service
+public class DifusionParkingService implements SuscriptorEventosReserva, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(DifusionParkingService.class);
+
+    /** Evento pendiente de enviar a un suscriptor; {@code evento == null} es un latido. */
+    private record Envio(long id, EventoParkingResponse evento) {
+    }
+
+    /** Conexión SSE de un cliente con su cola de envíos. Se accede con su cerrojo. */
+    private final class Suscripcion {
+        final Long idParking;
+        final String cliente;
+        final SseEmitter emisor;
+        final Deque<Envio> cola = new ArrayDeque<>();
+        boolean enviando;
+        boolean cerrada;
+        /** Dada por perdida con un envío atascado; su hilo cierra la conexión al terminar. */
+        boolean atascada;
+        /** Instante (nanoTime) en que empezó el envío en curso, o 0 si no hay ninguno. */
+        long enviandoDesde;
+        long descartados;
+
+        Suscripcion(Long idParking, String cliente, SseEmitter emisor) {
+            this.idParking = idParking;
+            this.cliente = cliente;
+            this.emisor = emisor;
+        }
+
+        void ofrecer(Envio envio) {
+            synchronized (this) {
+                if (cerrada) {
+                    return;
+                }
+                if (envio.evento() == null && (enviando || !cola.isEmpty())) {
+                    // Ya hay tráfico pendiente: el latido sobra
+                    return;
+                }
+                if (cola.size() == tamanoCola) {
+                    cola.pollFirst();
+                    descartados++;
+                }
+                cola.addLast(envio);
+                if (enviando) {
+                    return;
+                }
+                enviando = true;
+            }
+            hilos.execute(this::vaciar);
+        }
+
+        void vaciar() {
+            while (true) {
+                Envio envio;
+                long perdidos;
+                boolean terminarAtascada = false;
+                synchronized (this) {
+                    envio = cola.pollFirst();
+                    if (envio == null || cerrada) {
+                        enviando = false;
+                        terminarAtascada = atascada;
+                        envio = null;
+                    }
+                    perdidos = descartados;
+                    descartados = 0;
+                    enviandoDesde = envio != null ? System.nanoTime() : 0;
+                }
+                if (envio == null) {
+                    if (terminarAtascada) {
+                        // El envío que se dio por perdido ha terminado: se cierra la conexión
+                        liberarAtascada(this);
+                        emisor.complete();
+                    }
+                    return;
+                }
+                try {
+                    if (perdidos > 0) {
+                        emisor.send(SseEmitter.event().name("descartados").data(perdidos));
+                    }
+                    if (envio.evento() == null) {
+                        emisor.send(SseEmitter.event().comment("latido"));
+                    } else {
+                        emisor.send(SseEmitter.event()
+                                .id(Long.toString(envio.id()))
+                                .name(envio.evento().getTipo())
+                                .data(envio.evento(), MediaType.APPLICATION_JSON));
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    // Cliente desconectado o conexión ya cerrada
+                    logger.debug("Suscripción SSE del parking {} cerrada: {}", idParking, e.getMessage());
+                    quitar(this);
+                    synchronized (this) {
+                        enviando = false;
+                        enviandoDesde = 0;
+                        if (atascada) {
+                            liberarAtascada(this);
+                        }
+                    }
+                    emisor.completeWithError(e);
+                    return;
+                }
+            }
+        }
+    }
+
+    private final ParkingRepository parkingRepository;
+    private final MessageSource messageSource;
+    private final int tamanoCola;
+    private final int maxSuscriptores;
+    private final int maxPorParking;
+    private final int maxPorCliente;
+    private final long timeoutMs;
+    private final long envioMaxNanos;
+    private final int hilosBase;
+    private final int hilosMax;
+    private final ThreadPoolExecutor hilos;
+
+    private final Map<Long, Set<Suscripcion>> porParking = new ConcurrentHashMap<>();
+    private final AtomicInteger suscriptores = new AtomicInteger();
+    private final Map<String, Integer> porCliente = new ConcurrentHashMap<>();
+    /** Suscripciones dadas por perdidas cuyo hilo sigue bloqueado en el envío. */
+    private final Set<Suscripcion> atascadas = ConcurrentHashMap.newKeySet();
+    private final AtomicLong secuencia = new AtomicLong();
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param parkingRepository repositorio de parkings.
+     * @param messageSource fuente de mensajes internacionalizados.
+     * @param tamanoCola eventos pendientes por suscriptor antes de descartar ({@code sse.cola}).
+     * @param numHilos hilos que envían los eventos ({@code sse.hilos}).
+     * @param maxHilos hilos como máximo, contando los que sustituyen a envíos atascados ({@code sse.hilos.max}).
+     * @param envioMaxMs duración a partir de la cual un envío se da por atascado ({@code sse.envio.max.ms}).
+     * @param maxSuscriptores conexiones abiertas como máximo ({@code sse.max.suscriptores}).
+     * @param maxPorParking conexiones abiertas como máximo a un mismo parking ({@code sse.max.por.parking}).
+     * @param maxPorCliente conexiones abiertas como máximo de un mismo cliente ({@code sse.max.por.cliente}).
+     * @param timeoutMinutos duración de una conexión; el cliente se reconecta al cerrarse ({@code sse.timeout.minutos}).
+     */
+    public DifusionParkingService(ParkingRepository parkingRepository, MessageSource messageSource,
+                                  @Value("${sse.cola:64}") int tamanoCola,
+                                  @Value("${sse.hilos:2}") int numHilos,
+                                  @Value("${sse.hilos.max:16}") int maxHilos,
+                                  @Value("${sse.envio.max.ms:5000}") long envioMaxMs,
+                                  @Value("${sse.max.suscriptores:1000}") int maxSuscriptores,
+                                  @Value("${sse.max.por.parking:50}") int maxPorParking,
+                                  @Value("${sse.max.por.cliente:10}") int maxPorCliente,
+                                  @Value("${sse.timeout.minutos:30}") long timeoutMinutos) {
+        this.parkingRepository = parkingRepository;
+        this.messageSource = messageSource;
+        this.tamanoCola = Math.max(1, tamanoCola);
+        this.maxSuscriptores = maxSuscriptores;
+        this.maxPorParking = maxPorParking;
+        this.maxPorCliente = maxPorCliente;
+        this.timeoutMs = timeoutMinutos * 60 * 1000;
+        this.envioMaxNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, envioMaxMs));
+        AtomicInteger contador = new AtomicInteger();
+        this.hilosBase = Math.max(1, numHilos);
+        this.hilosMax = Math.max(hilosBase, maxHilos);
+        // Cola sin límite: cada suscriptor tiene como mucho una tarea pendiente. Solo se usan
+        // hilosBase hilos salvo que haya envíos atascados (ver vigilarEnvios)
+        this.hilos = new ThreadPoolExecutor(hilosBase, hilosMax, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "sse-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Abre un flujo de eventos de un parking de la empresa del administrador.
+     *
+     * @param usuario administrador autenticado.
+     * @param idParking identificador del parking.
+     * @return emisor SSE que devuelve el controlador.
+     * @throws UsernameNotFoundException si el usuario no tiene empresa asociada.
+     * @throws EntityNotFoundException si el parking no existe o no es de su empresa.
+     * @throws ServicioSaturadoException si se ha alcanzado el máximo de suscriptores.
+     */
+    public SseEmitter suscribir(UsuarioAutenticado usuario, Long idParking) {
+        Locale locale = LocaleContextHolder.getLocale();
+        if (usuario.getIdEmpresa() == null) {
+            logger.error("El usuario email " + usuario.getUsername() + " no tiene empresa asociada");
+            throw new UsernameNotFoundException(messageSource.getMessage("error.usuario.no.existe", null, locale));
+        }
+        if (parkingRepository.findByIdAndEmpresaId(idParking, usuario.getIdEmpresa()) == null) {
+            throw new EntityNotFoundException(messageSource.getMessage("error.parking.no.existe", null, locale));
+        }
+        return abrir(idParking, "usuario:" + usuario.getUsername());
+    }
+
+    /**
+     * Abre un flujo de eventos de un parking para sus puertas. El controlador comprueba antes
+     * la credencial de la puerta.
+     *
+     * @param idParking identificador del parking.
+     * @param ip dirección de la puerta, para limitar sus conexiones.
+     * @return emisor SSE que devuelve el controlador.
+     * @throws IllegalArgumentException si el parking no existe.
+     * @throws ServicioSaturadoException si se ha alcanzado el máximo de suscriptores.
+     */
+    public SseEmitter suscribir(Long idParking, String ip) {
+        if (!parkingRepository.existsById(idParking)) {
+            throw new IllegalArgumentException(
+                    messageSource.getMessage("error.parking.no.existe", null, LocaleContextHolder.getLocale()));
+        }
+        return abrir(idParking, "ip:" + ip);
+    }
+
+    /**
+     * Envía el cambio de estado de una plaza a los suscriptores de su parking. Debe llamarse
+     * después de confirmar el cambio.
+     *
+     * @param idParking identificador del parking.
+     * @param idPlaza identificador de la plaza.
+     * @param estado código del nuevo estado.
+     */
+    public void publicarPlaza(Long idParking, Long idPlaza, String estado) {
+        publicar(EventoParkingResponse.plaza(idParking, idPlaza, estado));
+    }
+
+    /**
+     * Envía las reservas creadas y canceladas a los suscriptores de su parking.
+     */
+    @Override
+    public void procesar(List<EventoReserva> eventos) {
+        for (EventoReserva evento : eventos) {
+            if (evento.getIdParking() == null || evento.getTipo() == TipoEventoReserva.PUNTUADA) {
+                continue;
+            }
+            publicar(EventoParkingResponse.reserva("RESERVA_" + evento.getTipo().name(), evento.getIdParking(),
+                    evento.getIdReserva(), evento.getIdPlaza(), evento.getFecInicio(), evento.getFecFin()));
+        }
+    }
+
+    /**
+     * Envía un latido a los suscriptores sin eventos pendientes.
+     */
+    @Scheduled(fixedDelayString = "${sse.latido.ms:25000}")
+    public void latido() {
+        Envio envio = new Envio(0, null);
+        porParking.values().forEach(suscripciones -> suscripciones.forEach(s -> s.ofrecer(envio)));
+    }
+
+    /**
+     * Da por perdidas las suscripciones con un envío en curso desde hace más de
+     * {@code sse.envio.max.ms} y añade un hilo al pool por cada una, para que no retengan el
+     * envío a las demás.
+     */
+    @Scheduled(fixedDelayString = "${sse.envio.max.ms:5000}")
+    public void vigilarEnvios() {
+        long ahora = System.nanoTime();
+        porParking.values().forEach(suscripciones -> suscripciones.forEach(s -> {
+            synchronized (s) {
+                if (s.enviandoDesde == 0 || s.cerrada || ahora - s.enviandoDesde < envioMaxNanos) {
+                    return;
+                }
+                s.atascada = true;
+                atascadas.add(s);
+            }
+            logger.warn("Envío SSE al parking {} atascado más de {} ms: se da la conexión por perdida",
+                    s.idParking, TimeUnit.NANOSECONDS.toMillis(envioMaxNanos));
+            // Sin completar el emisor: esperaría al envío bloqueado. Lo cierra su hilo al terminar
+            quitar(s);
+        }));
+        ajustarHilos();
+    }
+
+    @Override
+    public void destroy() {
+        hilos.shutdownNow();
+        porParking.values().forEach(suscripciones -> suscripciones.forEach(s -> s.emisor.complete()));
+    }
+
+    private SseEmitter abrir(Long idParking, String cliente) {
+        if (suscriptores.incrementAndGet() > maxSuscriptores) {
+            suscriptores.decrementAndGet();
+            throw new ServicioSaturadoException("Máximo de suscriptores SSE alcanzado");
+        }
+        SseEmitter emisor = new SseEmitter(timeoutMs);
+        Suscripcion suscripcion = new Suscripcion(idParking, cliente, emisor);
+        try {
+            porCliente.compute(cliente, (clave, abiertas) -> {
+                if (abiertas != null && abiertas >= maxPorCliente) {
+                    throw new ServicioSaturadoException("Máximo de suscriptores SSE por cliente alcanzado");
+                }
+                return abiertas == null ? 1 : abiertas + 1;
+            });
+            try {
+                // Dentro de compute, para no añadirla a un conjunto que quitar() acaba de retirar
+                porParking.compute(idParking, (id, suscripciones) -> {
+                    if (suscripciones != null && suscripciones.size() >= maxPorParking) {
+                        throw new ServicioSaturadoException("Máximo de suscriptores SSE por parking alcanzado");
+                    }
+                    Set<Suscripcion> conjunto = suscripciones != null ? suscripciones : ConcurrentHashMap.newKeySet();
+                    conjunto.add(suscripcion);
+                    return conjunto;
+                });
+            } catch (ServicioSaturadoException e) {
+                liberarCliente(cliente);
+                throw e;
+            }
+        } catch (ServicioSaturadoException e) {
+            suscriptores.decrementAndGet();
+            throw e;
+        }
+        emisor.onCompletion(() -> quitar(suscripcion));
+        emisor.onTimeout(() -> quitar(suscripcion));
+        emisor.onError(e -> quitar(suscripcion));
+        return emisor;
+    }
+
+    private void publicar(EventoParkingResponse evento) {
+        Set<Suscripcion> suscripciones = porParking.get(evento.getIdParking());
+        if (suscripciones == null || suscripciones.isEmpty()) {
+            return;
+        }
+        Envio envio = new Envio(secuencia.incrementAndGet(), evento);
+        suscripciones.forEach(s -> s.ofrecer(envio));
+    }
+
+    private void quitar(Suscripcion suscripcion) {
+        synchronized (suscripcion) {
+            if (suscripcion.cerrada) {
+                return;
+            }
+            suscripcion.cerrada = true;
+            suscripcion.cola.clear();
+        }
+        suscriptores.decrementAndGet();
+        liberarCliente(suscripcion.cliente);
+        porParking.computeIfPresent(suscripcion.idParking, (id, suscripciones) -> {
+            suscripciones.remove(suscripcion);
+            return suscripciones.isEmpty() ? null : suscripciones;
+        });
+    }
+
+    private void liberarAtascada(Suscripcion suscripcion) {
+        if (atascadas.remove(suscripcion)) {
+            ajustarHilos();
+        }
+    }
+
+    /** Un hilo más por cada envío atascado, sin pasar de {@code sse.hilos.max}. */
+    private synchronized void ajustarHilos() {
+        int objetivo = Math.min(hilosMax, hilosBase + atascadas.size());
+        if (hilos.getCorePoolSize() != objetivo) {
+            hilos.setCorePoolSize(objetivo);
+        }
+    }
+
+    private void liberarCliente(String cliente) {
+        porCliente.computeIfPresent(cliente, (clave, abiertas) -> abiertas > 1 ? abiertas - 1 : null);
+    }
+}
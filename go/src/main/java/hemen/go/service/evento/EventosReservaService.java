@@ -0,0 +1,72 @@
+package hemen.go.service.evento;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.stereotype.Service;
+
+import hemen.go.entity.EventoReserva;
+import hemen.go.entity.Reserva;
+import hemen.go.enums.TipoEventoReserva;
+import hemen.go.repository.EventoReservaRepository;
+
+/**
+ * Escritura de eventos de reserva en la tabla outbox.
+ *
+ * <p>Los métodos deben llamarse dentro de la transacción que modifica la reserva: así el
+ * evento se confirma o se deshace junto con el cambio. La publicación a los suscriptores
+ * la hace después {@link DespachadorEventosReserva}, fuera de la petición.</p>
+ */
+@Service
+public class EventosReservaService {
+
+    private final EventoReservaRepository eventoReservaRepository;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param eventoReservaRepository repositorio de la tabla outbox.
+     */
+    public EventosReservaService(EventoReservaRepository eventoReservaRepository) {
+        this.eventoReservaRepository = eventoReservaRepository;
+    }
+
+    /**
+     * Registra un evento de la reserva.
+     *
+     * @param tipo tipo de evento.
+     * @param reserva reserva ya guardada (con ID).
+     */
+    public void registrar(TipoEventoReserva tipo, Reserva reserva) {
+        eventoReservaRepository.save(nuevoEvento(tipo, reserva));
+    }
+
+    /**
+     * Registra el mismo tipo de evento para varias reservas, en un único lote de inserciones.
+     *
+     * @param tipo tipo de evento.
+     * @param reservas reservas ya guardadas (con ID).
+     */
+    public void registrar(TipoEventoReserva tipo, Collection<Reserva> reservas) {
+        List<EventoReserva> eventos = reservas.stream().map(r -> nuevoEvento(tipo, r)).toList();
+        eventoReservaRepository.saveAll(eventos);
+    }
+
+    private EventoReserva nuevoEvento(TipoEventoReserva tipo, Reserva reserva) {
+        EventoReserva evento = new EventoReserva();
+        evento.setTipo(tipo);
+        evento.setIdReserva(reserva.getId());
+        if (reserva.getPlaza() != null) {
+            evento.setIdPlaza(reserva.getPlaza().getId());
+            if (reserva.getPlaza().getParking() != null) {
+                evento.setIdParking(reserva.getPlaza().getParking().getId());
+            }
+        }
+        evento.setFecInicio(reserva.getFecInicio());
+        evento.setFecFin(reserva.getFecFin());
+        evento.setPuntuacion(reserva.getPuntuacion());
+        evento.setFecAlta(LocalDateTime.now());
+        return evento;
+    }
+}
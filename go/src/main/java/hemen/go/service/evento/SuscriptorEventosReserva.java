@@ -0,0 +1,26 @@
+package hemen.go.service.evento;
+
+import java.util.List;
+
+import hemen.go.entity.EventoReserva;
+
+/**
+ * Suscriptor de los eventos de reserva publicados por {@link DespachadorEventosReserva}.
+ *
+ * <p>Cualquier bean que implemente esta interfaz recibe los eventos por lotes, en orden de
+ * creación y fuera del hilo de la petición. El despachador recuerda qué eventos ha entregado
+ * a cada suscriptor: si uno falla, el lote se le reintenta solo a él, y los demás no lo reciben
+ * dos veces. Aun así la entrega es "al menos una vez": ese registro está en memoria y tras un
+ * reinicio los eventos pendientes se entregan de nuevo a todos, y un suscriptor que falla a
+ * medio lote recibe otra vez los eventos que ya había procesado. Por eso el procesado debe ser
+ * idempotente. Cada suscriptor filtra los tipos de evento que le interesan.</p>
+ */
+public interface SuscriptorEventosReserva {
+
+    /**
+     * Procesa un lote de eventos.
+     *
+     * @param eventos eventos en orden de creación.
+     */
+    void procesar(List<EventoReserva> eventos);
+}
@@ -0,0 +1,254 @@
+package hemen.go.service.importacion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import hemen.go.dto.response.ImportacionPlazasResponse;
+import hemen.go.dto.response.ImportacionPlazasResponse.ErrorFila;
+import hemen.go.entity.Parking;
+import hemen.go.entity.Plaza;
+import hemen.go.enums.EstadoPlaza;
+import hemen.go.repository.ParkingRepository;
+import hemen.go.repository.PlazaRepository;
+import hemen.go.security.UsuarioAutenticado;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+
+/**
+ * Importación masiva de plazas de un parking desde CSV o NDJSON.
+ *
+ * <p>Sustituye a cientos de llamadas a {@code POST /api/admin/parking/{parkingId}/plazas}
+ * al dar de alta un parking nuevo:</p>
+ * <ul>
+ *   <li>La empresa del usuario y el parking se comprueban una sola vez.</li>
+ *   <li>El cuerpo se copia primero a un fichero temporal, fuera de la transacción: un cliente
+ *       lento no retiene una conexión del pool mientras envía el fichero. Después se lee línea a
+ *       línea con {@link LectorPlazas}, sin cargarlo entero en memoria.</li>
+ *   <li>Las plazas válidas se insertan por lotes de {@code plazas.importacion.lote} en una única
+ *       transacción; tras cada lote se vacía el contexto de persistencia para no acumular entidades.</li>
+ *   <li>Las filas no válidas no detienen la importación: se omiten y se devuelven con su
+ *       número de línea y el motivo.</li>
+ * </ul>
+ */
+@Service
+public class ImportacionPlazasService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportacionPlazasService.class);
+
+    /** Máximo de errores detallados en la respuesta; el resto solo se cuenta en las filas leídas. */
+    private static final int MAX_ERRORES = 200;
+    private static final int LONGITUD_NOMBRE = 50;
+
+    private final ParkingRepository parkingRepository;
+    private final PlazaRepository plazaRepository;
+    private final EntityManager entityManager;
+    private final MessageSource messageSource;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int tamanoLote;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param parkingRepository repositorio de parkings.
+     * @param plazaRepository repositorio de plazas.
+     * @param entityManager contexto de persistencia, para vaciarlo entre lotes.
+     * @param messageSource fuente de mensajes internacionalizados.
+     * @param objectMapper lector JSON para el formato NDJSON.
+     * @param transactionManager gestor de transacciones.
+     * @param tamanoLote plazas por lote de inserción ({@code plazas.importacion.lote}).
+     */
+    public ImportacionPlazasService(ParkingRepository parkingRepository,
+                                    PlazaRepository plazaRepository, EntityManager entityManager,
+                                    MessageSource messageSource, ObjectMapper objectMapper,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${plazas.importacion.lote:50}") int tamanoLote) {
+        this.parkingRepository = parkingRepository;
+        this.plazaRepository = plazaRepository;
+        this.entityManager = entityManager;
+        this.messageSource = messageSource;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.tamanoLote = Math.max(1, tamanoLote);
+    }
+
+    /**
+     * Importa las plazas del cuerpo de la petición en el parking indicado.
+     *
+     * @param usuario administrador autenticado.
+     * @param parkingId identificador del parking, que debe pertenecer a su empresa.
+     * @param cuerpo cuerpo de la petición en UTF-8.
+     * @param csv {@code true} para CSV con cabecera, {@code false} para NDJSON.
+     * @return filas leídas, plazas creadas y errores por fila.
+     * @throws UsernameNotFoundException si el usuario no existe o no tiene empresa asociada.
+     * @throws EntityNotFoundException si el parking no existe o no es de su empresa.
+     * @throws IllegalArgumentException si la cabecera CSV no es válida.
+     */
+    public ImportacionPlazasResponse importar(UsuarioAutenticado usuario, Long parkingId, InputStream cuerpo, boolean csv) {
+        Locale locale = LocaleContextHolder.getLocale();
+        if (usuario.getIdEmpresa() == null) {
+            logger.error("El usuario email " + usuario.getUsername() + " no tiene empresa asociada");
+            throw new UsernameNotFoundException(messageSource.getMessage("error.usuario.no.existe", null, locale));
+        }
+        Parking parking = parkingRepository.findByIdAndEmpresaId(parkingId, usuario.getIdEmpresa());
+        if (parking == null) {
+            throw new EntityNotFoundException(messageSource.getMessage("error.parking.no.existe", null, locale));
+        }
+
+        Path fichero = null;
+        try {
+            // La transferencia por la red termina antes de abrir la transacción
+            fichero = Files.createTempFile("importacion-plazas-", csv ? ".csv" : ".ndjson");
+            Files.copy(cuerpo, fichero, StandardCopyOption.REPLACE_EXISTING);
+            try (BufferedReader reader = Files.newBufferedReader(fichero, StandardCharsets.UTF_8)) {
+                return importar(parking, new LectorPlazas(reader, csv, objectMapper), locale);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (fichero != null) {
+                try {
+                    Files.deleteIfExists(fichero);
+                } catch (IOException e) {
+                    logger.warn("No se pudo borrar el fichero temporal {}: {}", fichero, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /** Importa las filas del fichero ya copiado en una única transacción. */
+    private ImportacionPlazasResponse importar(Parking parking, LectorPlazas lector, Locale locale) throws IOException {
+        try {
+            lector.leerCabecera();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(messageSource.getMessage(e.getMessage(), null, locale));
+        }
+
+        ImportacionPlazasResponse response = new ImportacionPlazasResponse();
+        transactionTemplate.executeWithoutResult(status -> {
+            Parking referencia = entityManager.getReference(Parking.class, parking.getId());
+            List<Plaza> lote = new ArrayList<>(tamanoLote);
+            int errores = 0;
+            while (true) {
+                LectorPlazas.Fila fila;
+                Plaza plaza;
+                try {
+                    fila = lector.siguiente();
+                    if (fila == null) {
+                        break;
+                    }
+                    plaza = nuevaPlaza(fila.campos(), referencia);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (IllegalArgumentException e) {
+                    response.setFilasLeidas(response.getFilasLeidas() + 1);
+                    if (errores++ < MAX_ERRORES) {
+                        response.getErrores().add(new ErrorFila(lector.getNumeroLinea(),
+                                messageSource.getMessage(e.getMessage(), null, e.getMessage(), locale)));
+                    }
+                    continue;
+                }
+                response.setFilasLeidas(response.getFilasLeidas() + 1);
+                lote.add(plaza);
+                if (lote.size() == tamanoLote) {
+                    guardar(lote, response);
+                }
+            }
+            guardar(lote, response);
+        });
+        logger.info("Importadas {} plazas de {} filas en el parking {}", response.getPlazasCreadas(),
+                response.getFilasLeidas(), parking.getId());
+        return response;
+    }
+
+    private void guardar(List<Plaza> lote, ImportacionPlazasResponse response) {
+        if (lote.isEmpty()) {
+            return;
+        }
+        plazaRepository.saveAll(lote);
+        entityManager.flush();
+        entityManager.clear();
+        response.setPlazasCreadas(response.getPlazasCreadas() + lote.size());
+        lote.clear();
+    }
+
+    /**
+     * Convierte y valida los campos de una fila.
+     *
+     * @throws IllegalArgumentException con la clave del mensaje de error si algún valor no es válido.
+     */
+    private Plaza nuevaPlaza(Map<String, String> campos, Parking parking) {
+        String nombre = campos.get(LectorPlazas.NOMBRE);
+        if (nombre == null || nombre.isBlank() || nombre.length() > LONGITUD_NOMBRE) {
+            throw new IllegalArgumentException("error.importacion.nombre");
+        }
+
+        EstadoPlaza estado = EstadoPlaza.ALTA;
+        String codigoEstado = campos.get(LectorPlazas.ESTADO);
+        if (codigoEstado != null && !codigoEstado.isEmpty()) {
+            try {
+                estado = EstadoPlaza.fromCodigo(codigoEstado);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("error.importacion.estado");
+            }
+        }
+
+        float precio = 0;
+        String textoPrecio = campos.get(LectorPlazas.PRECIO);
+        if (textoPrecio != null && !textoPrecio.isEmpty()) {
+            try {
+                precio = Float.parseFloat(textoPrecio.replace(',', '.'));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("error.importacion.precio");
+            }
+            if (precio < 0 || Float.isNaN(precio) || Float.isInfinite(precio)) {
+                throw new IllegalArgumentException("error.importacion.precio");
+            }
+        }
+
+        Plaza plaza = new Plaza();
+        plaza.setNombre(nombre);
+        plaza.setEsVip(booleano(campos.get(LectorPlazas.ES_VIP)));
+        plaza.setTieneElectricidad(booleano(campos.get(LectorPlazas.ELECTRICIDAD)));
+        plaza.setEstado(estado);
+        plaza.setPrecio(precio);
+        plaza.setParking(parking);
+        return plaza;
+    }
+
+    private boolean booleano(String valor) {
+        if (valor == null || valor.isEmpty()) {
+            return false;
+        }
+        switch (valor.toLowerCase(Locale.ROOT)) {
+            case "true", "1", "si", "sí", "bai", "yes":
+                return true;
+            case "false", "0", "no", "ez":
+                return false;
+            default:
+                throw new IllegalArgumentException("error.importacion.booleano");
+        }
+    }
+}
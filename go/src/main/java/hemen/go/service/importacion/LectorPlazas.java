@@ -0,0 +1,169 @@
+package hemen.go.service.importacion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Lector incremental de plazas en formato CSV o NDJSON.
+ *
+ * <p>Lee una línea cada vez del {@link BufferedReader}, de modo que el fichero nunca se
+ * carga entero en memoria. Cada llamada a {@link #siguiente()} devuelve los campos en
+ * texto de la siguiente fila no vacía; la conversión y validación de valores se hace en
+ * {@link ImportacionPlazasService}.</p>
+ *
+ * <ul>
+ *   <li>CSV: la primera línea es la cabecera con los nombres de columna
+ *       ({@code nombre,esVip,tieneElectricidad,estado,precio}) en cualquier orden.
+ *       Separador coma o punto y coma; los valores pueden ir entre comillas dobles.</li>
+ *   <li>NDJSON: un objeto JSON por línea con esos mismos campos.</li>
+ * </ul>
+ */
+class LectorPlazas {
+
+    static final String NOMBRE = "nombre";
+    static final String ES_VIP = "esvip";
+    static final String ELECTRICIDAD = "tieneelectricidad";
+    static final String ESTADO = "estado";
+    static final String PRECIO = "precio";
+
+    /** Fila leída: valores por nombre de campo (en minúsculas). */
+    record Fila(Map<String, String> campos) {
+    }
+
+    private final BufferedReader reader;
+    private final boolean csv;
+    private final ObjectMapper objectMapper;
+    private List<String> cabecera;
+    private char separador = ',';
+    private long numeroLinea;
+
+    LectorPlazas(BufferedReader reader, boolean csv, ObjectMapper objectMapper) {
+        this.reader = reader;
+        this.csv = csv;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Lee la cabecera CSV. En NDJSON no hace nada.
+     *
+     * @throws IllegalArgumentException con la clave {@code error.importacion.cabecera} si el CSV
+     *         está vacío o no tiene la columna {@code nombre}.
+     */
+    void leerCabecera() throws IOException {
+        if (!csv) {
+            return;
+        }
+        String linea = siguienteLineaNoVacia();
+        if (linea == null) {
+            throw new IllegalArgumentException("error.importacion.cabecera");
+        }
+        if (linea.startsWith("\uFEFF")) {
+            linea = linea.substring(1);
+        }
+        separador = linea.indexOf(';') >= 0 && linea.indexOf(',') < 0 ? ';' : ',';
+        cabecera = new ArrayList<>();
+        for (String columna : partir(linea)) {
+            cabecera.add(columna.trim().toLowerCase(Locale.ROOT));
+        }
+        if (!cabecera.contains(NOMBRE)) {
+            throw new IllegalArgumentException("error.importacion.cabecera");
+        }
+    }
+
+    /**
+     * Devuelve la siguiente fila o {@code null} al final del fichero.
+     *
+     * @throws IllegalArgumentException con la clave del mensaje de error si la línea no se
+     *         puede interpretar; la lectura puede continuar con la siguiente.
+     */
+    Fila siguiente() throws IOException {
+        String linea = siguienteLineaNoVacia();
+        if (linea == null) {
+            return null;
+        }
+        return new Fila(csv ? camposCsv(linea) : camposJson(linea));
+    }
+
+    /** Número de la última línea leída del fichero, empezando en 1. */
+    long getNumeroLinea() {
+        return numeroLinea;
+    }
+
+    private String siguienteLineaNoVacia() throws IOException {
+        String linea;
+        do {
+            linea = reader.readLine();
+            numeroLinea++;
+        } while (linea != null && linea.isBlank());
+        return linea;
+    }
+
+    private Map<String, String> camposCsv(String linea) {
+        List<String> valores = partir(linea);
+        if (valores.size() != cabecera.size()) {
+            throw new IllegalArgumentException("error.importacion.columnas");
+        }
+        Map<String, String> campos = new HashMap<>();
+        for (int i = 0; i < valores.size(); i++) {
+            campos.put(cabecera.get(i), valores.get(i).trim());
+        }
+        return campos;
+    }
+
+    private Map<String, String> camposJson(String linea) {
+        JsonNode nodo;
+        try {
+            nodo = objectMapper.readTree(linea);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("error.importacion.json");
+        }
+        if (nodo == null || !nodo.isObject()) {
+            throw new IllegalArgumentException("error.importacion.json");
+        }
+        Map<String, String> campos = new HashMap<>();
+        nodo.fields().forEachRemaining(e -> {
+            if (!e.getValue().isNull()) {
+                campos.put(e.getKey().toLowerCase(Locale.ROOT), e.getValue().asText().trim());
+            }
+        });
+        return campos;
+    }
+
+    /**
+     * Divide una línea CSV respetando valores entre comillas dobles ({@code ""} escapa una comilla).
+     */
+    private List<String> partir(String linea) {
+        List<String> valores = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (c == '"') {
+                if (entreComillas && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    actual.append('"');
+                    i++;
+                } else {
+                    entreComillas = !entreComillas;
+                }
+            } else if (c == separador && !entreComillas) {
+                valores.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        if (entreComillas) {
+            throw new IllegalArgumentException("error.importacion.comillas");
+        }
+        valores.add(actual.toString());
+        return valores;
+    }
+}
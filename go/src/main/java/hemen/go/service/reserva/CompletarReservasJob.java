@@ -0,0 +1,81 @@
+package hemen.go.service.reserva;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import hemen.go.repository.ReservaRepository;
+
+/**
+ * Tarea programada que pasa a completadas ("2") las reservas activas cuya estancia ya terminó.
+ *
+ * <p>Sin ella las reservas pasadas seguirían activas para siempre y todas las consultas de
+ * disponibilidad (filtradas por {@code estado = '1'}) recorrerían un conjunto cada vez mayor.
+ * Con ella solo quedan activas las estancias actuales y futuras.</p>
+ *
+ * <p>Recorre las reservas por tramos de {@code reserva.completar.lote} identificadores con
+ * paginación por clave, y cada tramo se actualiza en su propia transacción corta para no
+ * retener bloqueos ni ocupar durante mucho tiempo una de las conexiones del pool.</p>
+ */
+@Component
+public class CompletarReservasJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompletarReservasJob.class);
+
+    private final ReservaRepository reservaRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int tamanoLote;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param reservaRepository repositorio de reservas.
+     * @param transactionManager gestor de transacciones.
+     * @param tamanoLote reservas por tramo ({@code reserva.completar.lote}).
+     */
+    public CompletarReservasJob(ReservaRepository reservaRepository,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${reserva.completar.lote:500}") int tamanoLote) {
+        this.reservaRepository = reservaRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.tamanoLote = Math.max(1, tamanoLote);
+    }
+
+    /**
+     * Ejecución programada según {@code reserva.completar.cron} (por defecto cada noche).
+     */
+    @Scheduled(cron = "${reserva.completar.cron:0 15 3 * * *}")
+    public void ejecutar() {
+        completar(LocalDate.now());
+    }
+
+    /**
+     * Completa las reservas activas con fecha de fin anterior a {@code hoy}.
+     *
+     * @param hoy fecha de referencia.
+     * @return número de reservas completadas.
+     */
+    public int completar(LocalDate hoy) {
+        long desdeId = 0;
+        int total = 0;
+        while (true) {
+            List<Long> ids = reservaRepository.findIdsReservasTerminadas(hoy, desdeId, PageRequest.ofSize(tamanoLote));
+            if (ids.isEmpty()) {
+                break;
+            }
+            Integer actualizadas = transactionTemplate.execute(status -> reservaRepository.completarReservas(ids));
+            total += actualizadas != null ? actualizadas : 0;
+            desdeId = ids.get(ids.size() - 1);
+        }
+        logger.info("Reservas completadas: {}", total);
+        return total;
+    }
+}
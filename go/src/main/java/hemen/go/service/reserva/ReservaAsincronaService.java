@@ -0,0 +1,182 @@
+package hemen.go.service.reserva;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.stereotype.Service;
+
+import hemen.go.dto.request.ReservaRequest;
+import hemen.go.entity.Usuario;
+import hemen.go.enums.EstadoSolicitud;
+import hemen.go.exception.ColaReservasLlenaException;
+import hemen.go.service.ReservaService;
+import hemen.go.util.HashedTimingWheel;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Modo asíncrono de reservas.
+ *
+ * <p>En picos de demanda las reservas síncronas esperan una de las dos conexiones del pool
+ * y acaban caducando. En este modo la petición se valida, se encola y se responde al momento
+ * con un identificador de solicitud; un pequeño grupo de hilos vacía las colas e inserta
+ * las reservas por lotes, una transacción por plaza.</p>
+ *
+ * <p>Diseño:</p>
+ * <ul>
+ *   <li>Una cola acotada por hilo. Cada plaza se asigna siempre al mismo hilo, de modo que
+ *       sus solicitudes se procesan en orden y sin carreras entre hilos.</li>
+ *   <li>Cada hilo toma hasta {@code reserva.async.lote} solicitudes, las agrupa por plaza
+ *       y llama a {@link ReservaService#reservarLote(List)} por grupo.</li>
+ *   <li>Si la cola está llena la solicitud se rechaza al instante (el controlador responde 503).</li>
+ *   <li>Las solicitudes terminadas se pueden consultar durante unos minutos y luego
+ *       se olvidan mediante una {@link HashedTimingWheel}.</li>
+ * </ul>
+ */
+@Service
+public class ReservaAsincronaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReservaAsincronaService.class);
+
+    /** Tiempo que se conserva el estado de una solicitud terminada. */
+    private static final long RETENCION_MILLIS = 15 * 60 * 1000;
+
+    private final ReservaService reservaService;
+    private final MessageSource messageSource;
+    private final int tamanoLote;
+
+    private final List<BlockingQueue<SolicitudReserva>> colas = new ArrayList<>();
+    private final Map<String, SolicitudReserva> solicitudes = new ConcurrentHashMap<>();
+    private final ExecutorService hilos;
+    private final HashedTimingWheel<String> caducidades;
+
+    /**
+     * Constructor con inyección de dependencias. Arranca los hilos consumidores.
+     *
+     * @param reservaService servicio de reservas que inserta cada lote.
+     * @param messageSource fuente de mensajes internacionalizados.
+     * @param capacidad número máximo de solicitudes encoladas en total.
+     * @param numHilos número de hilos consumidores (y de colas).
+     * @param tamanoLote número máximo de solicitudes que toma un hilo de una vez.
+     */
+    public ReservaAsincronaService(ReservaService reservaService,
+                                   MessageSource messageSource,
+                                   @Value("${reserva.async.capacidad:500}") int capacidad,
+                                   @Value("${reserva.async.hilos:2}") int numHilos,
+                                   @Value("${reserva.async.lote:50}") int tamanoLote) {
+        this.reservaService = reservaService;
+        this.messageSource = messageSource;
+        this.tamanoLote = tamanoLote;
+
+        AtomicInteger contador = new AtomicInteger();
+        this.hilos = Executors.newFixedThreadPool(numHilos, r -> {
+            Thread t = new Thread(r, "reservas-async-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        for (int i = 0; i < numHilos; i++) {
+            BlockingQueue<SolicitudReserva> cola = new ArrayBlockingQueue<>(Math.max(1, capacidad / numHilos));
+            colas.add(cola);
+            hilos.submit(() -> consumir(cola));
+        }
+        this.caducidades = new HashedTimingWheel<>("reservas-async-estado", 1000, 1024, solicitudes::remove);
+    }
+
+    /**
+     * Valida y encola una solicitud de reserva.
+     *
+     * @param email correo del usuario que reserva.
+     * @param request datos de la reserva.
+     * @return la solicitud encolada, en estado {@link EstadoSolicitud#PENDIENTE}.
+     * @throws IllegalArgumentException si los datos no son válidos.
+     * @throws ColaReservasLlenaException si no hay hueco en la cola.
+     */
+    public SolicitudReserva encolar(String email, ReservaRequest request) {
+        Usuario user = reservaService.validarSolicitud(email, request);
+
+        SolicitudReserva solicitud = new SolicitudReserva(UUID.randomUUID().toString(), email, user.getId(),
+                request, LocaleContextHolder.getLocale());
+
+        BlockingQueue<SolicitudReserva> cola = colas.get(Math.floorMod(Objects.hashCode(request.getIdPlaza()), colas.size()));
+        solicitudes.put(solicitud.getId(), solicitud);
+        if (!cola.offer(solicitud)) {
+            solicitudes.remove(solicitud.getId());
+            throw new ColaReservasLlenaException(
+                    messageSource.getMessage("error.reserva.cola.llena", null, LocaleContextHolder.getLocale()));
+        }
+        return solicitud;
+    }
+
+    /**
+     * Consulta una solicitud del usuario.
+     *
+     * @param email correo del usuario.
+     * @param idSolicitud identificador de la solicitud.
+     * @return la solicitud si existe, pertenece al usuario y no se ha olvidado aún.
+     */
+    public Optional<SolicitudReserva> consultar(String email, String idSolicitud) {
+        return Optional.ofNullable(solicitudes.get(idSolicitud))
+                .filter(s -> s.getEmail().equals(email));
+    }
+
+    /**
+     * Bucle de un hilo consumidor: toma un lote, lo agrupa por plaza y lo inserta.
+     */
+    private void consumir(BlockingQueue<SolicitudReserva> cola) {
+        List<SolicitudReserva> lote = new ArrayList<>(tamanoLote);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                lote.add(cola.take());
+                cola.drainTo(lote, tamanoLote - 1);
+
+                Map<Long, List<SolicitudReserva>> porPlaza = new LinkedHashMap<>();
+                for (SolicitudReserva s : lote) {
+                    porPlaza.computeIfAbsent(s.getRequest().getIdPlaza(), k -> new ArrayList<>()).add(s);
+                }
+                porPlaza.values().forEach(this::procesar);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lote.clear();
+                LocaleContextHolder.resetLocaleContext();
+            }
+        }
+    }
+
+    private void procesar(List<SolicitudReserva> grupo) {
+        try {
+            reservaService.reservarLote(grupo);
+        } catch (RuntimeException e) {
+            logger.error("Error al registrar un lote de {} reservas: {}", grupo.size(), e.getMessage(), e);
+            for (SolicitudReserva s : grupo) {
+                if (s.getEstado() == EstadoSolicitud.PENDIENTE) {
+                    s.rechazar(messageSource.getMessage("error.existe.reserva", null, s.getLocale()));
+                }
+            }
+        }
+        for (SolicitudReserva s : grupo) {
+            caducidades.programar(s.getId(), RETENCION_MILLIS);
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        hilos.shutdownNow();
+        caducidades.close();
+    }
+}
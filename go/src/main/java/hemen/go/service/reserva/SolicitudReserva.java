@@ -0,0 +1,94 @@
+package hemen.go.service.reserva;
+
+import java.time.Instant;
+import java.util.Locale;
+
+import hemen.go.dto.request.ReservaRequest;
+import hemen.go.enums.EstadoSolicitud;
+
+/**
+ * Solicitud de reserva encolada en el modo asíncrono.
+ *
+ * <p>Guarda los datos ya validados de la petición, el idioma del cliente para traducir
+ * el resultado desde el hilo que la procesa y el estado que consulta el cliente.</p>
+ */
+public class SolicitudReserva {
+
+    private final String id;
+    private final String email;
+    private final Long idUsuario;
+    private final ReservaRequest request;
+    private final Locale locale;
+    private final Instant fecAlta;
+
+    private volatile EstadoSolicitud estado = EstadoSolicitud.PENDIENTE;
+    private volatile String mensaje;
+    private volatile Long idReserva;
+
+    public SolicitudReserva(String id, String email, Long idUsuario, ReservaRequest request, Locale locale) {
+        this.id = id;
+        this.email = email;
+        this.idUsuario = idUsuario;
+        this.request = request;
+        this.locale = locale;
+        this.fecAlta = Instant.now();
+    }
+
+    /**
+     * Marca la solicitud como confirmada.
+     *
+     * @param idReserva identificador de la reserva creada.
+     * @param mensaje mensaje de éxito traducido.
+     */
+    public void confirmar(Long idReserva, String mensaje) {
+        this.idReserva = idReserva;
+        this.mensaje = mensaje;
+        this.estado = EstadoSolicitud.CONFIRMADA;
+    }
+
+    /**
+     * Marca la solicitud como rechazada.
+     *
+     * @param mensaje motivo del rechazo traducido.
+     */
+    public void rechazar(String mensaje) {
+        this.mensaje = mensaje;
+        this.estado = EstadoSolicitud.RECHAZADA;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public Long getIdUsuario() {
+        return idUsuario;
+    }
+
+    public ReservaRequest getRequest() {
+        return request;
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    public Instant getFecAlta() {
+        return fecAlta;
+    }
+
+    public EstadoSolicitud getEstado() {
+        return estado;
+    }
+
+    public String getMensaje() {
+        return mensaje;
+    }
+
+    public Long getIdReserva() {
+        return idReserva;
+    }
+}
@@ -0,0 +1,185 @@
+package hemen.go.service.sesion;
+
+import java.util.Locale;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Limitador en memoria de intentos de login fallidos, por email y por IP.
+ *
+ * <p>Cada intento fallido cuesta una consulta a la base de datos y una comparación BCrypt
+ * completa. Este limitador rechaza los intentos de un email o de una IP con demasiados
+ * fallos recientes antes de llegar al {@code AuthenticationManager}, para que la capacidad
+ * de BCrypt quede para los usuarios legítimos.</p>
+ *
+ * <ul>
+ *   <li>Los fallos se cuentan en una ventana deslizante aproximada: el contador de la ventana
+ *       actual más la parte proporcional del de la ventana anterior.</li>
+ *   <li>Los contadores están repartidos en un número fijo de franjas ({@code login.franjas}),
+ *       cada una con su propio cerrojo. Cada clave se asigna a una franja por su hash, así que
+ *       la memoria no crece con el número de emails o IP distintos. Dos claves que caen en la
+ *       misma franja comparten contador, lo que solo puede bloquear antes, nunca después:
+ *       los fallos solo se suman y solo desaparecen al salir de la ventana.</li>
+ *   <li>Al superar el límite, la clave queda bloqueada un tiempo que se duplica con cada
+ *       bloqueo seguido ({@code login.bloqueo.base.segundos}, hasta
+ *       {@code login.bloqueo.max.segundos}). Una ventana entera sin fallos lo reinicia.</li>
+ *   <li>La IP es la del cliente, no la del proxy: con {@code server.forward-headers-strategy=native}
+ *       Tomcat la toma de {@code X-Forwarded-For} cuando la conexión llega de un proxy de
+ *       confianza ({@code server.tomcat.remoteip.internal-proxies}). Sin eso, todos los clientes
+ *       compartirían el contador de la IP del proxy y cualquiera podría bloquear el login de todos.</li>
+ *   <li>Un login correcto no limpia ningún contador: la franja es compartida, y limpiarla
+ *       permitiría que una cuenta propia que cae en la franja de la víctima reiniciase sus
+ *       fallos y se siguiera probando su contraseña sin llegar nunca al límite.</li>
+ * </ul>
+ */
+@Component
+public class LimitadorLogin {
+
+    private static final Logger logger = LoggerFactory.getLogger(LimitadorLogin.class);
+
+    private final Contadores porEmail;
+    private final Contadores porIp;
+
+    /**
+     * @param limiteEmail fallos admitidos por email en una ventana ({@code login.limite.email}).
+     * @param limiteIp fallos admitidos por IP en una ventana ({@code login.limite.ip}).
+     * @param ventanaSegundos duración de la ventana ({@code login.ventana.segundos}).
+     * @param bloqueoBaseSegundos primer bloqueo ({@code login.bloqueo.base.segundos}).
+     * @param bloqueoMaxSegundos bloqueo máximo ({@code login.bloqueo.max.segundos}).
+     * @param franjas número de franjas de contadores, redondeado a potencia de dos ({@code login.franjas}).
+     */
+    public LimitadorLogin(@Value("${login.limite.email:5}") int limiteEmail,
+                          @Value("${login.limite.ip:20}") int limiteIp,
+                          @Value("${login.ventana.segundos:60}") int ventanaSegundos,
+                          @Value("${login.bloqueo.base.segundos:30}") int bloqueoBaseSegundos,
+                          @Value("${login.bloqueo.max.segundos:900}") int bloqueoMaxSegundos,
+                          @Value("${login.franjas:4096}") int franjas) {
+        long ventana = ventanaSegundos * 1000L;
+        long base = bloqueoBaseSegundos * 1000L;
+        long max = bloqueoMaxSegundos * 1000L;
+        this.porEmail = new Contadores(franjas, limiteEmail, ventana, base, max);
+        this.porIp = new Contadores(franjas, limiteIp, ventana, base, max);
+    }
+
+    /**
+     * Comprueba si se admite un intento de login.
+     *
+     * @param email email del intento.
+     * @param ip dirección del cliente.
+     * @return segundos que debe esperar el cliente, o 0 si el intento se admite.
+     */
+    public long esperaSegundos(String email, String ip) {
+        long ahora = System.currentTimeMillis();
+        long espera = Math.max(porEmail.bloqueadoHasta(claveEmail(email), ahora),
+                porIp.bloqueadoHasta(ip, ahora)) - ahora;
+        return espera > 0 ? (espera + 999) / 1000 : 0;
+    }
+
+    /**
+     * Registra un intento de login fallido.
+     *
+     * @param email email del intento.
+     * @param ip dirección del cliente.
+     */
+    public void fallo(String email, String ip) {
+        long ahora = System.currentTimeMillis();
+        if (porEmail.sumar(claveEmail(email), ahora) | porIp.sumar(ip, ahora)) {
+            logger.warn("Demasiados intentos de login fallidos para email {} o IP {}: se bloquean temporalmente", email, ip);
+        }
+    }
+
+    private static String claveEmail(String email) {
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** Contadores de fallos de un tipo de clave, repartidos en franjas. */
+    private static final class Contadores {
+
+        private final Franja[] franjas;
+        private final int mascara;
+        private final int limite;
+        private final long ventana;
+        private final long bloqueoBase;
+        private final long bloqueoMax;
+
+        Contadores(int numFranjas, int limite, long ventana, long bloqueoBase, long bloqueoMax) {
+            int tamano = Integer.highestOneBit(Math.max(1, numFranjas - 1)) << 1;
+            this.franjas = new Franja[tamano];
+            for (int i = 0; i < tamano; i++) {
+                franjas[i] = new Franja();
+            }
+            this.mascara = tamano - 1;
+            this.limite = limite;
+            this.ventana = ventana;
+            this.bloqueoBase = bloqueoBase;
+            this.bloqueoMax = bloqueoMax;
+        }
+
+        long bloqueadoHasta(String clave, long ahora) {
+            Franja franja = franja(clave);
+            synchronized (franja) {
+                return franja.bloqueadoHasta;
+            }
+        }
+
+        /**
+         * Suma un fallo a la clave.
+         *
+         * @return {@code true} si este fallo ha provocado un bloqueo.
+         */
+        boolean sumar(String clave, long ahora) {
+            Franja franja = franja(clave);
+            synchronized (franja) {
+                avanzar(franja, ahora);
+                franja.actual++;
+                double inicioVentana = (double) (ahora - franja.ventana * ventana) / ventana;
+                double estimados = franja.anterior * (1 - inicioVentana) + franja.actual;
+                if (estimados < limite || franja.bloqueadoHasta > ahora) {
+                    return false;
+                }
+                // Bloqueo progresivo: base, 2 x base, 4 x base... hasta el máximo
+                long bloqueo = Math.min(bloqueoMax, bloqueoBase << Math.min(franja.bloqueos, 20));
+                franja.bloqueos++;
+                franja.bloqueadoHasta = ahora + bloqueo;
+                return true;
+            }
+        }
+
+        /** Pasa la franja a la ventana de {@code ahora}, desplazando o descartando contadores. */
+        private void avanzar(Franja franja, long ahora) {
+            long numVentana = ahora / ventana;
+            if (numVentana == franja.ventana) {
+                return;
+            }
+            if (numVentana == franja.ventana + 1) {
+                franja.anterior = franja.actual;
+            } else {
+                // Al menos una ventana entera sin fallos
+                franja.anterior = 0;
+                if (franja.bloqueadoHasta <= ahora) {
+                    franja.bloqueos = 0;
+                }
+            }
+            franja.actual = 0;
+            franja.ventana = numVentana;
+        }
+
+        private Franja franja(String clave) {
+            int h = clave == null ? 0 : clave.hashCode();
+            // Mezcla los bits altos, como HashMap, para repartir mejor con la máscara
+            return franjas[(h ^ (h >>> 16)) & mascara];
+        }
+    }
+
+    /** Estado de una franja. Se accede siempre con su cerrojo. */
+    private static final class Franja {
+        long ventana;
+        int actual;
+        int anterior;
+        int bloqueos;
+        long bloqueadoHasta;
+    }
+}
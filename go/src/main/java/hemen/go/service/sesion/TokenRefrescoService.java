@@ -0,0 +1,213 @@
+package hemen.go.service.sesion;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import hemen.go.entity.TokenRefresco;
+import hemen.go.repository.TokenRefrescoRepository;
+
+/**
+ * Tokens de refresco de sesión con rotación.
+ *
+ * <p>Permiten renovar el token de acceso, de vida corta, sin volver a hacer login: renovar
+ * cuesta buscar un resumen SHA-256 en lugar de verificar la contraseña con BCrypt.</p>
+ *
+ * <ul>
+ *   <li>El token es un valor aleatorio de 256 bits; en la tabla {@code tokens_refresco} solo
+ *       se guarda su resumen.</li>
+ *   <li>Cada renovación marca el token como usado y emite otro de la misma familia. Si se
+ *       presenta un token ya usado (posible robo), se revoca toda la familia.</li>
+ *   <li>Los tokens vigentes se guardan también en memoria ({@code jwt.refresco.cache.max}
+ *       como máximo), para no consultar la tabla antes de marcar el token como usado. Todos
+ *       duran lo mismo, así que el orden de emisión es el de caducidad: al llenarse se
+ *       descarta el más antiguo, que es el que antes caduca y el que más probablemente
+ *       pertenece a una sesión abandonada. Un token descartado se sigue buscando en la tabla.</li>
+ * </ul>
+ */
+@Service
+public class TokenRefrescoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRefrescoService.class);
+
+    /** Token rotado: usuario al que pertenece y nuevo token de refresco. */
+    public record Rotacion(Long idUsuario, String token) {
+    }
+
+    /** Datos de un token vigente guardados en memoria. */
+    private record Entrada(Long idUsuario, long familia, LocalDateTime expiracion) {
+    }
+
+    /** Token guardado en la transacción, pendiente de pasar a memoria tras el commit. */
+    private record Emision(String token, String hash, Entrada entrada) {
+    }
+
+    private final TokenRefrescoRepository tokenRefrescoRepository;
+    private final MessageSource messageSource;
+    private final TransactionTemplate transactionTemplate;
+    private final int diasValidez;
+    private final int maxCache;
+    private final SecureRandom random = new SecureRandom();
+
+    /** Tokens vigentes por resumen, en orden de emisión. */
+    private final Map<String, Entrada> vigentes;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param tokenRefrescoRepository repositorio de tokens de refresco.
+     * @param messageSource fuente de mensajes internacionalizados.
+     * @param transactionManager gestor de transacciones.
+     * @param diasValidez días de validez de cada token ({@code jwt.refresco.dias}).
+     * @param maxCache tokens vigentes guardados en memoria ({@code jwt.refresco.cache.max}).
+     */
+    public TokenRefrescoService(TokenRefrescoRepository tokenRefrescoRepository, MessageSource messageSource,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${jwt.refresco.dias:14}") int diasValidez,
+                                @Value("${jwt.refresco.cache.max:10000}") int maxCache) {
+        this.tokenRefrescoRepository = tokenRefrescoRepository;
+        this.messageSource = messageSource;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.diasValidez = diasValidez;
+        this.maxCache = Math.max(0, maxCache);
+        this.vigentes = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, false) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> eldest) {
+                return size() > TokenRefrescoService.this.maxCache;
+            }
+        });
+    }
+
+    /**
+     * Emite el primer token de refresco de una sesión (tras el login).
+     *
+     * @param idUsuario identificador del usuario.
+     * @return token de refresco.
+     */
+    public String emitir(Long idUsuario) {
+        return recordar(transactionTemplate.execute(status -> guardar(idUsuario, random.nextLong())));
+    }
+
+    /**
+     * Consume un token de refresco y emite el siguiente de su familia.
+     *
+     * @param token token de refresco presentado por el cliente.
+     * @return usuario del token y nuevo token de refresco.
+     * @throws BadCredentialsException si el token no existe, ha caducado o ya se había usado.
+     */
+    public Rotacion rotar(String token) {
+        if (token == null || token.isBlank()) {
+            throw invalido();
+        }
+        String hash = resumen(token);
+        Entrada entrada = vigentes.remove(hash);
+        if (entrada == null) {
+            TokenRefresco guardado = tokenRefrescoRepository.findByHash(hash).orElseThrow(this::invalido);
+            entrada = new Entrada(guardado.getIdUsuario(), guardado.getFamilia(), guardado.getFecExpiracion());
+        }
+        if (entrada.expiracion().isBefore(LocalDateTime.now())) {
+            throw invalido();
+        }
+
+        Entrada actual = entrada;
+        Emision nuevo = transactionTemplate.execute(status -> {
+            // Solo una petición puede consumir el token; las demás lo ven ya usado
+            if (tokenRefrescoRepository.marcarUsado(hash) == 0) {
+                return null;
+            }
+            return guardar(actual.idUsuario(), actual.familia());
+        });
+        if (nuevo == null) {
+            logger.warn("Reutilización de un token de refresco del usuario {}: se revoca su familia", actual.idUsuario());
+            revocarFamilia(actual.familia());
+            throw invalido();
+        }
+        return new Rotacion(actual.idUsuario(), recordar(nuevo));
+    }
+
+    /**
+     * Revoca todos los tokens de refresco de un usuario, por ejemplo al cambiar la contraseña.
+     *
+     * @param idUsuario identificador del usuario.
+     */
+    public void revocarUsuario(Long idUsuario) {
+        vigentes.values().removeIf(e -> Objects.equals(e.idUsuario(), idUsuario));
+        transactionTemplate.executeWithoutResult(status -> tokenRefrescoRepository.revocarUsuario(idUsuario));
+    }
+
+    /**
+     * Borra los tokens caducados de la tabla y de memoria.
+     */
+    @Scheduled(cron = "${jwt.refresco.limpieza.cron:0 30 4 * * *}")
+    public void limpiar() {
+        LocalDateTime ahora = LocalDateTime.now();
+        vigentes.values().removeIf(e -> e.expiracion().isBefore(ahora));
+        Integer borrados = transactionTemplate.execute(status -> tokenRefrescoRepository.borrarCaducadosAntesDe(ahora));
+        logger.info("Tokens de refresco caducados borrados: {}", borrados);
+    }
+
+    private void revocarFamilia(long familia) {
+        vigentes.values().removeIf(e -> e.familia() == familia);
+        transactionTemplate.executeWithoutResult(status -> tokenRefrescoRepository.revocarFamilia(familia));
+    }
+
+    /**
+     * Guarda un token nuevo. No lo pasa a memoria: si la transacción se deshace, la caché
+     * tendría un token que no existe en la tabla.
+     */
+    private Emision guardar(Long idUsuario, long familia) {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        TokenRefresco refresco = new TokenRefresco();
+        refresco.setHash(resumen(token));
+        refresco.setIdUsuario(idUsuario);
+        refresco.setFamilia(familia);
+        refresco.setFecExpiracion(LocalDateTime.now().plusDays(diasValidez));
+        tokenRefrescoRepository.save(refresco);
+
+        return new Emision(token, refresco.getHash(), new Entrada(idUsuario, familia, refresco.getFecExpiracion()));
+    }
+
+    /** Pasa a memoria un token ya confirmado en la tabla. */
+    private String recordar(Emision emision) {
+        vigentes.put(emision.hash(), emision.entrada());
+        return emision.token();
+    }
+
+    private BadCredentialsException invalido() {
+        return new BadCredentialsException(
+                messageSource.getMessage("error.refresco.invalido", null, LocaleContextHolder.getLocale()));
+    }
+
+    private static String resumen(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // Todas las JVM incluyen SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
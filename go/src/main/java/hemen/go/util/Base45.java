@@ -0,0 +1,86 @@
+package hemen.go.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Codificación Base45 (RFC 9285) de datos binarios.
+ *
+ * <p>El alfabeto son los 45 caracteres del modo alfanumérico de los códigos QR (dígitos,
+ * mayúsculas, espacio y {@code $%*+-./:}), de modo que el QR guarda el texto a 5,5 bits por
+ * carácter: cada 2 bytes ocupan 3 caracteres, unos 16,5 bits, frente a los más de 21 del
+ * Base64 en modo byte.</p>
+ */
+public final class Base45 {
+
+    private static final String ALFABETO = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:";
+    private static final int[] VALOR = new int[128];
+
+    static {
+        Arrays.fill(VALOR, -1);
+        for (int i = 0; i < ALFABETO.length(); i++) {
+            VALOR[ALFABETO.charAt(i)] = i;
+        }
+    }
+
+    private Base45() {
+    }
+
+    /**
+     * Codifica los bytes en Base45.
+     *
+     * @param datos bytes a codificar.
+     * @return texto con caracteres del alfabeto alfanumérico de QR.
+     */
+    public static String codificar(byte[] datos) {
+        StringBuilder texto = new StringBuilder((datos.length + 1) / 2 * 3);
+        int i = 0;
+        for (; i + 1 < datos.length; i += 2) {
+            int n = ((datos[i] & 0xFF) << 8) | (datos[i + 1] & 0xFF);
+            texto.append(ALFABETO.charAt(n % 45)).append(ALFABETO.charAt(n / 45 % 45)).append(ALFABETO.charAt(n / 2025));
+        }
+        if (i < datos.length) {
+            int n = datos[i] & 0xFF;
+            texto.append(ALFABETO.charAt(n % 45)).append(ALFABETO.charAt(n / 45));
+        }
+        return texto.toString();
+    }
+
+    /**
+     * Decodifica un texto Base45.
+     *
+     * @param texto texto codificado con {@link #codificar(byte[])}.
+     * @return bytes originales.
+     * @throws IllegalArgumentException si el texto no es Base45 válido.
+     */
+    public static byte[] decodificar(CharSequence texto) {
+        int longitud = texto.length();
+        if (longitud % 3 == 1) {
+            throw new IllegalArgumentException("Longitud Base45 no válida: " + longitud);
+        }
+        ByteArrayOutputStream datos = new ByteArrayOutputStream(longitud / 3 * 2 + 1);
+        for (int i = 0; i < longitud; i += 3) {
+            int n = valor(texto, i) + valor(texto, i + 1) * 45;
+            if (i + 2 < longitud) {
+                n += valor(texto, i + 2) * 2025;
+                if (n > 0xFFFF) {
+                    throw new IllegalArgumentException("Grupo Base45 fuera de rango en la posición " + i);
+                }
+                datos.write(n >> 8);
+            } else if (n > 0xFF) {
+                throw new IllegalArgumentException("Grupo Base45 fuera de rango en la posición " + i);
+            }
+            datos.write(n & 0xFF);
+        }
+        return datos.toByteArray();
+    }
+
+    private static int valor(CharSequence texto, int posicion) {
+        char c = texto.charAt(posicion);
+        int valor = c < VALOR.length ? VALOR[c] : -1;
+        if (valor < 0) {
+            throw new IllegalArgumentException("Carácter no válido en Base45: '" + c + "'");
+        }
+        return valor;
+    }
+}
@@ -0,0 +1,328 @@
+package hemen.go.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Diario de solo escritura al final, de registros de tamaño fijo, en segmentos de fichero
+ * proyectados en memoria.
+ *
+ * <p>Anotar un registro es copiar unos bytes en la memoria proyectada del segmento actual, sin
+ * llamadas al sistema. Un hilo propio vuelca a disco cada {@code commitMillis} todo lo anotado
+ * desde el volcado anterior (commit en grupo): quien anota espera a ese volcado, así que un
+ * único {@code force} confirma los registros de todas las peticiones de ese intervalo.</p>
+ *
+ * <ul>
+ *   <li>Cada segmento es un fichero {@code <prefijo>-<número>.seg} con capacidad para
+ *       {@code registrosPorSegmento} registros. Al llenarse se vuelca, se cierra y se abre el siguiente.</li>
+ *   <li>Los números no se reutilizan aunque el directorio se vacíe: el segmento nuevo es el
+ *       siguiente al actual, pero nunca menor que {@code primerSegmento}, que fija quien abre el
+ *       diario (por ejemplo, por encima de los ya procesados).</li>
+ *   <li>Cada registro lleva al final el CRC32 de sus datos. Al arrancar se recorre el último
+ *       segmento hasta el primer registro sin CRC válido (hueco sin escribir o escritura
+ *       a medias) y se sigue anotando desde ahí.</li>
+ *   <li>Los segmentos cerrados se pueden leer y, una vez procesados, borrar.</li>
+ *   <li>Si un volcado falla, el hilo lo registra y lo reintenta en el siguiente intervalo.
+ *       Quien anota espera como mucho {@code esperaMaxMillis}: pasado ese tiempo deja de
+ *       esperar y el registro queda en la memoria proyectada, sin confirmar en disco.</li>
+ * </ul>
+ */
+public class DiarioMapeado implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiarioMapeado.class);
+
+    private static final String EXTENSION = ".seg";
+
+    private final Path directorio;
+    private final String prefijo;
+    private final int tamanoDatos;
+    private final int tamanoRegistro;
+    private final int registrosPorSegmento;
+    private final long primerSegmento;
+    private final long esperaMaxMillis;
+    private final ScheduledExecutorService hilo;
+
+    /** Segmento en el que se anota; se modifica con el cerrojo del diario. */
+    private long numeroActual;
+    private MappedByteBuffer actual;
+    private int posicion;
+
+    /** Registros anotados y registros ya volcados a disco desde el arranque. */
+    private long anotados;
+    private long volcados;
+    private final Object volcado = new Object();
+
+    /** Si el último volcado falló, para no repetir el error en cada intervalo. Solo lo usa el hilo del diario. */
+    private boolean fallando;
+
+    /**
+     * Abre el diario, recuperando el último segmento si existe.
+     *
+     * @param directorio directorio de los segmentos; se crea si no existe.
+     * @param prefijo prefijo de los ficheros de segmento.
+     * @param tamanoDatos bytes de datos de cada registro (sin el CRC).
+     * @param registrosPorSegmento registros que caben en un segmento.
+     * @param primerSegmento número mínimo de los segmentos que se abran a partir de ahora.
+     * @param commitMillis intervalo entre volcados a disco.
+     * @param esperaMaxMillis tiempo máximo que {@link #anotar} espera al volcado.
+     */
+    public DiarioMapeado(Path directorio, String prefijo, int tamanoDatos, int registrosPorSegmento,
+                         long primerSegmento, long commitMillis, long esperaMaxMillis) {
+        this.directorio = directorio;
+        this.prefijo = prefijo;
+        this.tamanoDatos = tamanoDatos;
+        this.tamanoRegistro = tamanoDatos + Integer.BYTES;
+        this.registrosPorSegmento = registrosPorSegmento;
+        this.primerSegmento = Math.max(1, primerSegmento);
+        this.esperaMaxMillis = esperaMaxMillis;
+        try {
+            Files.createDirectories(directorio);
+            List<Long> existentes = segmentos();
+            if (existentes.isEmpty()) {
+                abrir(this.primerSegmento);
+            } else {
+                abrir(existentes.get(existentes.size() - 1));
+                posicion = recuperar(actual);
+                logger.info("Diario {}: segmento {} recuperado con {} registros", prefijo, numeroActual, posicion);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se puede abrir el diario en " + directorio, e);
+        }
+        this.hilo = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "diario-" + prefijo);
+            t.setDaemon(true);
+            return t;
+        });
+        this.hilo.scheduleWithFixedDelay(this::volcar, commitMillis, commitMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Anota un registro y espera, como mucho {@code esperaMaxMillis}, a que esté volcado a disco.
+     *
+     * @param datos exactamente {@code tamanoDatos} bytes entre la posición y el límite.
+     * @return {@code true} si el registro está en disco; {@code false} si se agotó la espera
+     *         (o se cerró el diario) y solo está en la memoria proyectada.
+     * @throws UncheckedIOException si no se puede abrir un segmento nuevo.
+     */
+    public boolean anotar(ByteBuffer datos) {
+        if (datos.remaining() != tamanoDatos) {
+            throw new IllegalArgumentException("Registro de " + datos.remaining() + " bytes; se esperaban " + tamanoDatos);
+        }
+        byte[] registro = new byte[tamanoRegistro];
+        datos.get(registro, 0, tamanoDatos);
+        CRC32 crc = new CRC32();
+        crc.update(registro, 0, tamanoDatos);
+        ByteBuffer.wrap(registro).putInt(tamanoDatos, (int) crc.getValue());
+
+        long secuencia;
+        synchronized (this) {
+            if (posicion == registrosPorSegmento) {
+                rotar();
+            }
+            actual.put(posicion * tamanoRegistro, registro);
+            posicion++;
+            secuencia = ++anotados;
+        }
+        return esperarVolcado(secuencia);
+    }
+
+    /**
+     * Cierra el segmento actual aunque no esté lleno, para poder procesarlo. Si está vacío no hace nada.
+     */
+    public synchronized void cerrarSegmentoActual() {
+        if (posicion > 0) {
+            rotar();
+        }
+    }
+
+    /**
+     * Números de los segmentos en disco, en orden, incluido el actual.
+     */
+    public List<Long> segmentos() throws IOException {
+        List<Long> numeros = new ArrayList<>();
+        try (Stream<Path> ficheros = Files.list(directorio)) {
+            ficheros.map(f -> f.getFileName().toString())
+                    .filter(n -> n.startsWith(prefijo + "-") && n.endsWith(EXTENSION))
+                    .forEach(n -> numeros.add(Long.parseLong(n.substring(prefijo.length() + 1, n.length() - EXTENSION.length()))));
+        }
+        numeros.sort(null);
+        return numeros;
+    }
+
+    /**
+     * Números de los segmentos cerrados, en orden: todos salvo el actual.
+     */
+    public List<Long> segmentosCerrados() throws IOException {
+        long enCurso;
+        synchronized (this) {
+            enCurso = numeroActual;
+        }
+        return segmentos().stream().filter(n -> n != enCurso).toList();
+    }
+
+    /**
+     * Recorre los registros válidos de un segmento, en orden de anotación.
+     *
+     * @param numero número del segmento; puede ser el actual.
+     * @param lector recibe los datos de cada registro (sin el CRC), de solo lectura.
+     */
+    public void leer(long numero, Consumer<ByteBuffer> lector) throws IOException {
+        ByteBuffer segmento;
+        int registros;
+        synchronized (this) {
+            if (numero == numeroActual) {
+                segmento = actual.duplicate();
+                registros = posicion;
+            } else {
+                segmento = null;
+                registros = -1;
+            }
+        }
+        if (segmento == null) {
+            try (FileChannel canal = FileChannel.open(fichero(numero), StandardOpenOption.READ)) {
+                segmento = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            }
+            registros = recuperar(segmento);
+        }
+        for (int i = 0; i < registros; i++) {
+            lector.accept(segmento.slice(i * tamanoRegistro, tamanoDatos).asReadOnlyBuffer());
+        }
+    }
+
+    /**
+     * Borra un segmento cerrado.
+     *
+     * @param numero número del segmento.
+     * @throws IllegalArgumentException si es el segmento actual.
+     */
+    public void borrar(long numero) throws IOException {
+        synchronized (this) {
+            if (numero == numeroActual) {
+                throw new IllegalArgumentException("No se puede borrar el segmento actual del diario");
+            }
+        }
+        Files.deleteIfExists(fichero(numero));
+    }
+
+    @Override
+    public void close() {
+        hilo.shutdownNow();
+        volcar();
+    }
+
+    /**
+     * Vuelca a disco lo anotado y despierta a quienes esperan. Solo lo llama el hilo del diario.
+     * No lanza excepciones: una excepción cancelaría las siguientes ejecuciones programadas.
+     */
+    private void volcar() {
+        long hasta;
+        long numero;
+        MappedByteBuffer segmento;
+        synchronized (this) {
+            hasta = anotados;
+            numero = numeroActual;
+            segmento = actual;
+        }
+        synchronized (volcado) {
+            if (hasta == volcados) {
+                return;
+            }
+        }
+        try {
+            // Los segmentos anteriores se volcaron al rotar
+            segmento.force();
+        } catch (RuntimeException e) {
+            if (!fallando) {
+                logger.error("Diario {}: no se pudo volcar el segmento {} a disco; se reintentará", prefijo, numero, e);
+                fallando = true;
+            }
+            return;
+        }
+        if (fallando) {
+            logger.info("Diario {}: volcado a disco recuperado", prefijo);
+            fallando = false;
+        }
+        synchronized (volcado) {
+            volcados = Math.max(volcados, hasta);
+            volcado.notifyAll();
+        }
+    }
+
+    private boolean esperarVolcado(long secuencia) {
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(esperaMaxMillis);
+        synchronized (volcado) {
+            while (volcados < secuencia) {
+                long restante = TimeUnit.NANOSECONDS.toMillis(limite - System.nanoTime());
+                if (restante <= 0 || hilo.isShutdown()) {
+                    return false;
+                }
+                try {
+                    volcado.wait(restante);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** Vuelca y cierra el segmento actual y abre el siguiente. Se llama con el cerrojo del diario. */
+    private void rotar() {
+        actual.force();
+        synchronized (volcado) {
+            volcados = Math.max(volcados, anotados);
+            volcado.notifyAll();
+        }
+        try {
+            abrir(Math.max(numeroActual + 1, primerSegmento));
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se puede abrir un segmento nuevo del diario", e);
+        }
+    }
+
+    private void abrir(long numero) throws IOException {
+        try (FileChannel canal = FileChannel.open(fichero(numero),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // La proyección sigue siendo válida después de cerrar el canal
+            actual = canal.map(FileChannel.MapMode.READ_WRITE, 0, (long) registrosPorSegmento * tamanoRegistro);
+        }
+        numeroActual = numero;
+        posicion = 0;
+    }
+
+    /** Cuenta los registros válidos desde el principio del segmento. */
+    private int recuperar(ByteBuffer segmento) {
+        int capacidad = segmento.capacity() / tamanoRegistro;
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < capacidad; i++) {
+            crc.reset();
+            crc.update(segmento.slice(i * tamanoRegistro, tamanoDatos));
+            if ((int) crc.getValue() != segmento.getInt(i * tamanoRegistro + tamanoDatos)) {
+                return i;
+            }
+        }
+        return capacidad;
+    }
+
+    private Path fichero(long numero) {
+        return directorio.resolve(String.format("%s-%020d%s", prefijo, numero, EXTENSION));
+    }
+}
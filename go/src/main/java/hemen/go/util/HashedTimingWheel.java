@@ -0,0 +1,172 @@
+package hemen.go.util;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rueda temporal con hash (hashed timing wheel) para gestionar caducidades en memoria.
+ *
+ * <p>En lugar de programar un temporizador por elemento, la rueda divide el tiempo en
+ * "ticks" de duración fija y reparte los elementos en {@code tamano} cubos según el tick
+ * en el que caducan. Un único hilo avanza un cubo por tick y caduca los elementos cuyo
+ * número de vueltas restantes es cero.</p>
+ *
+ * <p>Características:</p>
+ * <ul>
+ *   <li>Alta y cancelación en O(1), sin bloqueos en el hilo que llama.</li>
+ *   <li>Los cubos solo los toca el hilo de la rueda: las altas se encolan y se reparten al inicio de cada tick.</li>
+ *   <li>La precisión es de un tick: un elemento nunca caduca antes de su plazo, y como mucho un
+ *       tick después. El número de ticks se calcula al repartir el alta, a partir del plazo
+ *       absoluto, para no contar el tick en curso como uno entero.</li>
+ * </ul>
+ *
+ * @param <T> tipo del elemento que caduca.
+ */
+public class HashedTimingWheel<T> implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(HashedTimingWheel.class);
+
+    private final long tickNanos;
+    private final int mask;
+    private final Queue<Timeout<T>>[] cubos;
+    private final Queue<Timeout<T>> pendientes = new ConcurrentLinkedQueue<>();
+    private final Consumer<T> alCaducar;
+    private final ScheduledExecutorService hilo;
+
+    /** Tick actual; solo lo modifica el hilo de la rueda. */
+    private long tickActual;
+
+    /**
+     * Crea y arranca la rueda.
+     *
+     * @param nombre nombre del hilo de la rueda.
+     * @param tickMillis duración de un tick en milisegundos.
+     * @param tamano número de cubos (se redondea a la siguiente potencia de 2).
+     * @param alCaducar acción a ejecutar con cada elemento caducado.
+     */
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(String nombre, long tickMillis, int tamano, Consumer<T> alCaducar) {
+        if (tickMillis <= 0 || tamano <= 0) {
+            throw new IllegalArgumentException("tickMillis y tamano deben ser positivos");
+        }
+        int normalizado = 1;
+        while (normalizado < tamano) {
+            normalizado <<= 1;
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.mask = normalizado - 1;
+        this.cubos = new Queue[normalizado];
+        for (int i = 0; i < normalizado; i++) {
+            cubos[i] = new ArrayDeque<>();
+        }
+        this.alCaducar = alCaducar;
+        this.hilo = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, nombre);
+            t.setDaemon(true);
+            return t;
+        });
+        this.hilo.scheduleAtFixedRate(this::avanzar, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Programa la caducidad de un elemento.
+     *
+     * @param elemento elemento a caducar.
+     * @param retardoMillis milisegundos hasta la caducidad.
+     * @return manejador que permite cancelar la caducidad.
+     */
+    public Timeout<T> programar(T elemento, long retardoMillis) {
+        long plazo = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, retardoMillis));
+        Timeout<T> timeout = new Timeout<>(elemento, plazo);
+        pendientes.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Avanza un tick: reparte las altas pendientes y caduca el cubo actual.
+     */
+    private void avanzar() {
+        repartirPendientes(System.nanoTime());
+        Queue<Timeout<T>> cubo = cubos[(int) (tickActual & mask)];
+        Iterator<Timeout<T>> it = cubo.iterator();
+        while (it.hasNext()) {
+            Timeout<T> timeout = it.next();
+            if (timeout.cancelado) {
+                it.remove();
+            } else if (timeout.vueltas <= 0) {
+                it.remove();
+                timeout.cancelado = true;
+                try {
+                    alCaducar.accept(timeout.elemento);
+                } catch (RuntimeException e) {
+                    // Un fallo en un elemento no debe parar la rueda
+                    logger.error("Error al caducar un elemento de la rueda temporal: {}", e.getMessage(), e);
+                }
+            } else {
+                timeout.vueltas--;
+            }
+        }
+        tickActual++;
+    }
+
+    private void repartirPendientes(long ahora) {
+        Timeout<T> timeout;
+        while ((timeout = pendientes.poll()) != null) {
+            if (timeout.cancelado) {
+                continue;
+            }
+            // Ticks completos que faltan desde ahora; con cero caduca en este mismo tick, porque
+            // el cubo actual se procesa justo después de repartir
+            long restante = timeout.plazo - ahora;
+            long ticks = restante <= 0 ? 0 : (restante + tickNanos - 1) / tickNanos;
+            long destino = tickActual + ticks;
+            timeout.vueltas = ticks / cubos.length;
+            cubos[(int) (destino & mask)].add(timeout);
+        }
+    }
+
+    @Override
+    public void close() {
+        hilo.shutdownNow();
+    }
+
+    /**
+     * Manejador de un elemento programado en la rueda.
+     *
+     * @param <T> tipo del elemento.
+     */
+    public static final class Timeout<T> {
+        private final T elemento;
+        /** Plazo de caducidad, en la escala de {@link System#nanoTime()}. */
+        private final long plazo;
+        private long vueltas;
+        private volatile boolean cancelado;
+
+        private Timeout(T elemento, long plazo) {
+            this.elemento = elemento;
+            this.plazo = plazo;
+        }
+
+        /** Cancela la caducidad; el elemento se descarta en el siguiente paso por su cubo. */
+        public void cancelar() {
+            cancelado = true;
+        }
+
+        public T getElemento() {
+            return elemento;
+        }
+
+        public boolean isCancelado() {
+            return cancelado;
+        }
+    }
+}
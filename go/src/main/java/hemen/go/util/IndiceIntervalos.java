@@ -0,0 +1,224 @@
+package hemen.go.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Índice de intervalos cerrados {@code [inicio, fin]} que responde qué intervalos se solapan
+ * con uno dado sin recorrerlos todos.
+ *
+ * <p>Es un árbol de intervalos aumentado implementado como treap: árbol binario de búsqueda
+ * ordenado por inicio que se mantiene equilibrado con prioridades aleatorias. Cada nodo guarda
+ * además el fin máximo de su subárbol, lo que permite descartar ramas enteras en la búsqueda.
+ * Inserción y borrado cuestan O(log n) de media y la búsqueda O(log n + k), con k el número
+ * de resultados.</p>
+ *
+ * <p>No es seguro para uso concurrente: quien lo use debe sincronizar el acceso.</p>
+ *
+ * @param <T> tipo del valor asociado a cada intervalo.
+ */
+public class IndiceIntervalos<T> {
+
+    /**
+     * Intervalo almacenado. Se devuelve al insertar y sirve para eliminarlo después.
+     */
+    public static final class Intervalo<T> {
+        private final long inicio;
+        private final long fin;
+        private final long secuencia;
+        private final T valor;
+
+        private Intervalo(long inicio, long fin, long secuencia, T valor) {
+            this.inicio = inicio;
+            this.fin = fin;
+            this.secuencia = secuencia;
+            this.valor = valor;
+        }
+
+        public long getInicio() {
+            return inicio;
+        }
+
+        public long getFin() {
+            return fin;
+        }
+
+        public T getValor() {
+            return valor;
+        }
+
+        private int comparar(Intervalo<?> otro) {
+            int c = Long.compare(inicio, otro.inicio);
+            return c != 0 ? c : Long.compare(secuencia, otro.secuencia);
+        }
+    }
+
+    private static final class Nodo<T> {
+        final Intervalo<T> intervalo;
+        final int prioridad = ThreadLocalRandom.current().nextInt();
+        long maxFin;
+        Nodo<T> izq;
+        Nodo<T> der;
+
+        Nodo(Intervalo<T> intervalo) {
+            this.intervalo = intervalo;
+            this.maxFin = intervalo.fin;
+        }
+    }
+
+    private Nodo<T> raiz;
+    private long secuencia;
+    private int tamano;
+
+    /**
+     * Inserta un intervalo.
+     *
+     * @param inicio inicio del intervalo (incluido).
+     * @param fin fin del intervalo (incluido), no anterior a {@code inicio}.
+     * @param valor valor asociado.
+     * @return el intervalo insertado, necesario para {@link #eliminar(Intervalo)}.
+     * @throws IllegalArgumentException si {@code fin < inicio}.
+     */
+    public Intervalo<T> insertar(long inicio, long fin, T valor) {
+        if (fin < inicio) {
+            throw new IllegalArgumentException("Intervalo no válido: [" + inicio + ", " + fin + "]");
+        }
+        Intervalo<T> intervalo = new Intervalo<>(inicio, fin, secuencia++, valor);
+        raiz = insertar(raiz, new Nodo<>(intervalo));
+        tamano++;
+        return intervalo;
+    }
+
+    /**
+     * Elimina un intervalo insertado previamente.
+     *
+     * @param intervalo intervalo devuelto por {@link #insertar(long, long, Object)}.
+     * @return {@code true} si estaba en el índice.
+     */
+    public boolean eliminar(Intervalo<T> intervalo) {
+        int antes = tamano;
+        raiz = eliminar(raiz, intervalo);
+        return tamano < antes;
+    }
+
+    /**
+     * Devuelve los intervalos que se solapan con {@code [inicio, fin]}, ordenados por inicio.
+     *
+     * @param inicio inicio del rango consultado (incluido).
+     * @param fin fin del rango consultado (incluido).
+     * @return intervalos solapados; lista vacía si no hay.
+     */
+    public List<Intervalo<T>> solapados(long inicio, long fin) {
+        List<Intervalo<T>> resultado = new ArrayList<>();
+        buscar(raiz, inicio, fin, resultado);
+        return resultado;
+    }
+
+    public int size() {
+        return tamano;
+    }
+
+    public boolean isEmpty() {
+        return tamano == 0;
+    }
+
+    private void buscar(Nodo<T> nodo, long inicio, long fin, List<Intervalo<T>> resultado) {
+        // Ningún intervalo del subárbol termina después del inicio consultado
+        if (nodo == null || nodo.maxFin < inicio) {
+            return;
+        }
+        buscar(nodo.izq, inicio, fin, resultado);
+        // Los nodos de la derecha empiezan aún más tarde: si este ya empieza después, no hay más
+        if (nodo.intervalo.inicio > fin) {
+            return;
+        }
+        if (nodo.intervalo.fin >= inicio) {
+            resultado.add(nodo.intervalo);
+        }
+        buscar(nodo.der, inicio, fin, resultado);
+    }
+
+    private Nodo<T> insertar(Nodo<T> nodo, Nodo<T> nuevo) {
+        if (nodo == null) {
+            return nuevo;
+        }
+        if (nuevo.intervalo.comparar(nodo.intervalo) < 0) {
+            nodo.izq = insertar(nodo.izq, nuevo);
+            if (nodo.izq.prioridad > nodo.prioridad) {
+                nodo = rotarDerecha(nodo);
+            }
+        } else {
+            nodo.der = insertar(nodo.der, nuevo);
+            if (nodo.der.prioridad > nodo.prioridad) {
+                nodo = rotarIzquierda(nodo);
+            }
+        }
+        actualizar(nodo);
+        return nodo;
+    }
+
+    private Nodo<T> eliminar(Nodo<T> nodo, Intervalo<T> intervalo) {
+        if (nodo == null) {
+            return null;
+        }
+        int c = intervalo.comparar(nodo.intervalo);
+        if (c < 0) {
+            nodo.izq = eliminar(nodo.izq, intervalo);
+        } else if (c > 0) {
+            nodo.der = eliminar(nodo.der, intervalo);
+        } else {
+            tamano--;
+            return unir(nodo.izq, nodo.der);
+        }
+        actualizar(nodo);
+        return nodo;
+    }
+
+    /** Une dos subárboles en los que todas las claves de {@code a} son menores que las de {@code b}. */
+    private Nodo<T> unir(Nodo<T> a, Nodo<T> b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.prioridad > b.prioridad) {
+            a.der = unir(a.der, b);
+            actualizar(a);
+            return a;
+        }
+        b.izq = unir(a, b.izq);
+        actualizar(b);
+        return b;
+    }
+
+    private Nodo<T> rotarDerecha(Nodo<T> nodo) {
+        Nodo<T> izq = nodo.izq;
+        nodo.izq = izq.der;
+        izq.der = nodo;
+        actualizar(nodo);
+        actualizar(izq);
+        return izq;
+    }
+
+    private Nodo<T> rotarIzquierda(Nodo<T> nodo) {
+        Nodo<T> der = nodo.der;
+        nodo.der = der.izq;
+        der.izq = nodo;
+        actualizar(nodo);
+        actualizar(der);
+        return der;
+    }
+
+    private void actualizar(Nodo<T> nodo) {
+        long max = nodo.intervalo.fin;
+        if (nodo.izq != null && nodo.izq.maxFin > max) {
+            max = nodo.izq.maxFin;
+        }
+        if (nodo.der != null && nodo.der.maxFin > max) {
+            max = nodo.der.maxFin;
+        }
+        nodo.maxFin = max;
+    }
+}
@@ -0,0 +1,168 @@
+package hemen.go.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * Escribe un {@link BitMatrix} como PNG en escala de grises de 1 bit por píxel, sin pasar por
+ * {@code BufferedImage} ni {@code ImageIO}.
+ *
+ * <p>Cada módulo de la matriz se dibuja como un cuadrado de {@code pixelesModulo} píxeles y,
+ * alrededor, se deja un margen de {@code margen} módulos en blanco. Las filas de píxeles se
+ * construyen directamente en bytes (8 píxeles por byte) y se comprimen con un único
+ * {@link Deflater}; un QR habitual ocupa unos 12 KB sin comprimir, frente a los ~360 KB de
+ * enteros ARGB de la imagen que dibuja {@code MatrixToImageWriter}.</p>
+ *
+ * <p>Los búferes de trabajo y el {@code Deflater} se reutilizan: cada llamada toma uno libre de
+ * una reserva acotada y lo devuelve al terminar. Solo el PNG resultante se reserva por
+ * llamada, con su tamaño exacto. La clase es segura para varios hilos.</p>
+ */
+public class PngMonocromo {
+
+    private static final byte[] FIRMA = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] IHDR = {'I', 'H', 'D', 'R'};
+    private static final byte[] IDAT = {'I', 'D', 'A', 'T'};
+    private static final byte[] IEND = {'I', 'E', 'N', 'D'};
+
+    /** Longitud, tipo y CRC de un bloque del PNG. */
+    private static final int CABECERA_BLOQUE = 12;
+    private static final int DATOS_IHDR = 13;
+
+    /** Búferes y compresor de una llamada; solo los usa el hilo que los ha tomado de la reserva. */
+    private static final class Lienzo {
+        final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        final CRC32 crc = new CRC32();
+        final byte[] ihdr = new byte[DATOS_IHDR];
+        byte[] filas = new byte[0];
+        byte[] salida = new byte[4096];
+    }
+
+    private final int pixelesModulo;
+    private final int margen;
+    private final BlockingQueue<Lienzo> libres;
+
+    /**
+     * Crea el escritor.
+     *
+     * @param pixelesModulo lado en píxeles de cada módulo del QR.
+     * @param margen módulos en blanco alrededor de la matriz (la zona de silencio del QR es de 4).
+     * @param reserva número máximo de búferes de trabajo que se conservan entre llamadas.
+     */
+    public PngMonocromo(int pixelesModulo, int margen, int reserva) {
+        if (pixelesModulo <= 0 || margen < 0 || reserva <= 0) {
+            throw new IllegalArgumentException("pixelesModulo y reserva deben ser positivos y margen no negativo");
+        }
+        this.pixelesModulo = pixelesModulo;
+        this.margen = margen;
+        this.libres = new ArrayBlockingQueue<>(reserva);
+    }
+
+    /**
+     * Dibuja la matriz como PNG; los módulos activos son negros.
+     *
+     * @param matriz matriz del código, a un píxel por módulo y sin margen.
+     * @return bytes del PNG.
+     */
+    public byte[] escribir(BitMatrix matriz) {
+        int ancho = (matriz.getWidth() + 2 * margen) * pixelesModulo;
+        int alto = (matriz.getHeight() + 2 * margen) * pixelesModulo;
+        // Byte de filtro (0, ninguno) y 8 píxeles por byte
+        int bytesFila = 1 + (ancho + 7) / 8;
+
+        Lienzo lienzo = libres.poll();
+        if (lienzo == null) {
+            lienzo = new Lienzo();
+        }
+        try {
+            int tamanoFilas = bytesFila * alto;
+            if (lienzo.filas.length < tamanoFilas) {
+                lienzo.filas = new byte[tamanoFilas];
+            }
+            dibujar(matriz, lienzo.filas, bytesFila);
+            int comprimidos = comprimir(lienzo, tamanoFilas);
+
+            byte[] png = new byte[FIRMA.length + CABECERA_BLOQUE * 3 + DATOS_IHDR + comprimidos];
+            System.arraycopy(FIRMA, 0, png, 0, FIRMA.length);
+            int pos = FIRMA.length;
+
+            byte[] ihdr = lienzo.ihdr;
+            escribirEntero(ihdr, 0, ancho);
+            escribirEntero(ihdr, 4, alto);
+            ihdr[8] = 1; // bits por píxel
+            ihdr[9] = 0; // escala de grises; compresión, filtro y entrelazado a 0
+            pos = escribirBloque(png, pos, IHDR, ihdr, DATOS_IHDR, lienzo.crc);
+            pos = escribirBloque(png, pos, IDAT, lienzo.salida, comprimidos, lienzo.crc);
+            escribirBloque(png, pos, IEND, ihdr, 0, lienzo.crc);
+            return png;
+        } finally {
+            if (!libres.offer(lienzo)) {
+                lienzo.deflater.end();
+            }
+        }
+    }
+
+    /** Rellena las filas de píxeles: bit a 1 es blanco, a 0 negro. */
+    private void dibujar(BitMatrix matriz, byte[] filas, int bytesFila) {
+        int anchoMatriz = matriz.getWidth();
+        for (int modulo = 0; modulo < matriz.getHeight() + 2 * margen; modulo++) {
+            int inicioFila = modulo * pixelesModulo * bytesFila;
+            Arrays.fill(filas, inicioFila, inicioFila + bytesFila, (byte) 0xFF);
+            filas[inicioFila] = 0;
+            int y = modulo - margen;
+            if (y >= 0 && y < matriz.getHeight()) {
+                for (int x = 0; x < anchoMatriz; x++) {
+                    if (matriz.get(x, y)) {
+                        int px = (x + margen) * pixelesModulo;
+                        for (int i = 0; i < pixelesModulo; i++, px++) {
+                            filas[inicioFila + 1 + (px >> 3)] &= (byte) ~(0x80 >>> (px & 7));
+                        }
+                    }
+                }
+            }
+            // Las demás filas del módulo son copia de la primera
+            for (int i = 1; i < pixelesModulo; i++) {
+                System.arraycopy(filas, inicioFila, filas, inicioFila + i * bytesFila, bytesFila);
+            }
+        }
+        // Los bits de relleno del último byte de cada fila se quedan en blanco: el PNG los ignora
+    }
+
+    /** Comprime las filas en {@code lienzo.salida}, ampliándolo si no caben, y devuelve su longitud. */
+    private static int comprimir(Lienzo lienzo, int tamanoFilas) {
+        Deflater deflater = lienzo.deflater;
+        deflater.reset();
+        deflater.setInput(lienzo.filas, 0, tamanoFilas);
+        deflater.finish();
+        int longitud = 0;
+        while (!deflater.finished()) {
+            if (longitud == lienzo.salida.length) {
+                lienzo.salida = Arrays.copyOf(lienzo.salida, lienzo.salida.length * 2);
+            }
+            longitud += deflater.deflate(lienzo.salida, longitud, lienzo.salida.length - longitud);
+        }
+        return longitud;
+    }
+
+    /** Escribe longitud, tipo, datos y CRC de un bloque y devuelve la posición siguiente. */
+    private static int escribirBloque(byte[] png, int pos, byte[] tipo, byte[] datos, int longitud, CRC32 crc) {
+        escribirEntero(png, pos, longitud);
+        System.arraycopy(tipo, 0, png, pos + 4, 4);
+        System.arraycopy(datos, 0, png, pos + 8, longitud);
+        crc.reset();
+        crc.update(png, pos + 4, 4 + longitud);
+        escribirEntero(png, pos + 8 + longitud, (int) crc.getValue());
+        return pos + CABECERA_BLOQUE + longitud;
+    }
+
+    private static void escribirEntero(byte[] destino, int pos, int valor) {
+        destino[pos] = (byte) (valor >>> 24);
+        destino[pos + 1] = (byte) (valor >>> 16);
+        destino[pos + 2] = (byte) (valor >>> 8);
+        destino[pos + 3] = (byte) valor;
+    }
+}
@@ -0,0 +1,93 @@
+package hemen.go.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Política de reintento para escrituras con bloqueo optimista.
+ *
+ * <p>Las entidades {@code Plaza}, {@code Parking} y {@code Reserva} llevan una columna
+ * {@code @Version}. Si dos peticiones leen y modifican la misma fila a la vez, la segunda
+ * en guardar recibe una {@link OptimisticLockingFailureException} en lugar de pisar los
+ * cambios de la primera.</p>
+ *
+ * <p>Esta clase ejecuta la operación completa (lectura, validación y guardado) en una
+ * transacción y, si hay conflicto, la repite desde cero con una espera corta y aleatoria.
+ * Así la operación se vuelve a validar contra el estado actual sin usar bloqueos pesimistas.
+ * Si se agotan los intentos se propaga la excepción (el manejador global responde 409).</p>
+ */
+@Component
+public class ReintentoOptimista {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReintentoOptimista.class);
+
+    private final TransactionTemplate transactionTemplate;
+    private final int maxIntentos;
+    private final long esperaMillis;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param transactionManager gestor de transacciones.
+     * @param maxIntentos número máximo de intentos ({@code concurrencia.reintentos}).
+     * @param esperaMillis espera base entre intentos ({@code concurrencia.espera.ms}).
+     */
+    public ReintentoOptimista(PlatformTransactionManager transactionManager,
+                              @Value("${concurrencia.reintentos:3}") int maxIntentos,
+                              @Value("${concurrencia.espera.ms:20}") long esperaMillis) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxIntentos = Math.max(1, maxIntentos);
+        this.esperaMillis = esperaMillis;
+    }
+
+    /**
+     * Ejecuta la operación en una transacción, reintentando si hay conflicto de versión.
+     *
+     * @param operacion operación de lectura-modificación-escritura.
+     * @return el resultado de la operación.
+     * @throws OptimisticLockingFailureException si el conflicto persiste tras todos los intentos.
+     */
+    public <T> T ejecutar(Supplier<T> operacion) {
+        for (int intento = 1; ; intento++) {
+            try {
+                return transactionTemplate.execute(status -> operacion.get());
+            } catch (OptimisticLockingFailureException e) {
+                if (intento >= maxIntentos) {
+                    logger.error("Conflicto de concurrencia tras {} intentos: {}", intento, e.getMessage());
+                    throw e;
+                }
+                logger.warn("Conflicto de concurrencia, reintento {} de {}", intento, maxIntentos - 1);
+                esperar(intento);
+            }
+        }
+    }
+
+    /**
+     * Variante sin resultado de {@link #ejecutar(Supplier)}.
+     *
+     * @param operacion operación de lectura-modificación-escritura.
+     */
+    public void ejecutar(Runnable operacion) {
+        ejecutar(() -> {
+            operacion.run();
+            return null;
+        });
+    }
+
+    private void esperar(int intento) {
+        long espera = esperaMillis * intento + ThreadLocalRandom.current().nextLong(esperaMillis + 1);
+        try {
+            Thread.sleep(espera);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
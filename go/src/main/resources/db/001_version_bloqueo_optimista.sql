@@ -0,0 +1,6 @@
+-- Columnas de versión para el bloqueo optimista (@Version) de plazas, parkings y reservas.
+-- spring.jpa.hibernate.ddl-auto=none: aplicar manualmente sobre la base de datos PostgreSQL.
+
+ALTER TABLE plazas   ADD COLUMN IF NOT EXISTS version_plaza   BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE parkings ADD COLUMN IF NOT EXISTS version_parking BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE reservas ADD COLUMN IF NOT EXISTS version_reserva BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,10 @@
+-- Incremento de secuencias para el optimizador pooled de Hibernate (allocationSize = 50)
+-- en plazas, reservas y personas. Cada nextval reserva un bloque de 50 ids, lo que permite
+-- agrupar los INSERT en lotes JDBC (hibernate.jdbc.batch_size).
+-- El INCREMENT BY debe coincidir con allocationSize: Hibernate comprueba la secuencia al
+-- arrancar y falla si no coinciden.
+-- spring.jpa.hibernate.ddl-auto=none: aplicar manualmente sobre la base de datos PostgreSQL.
+
+ALTER SEQUENCE plazas_id_seq           INCREMENT BY 50;
+ALTER SEQUENCE reservas_id_reserva_seq INCREMENT BY 50;
+ALTER SEQUENCE persona_id_persona_seq  INCREMENT BY 50;
@@ -0,0 +1,9 @@
+-- Estado "2" (completada) en reservas: CompletarReservasJob pasa a este estado cada noche las
+-- reservas activas cuya estancia ya terminó.
+-- Índice parcial sobre las reservas activas: las consultas de disponibilidad y solapes
+-- (estado_reserva = '1') solo recorren las estancias actuales y futuras.
+-- spring.jpa.hibernate.ddl-auto=none: aplicar manualmente sobre la base de datos PostgreSQL.
+
+CREATE INDEX IF NOT EXISTS idx_reservas_activas_plaza
+    ON reservas (id_plaza_reserva, fecha_inicio_reserva, fecha_fin_reserva)
+    WHERE estado_reserva = '1';
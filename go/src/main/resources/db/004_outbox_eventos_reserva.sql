@@ -0,0 +1,25 @@
+-- Tabla outbox de eventos de reserva (creada, cancelada, puntuada).
+-- ReservaService escribe el evento en la misma transacción que la reserva y
+-- DespachadorEventosReserva lo publica después a los suscriptores.
+-- spring.jpa.hibernate.ddl-auto=none: aplicar manualmente sobre la base de datos PostgreSQL.
+
+CREATE SEQUENCE IF NOT EXISTS eventos_reserva_id_evento_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS eventos_reserva (
+    id_evento              BIGINT PRIMARY KEY,
+    tipo_evento            VARCHAR(20) NOT NULL,
+    id_reserva_evento      BIGINT NOT NULL,
+    id_plaza_evento        BIGINT,
+    id_parking_evento      BIGINT,
+    fecha_inicio_evento    DATE,
+    fecha_fin_evento       DATE,
+    puntuacion_evento      INTEGER,
+    fecha_alta_evento      TIMESTAMP NOT NULL,
+    fecha_procesado_evento TIMESTAMP,
+    intentos_evento        INTEGER NOT NULL DEFAULT 0
+);
+
+-- Solo los eventos pendientes se consultan con frecuencia
+CREATE INDEX IF NOT EXISTS idx_eventos_reserva_pendientes
+    ON eventos_reserva (id_evento)
+    WHERE fecha_procesado_evento IS NULL;
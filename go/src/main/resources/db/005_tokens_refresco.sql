@@ -0,0 +1,18 @@
+-- Tokens de refresco de sesión con rotación.
+-- Solo se guarda el SHA-256 del token (Base64 URL, 43 caracteres); TokenRefrescoService
+-- marca cada token como usado al rotarlo y borra cada noche los caducados.
+-- spring.jpa.hibernate.ddl-auto=none: aplicar manualmente sobre la base de datos PostgreSQL.
+
+CREATE SEQUENCE IF NOT EXISTS tokens_refresco_id_token_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS tokens_refresco (
+    id_token               BIGINT PRIMARY KEY,
+    hash_token             VARCHAR(43) NOT NULL UNIQUE,
+    id_usuario_token       BIGINT NOT NULL,
+    familia_token          BIGINT NOT NULL,
+    fecha_expiracion_token TIMESTAMP NOT NULL,
+    usado_token            BOOLEAN NOT NULL DEFAULT FALSE
+);
+
+CREATE INDEX IF NOT EXISTS idx_tokens_refresco_usuario ON tokens_refresco (id_usuario_token);
+CREATE INDEX IF NOT EXISTS idx_tokens_refresco_familia ON tokens_refresco (familia_token);
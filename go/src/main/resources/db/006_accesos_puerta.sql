@@ -0,0 +1,19 @@
+-- Histórico de accesos por las puertas de los parkings.
+-- Los accesos se anotan primero en el diario en disco (RegistroAccesosService); el compactador
+-- nocturno carga cada segmento cerrado en esta tabla y borra el fichero. segmento_acceso permite
+-- repetir la carga de un segmento sin duplicar filas si el borrado del fichero falla.
+-- spring.jpa.hibernate.ddl-auto=none: aplicar manualmente sobre la base de datos PostgreSQL.
+
+CREATE SEQUENCE IF NOT EXISTS accesos_puerta_id_acceso_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS accesos_puerta (
+    id_acceso         BIGINT PRIMARY KEY,
+    segmento_acceso   BIGINT NOT NULL,
+    fecha_acceso      TIMESTAMP NOT NULL,
+    id_reserva_acceso BIGINT,
+    id_parking_acceso BIGINT NOT NULL,
+    resultado_acceso  VARCHAR(20) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_accesos_puerta_parking_fecha ON accesos_puerta (id_parking_acceso, fecha_acceso);
+CREATE INDEX IF NOT EXISTS idx_accesos_puerta_segmento ON accesos_puerta (segmento_acceso);
@@ -0,0 +1,13 @@
+-- Última instantánea de los contadores de entradas y salidas de cada parking.
+-- OcupacionParkingService mantiene los contadores en memoria, los guarda aquí periódicamente
+-- y los recupera al arrancar; id_empresa_ocupacion evita consultar el parking para saber de
+-- qué empresa es.
+-- spring.jpa.hibernate.ddl-auto=none: aplicar manualmente sobre la base de datos PostgreSQL.
+
+CREATE TABLE IF NOT EXISTS ocupacion_parking (
+    id_parking_ocupacion BIGINT PRIMARY KEY,
+    id_empresa_ocupacion BIGINT NOT NULL,
+    entradas_ocupacion   BIGINT NOT NULL DEFAULT 0,
+    salidas_ocupacion    BIGINT NOT NULL DEFAULT 0,
+    fecha_ocupacion      TIMESTAMP NOT NULL
+);
@@ -0,0 +1,51 @@
+package hemen.go;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import hemen.go.util.Base45;
+
+class Base45Test {
+
+    @Test
+    void codificaYDecodificaLosEjemplosDelRfc9285() {
+        String[][] ejemplos = {
+                {"AB", "BB8"},
+                {"Hello!!", "%69 VD92EX0"},
+                {"base-45", "UJCLQE7W581"},
+                {"ietf!", "QED8WEX0"},
+        };
+        for (String[] ejemplo : ejemplos) {
+            byte[] datos = ejemplo[0].getBytes(StandardCharsets.US_ASCII);
+            assertThat(Base45.codificar(datos)).isEqualTo(ejemplo[1]);
+            assertThat(Base45.decodificar(ejemplo[1])).isEqualTo(datos);
+        }
+        assertThat(Base45.codificar(new byte[0])).isEmpty();
+        assertThat(Base45.decodificar("")).isEmpty();
+    }
+
+    @Test
+    void recuperaCualquierSecuenciaDeBytes() {
+        byte[] datos = new byte[256];
+        for (int i = 0; i < datos.length; i++) {
+            datos[i] = (byte) i;
+        }
+        assertThat(Base45.decodificar(Base45.codificar(datos))).isEqualTo(datos);
+    }
+
+    @Test
+    void rechazaGruposYLongitudesNoValidos() {
+        // 16 + 16*45 + 32*2025 = 65536, no cabe en dos bytes (ejemplo del RFC)
+        assertThatThrownBy(() -> Base45.decodificar("GGW")).isInstanceOf(IllegalArgumentException.class);
+        // Grupo final de dos caracteres mayor que 255
+        assertThatThrownBy(() -> Base45.decodificar("BB8::")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Base45.decodificar("BB8A")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Base45.decodificar("B")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Base45.decodificar("bb8")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Base45.decodificar("BBé")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,100 @@
+package hemen.go;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import hemen.go.security.PasswordEncoderAcotado;
+
+/**
+ * Prueba de rendimiento de BCrypt: hashes por segundo para cada coste, calculados en serie
+ * y a través de {@link PasswordEncoderAcotado} con tantos hilos como CPU. Sirve para elegir
+ * {@code password.bcrypt.coste} según los logins por segundo que deba aguantar el servidor.
+ *
+ * <pre>
+ * java hemen.go.BenchmarkCosteBCrypt [costeMinimo] [costeMaximo]
+ * </pre>
+ */
+public class BenchmarkCosteBCrypt {
+
+    private static final String PASSWORD = "passSegura12345";
+    /** Tiempo aproximado de medida por coste y modo. */
+    private static final long DURACION_MS = 2_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int costeMinimo = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int costeMaximo = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+        int cpus = Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("CPU disponibles: %d%n", cpus);
+        for (int coste = costeMinimo; coste <= costeMaximo; coste++) {
+            PasswordEncoderAcotado encoder = new PasswordEncoderAcotado(coste, 0, cpus * 4);
+            try {
+                String hash = encoder.encode(PASSWORD);
+                // Calentamiento
+                encoder.matches(PASSWORD, hash);
+
+                double serie = enSerie(encoder, hash);
+                double paralelo = enParalelo(encoder, hash, cpus);
+                System.out.printf("Coste %2d: %,9.1f hashes/s en serie (%,7.1f ms/hash) | %,9.1f hashes/s con %d hilos%n",
+                        coste, serie, 1000 / serie, paralelo, cpus);
+            } finally {
+                encoder.destroy();
+            }
+        }
+    }
+
+    /**
+     * Verifica la contraseña desde un único hilo durante {@link #DURACION_MS}.
+     */
+    private static double enSerie(PasswordEncoderAcotado encoder, String hash) {
+        long inicio = System.nanoTime();
+        long fin = inicio + DURACION_MS * 1_000_000;
+        int hechos = 0;
+        do {
+            comprobar(encoder.matches(PASSWORD, hash));
+            hechos++;
+        } while (System.nanoTime() < fin);
+        return hechos / ((System.nanoTime() - inicio) / 1e9);
+    }
+
+    /**
+     * Verifica la contraseña desde tantos hilos cliente como CPU, como harían varias
+     * peticiones de login simultáneas, durante {@link #DURACION_MS}.
+     */
+    private static double enParalelo(PasswordEncoderAcotado encoder, String hash, int clientes)
+            throws InterruptedException {
+        ExecutorService peticiones = Executors.newFixedThreadPool(clientes);
+        CountDownLatch terminados = new CountDownLatch(clientes);
+        int[] hechos = new int[clientes];
+        long inicio = System.nanoTime();
+        long fin = inicio + DURACION_MS * 1_000_000;
+        for (int c = 0; c < clientes; c++) {
+            int cliente = c;
+            peticiones.execute(() -> {
+                try {
+                    do {
+                        comprobar(encoder.matches(PASSWORD, hash));
+                        hechos[cliente]++;
+                    } while (System.nanoTime() < fin);
+                } finally {
+                    terminados.countDown();
+                }
+            });
+        }
+        terminados.await();
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        peticiones.shutdown();
+        int total = 0;
+        for (int h : hechos) {
+            total += h;
+        }
+        return total / segundos;
+    }
+
+    private static void comprobar(boolean valida) {
+        if (!valida) {
+            throw new IllegalStateException("Contraseña rechazada durante la prueba");
+        }
+    }
+}
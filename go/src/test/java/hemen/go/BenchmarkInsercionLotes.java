@@ -0,0 +1,96 @@
+package hemen.go;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Prueba de rendimiento de inserciones: secuencia con incremento 1 e INSERT uno a uno
+ * (comportamiento anterior) frente a secuencia pooled de 50 e INSERT por lotes JDBC.
+ *
+ * <p>Por defecto usa una base H2 en memoria, donde no hay red y la diferencia es menor.
+ * Para medir los viajes de ida y vuelta reales se puede pasar una base PostgreSQL:</p>
+ * <pre>
+ * java hemen.go.BenchmarkInsercionLotes jdbc:postgresql://localhost:5432/bench?reWriteBatchedInserts=true usuario clave
+ * </pre>
+ */
+public class BenchmarkInsercionLotes {
+
+    private static final int FILAS = 20_000;
+    private static final int LOTE = 50;
+    private static final int RONDAS = 5;
+
+    public static void main(String[] args) throws SQLException {
+        String url = args.length > 0 ? args[0] : "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1";
+        String usuario = args.length > 1 ? args[1] : "sa";
+        String clave = args.length > 2 ? args[2] : "";
+
+        try (Connection con = DriverManager.getConnection(url, usuario, clave)) {
+            con.setAutoCommit(false);
+            for (int ronda = 1; ronda <= RONDAS; ronda++) {
+                long individual = medir(con, false);
+                long lotes = medir(con, true);
+                System.out.printf("Ronda %d: uno a uno %,d filas/s | pooled + lotes %,d filas/s%n",
+                        ronda, individual, lotes);
+            }
+        }
+    }
+
+    /**
+     * Inserta {@link #FILAS} filas y devuelve las filas por segundo.
+     */
+    private static long medir(Connection con, boolean porLotes) throws SQLException {
+        prepararTablas(con, porLotes ? LOTE : 1);
+
+        long inicio = System.nanoTime();
+        try (PreparedStatement seq = con.prepareStatement("SELECT nextval('bench_seq')");
+             PreparedStatement insert = con.prepareStatement(
+                     "INSERT INTO bench_reservas (id, id_plaza, estado) VALUES (?, ?, '1')")) {
+            long siguiente = 0;
+            long limite = 0;
+            for (int i = 0; i < FILAS; i++) {
+                if (siguiente >= limite) {
+                    // Igual que el optimizador pooled: el valor de la secuencia es el tope del bloque
+                    limite = siguienteValor(seq) + 1;
+                    siguiente = limite - (porLotes ? LOTE : 1);
+                }
+                insert.setLong(1, siguiente++);
+                insert.setLong(2, i % 100);
+                if (porLotes) {
+                    insert.addBatch();
+                    if ((i + 1) % LOTE == 0) {
+                        insert.executeBatch();
+                    }
+                } else {
+                    insert.executeUpdate();
+                }
+            }
+            if (porLotes) {
+                insert.executeBatch();
+            }
+        }
+        con.commit();
+        long nanos = System.nanoTime() - inicio;
+        return FILAS * 1_000_000_000L / nanos;
+    }
+
+    private static long siguienteValor(PreparedStatement seq) throws SQLException {
+        try (ResultSet rs = seq.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static void prepararTablas(Connection con, int incremento) throws SQLException {
+        try (Statement st = con.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS bench_reservas");
+            st.execute("DROP SEQUENCE IF EXISTS bench_seq");
+            st.execute("CREATE SEQUENCE bench_seq START WITH " + incremento + " INCREMENT BY " + incremento);
+            st.execute("CREATE TABLE bench_reservas (id BIGINT PRIMARY KEY, id_plaza BIGINT, estado VARCHAR(1))");
+        }
+        con.commit();
+    }
+}
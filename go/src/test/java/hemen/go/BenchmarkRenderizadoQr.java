@@ -0,0 +1,112 @@
+package hemen.go;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import hemen.go.security.ClavesPuerta;
+import hemen.go.service.TokenReservaService;
+
+/**
+ * Prueba de rendimiento del dibujo del QR de apertura: el PNG de 1 bit escrito directamente
+ * desde la matriz frente al camino anterior, {@code MatrixToImageWriter} sobre un
+ * {@code BufferedImage} de 300x300. Mide el tiempo y los bytes reservados por QR en el hilo
+ * que dibuja (incluida la codificación del QR, común a los dos), con un token JWS y con uno
+ * compacto.
+ *
+ * <pre>
+ * java hemen.go.BenchmarkRenderizadoQr
+ * </pre>
+ */
+public class BenchmarkRenderizadoQr {
+
+    private static final int QRS = 2_000;
+    private static final int RONDAS = 5;
+
+    @FunctionalInterface
+    private interface Dibujo {
+        byte[] dibujar(String token) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        KeyPairGenerator generador = KeyPairGenerator.getInstance("EC");
+        generador.initialize(new ECGenParameterSpec("secp256r1"));
+        ClavesPuerta claves = new ClavesPuerta(generador.generateKeyPair(), null);
+        for (boolean compacto : new boolean[] {false, true}) {
+            TokenReservaService servicio = new TokenReservaService(claves, "L", 4, compacto);
+            String token = servicio.generarTokenPuerta(1L, 2L, 3L);
+            System.out.printf("Token %s: %d caracteres, QR de %d módulos%n", compacto ? "compacto" : "JWS",
+                    token.length(), new QRCodeWriter().encode(token, BarcodeFormat.QR_CODE, 0, 0).getWidth());
+            medirTodo(servicio, token);
+        }
+    }
+
+    private static void medirTodo(TokenReservaService servicio, String token) throws Exception {
+        Dibujo anterior = BenchmarkRenderizadoQr::dibujarConBufferedImage;
+        Dibujo directo = servicio::generarQRBytes;
+        comprobar(anterior.dibujar(token), token);
+        comprobar(directo.dibujar(token), token);
+        System.out.printf("Tamaño del PNG: BufferedImage %,d bytes | directo %,d bytes%n",
+                anterior.dibujar(token).length, directo.dibujar(token).length);
+
+        // Referencia: solo la codificación de la matriz, sin dibujar la imagen
+        Dibujo codificacion = t -> new byte[new QRCodeWriter().encode(t, BarcodeFormat.QR_CODE, 0, 0).getWidth()];
+        for (int ronda = 1; ronda <= RONDAS; ronda++) {
+            double[] c = medir(codificacion, token);
+            double[] a = medir(anterior, token);
+            double[] d = medir(directo, token);
+            System.out.printf("Ronda %d: codificación %,.0f ns/QR, %,.0f B/QR | BufferedImage %,.0f ns/QR, %,.0f B/QR"
+                    + " | directo %,.0f ns/QR, %,.0f B/QR%n", ronda, c[0], c[1], a[0], a[1], d[0], d[1]);
+        }
+    }
+
+    /** Camino anterior de {@code generarQRBytes}. */
+    private static byte[] dibujarConBufferedImage(String token) throws Exception {
+        BitMatrix bitMatrix = new QRCodeWriter().encode(token, BarcodeFormat.QR_CODE, 300, 300);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        MatrixToImageWriter.writeToStream(bitMatrix, "PNG", png);
+        return png.toByteArray();
+    }
+
+    /** Dibuja {@link #QRS} veces el QR y devuelve nanosegundos y bytes reservados por QR. */
+    private static double[] medir(Dibujo dibujo, String token) throws Exception {
+        com.sun.management.ThreadMXBean hilos = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        long bytesInicio = hilos.getThreadAllocatedBytes(id);
+        long inicio = System.nanoTime();
+        long total = 0;
+        for (int i = 0; i < QRS; i++) {
+            total += dibujo.dibujar(token).length;
+        }
+        long nanos = System.nanoTime() - inicio;
+        long bytes = hilos.getThreadAllocatedBytes(id) - bytesInicio;
+        if (total == 0) {
+            throw new IllegalStateException("QR vacío");
+        }
+        return new double[] {(double) nanos / QRS, (double) bytes / QRS};
+    }
+
+    /** El PNG debe poder leerse con ImageIO y el QR debe devolver el token (imagen sin distorsión, sin buscar patrones). */
+    private static void comprobar(byte[] png, String token) throws Exception {
+        BinaryBitmap imagen = new BinaryBitmap(new HybridBinarizer(
+                new BufferedImageLuminanceSource(ImageIO.read(new ByteArrayInputStream(png)))));
+        if (!token.equals(new QRCodeReader().decode(imagen, Map.of(DecodeHintType.PURE_BARCODE, Boolean.TRUE)).getText())) {
+            throw new IllegalStateException("El QR no contiene el token");
+        }
+    }
+}
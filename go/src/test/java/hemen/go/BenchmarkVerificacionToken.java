@@ -0,0 +1,57 @@
+package hemen.go;
+
+import hemen.go.entity.Usuario;
+import hemen.go.security.JwtUtil;
+import hemen.go.security.RevocacionTokens;
+
+/**
+ * Prueba de rendimiento de la autenticación de peticiones: verificar el token en cada
+ * petición (caché desactivada) frente a reutilizar el resultado de la caché de tokens
+ * verificados, como ocurre cuando un cliente repite su bearer token.
+ *
+ * <pre>
+ * java hemen.go.BenchmarkVerificacionToken
+ * </pre>
+ */
+public class BenchmarkVerificacionToken {
+
+    private static final String SECRETO = "secreto-de-pruebas-de-al-menos-32-caracteres";
+    private static final int PETICIONES = 100_000;
+    private static final int RONDAS = 5;
+
+    public static void main(String[] args) {
+        RevocacionTokens revocacion = new RevocacionTokens();
+        JwtUtil sinCache = new JwtUtil(SECRETO, revocacion, 0);
+        JwtUtil conCache = new JwtUtil(SECRETO, revocacion, 10_000);
+
+        Usuario usuario = new Usuario();
+        usuario.setEmailPersona("bench@hemengo.eus");
+        usuario.setIs_admin(false);
+        String token = sinCache.generateToken(usuario);
+
+        for (int ronda = 1; ronda <= RONDAS; ronda++) {
+            double verificando = medir(sinCache, token);
+            double cacheado = medir(conCache, token);
+            System.out.printf("Ronda %d: verificando %,.0f ns/petición | con caché %,.0f ns/petición%n",
+                    ronda, verificando, cacheado);
+        }
+    }
+
+    /**
+     * Autentica {@link #PETICIONES} veces el mismo token y devuelve los nanosegundos por petición.
+     */
+    private static double medir(JwtUtil jwtUtil, String token) {
+        long inicio = System.nanoTime();
+        int validos = 0;
+        for (int i = 0; i < PETICIONES; i++) {
+            if (jwtUtil.autenticar(token) != null) {
+                validos++;
+            }
+        }
+        long nanos = System.nanoTime() - inicio;
+        if (validos != PETICIONES) {
+            throw new IllegalStateException("Token rechazado durante la prueba");
+        }
+        return (double) nanos / PETICIONES;
+    }
+}
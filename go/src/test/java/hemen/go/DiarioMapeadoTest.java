@@ -0,0 +1,103 @@
+package hemen.go;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import hemen.go.util.DiarioMapeado;
+
+class DiarioMapeadoTest {
+
+    /** Bytes de datos de cada registro; en el fichero van seguidos de 4 bytes de CRC. */
+    private static final int DATOS = 8;
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void rotaAlLlenarseYLeeElSegmentoActual() throws IOException {
+        try (DiarioMapeado diario = abrir(1)) {
+            for (long i = 0; i < 7; i++) {
+                assertThat(diario.anotar(registro(i))).isTrue();
+            }
+
+            assertThat(diario.segmentos()).containsExactly(1L, 2L, 3L);
+            assertThat(diario.segmentosCerrados()).containsExactly(1L, 2L);
+            assertThat(leer(diario, 1)).containsExactly(0L, 1L, 2L);
+            assertThat(leer(diario, 2)).containsExactly(3L, 4L, 5L);
+            // El actual se lee hasta lo anotado, sin recorrer el resto del fichero
+            assertThat(leer(diario, 3)).containsExactly(6L);
+
+            diario.cerrarSegmentoActual();
+            assertThat(diario.segmentosCerrados()).containsExactly(1L, 2L, 3L);
+            assertThat(leer(diario, 4)).isEmpty();
+
+            assertThatThrownBy(() -> diario.borrar(4)).isInstanceOf(IllegalArgumentException.class);
+            diario.borrar(1);
+            assertThat(diario.segmentos()).containsExactly(2L, 3L, 4L);
+        }
+    }
+
+    @Test
+    void recuperaElUltimoSegmentoHastaElPrimerRegistroNoValido() throws IOException {
+        try (DiarioMapeado diario = abrir(1)) {
+            for (long i = 0; i < 5; i++) {
+                diario.anotar(registro(i));
+            }
+        }
+        // Escritura a medias del último registro: sus datos ya no cuadran con el CRC
+        Path segmento = directorio.resolve(String.format("test-%020d.seg", 2));
+        try (FileChannel canal = FileChannel.open(segmento, StandardOpenOption.WRITE)) {
+            canal.write(ByteBuffer.wrap(new byte[] {(byte) 0xFF}), (DATOS + Integer.BYTES) + DATOS - 1);
+        }
+
+        try (DiarioMapeado diario = abrir(1)) {
+            assertThat(leer(diario, 2)).containsExactly(3L);
+            // Se sigue anotando sobre el registro roto
+            diario.anotar(registro(9));
+            assertThat(leer(diario, 2)).containsExactly(3L, 9L);
+            assertThat(leer(diario, 1)).containsExactly(0L, 1L, 2L);
+        }
+    }
+
+    @Test
+    void noReutilizaNumerosPorDebajoDelPrimerSegmento() throws IOException {
+        try (DiarioMapeado diario = abrir(100)) {
+            assertThat(diario.segmentos()).containsExactly(100L);
+            diario.anotar(registro(0));
+            diario.cerrarSegmentoActual();
+            diario.borrar(100);
+        }
+        // Con un mínimo mayor se recupera el segmento 101, pero el siguiente ya no es el 102
+        try (DiarioMapeado diario = abrir(500)) {
+            assertThat(diario.segmentos()).containsExactly(101L);
+            diario.anotar(registro(1));
+            diario.cerrarSegmentoActual();
+            assertThat(diario.segmentos()).containsExactly(101L, 500L);
+        }
+    }
+
+    private DiarioMapeado abrir(long primerSegmento) {
+        return new DiarioMapeado(directorio, "test", DATOS, 3, primerSegmento, 5, 2000);
+    }
+
+    private static ByteBuffer registro(long valor) {
+        return ByteBuffer.allocate(DATOS).putLong(0, valor);
+    }
+
+    private static List<Long> leer(DiarioMapeado diario, long segmento) throws IOException {
+        List<Long> valores = new ArrayList<>();
+        diario.leer(segmento, datos -> valores.add(datos.getLong(0)));
+        return valores;
+    }
+}
@@ -0,0 +1,52 @@
+package hemen.go;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import hemen.go.util.HashedTimingWheel;
+
+class HashedTimingWheelTest {
+
+    @Test
+    void caducaLosElementosYRespetaLasCancelaciones() throws InterruptedException {
+        List<String> caducados = new CopyOnWriteArrayList<>();
+        try (HashedTimingWheel<String> rueda = new HashedTimingWheel<>("test-rueda", 20, 4, caducados::add)) {
+            rueda.programar("corto", 40);
+            // Más ticks que cubos: necesita dar más de una vuelta
+            rueda.programar("largo", 600);
+            rueda.programar("cancelado", 40).cancelar();
+
+            Thread.sleep(250);
+            assertThat(caducados).containsExactly("corto");
+
+            Thread.sleep(700);
+            assertThat(caducados).containsExactly("corto", "largo");
+        }
+    }
+
+    @Test
+    void nuncaCaducaAntesDeSuPlazo() throws InterruptedException {
+        Map<Long, Long> caducados = new ConcurrentHashMap<>();
+        try (HashedTimingWheel<Long> rueda = new HashedTimingWheel<>("test-rueda-plazo", 50, 4,
+                plazo -> caducados.put(plazo, System.nanoTime()))) {
+            // Altas a mitad de tick y con más ticks que cubos
+            Thread.sleep(25);
+            long inicio = System.nanoTime();
+            for (long retardo : new long[] {50, 100, 175, 320}) {
+                rueda.programar(retardo, retardo);
+            }
+
+            Thread.sleep(600);
+            assertThat(caducados).hasSize(4);
+            caducados.forEach((retardo, instante) ->
+                    assertThat(TimeUnit.NANOSECONDS.toMillis(instante - inicio)).isGreaterThanOrEqualTo(retardo));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package hemen.go;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import hemen.go.util.IndiceIntervalos;
+
+class IndiceIntervalosTest {
+
+    @Test
+    void devuelveLosMismosSolapesQueUnRecorridoCompleto() {
+        Random random = new Random(42);
+        IndiceIntervalos<Integer> indice = new IndiceIntervalos<>();
+        List<IndiceIntervalos.Intervalo<Integer>> todos = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            long inicio = random.nextInt(365);
+            todos.add(indice.insertar(inicio, inicio + random.nextInt(20), i));
+        }
+        // Se eliminan la mitad para comprobar también el borrado
+        for (int i = 0; i < 1000; i++) {
+            assertThat(indice.eliminar(todos.remove(random.nextInt(todos.size())))).isTrue();
+        }
+        assertThat(indice.size()).isEqualTo(todos.size());
+
+        for (int i = 0; i < 200; i++) {
+            long desde = random.nextInt(380);
+            long hasta = desde + random.nextInt(10);
+            List<Integer> esperados = todos.stream()
+                    .filter(t -> t.getInicio() <= hasta && t.getFin() >= desde)
+                    .map(IndiceIntervalos.Intervalo::getValor)
+                    .toList();
+            assertThat(indice.solapados(desde, hasta))
+                    .extracting(IndiceIntervalos.Intervalo::getValor)
+                    .containsExactlyInAnyOrderElementsOf(esperados);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package hemen.go;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import hemen.go.enums.SentidoAcceso;
+import hemen.go.service.TokenReservaService;
+import hemen.go.service.acceso.NoncesPuertaService;
+
+class NoncesPuertaServiceTest {
+
+    private static final long VALIDEZ = TokenReservaService.VALIDEZ_TOKEN_PUERTA_MS;
+
+    private final NoncesPuertaService nonces = new NoncesPuertaService(60);
+
+    @Test
+    void unTokenSoloSirveUnaVezEnCadaSentido() {
+        long expiracion = System.currentTimeMillis() + VALIDEZ;
+
+        assertThat(nonces.primerUso("a", SentidoAcceso.ENTRADA, expiracion)).isTrue();
+        assertThat(nonces.primerUso("a", SentidoAcceso.ENTRADA, expiracion)).isFalse();
+        assertThat(nonces.usado("a", SentidoAcceso.ENTRADA, expiracion)).isTrue();
+
+        // La salida se anota aparte de la entrada
+        assertThat(nonces.usado("a", SentidoAcceso.SALIDA, expiracion)).isFalse();
+        assertThat(nonces.primerUso("a", SentidoAcceso.SALIDA, expiracion)).isTrue();
+        assertThat(nonces.primerUso("a", SentidoAcceso.SALIDA, expiracion)).isFalse();
+
+        // Otro token en el mismo cubo no se ve afectado
+        assertThat(nonces.primerUso("b", SentidoAcceso.SALIDA, expiracion)).isTrue();
+    }
+
+    @Test
+    void rechazaCaducidadesFueraDeLaVidaDeUnToken() {
+        long ahora = System.currentTimeMillis();
+
+        assertThat(nonces.primerUso("caducado", SentidoAcceso.ENTRADA, ahora - 1)).isFalse();
+        assertThat(nonces.primerUso("lejano", SentidoAcceso.ENTRADA, ahora + VALIDEZ + 120_000)).isFalse();
+        assertThat(nonces.primerUso(null, SentidoAcceso.ENTRADA, ahora + VALIDEZ)).isFalse();
+        // Rechazado sin anotarse
+        assertThat(nonces.usado("lejano", SentidoAcceso.ENTRADA, ahora + VALIDEZ + 120_000)).isFalse();
+    }
+
+    @Test
+    void noPierdeCubosVigentesAlReutilizarHuecosDelAnillo() {
+        long ahora = System.currentTimeMillis();
+        // Un token por cubo a lo largo de toda la vida de un token: recorren todo el anillo
+        int tokens = 0;
+        for (long expiracion = ahora + 1000; expiracion <= ahora + VALIDEZ + 59_000; expiracion += 30_000) {
+            assertThat(nonces.primerUso("t" + expiracion, SentidoAcceso.ENTRADA, expiracion)).isTrue();
+            tokens++;
+        }
+        assertThat(tokens).isGreaterThan(120);
+
+        nonces.limpiar();
+        for (long expiracion = ahora + 1000; expiracion <= ahora + VALIDEZ + 59_000; expiracion += 30_000) {
+            assertThat(nonces.usado("t" + expiracion, SentidoAcceso.ENTRADA, expiracion)).isTrue();
+            assertThat(nonces.primerUso("t" + expiracion, SentidoAcceso.ENTRADA, expiracion)).isFalse();
+        }
+    }
+}
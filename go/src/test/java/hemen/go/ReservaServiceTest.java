@@ -0,0 +1,109 @@
+package hemen.go;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import hemen.go.dto.request.ReservaRequest;
+import hemen.go.entity.Empresa;
+import hemen.go.entity.Parking;
+import hemen.go.entity.Plaza;
+import hemen.go.entity.Reserva;
+import hemen.go.entity.Usuario;
+import hemen.go.enums.EstadoPlaza;
+import hemen.go.enums.EstadoSolicitud;
+import hemen.go.repository.ReservaRepository;
+import hemen.go.service.ReservaService;
+import hemen.go.service.reserva.SolicitudReserva;
+import jakarta.persistence.EntityManager;
+
+/**
+ * Reserva de una plaza existente, en modo síncrono y por lotes, contra la base de datos H2.
+ */
+@SpringBootTest(properties = "reserva.cancelacion.dias=2")
+class ReservaServiceTest {
+
+    @Autowired
+    private ReservaService reservaService;
+
+    @Autowired
+    private ReservaRepository reservaRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Usuario usuario;
+    private Plaza plaza;
+
+    @BeforeEach
+    void crearPlaza() {
+        String sufijo = Long.toString(System.nanoTime());
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Empresa empresa = new Empresa();
+            empresa.setNombreEmpresa("Empresa " + sufijo);
+            empresa.setCifEmpresa("B" + sufijo.substring(sufijo.length() - 8));
+            entityManager.persist(empresa);
+
+            Parking parking = new Parking();
+            parking.setEmpresa(empresa);
+            parking.setNombre("Parking " + sufijo);
+            entityManager.persist(parking);
+
+            plaza = new Plaza();
+            plaza.setParking(parking);
+            plaza.setNombre("P1");
+            plaza.setEstado(EstadoPlaza.values()[0]);
+            entityManager.persist(plaza);
+
+            usuario = new Usuario();
+            usuario.setNombre_persona("Ane");
+            usuario.setApellidos_persona("Etxeberria");
+            usuario.setFec_nacimiento_persona(LocalDate.of(1990, 5, 12));
+            usuario.setPass_persona("secreta123");
+            usuario.setEmailPersona(sufijo + "@hemengo.eus");
+            usuario.setIban_persona("ES9121000418450200051332");
+            entityManager.persist(usuario);
+        });
+    }
+
+    @Test
+    void reservarGuardaLaReservaDeLaPlaza() {
+        reservaService.reservar(usuario.getEmailPersona(), peticion(LocalDate.now().plusDays(3)));
+
+        List<Reserva> reservas = reservaRepository.findByPersonaIdOrderByFecAltaDesc(usuario.getId());
+        assertThat(reservas).hasSize(1);
+        assertThat(reservas.get(0).getPlaza().getId()).isEqualTo(plaza.getId());
+    }
+
+    @Test
+    void reservarLoteConfirmaLasSolicitudes() {
+        SolicitudReserva solicitud = new SolicitudReserva("s1", usuario.getEmailPersona(), usuario.getId(),
+                peticion(LocalDate.now().plusDays(5)), Locale.ENGLISH);
+
+        reservaService.reservarLote(List.of(solicitud));
+
+        assertThat(solicitud.getEstado()).isEqualTo(EstadoSolicitud.CONFIRMADA);
+        assertThat(reservaRepository.findById(solicitud.getIdReserva())).isPresent();
+    }
+
+    private ReservaRequest peticion(LocalDate dia) {
+        ReservaRequest request = new ReservaRequest();
+        request.setIdParking(plaza.getParking().getId());
+        request.setIdPlaza(plaza.getId());
+        request.setFecInicio(dia);
+        request.setFecFin(dia);
+        return request;
+    }
+}
@@ -0,0 +1,118 @@
+package hemen.go;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import hemen.go.security.ClavesPuerta;
+import hemen.go.service.TokenReservaService;
+import hemen.go.util.Base45;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.security.SignatureException;
+
+class TokenPuertaCompactoTest {
+
+    private static ClavesPuerta claves;
+    private static TokenReservaService servicio;
+
+    @BeforeAll
+    static void crearClaves() throws GeneralSecurityException {
+        claves = new ClavesPuerta(generarClaves(), null);
+        servicio = new TokenReservaService(claves, "L", 4, true);
+    }
+
+    @Test
+    void elTokenCompactoConservaLosDatos() {
+        String token = servicio.generarTokenPuerta(7L, 42L, 3L);
+        assertThat(token).startsWith(ClavesPuerta.PREFIJO_COMPACTO);
+
+        Claims claims = servicio.validarTokenPuerta(token);
+        assertThat(claims.getSubject()).isEqualTo("abrir-puerta");
+        assertThat(claims.get("idUsuario", Long.class)).isEqualTo(7L);
+        assertThat(claims.get("idReserva", Long.class)).isEqualTo(42L);
+        assertThat(claims.get("idParking", Long.class)).isEqualTo(3L);
+        assertThat(claims.getId()).isNotBlank();
+        assertThat(claims.getExpiration().getTime() - claims.getIssuedAt().getTime())
+                .isEqualTo(TokenReservaService.VALIDEZ_TOKEN_PUERTA_MS);
+
+        byte[] datos = {1, 2, 3};
+        assertThat(claves.verificarCompacto(claves.firmarCompacto(datos))).isEqualTo(datos);
+    }
+
+    @Test
+    void rechazaUnByteCambiadoEnLosDatosOEnLaFirma() {
+        byte[] bytes = bytes(servicio.generarTokenPuerta(7L, 42L, 3L));
+        // Después de los 4 bytes del identificador de clave: último byte del idParking
+        byte[] datos = bytes.clone();
+        datos[bytes.length - 65] ^= 1;
+        assertThatThrownBy(() -> servicio.validarTokenPuerta(token(datos))).isInstanceOf(SignatureException.class);
+
+        byte[] firma = bytes.clone();
+        firma[bytes.length - 1] ^= 1;
+        assertThatThrownBy(() -> servicio.validarTokenPuerta(token(firma))).isInstanceOf(SignatureException.class);
+    }
+
+    @Test
+    void rechazaUnaClaveDesconocida() throws GeneralSecurityException {
+        byte[] bytes = bytes(servicio.generarTokenPuerta(7L, 42L, 3L));
+        bytes[0] ^= 1;
+        assertThatThrownBy(() -> servicio.validarTokenPuerta(token(bytes))).isInstanceOf(SignatureException.class);
+
+        ClavesPuerta otras = new ClavesPuerta(generarClaves(), null);
+        String ajeno = new TokenReservaService(otras, "L", 4, true).generarTokenPuerta(7L, 42L, 3L);
+        assertThatThrownBy(() -> servicio.validarTokenPuerta(ajeno)).isInstanceOf(SignatureException.class);
+    }
+
+    @Test
+    void rechazaDatosDeOtraLongitudYTokensMalFormados() {
+        String corto = claves.firmarCompacto(new byte[20]);
+        assertThatThrownBy(() -> servicio.validarTokenPuerta(corto)).isInstanceOf(MalformedJwtException.class);
+
+        String largo = claves.firmarCompacto(new byte[41]);
+        assertThatThrownBy(() -> servicio.validarTokenPuerta(largo)).isInstanceOf(MalformedJwtException.class);
+
+        assertThatThrownBy(() -> servicio.validarTokenPuerta(ClavesPuerta.PREFIJO_COMPACTO + "abc"))
+                .isInstanceOf(MalformedJwtException.class);
+        assertThatThrownBy(() -> servicio.validarTokenPuerta(ClavesPuerta.PREFIJO_COMPACTO + "BB8"))
+                .isInstanceOf(MalformedJwtException.class);
+    }
+
+    @Test
+    void rechazaUnTokenCaducado() {
+        long ahora = System.currentTimeMillis() / 1000;
+        byte[] datos = ByteBuffer.allocate(40)
+                .putInt((int) (ahora - 7200))
+                .putInt((int) (ahora - 3600))
+                .putLong(1L)
+                .putLong(7L)
+                .putLong(42L)
+                .putLong(3L)
+                .array();
+        String caducado = claves.firmarCompacto(datos);
+        assertThatThrownBy(() -> servicio.validarTokenPuerta(caducado)).isInstanceOf(ExpiredJwtException.class);
+    }
+
+    private static byte[] bytes(String token) {
+        return Base45.decodificar(token.substring(ClavesPuerta.PREFIJO_COMPACTO.length()));
+    }
+
+    private static String token(byte[] bytes) {
+        return ClavesPuerta.PREFIJO_COMPACTO + Base45.codificar(bytes);
+    }
+
+    private static KeyPair generarClaves() throws GeneralSecurityException {
+        KeyPairGenerator generador = KeyPairGenerator.getInstance("EC");
+        generador.initialize(new ECGenParameterSpec("secp256r1"));
+        return generador.generateKeyPair();
+    }
+}
@@ -0,0 +1,66 @@
+package hemen.go;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import hemen.go.service.sesion.TokenRefrescoService;
+import hemen.go.service.sesion.TokenRefrescoService.Rotacion;
+
+/**
+ * Rotación y revocación de tokens de refresco contra la base de datos H2.
+ */
+@SpringBootTest(properties = "reserva.cancelacion.dias=2")
+class TokenRefrescoServiceTest {
+
+    @Autowired
+    private TokenRefrescoService tokenRefrescoService;
+
+    @Test
+    void cadaRotacionConsumeElTokenYEmiteOtro() {
+        Long idUsuario = System.nanoTime();
+        String primero = tokenRefrescoService.emitir(idUsuario);
+
+        Rotacion segunda = tokenRefrescoService.rotar(primero);
+        assertThat(segunda.idUsuario()).isEqualTo(idUsuario);
+        assertThat(segunda.token()).isNotEqualTo(primero);
+
+        Rotacion tercera = tokenRefrescoService.rotar(segunda.token());
+        assertThat(tercera.idUsuario()).isEqualTo(idUsuario);
+
+        assertThatThrownBy(() -> tokenRefrescoService.rotar("desconocido")).isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    void reutilizarUnTokenRevocaTodaSuFamilia() {
+        Long idUsuario = System.nanoTime();
+        String robado = tokenRefrescoService.emitir(idUsuario);
+        String otraSesion = tokenRefrescoService.emitir(idUsuario);
+        Rotacion legitima = tokenRefrescoService.rotar(robado);
+
+        assertThatThrownBy(() -> tokenRefrescoService.rotar(robado)).isInstanceOf(BadCredentialsException.class);
+        // El token que había obtenido el usuario legítimo es de la misma familia
+        assertThatThrownBy(() -> tokenRefrescoService.rotar(legitima.token())).isInstanceOf(BadCredentialsException.class);
+        // Otra sesión del mismo usuario es otra familia
+        assertThat(tokenRefrescoService.rotar(otraSesion).idUsuario()).isEqualTo(idUsuario);
+    }
+
+    @Test
+    void revocarUsuarioInvalidaSoloSusTokens() {
+        Long idUsuario = System.nanoTime();
+        Long idOtro = idUsuario + 1;
+        String primero = tokenRefrescoService.emitir(idUsuario);
+        String rotado = tokenRefrescoService.rotar(tokenRefrescoService.emitir(idUsuario)).token();
+        String ajeno = tokenRefrescoService.emitir(idOtro);
+
+        tokenRefrescoService.revocarUsuario(idUsuario);
+
+        assertThatThrownBy(() -> tokenRefrescoService.rotar(primero)).isInstanceOf(BadCredentialsException.class);
+        assertThatThrownBy(() -> tokenRefrescoService.rotar(rotado)).isInstanceOf(BadCredentialsException.class);
+        assertThat(tokenRefrescoService.rotar(ajeno).idUsuario()).isEqualTo(idOtro);
+    }
+}